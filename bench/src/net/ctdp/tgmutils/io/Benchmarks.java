@@ -0,0 +1,26 @@
+package net.ctdp.tgmutils.io;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks, or the ones matching the given regular expression,
+ * with the GC profiler to report the allocation rate next to throughput and average time.
+ * Has to be started from the project directory, so res/ can be found.
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "net\\.ctdp\\.tgmutils\\..*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.forks(1)
+				.warmupIterations(5)
+				.measurementIterations(5)
+				.build();
+		new Runner(options).run();
+	}
+}
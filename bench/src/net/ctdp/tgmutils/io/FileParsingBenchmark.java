@@ -0,0 +1,67 @@
+package net.ctdp.tgmutils.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.ctdp.tgmutils.models.TGMFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Full parses of the TGM files in res/, which have to be found in the working directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FileParsingBenchmark {
+
+	@Param({"res/node.tgm", "res/rTrainer_Tires.tgm"})
+	public String path;
+
+	private File file;
+
+	@Setup
+	public void setup() throws IOException {
+		file = new File(path);
+		if(!file.isFile()) {
+			throw new IOException("Run the benchmarks from the project directory, " + path + " not found");
+		}
+	}
+
+	@Benchmark
+	public TGMFile parseReader() throws IOException {
+		TGMParser parser = new TGMParser();
+		parser.parse(file);
+		return parser.getTGMFile();
+	}
+
+	@Benchmark
+	public TGMFile parseMapped() throws IOException {
+		TGMParser parser = new TGMParser();
+		parser.parseMapped(file);
+		return parser.getTGMFile();
+	}
+
+	@Benchmark
+	public TGMFile parseLazy() throws IOException {
+		TGMParser parser = new TGMParser();
+		parser.setLazyLookupData(true);
+		parser.parse(file);
+		return parser.getTGMFile();
+	}
+
+	@Benchmark
+	public TGMFile parseParallel() throws IOException {
+		TGMParser parser = new TGMParser();
+		parser.parseParallel(file);
+		return parser.getTGMFile();
+	}
+}
@@ -0,0 +1,62 @@
+package net.ctdp.tgmutils.io;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Splitting of a single line by {@link AbstractIniParser#parseLine(int, String, String)},
+ * without any work done in the callbacks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IniParserBenchmark {
+
+	@Param({"material", "bin", "comment"})
+	public String line;
+
+	private String text;
+	private String group;
+	private final CountingParser parser = new CountingParser();
+
+	@Setup
+	public void setup() {
+		group = "Node";
+		switch(line) {
+		case "material":
+			text = "BulkMaterial=(273.15,925,16000000,0.47,-1,1250,3.7)";
+			break;
+		case "bin":
+			text = "Bin=" + SyntheticTGM.hexBin(42);
+			group = "LookupData";
+			break;
+		default:
+			text = "TreadDepth=0.003 // tread depth in m";
+		}
+	}
+
+	@Benchmark
+	public int parseLine() throws IOException {
+		parser.parseLine(1, group, text);
+		return parser.count;
+	}
+
+	private static class CountingParser extends AbstractIniParser {
+		int count;
+
+		@Override
+		protected boolean onSettingParsed(int lineNr, String group, String key, String value, String comment) {
+			count += value.length();
+			return true;
+		}
+	}
+}
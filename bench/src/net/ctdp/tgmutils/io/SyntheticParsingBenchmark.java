@@ -0,0 +1,62 @@
+package net.ctdp.tgmutils.io;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import net.ctdp.tgmutils.models.TGMFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Full parses of generated TGMs, to see how parsing scales with the number of nodes and bins.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SyntheticParsingBenchmark {
+
+	@Param({"31", "310", "3100"})
+	public int nodes;
+
+	@Param({"1896", "18960"})
+	public int bins;
+
+	private String text;
+	private ByteBuffer bytes;
+
+	@Setup
+	public void setup() {
+		text = SyntheticTGM.create(nodes, bins);
+		bytes = ByteBuffer.wrap(SyntheticTGM.toBytes(text));
+	}
+
+	@Benchmark
+	public TGMFile parseReader() throws IOException {
+		TGMParser parser = new TGMParser();
+		parser.parse(new StringReader(text));
+		return parser.getTGMFile();
+	}
+
+	@Benchmark
+	public TGMFile parseBytes() throws IOException {
+		TGMParser parser = new TGMParser();
+		parser.parse(bytes.duplicate());
+		return parser.getTGMFile();
+	}
+
+	@Benchmark
+	public TGMFile parseParallel() throws IOException {
+		TGMParser parser = new TGMParser();
+		parser.parseParallel(bytes.duplicate());
+		return parser.getTGMFile();
+	}
+}
@@ -0,0 +1,84 @@
+package net.ctdp.tgmutils.io;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Generates TGM files of any size, shaped like res/rTrainer_Tires.tgm.
+ */
+final class SyntheticTGM {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private SyntheticTGM() {
+	}
+
+	/**
+	 * Create a TGM with the given number of [Node] groups and LookupData bins.
+	 * The content is the same for the same sizes.
+	 * @param nodes
+	 * @param bins
+	 * @return
+	 */
+	static String create(int nodes, int bins) {
+		StringBuilder sb = new StringBuilder(nodes * 700 + bins * 140 + 2048);
+		sb.append("[QuasiStaticAnalysis]\r\n");
+		sb.append("NumLayers=2\r\nNumSections=100\r\nRimVolume=0.014\r\nRealtimeCamberLimit=45\r\n");
+		sb.append("GaugePressure=0\r\nGaugePressure=150000\r\nGaugePressure=300000\r\n");
+		sb.append("CarcassTemperature=273.15\r\nCarcassTemperature=373.15\r\n");
+		sb.append("RotationSquared=0\r\nRotationSquared=80000\r\n");
+		sb.append("NumNodes=").append(nodes).append("\r\n");
+		sb.append("TotalMass=10.558957270550053\r\n");
+		sb.append("TotalInertiaStandard=(0.9865952331376638,0.629654560048139,0.6296545600481429)\r\n\r\n");
+
+		Random random = new Random(nodes * 31L + bins);
+		for (int n = 0; n < nodes; n++) {
+			double angle = Math.PI * n / Math.max(1, nodes - 1);
+			sb.append("[Node] // ").append(n).append("\r\n");
+			sb.append("Geometry=(").append(0.175 * Math.cos(angle)).append(',')
+					.append(-0.182 - 0.142 * Math.sin(angle)).append(",0.006)\r\n");
+			sb.append("BulkMaterial=(273.15,925,16000000,0.47,-1,1250,3.7)\r\n");
+			sb.append("BulkMaterial=(373.15,903,12000000,0.47,-1,1290,3.52)\r\n");
+			sb.append("AnisoCarcassConductivityMult=(1.5,1,1.1)\r\n");
+			sb.append("TreadDepth=").append(random.nextInt(8) / 1000.0).append("\r\n");
+			sb.append("TreadMaterial=(273.15,925,9500000,0.47,-1,2000,0.172)\r\n");
+			sb.append("TreadMaterial=(373.15,903,7300000,0.47,-1,2200,0.165)\r\n");
+			sb.append("RingAndRim=(0,1000000000)\r\n");
+			for (int p = 0; p < 2; p++) {
+				sb.append("PlyParams=(").append(80 + p * 20).append(",0.0004,3)\r\n");
+				sb.append("PlyMaterial=(273.15,1305,2100000000,0.3,-1,1695,0.25)\r\n");
+				sb.append("PlyMaterial=(373.15,1285,1700000000,0.3,-1,1715,0.24)\r\n");
+			}
+			sb.append("\r\n");
+		}
+
+		sb.append("[Realtime]\r\n");
+		sb.append("StaticBaseCoefficient=1.82\r\n");
+		sb.append("StaticCurve=(-1.20, 0.20, +1.80, 2.00, +4.80, 0.40)\r\n\r\n");
+
+		sb.append("[LookupData]\r\nVersion=1.101\r\n");
+		for (int b = 0; b < bins; b++) {
+			sb.append("Bin=").append(hexBin(random.nextLong())).append("\r\n");
+		}
+		sb.append("Checksum=").append(random.nextInt()).append("\r\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Return the 128 hex characters of a bin filled from the given seed.
+	 * @param seed
+	 * @return
+	 */
+	static String hexBin(long seed) {
+		Random random = new Random(seed);
+		char[] hex = new char[128];
+		for (int i = 0; i < hex.length; i++) {
+			hex[i] = HEX[random.nextInt(16)];
+		}
+		return new String(hex);
+	}
+
+	static byte[] toBytes(String text) {
+		return text.getBytes(Charset.forName("ISO-8859-1"));
+	}
+}
@@ -0,0 +1,44 @@
+package net.ctdp.tgmutils.io;
+
+import java.util.concurrent.TimeUnit;
+
+import net.ctdp.tgmutils.models.TGMFile.Node.Material;
+import net.ctdp.tgmutils.util.DoubleArrayList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openmali.vecmath2.Vector3f;
+
+/**
+ * Conversion of single TGM values by the public helpers of {@link TGMParser}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValueParsingBenchmark {
+
+	public String material = "(273.15,1305,2100000000,0.3,-1,1695,0.25)";
+	public String doubleList = "(0.9865952331376638,0.629654560048139,0.6296545600481429)";
+	public String vector = "(0.17500000000000002,-0.182,0.006)";
+
+	private final TGMParser parser = new TGMParser();
+
+	@Benchmark
+	public Material parseMaterial() {
+		return parser.parseMaterial(material);
+	}
+
+	@Benchmark
+	public DoubleArrayList parseDoubleList() {
+		return TGMParser.parseDoubleList(doubleList);
+	}
+
+	@Benchmark
+	public Vector3f parseVector3f() {
+		return TGMParser.parseVector3f(vector);
+	}
+}
@@ -34,8 +34,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * The {@link AbstractIniParser} parses ini files ;).
@@ -44,6 +48,30 @@ import java.net.URL;
  */
 public abstract class AbstractIniParser
 {
+    private static final int BUFFER_SIZE = 8192;
+    
+    private static final int GROUP_PARSE = 0;
+    private static final int GROUP_SKIP = 1;
+    private static final int GROUP_STOP = 2;
+    
+    private Reader in = null;
+    private char[] buffer = null;
+    private int bufferPos = 0;
+    private int bufferLimit = 0;
+    private long bufferOffset = 0L;
+    private final StringBuilder lineBuilder = new StringBuilder();
+    
+    private long lineOffset = 0L;
+    private boolean skipGroup = false;
+    private File sourceFile = null;
+    
+    private String[] groupFilter = null;
+    private boolean[] groupsRead = null;
+    private int groupsReadCount = 0;
+    
+    private String rawGroupName = null;
+    private String initialGroup = null;
+    
     /**
      * This method is invoked, when a standalone comment line has been found.
      * 
@@ -89,6 +117,104 @@ public abstract class AbstractIniParser
      */
     protected abstract boolean onSettingParsed( int lineNr, String group, String key, String value, String comment ) throws ParsingException;
     
+    /**
+     * This method is invoked by the byte based parse path, when a standalone comment line has been found.<br>
+     * The default implementation converts the sequences to Strings and calls {@link #onCommentParsed(int, String, String)}.
+     * 
+     * @param lineNr
+     * @param group the current group (can be null)
+     * @param comment
+     * 
+     * @return true, to indicate, that parsing should be proceeded, false to stop parsing.
+     * 
+     * @throws ParsingException
+     */
+    protected boolean onCommentParsed( int lineNr, AsciiSequence group, AsciiSequence comment ) throws ParsingException
+    {
+        return ( onCommentParsed( lineNr, getGroupName( group ), comment.toString() ) );
+    }
+    
+    /**
+     * This method is invoked by the byte based parse path, when a new group has been found.<br>
+     * The default implementation converts the group to a String and calls {@link #onGroupParsed(int, String)}.
+     * 
+     * @param lineNr
+     * @param group
+     * 
+     * @return true, to indicate, that parsing should be proceeded, false to stop parsing.
+     * 
+     * @throws ParsingException
+     */
+    protected boolean onGroupParsed( int lineNr, AsciiSequence group ) throws ParsingException
+    {
+        return ( onGroupParsed( lineNr, getGroupName( group ) ) );
+    }
+    
+    /**
+     * This method is invoked by the byte based parse path, when a new setting has been found.<br>
+     * The default implementation converts the sequences to Strings and calls
+     * {@link #onSettingParsed(int, String, String, String, String)}.
+     * 
+     * @param lineNr
+     * @param group the current group (can be null)
+     * @param key
+     * @param value
+     * @param comment the comment behind the value. (can be null)
+     * 
+     * @return true, to indicate, that parsing should be proceeded, false to stop parsing.
+     * 
+     * @throws ParsingException
+     */
+    protected boolean onSettingParsed( int lineNr, AsciiSequence group, AsciiSequence key, AsciiSequence value, AsciiSequence comment ) throws ParsingException
+    {
+        return ( onSettingParsed( lineNr, getGroupName( group ), key.toString(), value.toString(), ( comment == null ) ? null : comment.toString() ) );
+    }
+    
+    /**
+     * The group name is only converted once per group header.
+     */
+    private String getGroupName( AsciiSequence group )
+    {
+        if ( group == null )
+            return ( null );
+        
+        if ( rawGroupName == null )
+            rawGroupName = group.toString();
+        
+        return ( rawGroupName );
+    }
+    
+    /**
+     * This method is invoked instead of parsing the lines of a group,
+     * for which {@link #skipGroup()} has been called.
+     * 
+     * @param lineNr the line of the group header
+     * @param group
+     * @param offset the offset of the group header in the stream or buffer
+     * @param length the number of bytes up to the next group or the end of the input, see {@link #getLineOffset()}
+     * 
+     * @return true, to indicate, that parsing should be proceeded, false to stop parsing.
+     * 
+     * @throws ParsingException
+     */
+    protected boolean onGroupSkipped( int lineNr, String group, long offset, long length ) throws ParsingException
+    {
+        return ( true );
+    }
+    
+    /**
+     * Checks, whether {@link #parse(File)} reads the file through {@link #parseMapped(File)}.<br>
+     * Offsets of the {@link Reader} path are counted in decoded chars, which only match
+     * the bytes of the file for ASCII. So a parser, which needs the byte offsets of skipped
+     * groups to read them back later, returns true. The default is false.
+     * 
+     * @return true, if files are parsed byte by byte.
+     */
+    protected boolean isParsingFilesMapped()
+    {
+        return ( false );
+    }
+    
     /**
      * This method is invoked when the parsing of the file as been finished.
      */
@@ -167,6 +293,234 @@ public abstract class AbstractIniParser
         return ( proceedParse );
     }
     
+    /**
+     * Requests the lines of the current group to be skipped without parsing them.<br>
+     * This method may only be called from {@link #onGroupParsed(int, String)}.
+     * The parser scans for the next group header and then invokes
+     * {@link #onGroupSkipped(int, String, long, long)}.
+     */
+    protected final void skipGroup()
+    {
+        this.skipGroup = true;
+    }
+    
+    /**
+     * Restricts parsing to the given groups.<br>
+     * The lines of all other groups and the lines before the first group header are skipped
+     * without tokenizing them and none of the callbacks is invoked for them.
+     * Once each of the given groups has been read, parsing ends at the next header of another group.
+     * So a group must not be split by other groups, which holds for the groups of a TGM file.
+     * 
+     * @param groups the groups to parse, or null to parse all groups
+     */
+    public void setGroupFilter( String... groups )
+    {
+        this.groupFilter = ( ( groups == null ) || ( groups.length == 0 ) ) ? null : groups.clone();
+    }
+    
+    /**
+     * Gets the groups given to {@link #setGroupFilter(String...)}.
+     * 
+     * @return the groups or null, if all groups are parsed.
+     */
+    public final String[] getGroupFilter()
+    {
+        return ( ( groupFilter == null ) ? null : groupFilter.clone() );
+    }
+    
+    /**
+     * Checks, whether the group is parsed according to the group filter.
+     * 
+     * @param group the group or null for lines before the first group header
+     * 
+     * @return true, if there is no filter or the group is in it.
+     */
+    protected final boolean isGroupAccepted( CharSequence group )
+    {
+        return ( ( groupFilter == null ) || ( indexOfFilter( group ) >= 0 ) );
+    }
+    
+    private int indexOfFilter( CharSequence group )
+    {
+        if ( group == null )
+            return ( -1 );
+        
+        for ( int i = 0; i < groupFilter.length; i++ )
+        {
+            String name = groupFilter[i];
+            if ( name.length() != group.length() )
+                continue;
+            
+            int j = 0;
+            while ( ( j < name.length() ) && ( name.charAt( j ) == group.charAt( j ) ) )
+                j++;
+            
+            if ( j == name.length() )
+                return ( i );
+        }
+        
+        return ( -1 );
+    }
+    
+    private void resetGroupFilter()
+    {
+        if ( groupFilter != null )
+            groupsRead = new boolean[ groupFilter.length ];
+        groupsReadCount = 0;
+    }
+    
+    /**
+     * Applies the group filter to a group header.
+     * 
+     * @return {@link #GROUP_PARSE}, {@link #GROUP_SKIP} or {@link #GROUP_STOP}, if all requested groups have been read.
+     */
+    private int filterGroup( CharSequence group )
+    {
+        if ( groupFilter == null )
+            return ( GROUP_PARSE );
+        
+        int idx = indexOfFilter( group );
+        if ( idx < 0 )
+            return ( ( groupsReadCount == groupFilter.length ) ? GROUP_STOP : GROUP_SKIP );
+        
+        if ( !groupsRead[idx] )
+        {
+            groupsRead[idx] = true;
+            groupsReadCount++;
+        }
+        
+        return ( GROUP_PARSE );
+    }
+    
+    /**
+     * Gets the offset of the current line in the parsed stream.<br>
+     * This is the byte offset, when parsing a {@link ByteBuffer} (relative to its position),
+     * a {@link FileChannel} or a file through {@link #parseMapped(File)}.
+     * All other sources are read through a {@link Reader}, for them it is the offset in chars.
+     * 
+     * @return the offset.
+     */
+    protected final long getLineOffset()
+    {
+        return ( lineOffset );
+    }
+    
+    /**
+     * Gets the file currently parsed.
+     * 
+     * @return the file or null, if parsing doesn't read from a {@link File}.
+     */
+    protected final File getSourceFile()
+    {
+        return ( sourceFile );
+    }
+    
+    private boolean fillBuffer() throws IOException
+    {
+        bufferOffset += bufferLimit;
+        bufferPos = 0;
+        bufferLimit = 0;
+        
+        int n;
+        do
+        {
+            n = in.read( buffer, 0, buffer.length );
+        }
+        while ( n == 0 );
+        
+        if ( n < 0 )
+            return ( false );
+        
+        bufferLimit = n;
+        
+        return ( true );
+    }
+    
+    /**
+     * Reads the next line like {@link BufferedReader#readLine()}, but keeps
+     * track of the line's offset.
+     */
+    private String readLine() throws IOException
+    {
+        if ( ( bufferPos == bufferLimit ) && !fillBuffer() )
+            return ( null );
+        
+        lineOffset = bufferOffset + bufferPos;
+        lineBuilder.setLength( 0 );
+        
+        while ( true )
+        {
+            int start = bufferPos;
+            while ( bufferPos < bufferLimit )
+            {
+                char ch = buffer[bufferPos];
+                if ( ( ch == '\n' ) || ( ch == '\r' ) )
+                {
+                    String line;
+                    if ( lineBuilder.length() == 0 )
+                    {
+                        line = new String( buffer, start, bufferPos - start );
+                    }
+                    else
+                    {
+                        lineBuilder.append( buffer, start, bufferPos - start );
+                        line = lineBuilder.toString();
+                    }
+                    
+                    bufferPos++;
+                    if ( ( ch == '\r' ) && ( ( bufferPos < bufferLimit ) || fillBuffer() ) && ( buffer[bufferPos] == '\n' ) )
+                        bufferPos++;
+                    
+                    return ( line );
+                }
+                
+                bufferPos++;
+            }
+            
+            lineBuilder.append( buffer, start, bufferPos - start );
+            
+            if ( !fillBuffer() )
+                return ( lineBuilder.toString() );
+        }
+    }
+    
+    /**
+     * Skips all lines up to the next group header without tokenizing them.
+     * 
+     * @return the number of skipped lines.
+     */
+    private int skipGroupLines() throws IOException
+    {
+        int lines = 0;
+        boolean lineStart = true;
+        char lastChar = '\0';
+        
+        while ( ( bufferPos < bufferLimit ) || fillBuffer() )
+        {
+            char ch = buffer[bufferPos];
+            
+            if ( lineStart )
+            {
+                if ( ch == '[' )
+                    break;
+                
+                if ( ( ch != ' ' ) && ( ch != '\t' ) )
+                    lineStart = false;
+            }
+            
+            if ( ( ch == '\r' ) || ( ( ch == '\n' ) && ( lastChar != '\r' ) ) )
+                lines++;
+            
+            if ( ( ch == '\r' ) || ( ch == '\n' ) )
+                lineStart = true;
+            
+            lastChar = ch;
+            bufferPos++;
+        }
+        
+        return ( lines );
+    }
+    
     /**
      * Parses the given file.<br>
      * This method implements the actual parsing code.
@@ -178,38 +532,157 @@ public abstract class AbstractIniParser
      */
     protected void parseImpl( BufferedReader reader ) throws IOException, ParsingException
     {
-        String currentGroup = null;
+        this.in = reader;
+        if ( buffer == null )
+            buffer = new char[ BUFFER_SIZE ];
+        this.bufferPos = 0;
+        this.bufferLimit = 0;
+        this.bufferOffset = 0L;
+        this.lineOffset = 0L;
+        this.skipGroup = false;
+        resetGroupFilter();
         
-        String line = null;
-        int lineNr = 0;
-        boolean proceedParse = true;
-        while ( proceedParse && ( ( line = reader.readLine() ) != null ) )
+        try
         {
-            line = line.trim();
-            lineNr++;
+            String currentGroup = null;
             
-            if ( line.length() == 0 )
-                continue;
+            String line = null;
+            int lineNr = 0;
+            boolean proceedParse = true;
+            
+            if ( groupFilter != null )
+                lineNr += skipGroupLines();
             
-            if ( line.startsWith( "[" ) )
+            while ( proceedParse && ( ( line = readLine() ) != null ) )
             {
-                if ( line.endsWith( "]" ) )
+                line = line.trim();
+                lineNr++;
+                
+                if ( line.length() == 0 )
+                    continue;
+                
+                if ( line.startsWith( "[" ) )
                 {
-                    currentGroup = line.substring( 1, line.length() - 1 ).trim();
+                    if ( line.endsWith( "]" ) )
+                    {
+                        currentGroup = line.substring( 1, line.length() - 1 ).trim();
+                    }
+                    else
+                    {
+                        int idx = line.indexOf( "]" );
+                        if ( idx < 0 )
+                            throw new ParsingException( "Illegal line #" + lineNr + ": " + line );
+                        
+                        currentGroup = line.substring( 1, idx ).trim();
+                    }
+                    
+                    int filter = filterGroup( currentGroup );
+                    if ( filter == GROUP_STOP )
+                        break;
+                    
+                    if ( filter == GROUP_SKIP )
+                    {
+                        lineNr += skipGroupLines();
+                        continue;
+                    }
+                    
+                    skipGroup = false;
                     proceedParse = onGroupParsed( lineNr, currentGroup );
+                    
+                    if ( proceedParse && skipGroup )
+                    {
+                        int groupLineNr = lineNr;
+                        long groupOffset = lineOffset;
+                        
+                        lineNr += skipGroupLines();
+                        skipGroup = false;
+                        
+                        proceedParse = onGroupSkipped( groupLineNr, currentGroup, groupOffset, bufferOffset + bufferPos - groupOffset );
+                    }
+                    
                     continue;
                 }
                 
-                int idx = line.indexOf( "]" );
-                if ( idx < 0 )
-                    throw new ParsingException( "Illegal line #" + lineNr + ": " + line );
-                
-                currentGroup = line.substring( 1, idx ).trim();
-                proceedParse = onGroupParsed( lineNr, currentGroup );
-                continue;
+                proceedParse = parseLine( lineNr, currentGroup, line );
             }
             
-            proceedParse = parseLine( lineNr, currentGroup, line );
+            onParsingFinished();
+        }
+        finally
+        {
+            this.in = null;
+        }
+    }
+    
+    /**
+     * Parses the given ASCII bytes from the buffer's position to its limit.<br>
+     * This is the byte based counterpart of {@link #parseImpl(BufferedReader)}. The lines are read
+     * by an {@link IniReader} and its groups, keys and values are passed to the {@link AsciiSequence}
+     * variants of the callbacks, which only create Strings if not overridden.
+     * {@link #parseLine(int, String, String)} is not used by this path.
+     * 
+     * @param buffer
+     * 
+     * @throws IOException
+     * @throws ParsingException
+     */
+    protected void parseImpl( ByteBuffer buffer ) throws IOException, ParsingException
+    {
+        this.lineOffset = 0L;
+        this.skipGroup = false;
+        this.rawGroupName = initialGroup;
+        resetGroupFilter();
+        
+        IniReader reader = new IniReader( buffer, initialGroup );
+        
+        if ( filterGroup( reader.getGroup() ) == GROUP_SKIP )
+            reader.skipGroup();
+        
+        boolean proceedParse = true;
+        while ( proceedParse )
+        {
+            IniReader.Event event = reader.next();
+            if ( event == IniReader.Event.END )
+                break;
+            
+            int lineNr = reader.getLineNr();
+            lineOffset = reader.getLineOffset();
+            
+            switch ( event )
+            {
+                case GROUP:
+                    int filter = filterGroup( reader.getGroup() );
+                    if ( filter != GROUP_PARSE )
+                    {
+                        if ( filter == GROUP_SKIP )
+                            reader.skipGroup();
+                        else
+                            proceedParse = false;
+                        break;
+                    }
+                    
+                    rawGroupName = null;
+                    skipGroup = false;
+                    proceedParse = onGroupParsed( lineNr, reader.getGroup() );
+                    
+                    if ( proceedParse && skipGroup )
+                    {
+                        long groupOffset = lineOffset;
+                        long end = reader.skipGroup();
+                        
+                        skipGroup = false;
+                        proceedParse = onGroupSkipped( lineNr, getGroupName( reader.getGroup() ), groupOffset, end - groupOffset );
+                    }
+                    break;
+                    
+                case COMMENT:
+                    proceedParse = onCommentParsed( lineNr, reader.getGroup(), reader.getComment() );
+                    break;
+                    
+                default:
+                    proceedParse = onSettingParsed( lineNr, reader.getGroup(), reader.getKey(), reader.getValue(), reader.getComment() );
+                    break;
+            }
         }
         
         onParsingFinished();
@@ -254,11 +727,20 @@ public abstract class AbstractIniParser
      */
     public final void parse( URL url ) throws IOException, ParsingException
     {
-        parse( url.openStream() );
+        InputStream in = url.openStream();
+        try
+        {
+            parse( in );
+        }
+        finally
+        {
+            in.close();
+        }
     }
     
     /**
-     * Parses the given file.
+     * Parses the given file.<br>
+     * If {@link #isParsingFilesMapped()} returns true, the file is parsed by {@link #parseMapped(File)}.
      * 
      * @param file
      * 
@@ -267,7 +749,100 @@ public abstract class AbstractIniParser
      */
     public final void parse( File file ) throws IOException, ParsingException
     {
-        parse( file.toURI().toURL() );
+        if ( isParsingFilesMapped() )
+        {
+            parseMapped( file );
+            return;
+        }
+        
+        this.sourceFile = file;
+        try
+        {
+            parse( file.toURI().toURL() );
+        }
+        finally
+        {
+            this.sourceFile = null;
+        }
+    }
+    
+    /**
+     * Parses the ASCII bytes between the buffer's position and limit.
+     * 
+     * @param buffer
+     * 
+     * @throws IOException
+     * @throws ParsingException
+     */
+    public final void parse( ByteBuffer buffer ) throws IOException, ParsingException
+    {
+        parseImpl( buffer );
+    }
+    
+    /**
+     * Parses ASCII bytes, which continue the given group without repeating its header,
+     * e.g. one of several parts of a long group split at line boundaries.<br>
+     * Lines before the first group header are passed to the callbacks as lines of the given group.
+     * Line numbers are counted from the buffer's position.
+     * 
+     * @param buffer
+     * @param group
+     * 
+     * @throws IOException
+     * @throws ParsingException
+     */
+    public final void parse( ByteBuffer buffer, String group ) throws IOException, ParsingException
+    {
+        this.initialGroup = group;
+        try
+        {
+            parseImpl( buffer );
+        }
+        finally
+        {
+            this.initialGroup = null;
+        }
+    }
+    
+    /**
+     * Maps the whole channel into memory and parses it byte by byte.
+     * 
+     * @param channel
+     * 
+     * @throws IOException
+     * @throws ParsingException
+     */
+    public final void parse( FileChannel channel ) throws IOException, ParsingException
+    {
+        long size = channel.size();
+        if ( size > Integer.MAX_VALUE )
+            throw new IOException( "Channel too large to be mapped: " + size + " bytes" );
+        
+        parseImpl( channel.map( FileChannel.MapMode.READ_ONLY, 0L, size ) );
+    }
+    
+    /**
+     * Parses the given file through a {@link MappedByteBuffer} instead of a {@link Reader}.<br>
+     * The file is expected to be ASCII (or any single byte encoding), like all TGM files.
+     * 
+     * @param file
+     * 
+     * @throws IOException
+     * @throws ParsingException
+     */
+    public final void parseMapped( File file ) throws IOException, ParsingException
+    {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            this.sourceFile = file;
+            parse( raf.getChannel() );
+        }
+        finally
+        {
+            this.sourceFile = null;
+            raf.close();
+        }
     }
     
     /**
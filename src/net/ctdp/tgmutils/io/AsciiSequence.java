@@ -0,0 +1,113 @@
+package net.ctdp.tgmutils.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable {@link CharSequence} over a range of ASCII bytes in a {@link ByteBuffer}.
+ * The byte based parse path of the {@link AbstractIniParser} hands groups, keys and values
+ * out as instances of this class, so no String has to be created for them.
+ * Instances are overwritten when the parser proceeds to the next line,
+ * call toString() to keep a value.
+ */
+public final class AsciiSequence implements CharSequence {
+
+	private ByteBuffer buffer;
+	private int start;
+	private int end;
+
+	/**
+	 * Create an empty sequence.
+	 */
+	public AsciiSequence() {
+	}
+
+	/**
+	 * Create a sequence over the given range of the buffer.
+	 * @param buffer
+	 * @param start index of the first byte
+	 * @param end index behind the last byte
+	 */
+	public AsciiSequence(ByteBuffer buffer, int start, int end) {
+		set(buffer, start, end);
+	}
+
+	/**
+	 * Point this sequence to the given range of the buffer.
+	 * @param buffer
+	 * @param start index of the first byte
+	 * @param end index behind the last byte
+	 * @return this
+	 */
+	public AsciiSequence set(ByteBuffer buffer, int start, int end) {
+		this.buffer = buffer;
+		this.start = start;
+		this.end = end;
+		return this;
+	}
+
+	/**
+	 * Return the buffer this sequence reads from.
+	 * @return
+	 */
+	public ByteBuffer buffer() {
+		return buffer;
+	}
+
+	/**
+	 * Return the index of the first byte in the buffer.
+	 * @return
+	 */
+	public int start() {
+		return start;
+	}
+
+	/**
+	 * Return the index behind the last byte in the buffer.
+	 * @return
+	 */
+	public int end() {
+		return end;
+	}
+
+	@Override
+	public int length() {
+		return end - start;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return (char)(buffer.get(start + index) & 0xff);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new AsciiSequence(buffer, this.start + start, this.start + end);
+	}
+
+	/**
+	 * Return true, if this sequence contains exactly the chars of the given String.
+	 * @param str
+	 * @return
+	 */
+	public boolean contentEquals(String str) {
+		int length = end - start;
+		if(str.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if((buffer.get(start + i) & 0xff) != str.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		char[] chars = new char[end - start];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char)(buffer.get(start + i) & 0xff);
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,291 @@
+package net.ctdp.tgmutils.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ctdp.tgmutils.models.MaterialTable;
+import net.ctdp.tgmutils.models.TGMFile;
+import net.ctdp.tgmutils.util.IntArrayList;
+
+/**
+ * Keeps a {@link TGMFile} in sync with a text, which is edited bit by bit, e.g. in an editor.
+ * <p>
+ * After the first parse, an update only parses the groups touched by the change again:
+ * a changed [Node] replaces just its row in the {@link net.ctdp.tgmutils.models.NodeStore},
+ * a change in [Realtime] rebuilds the Realtime values, and the large [LookupData]
+ * stays as it is unless the change is inside it.
+ * If the groups themselves changed, e.g. a node was inserted, a [Node] group lost or gained all
+ * of its settings or a header was renamed, the whole text is parsed again.
+ * <p>
+ * Every update still compares or scans the whole text to find the changed part and the group headers,
+ * and keeps a copy of it, so its cost grows with the size of the text, only the parsing is limited to
+ * the touched groups.
+ * <p>
+ * Every new value of a material is added to the {@link MaterialTable}, which never removes one.
+ * The table, which the parser creates for its own text, is replaced by a full parse, once it holds
+ * more than twice the materials of the last full parse plus 64. A table given to the constructor
+ * keeps all of them.
+ * <p>
+ * The {@link TGMFile} is changed in place, so it must not be read while an update runs.
+ */
+public class IncrementalTGMParser {
+
+	private final MaterialTable materials;
+	private TGMFile tgm;
+
+	/**
+	 * The text of the last parse or update.
+	 */
+	private byte[] text = new byte[0];
+	private int length;
+
+	/**
+	 * Names of the groups of the last text in order, null for lines before the first header.
+	 */
+	private List<String> groups = new ArrayList<String>();
+
+	/**
+	 * Node row of each group of the last text, -1 for groups without a node, null if they couldn't be matched.
+	 */
+	private IntArrayList rows;
+
+	/**
+	 * Number of materials after the last full parse.
+	 */
+	private int parsedMaterials;
+
+	/**
+	 * Create a parser keeping the materials of each parsed text in its own table.
+	 */
+	public IncrementalTGMParser() {
+		this(null);
+	}
+
+	/**
+	 * Create a parser keeping the node materials in the given table.
+	 * @param materials
+	 */
+	public IncrementalTGMParser(MaterialTable materials) {
+		this.materials = materials;
+	}
+
+	/**
+	 * Return the model of the current text.
+	 * @return
+	 */
+	public TGMFile getTGMFile() {
+		return tgm;
+	}
+
+	/**
+	 * Parse the whole text between the buffer's position and limit.
+	 * @param text
+	 * @return
+	 * @throws IOException
+	 * @throws ParsingException
+	 */
+	public TGMFile parse(ByteBuffer text) throws IOException, ParsingException {
+		// the number of nodes at each group header tells which group added which node
+		final IntArrayList nodesAtHeader = new IntArrayList();
+		TGMParser parser = new TGMParser(materials != null ? new TGMFile(materials) : new TGMFile(), materials) {
+			@Override
+			protected boolean onGroupParsed(int lineNr, String group) throws ParsingException {
+				nodesAtHeader.addInt(getTGMFile().getNodeStore().size());
+				return super.onGroupParsed(lineNr, group);
+			}
+		};
+		parser.parse(text.duplicate());
+		this.tgm = parser.getTGMFile();
+		remember(text, scan(text));
+		rows = rows(groups, nodesAtHeader, tgm.getNodeStore().size());
+		parsedMaterials = tgm.getNodeStore().getMaterials().size();
+		return tgm;
+	}
+
+	/**
+	 * Return the node row of each group, null if the headers of the parser and the scan don't match.
+	 */
+	private static IntArrayList rows(List<String> groups, IntArrayList nodesAtHeader, int nodes) {
+		IntArrayList rows = new IntArrayList(groups.size());
+		int header = 0;
+		for (String group : groups) {
+			if(group == null) {
+				rows.addInt(-1);
+				continue;
+			}
+			if(header == nodesAtHeader.size()) {
+				return null;
+			}
+			int first = nodesAtHeader.getInt(header);
+			int end = ++header < nodesAtHeader.size() ? nodesAtHeader.getInt(header) : nodes;
+			rows.addInt(group.equals("Node") && end > first ? first : -1);
+		}
+		return header == nodesAtHeader.size() ? rows : null;
+	}
+
+	/**
+	 * Update the model to the new text, which only differs from the last one between the given lines.
+	 * @param text the whole new text
+	 * @param firstLine first changed line of the new text, counted from 1
+	 * @param lastLine last changed line of the new text, for removed lines the line behind them
+	 * @return true, if only the touched groups have been parsed, false if the whole text was parsed
+	 * @throws IOException
+	 * @throws ParsingException
+	 */
+	public boolean update(ByteBuffer text, int firstLine, int lastLine) throws IOException, ParsingException {
+		ByteBuffer buffer = text.slice();
+		int limit = buffer.limit();
+		int changeStart = limit;
+		int changeEnd = limit;
+		int lineNr = 1;
+		for (int pos = 0; pos < limit; lineNr++) {
+			int next = TGMParser.nextLine(buffer, pos, limit);
+			if(lineNr == firstLine) {
+				changeStart = pos;
+			}
+			if(lineNr == lastLine) {
+				changeEnd = next;
+				break;
+			}
+			pos = next;
+		}
+		return updateRange(buffer, Math.min(changeStart, changeEnd), changeEnd);
+	}
+
+	/**
+	 * Update the model to the new text. The changed part is found by comparing it to the last text.
+	 * @param text the whole new text
+	 * @return true, if only the touched groups have been parsed, false if the whole text was parsed
+	 * @throws IOException
+	 * @throws ParsingException
+	 */
+	public boolean update(ByteBuffer text) throws IOException, ParsingException {
+		ByteBuffer buffer = text.slice();
+		int limit = buffer.limit();
+		int max = Math.min(limit, length);
+		int prefix = 0;
+		while(prefix < max && buffer.get(prefix) == this.text[prefix]) {
+			prefix++;
+		}
+		int suffix = 0;
+		while(suffix < max - prefix && buffer.get(limit - 1 - suffix) == this.text[length - 1 - suffix]) {
+			suffix++;
+		}
+		if(prefix == limit && limit == length) {
+			return true;
+		}
+		return updateRange(buffer, prefix, limit - suffix);
+	}
+
+	/**
+	 * Parse the groups of the new text, which overlap [changeStart, changeEnd].
+	 */
+	private boolean updateRange(ByteBuffer buffer, int changeStart, int changeEnd) throws IOException, ParsingException {
+		if(tgm == null) {
+			parse(buffer);
+			return false;
+		}
+
+		IntArrayList headers = scan(buffer);
+		List<String> newGroups = names(buffer, headers);
+		if(!newGroups.equals(groups)) {
+			parse(buffer);
+			return false;
+		}
+
+		int limit = buffer.limit();
+		int count = headers.size();
+		for (int i = 0; i < count; i++) {
+			int start = headers.getInt(i);
+			int end = i + 1 < count ? headers.getInt(i + 1) : limit;
+			String group = groups.get(i);
+			// a removed line at the start of a group may have belonged to the group before
+			boolean touched = start <= changeEnd && end >= changeStart;
+			if("Node".equals(group)) {
+				if(touched) {
+					TGMFile fragment = new TGMFile(tgm.getNodeStore().getMaterials());
+					new TGMParser(fragment, null).parse(slice(buffer, start, end));
+					int row = rows != null ? rows.getInt(i) : -1;
+					if(rows == null || fragment.getNodeStore().size() != (row >= 0 ? 1 : 0)) {
+						// the group lost or gained its node, the nodes of the following groups move
+						parse(buffer);
+						return false;
+					}
+					if(row >= 0) {
+						tgm.getNodeStore().setNode(row, fragment.getNodeStore(), 0);
+					}
+				}
+			} else if(touched && group != null) {
+				if(groups.indexOf(group) != groups.lastIndexOf(group)) {
+					// values of a repeated group can't be told apart
+					parse(buffer);
+					return false;
+				}
+				if(group.equals("QuasiStaticAnalysis")) {
+					tgm.getQuasiStaticAnalysis().clear();
+				} else if(group.equals("Realtime")) {
+					tgm.getRealtime().clear();
+				} else if(group.equals("LookupData")) {
+					tgm.getLookupData().clear();
+				}
+				new TGMParser(tgm, null).parse(slice(buffer, start, end));
+			}
+		}
+		if(materials == null && tgm.getNodeStore().getMaterials().size() > 2 * parsedMaterials + 64) {
+			// drop the materials of former values with a fresh table
+			parse(buffer);
+			return false;
+		}
+		remember(buffer, headers);
+		return true;
+	}
+
+	private void remember(ByteBuffer buffer, IntArrayList headers) {
+		ByteBuffer src = buffer.duplicate();
+		length = src.remaining();
+		if(text.length < length) {
+			text = new byte[length];
+		}
+		src.get(text, 0, length);
+		groups = names(buffer, headers);
+	}
+
+	/**
+	 * Return the offsets of the group headers, an offset of 0 is added for lines in front of the first header.
+	 */
+	private static IntArrayList scan(ByteBuffer text) {
+		ByteBuffer buffer = text.slice();
+		int limit = buffer.limit();
+		IntArrayList headers = new IntArrayList();
+		for (int pos = 0; pos < limit; pos = TGMParser.nextLine(buffer, pos, limit)) {
+			int first = TGMParser.skipBlanks(buffer, pos, limit);
+			if(first < limit && buffer.get(first) == '[') {
+				headers.addInt(pos);
+			}
+		}
+		if(headers.isEmpty() || headers.getInt(0) > 0) {
+			headers.add(0, 0);
+		}
+		return headers;
+	}
+
+	private static List<String> names(ByteBuffer text, IntArrayList headers) {
+		ByteBuffer buffer = text.slice();
+		List<String> names = new ArrayList<String>(headers.size());
+		for (int i = 0; i < headers.size(); i++) {
+			int start = headers.getInt(i);
+			int end = i + 1 < headers.size() ? headers.getInt(i + 1) : buffer.limit();
+			int first = TGMParser.skipBlanks(buffer, start, end);
+			names.add(first < end && buffer.get(first) == '[' ? TGMParser.groupName(buffer, start, end) : null);
+		}
+		return names;
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.limit(end).position(start);
+		return slice.slice();
+	}
+}
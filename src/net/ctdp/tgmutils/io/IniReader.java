@@ -0,0 +1,450 @@
+package net.ctdp.tgmutils.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A cursor over the lines of an ini file, the pull based counterpart of the callbacks
+ * of the {@link AbstractIniParser}.
+ * <p>
+ * Each call to {@link #next()} moves to the next group header, setting or comment and returns
+ * its {@link Event}. Group, key, value and comment are handed out as {@link AsciiSequence}s,
+ * which are reused: key, value and comment are only valid until the next call to
+ * next() or {@link #skipGroup()}, the group until the next group header.
+ * Reading can be stopped at any time by simply not calling next() anymore.
+ * <p>
+ * A reader either runs over the bytes of a {@link ByteBuffer}, e.g. a mapped file,
+ * or streams from a {@link ReadableByteChannel} through a small buffer, which only grows
+ * for lines longer than the buffer. Like the byte based parse path, it expects ASCII or
+ * any other single byte encoding.
+ */
+public class IniReader {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The kinds of lines returned by {@link IniReader#next()}. Empty lines are skipped.
+	 */
+	public static enum Event {
+		/** A group header like [Node] */
+		GROUP,
+		/** A key=value line, optionally followed by a comment */
+		SETTING,
+		/** A line only containing a comment starting with # or // */
+		COMMENT,
+		/** The end of the input */
+		END
+	}
+
+	private ByteBuffer buffer;
+	private byte[] array;
+	private final ReadableByteChannel channel;
+	private boolean eof;
+	private int pos;
+	private int limit;
+	/** offset in the stream of index 0 of the buffer */
+	private long base = 0L;
+	private boolean skipLF = false;
+	private int lineStart;
+	private int lineEnd;
+
+	private Event event = null;
+	private int lineNr = 0;
+	private long lineOffset = 0L;
+
+	private byte[] groupBytes = new byte[32];
+	private ByteBuffer groupBuffer = ByteBuffer.wrap(groupBytes);
+	private final AsciiSequence group = new AsciiSequence();
+	private boolean hasGroup = false;
+	private String groupName = null;
+
+	private final AsciiSequence key = new AsciiSequence();
+	private final AsciiSequence value = new AsciiSequence();
+	private final AsciiSequence comment = new AsciiSequence();
+	private boolean hasComment = false;
+
+	/**
+	 * Create a reader over the bytes between the buffer's position and limit.
+	 * Offsets are indexes in the buffer.
+	 * @param buffer
+	 */
+	public IniReader(ByteBuffer buffer) {
+		this(buffer, null);
+	}
+
+	/**
+	 * Create a reader over bytes continuing the given group without repeating its header,
+	 * see {@link AbstractIniParser#parse(ByteBuffer, String)}.
+	 * @param buffer
+	 * @param group the group of the lines before the first header, or null
+	 */
+	public IniReader(ByteBuffer buffer, String group) {
+		this.buffer = buffer;
+		this.channel = null;
+		this.eof = true;
+		this.pos = buffer.position();
+		this.limit = buffer.limit();
+		if(group != null) {
+			int length = group.length();
+			ensureGroupCapacity(length);
+			for (int i = 0; i < length; i++) {
+				groupBytes[i] = (byte)group.charAt(i);
+			}
+			this.group.set(groupBuffer, 0, length);
+			this.hasGroup = true;
+			this.groupName = group;
+		}
+	}
+
+	/**
+	 * Create a reader streaming from the channel. The channel is not closed by the reader.
+	 * Offsets are counted from the channel's position at this call.
+	 * @param channel
+	 */
+	public IniReader(ReadableByteChannel channel) {
+		this.channel = channel;
+		this.eof = false;
+		this.array = new byte[BUFFER_SIZE];
+		this.buffer = ByteBuffer.wrap(array);
+		this.pos = 0;
+		this.limit = 0;
+	}
+
+	/**
+	 * Move to the next group header, setting or comment.
+	 * @return the kind of the line, {@link Event#END} at the end of the input
+	 * @throws IOException if the channel can't be read
+	 * @throws ParsingException if a line is neither of them
+	 */
+	public Event next() throws IOException, ParsingException {
+		hasComment = false;
+		while(readLine()) {
+			int start = trimStart(buffer, lineStart, lineEnd);
+			int end = trimEnd(buffer, start, lineEnd);
+			if(start == end) {
+				continue;
+			}
+
+			byte first = buffer.get(start);
+			if(first == '[') {
+				int idx = buffer.get(end - 1) == ']' ? end - 1 : indexOf(buffer, start, end, (byte)']');
+				if(idx < 0) {
+					throw new ParsingException(illegalLine(start, end));
+				}
+				setGroup(start + 1, idx);
+				return event = Event.GROUP;
+			}
+
+			if(first == '#') {
+				setComment(start + 1, end);
+				return event = Event.COMMENT;
+			}
+			if(first == '/' && end - start > 1 && buffer.get(start + 1) == '/') {
+				setComment(start + 2, end);
+				return event = Event.COMMENT;
+			}
+
+			int idx = indexOf(buffer, start, end, (byte)'=');
+			if(idx < 0) {
+				throw new ParsingException(illegalLine(start, end));
+			}
+			int keyStart = trimStart(buffer, start, idx);
+			key.set(buffer, keyStart, trimEnd(buffer, keyStart, idx));
+			int valueStart = trimStart(buffer, idx + 1, end);
+
+			if(valueStart < end && buffer.get(valueStart) == '"') {
+				byte lastChar = 0;
+				int quote = -1;
+				for (int i = valueStart + 1; i < end; i++) {
+					byte ch = buffer.get(i);
+					if(ch == '"' && lastChar != '\\') {
+						quote = i;
+						break;
+					}
+					lastChar = ch;
+				}
+				if(quote < 0) {
+					if(lastChar != '"') {
+						throw new ParsingException(illegalLine(start, end));
+					}
+					// only an escaped quote at the end, the line is ignored like by parseLine()
+					continue;
+				}
+				value.set(buffer, valueStart + 1, quote);
+				idx = indexOfComment(buffer, quote + 1, end);
+				if(idx >= 0) {
+					setComment(idx + 2, end);
+				}
+				return event = Event.SETTING;
+			}
+
+			idx = indexOfComment(buffer, valueStart, end);
+			if(idx >= 0) {
+				value.set(buffer, valueStart, trimEnd(buffer, valueStart, idx));
+				setComment(idx + 2, end);
+			} else {
+				value.set(buffer, valueStart, end);
+			}
+			return event = Event.SETTING;
+		}
+		return event = Event.END;
+	}
+
+	/**
+	 * Skip the remaining lines of the current group without tokenizing them.
+	 * The next call to {@link #next()} returns the following group header or the end.
+	 * @return the offset of the following group header, or of the end of the input
+	 * @throws IOException
+	 */
+	public long skipGroup() throws IOException {
+		skipLineFeed();
+		boolean atLineStart = true;
+		byte lastChar = 0;
+		while(pos < limit || fill()) {
+			byte ch = buffer.get(pos);
+			if(atLineStart) {
+				if(ch == '[') {
+					break;
+				}
+				if(ch != ' ' && ch != '\t') {
+					atLineStart = false;
+				}
+			}
+			if(ch == '\r' || (ch == '\n' && lastChar != '\r')) {
+				lineNr++;
+			}
+			if(ch == '\r' || ch == '\n') {
+				atLineStart = true;
+			}
+			lastChar = ch;
+			pos++;
+		}
+		return base + pos;
+	}
+
+	/**
+	 * Skip to the next group header.
+	 * @return true, if there is one, false at the end of the input
+	 * @throws IOException
+	 * @throws ParsingException
+	 */
+	public boolean nextGroup() throws IOException, ParsingException {
+		skipGroup();
+		return next() == Event.GROUP;
+	}
+
+	/**
+	 * Return the event returned by the last call to {@link #next()}, null before the first.
+	 * @return
+	 */
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * Return the number of the current line, counted from 1.
+	 * @return
+	 */
+	public int getLineNr() {
+		return lineNr;
+	}
+
+	/**
+	 * Return the offset of the current line's first byte.
+	 * @return
+	 */
+	public long getLineOffset() {
+		return lineOffset;
+	}
+
+	/**
+	 * Return the name of the current group, or null before the first group header.
+	 * @return
+	 */
+	public AsciiSequence getGroup() {
+		return hasGroup ? group : null;
+	}
+
+	/**
+	 * Return the name of the current group as a String, created once per group header.
+	 * @return
+	 */
+	public String getGroupName() {
+		if(groupName == null && hasGroup) {
+			groupName = group.toString();
+		}
+		return groupName;
+	}
+
+	/**
+	 * Return the key of the current setting.
+	 * @return
+	 */
+	public AsciiSequence getKey() {
+		return key;
+	}
+
+	/**
+	 * Return the value of the current setting, without quotes if it was quoted.
+	 * @return
+	 */
+	public AsciiSequence getValue() {
+		return value;
+	}
+
+	/**
+	 * Return the current comment line, or the comment behind the current setting.
+	 * @return the comment or null, if the setting has none
+	 */
+	public AsciiSequence getComment() {
+		return hasComment ? comment : null;
+	}
+
+	/**
+	 * Find the next line, sets lineStart and lineEnd and moves pos behind its line break.
+	 */
+	private boolean readLine() throws IOException {
+		skipLineFeed();
+		if(pos >= limit && !fill()) {
+			return false;
+		}
+		int i = pos;
+		while(true) {
+			while(i < limit) {
+				byte ch = buffer.get(i);
+				if(ch == '\n' || ch == '\r') {
+					break;
+				}
+				i++;
+			}
+			if(i < limit) {
+				break;
+			}
+			int length = i - pos;
+			if(!fill()) {
+				break;
+			}
+			i = pos + length;
+		}
+		lineNr++;
+		lineStart = pos;
+		lineEnd = i;
+		lineOffset = base + pos;
+		if(i < limit) {
+			// a \n following the \r is skipped at the next line, the buffer may have to be refilled for it
+			skipLF = buffer.get(i) == '\r';
+			pos = i + 1;
+		} else {
+			pos = i;
+		}
+		return true;
+	}
+
+	private void skipLineFeed() throws IOException {
+		if(skipLF) {
+			skipLF = false;
+			if((pos < limit || fill()) && buffer.get(pos) == '\n') {
+				pos++;
+			}
+		}
+	}
+
+	/**
+	 * Read more bytes from the channel, keeping the bytes from pos on.
+	 * @return false, if there are no more bytes
+	 */
+	private boolean fill() throws IOException {
+		if(eof) {
+			return false;
+		}
+		if(pos > 0) {
+			System.arraycopy(array, pos, array, 0, limit - pos);
+			base += pos;
+			limit -= pos;
+			pos = 0;
+		}
+		if(limit == array.length) {
+			byte[] bigger = new byte[array.length * 2];
+			System.arraycopy(array, 0, bigger, 0, limit);
+			array = bigger;
+			buffer = ByteBuffer.wrap(array);
+		}
+		int n;
+		do {
+			n = channel.read(ByteBuffer.wrap(array, limit, array.length - limit));
+		} while(n == 0);
+		if(n < 0) {
+			eof = true;
+			return false;
+		}
+		limit += n;
+		return true;
+	}
+
+	private void setGroup(int start, int end) {
+		start = trimStart(buffer, start, end);
+		end = trimEnd(buffer, start, end);
+		int length = end - start;
+		ensureGroupCapacity(length);
+		for (int i = 0; i < length; i++) {
+			groupBytes[i] = buffer.get(start + i);
+		}
+		group.set(groupBuffer, 0, length);
+		hasGroup = true;
+		groupName = null;
+	}
+
+	private void ensureGroupCapacity(int length) {
+		if(groupBytes.length < length) {
+			groupBytes = new byte[Math.max(length, groupBytes.length * 2)];
+			groupBuffer = ByteBuffer.wrap(groupBytes);
+		}
+	}
+
+	private void setComment(int start, int end) {
+		start = trimStart(buffer, start, end);
+		comment.set(buffer, start, trimEnd(buffer, start, end));
+		hasComment = true;
+	}
+
+	private String illegalLine(int start, int end) {
+		return "Illegal line #" + lineNr + ": " + new AsciiSequence(buffer, start, end);
+	}
+
+	private static boolean isWhitespace(ByteBuffer buffer, int i) {
+		return (buffer.get(i) & 0xFF) <= ' ';
+	}
+
+	private static int trimStart(ByteBuffer buffer, int start, int end) {
+		while(start < end && isWhitespace(buffer, start)) {
+			start++;
+		}
+		return start;
+	}
+
+	private static int trimEnd(ByteBuffer buffer, int start, int end) {
+		while(end > start && isWhitespace(buffer, end - 1)) {
+			end--;
+		}
+		return end;
+	}
+
+	private static int indexOf(ByteBuffer buffer, int start, int end, byte ch) {
+		for (int i = start; i < end; i++) {
+			if(buffer.get(i) == ch) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int indexOfComment(ByteBuffer buffer, int start, int end) {
+		for (int i = start; i < end - 1; i++) {
+			if(buffer.get(i) == '/' && buffer.get(i + 1) == '/') {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,85 @@
+package net.ctdp.tgmutils.io;
+
+/**
+ * A fixed set of names, e.g. the keys of a TGM, looked up by any {@link CharSequence}
+ * without creating a String.
+ * <p>
+ * The hash function is chosen when the table is built, so that all names land in
+ * different slots. A lookup therefore hashes the chars once and compares them with
+ * at most one name.
+ */
+final class KeyTable {
+
+	private final String[] names;
+	private final int[] slots;
+	private final int shift;
+	private final int multiplier;
+
+	/**
+	 * Build a table of the given, distinct names.
+	 * @param names
+	 */
+	KeyTable(String... names) {
+		this.names = names.clone();
+		int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, names.length * 2 - 1));
+		while(true) {
+			for (int multiplier = 31; multiplier < 4096; multiplier += 2) {
+				int[] slots = build(bits, multiplier);
+				if(slots != null) {
+					this.slots = slots;
+					this.shift = 32 - bits;
+					this.multiplier = multiplier;
+					return;
+				}
+			}
+			bits++;
+		}
+	}
+
+	/**
+	 * Return the slots for the given hash function, or null if two names collide.
+	 */
+	private int[] build(int bits, int multiplier) {
+		int[] slots = new int[1 << bits];
+		for (int i = 0; i < names.length; i++) {
+			int slot = slot(names[i], multiplier, 32 - bits);
+			if(slots[slot] != 0) {
+				return null;
+			}
+			slots[slot] = i + 1;
+		}
+		return slots;
+	}
+
+	private static int slot(CharSequence name, int multiplier, int shift) {
+		int length = name.length();
+		int h = length;
+		for (int i = 0; i < length; i++) {
+			h = h * multiplier + name.charAt(i);
+		}
+		return (h * 0x9E3779B9) >>> shift;
+	}
+
+	/**
+	 * Return the index of the name in the array given to the constructor.
+	 * @param name
+	 * @return the index or -1, if the name is not contained
+	 */
+	int indexOf(CharSequence name) {
+		int index = slots[slot(name, multiplier, shift)] - 1;
+		if(index < 0) {
+			return -1;
+		}
+		String candidate = names[index];
+		int length = candidate.length();
+		if(name.length() != length) {
+			return -1;
+		}
+		for (int i = 0; i < length; i++) {
+			if(name.charAt(i) != candidate.charAt(i)) {
+				return -1;
+			}
+		}
+		return index;
+	}
+}
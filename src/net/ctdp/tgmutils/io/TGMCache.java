@@ -0,0 +1,291 @@
+package net.ctdp.tgmutils.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.ctdp.tgmutils.models.TGMFile;
+
+/**
+ * Cache of parsed TGM files, for pipelines loading the same files again and again.
+ * <p>
+ * Parsed files are kept by the SHA-1 of their content, so copies of a file at different paths
+ * share one entry. A file is only read again, if its size or modification time changed since
+ * the last load; if only the time changed, the content hash decides whether it is a hit.
+ * The entries are evicted least recently used first, once the size of their source files
+ * exceeds the given budget. The budget counts source bytes, not memory: the [LookupData] bins
+ * of a parsed file take half the size of their hex text, the nodes and values come on top,
+ * so size the budget from the files to be kept rather than from the heap.
+ * <p>
+ * Optionally a directory can be given to keep a {@link TGMSnapshot} of every parsed file,
+ * so files parsed once are loaded from their snapshot in later runs.
+ * <p>
+ * The returned {@link TGMFile}s are shared by all callers and must not be modified.
+ * Reading them doesn't change them, so several threads may read one at the same time;
+ * to change a file, change a {@link TGMFile#createVariant()} of it.
+ * All methods are thread safe.
+ */
+public class TGMCache {
+
+	private static final String SNAPSHOT_SUFFIX = ".tgms";
+
+	private final long maxBytes;
+	private long bytes = 0L;
+	private File diskStore = null;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private final Map<File, Stamp> stamps = new HashMap<File, Stamp>();
+
+	private long hitCount;
+	private long missCount;
+	private long diskHitCount;
+	private long evictionCount;
+
+	/**
+	 * Create a cache holding files up to the given total size of their sources.
+	 * @param maxBytes budget of source bytes
+	 */
+	public TGMCache(long maxBytes) {
+		if(maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes <= 0: " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Keep snapshots of all parsed files in the given directory, which is created if missing.
+	 * @param dir or null to not use the disk
+	 */
+	public synchronized void setDiskStore(File dir) {
+		this.diskStore = dir;
+	}
+
+	/**
+	 * Return the parsed file, from the cache if its content is known.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 * @throws ParsingException
+	 */
+	public TGMFile load(File file) throws IOException, ParsingException {
+		File key = file.getAbsoluteFile();
+		long size = key.length();
+		long lastModified = key.lastModified();
+
+		synchronized(this) {
+			Stamp stamp = stamps.get(key);
+			if(stamp != null && stamp.size == size && stamp.lastModified == lastModified) {
+				Entry entry = entries.get(stamp.hash);
+				if(entry != null) {
+					hitCount++;
+					return entry.tgm;
+				}
+			}
+		}
+
+		byte[] content = readFully(key);
+		String hash = hash(content);
+		File snapshot;
+		synchronized(this) {
+			if(content.length == size) {
+				stamps.put(key, new Stamp(size, lastModified, hash));
+			}
+			Entry entry = entries.get(hash);
+			if(entry != null) {
+				hitCount++;
+				return entry.tgm;
+			}
+			missCount++;
+			snapshot = diskStore != null ? new File(diskStore, hash + SNAPSHOT_SUFFIX) : null;
+		}
+
+		TGMFile tgm = null;
+		if(snapshot != null && snapshot.isFile()) {
+			try {
+				tgm = TGMSnapshot.read(snapshot);
+				synchronized(this) {
+					diskHitCount++;
+				}
+			} catch (IOException e) {
+				// outdated or broken, replaced below
+			}
+		}
+		if(tgm == null) {
+			TGMParser parser = new TGMParser();
+			parser.parse(ByteBuffer.wrap(content));
+			tgm = parser.getTGMFile();
+			if(snapshot != null) {
+				writeSnapshot(tgm, snapshot);
+			}
+		}
+
+		synchronized(this) {
+			Entry entry = entries.get(hash);
+			if(entry != null) {
+				// loaded by another thread meanwhile
+				return entry.tgm;
+			}
+			entries.put(hash, new Entry(tgm, content.length));
+			bytes += content.length;
+			evict();
+		}
+		return tgm;
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while(bytes > maxBytes && entries.size() > 1 && it.hasNext()) {
+			Map.Entry<String, Entry> eldest = it.next();
+			it.remove();
+			bytes -= eldest.getValue().size;
+			evictionCount++;
+			Iterator<Stamp> st = stamps.values().iterator();
+			while(st.hasNext()) {
+				if(st.next().hash.equals(eldest.getKey())) {
+					st.remove();
+				}
+			}
+		}
+	}
+
+	private static void writeSnapshot(TGMFile tgm, File snapshot) {
+		File dir = snapshot.getParentFile();
+		try {
+			if(!dir.isDirectory() && !dir.mkdirs()) {
+				return;
+			}
+			// written under another name first, so no reader sees half a snapshot
+			File tmp = File.createTempFile(snapshot.getName(), ".tmp", dir);
+			TGMSnapshot.write(tgm, tmp);
+			if(!tmp.renameTo(snapshot)) {
+				tmp.delete();
+			}
+		} catch (IOException e) {
+			// the disk store is only an optimization
+		}
+	}
+
+	private static byte[] readFully(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) {
+				throw new IOException("File too large: " + size + " bytes");
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int)size);
+			while(buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			}
+			if(buffer.hasRemaining()) {
+				throw new IOException("File shrank while reading: " + file);
+			}
+			return buffer.array();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static String hash(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// every JRE has to provide SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Remove all files from memory, the disk store is kept. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		stamps.clear();
+		bytes = 0L;
+	}
+
+	/**
+	 * Return the number of files held in memory.
+	 * @return
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Return the total size of the source files held in memory, which counts against the budget.
+	 * @return
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Return how often a file has been returned from memory.
+	 * @return
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Return how often a file wasn't in memory and had to be parsed or read from the disk store.
+	 * @return
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Return how many of the misses were loaded from a snapshot in the disk store.
+	 * @return
+	 */
+	public synchronized long getDiskHitCount() {
+		return diskHitCount;
+	}
+
+	/**
+	 * Return how often a file was dropped from memory to stay within the budget of source bytes.
+	 * @return
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	private static class Entry {
+		final TGMFile tgm;
+		final long size;
+
+		Entry(TGMFile tgm, long size) {
+			this.tgm = tgm;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * What a file looked like, when it was last read.
+	 */
+	private static class Stamp {
+		final long size;
+		final long lastModified;
+		final String hash;
+
+		Stamp(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package net.ctdp.tgmutils.io;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.ctdp.tgmutils.models.MaterialTable;
+import net.ctdp.tgmutils.models.TGMFile;
+
+/**
+ * Loads many TGM files at once, e.g. all tyres of a mod directory.
+ * The files are parsed concurrently, each by a {@link TGMParser} taken from a pool,
+ * so parsers are reused instead of created per file.
+ * <p>
+ * By default every call to loadAll() runs on its own pool of one thread per processor.
+ * Any other {@link ExecutorService} can be passed to the constructor, e.g. a virtual
+ * thread per task executor on newer JVMs. Such an executor is not shut down by the loader.
+ */
+public class TGMLoader {
+
+	private final ExecutorService executor;
+	private final int parallelism;
+	private final ConcurrentLinkedQueue<TGMParser> parsers = new ConcurrentLinkedQueue<TGMParser>();
+	private MaterialTable materials = null;
+	private boolean lazyLookupData = false;
+	private boolean memoryMapped = false;
+
+	/**
+	 * Create a loader using one thread per available processor.
+	 */
+	public TGMLoader() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a loader using at most the given number of threads.
+	 * @param parallelism
+	 */
+	public TGMLoader(int parallelism) {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException("parallelism < 1: " + parallelism);
+		}
+		this.executor = null;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Create a loader running the parsers on the given executor.
+	 * @param executor
+	 */
+	public TGMLoader(ExecutorService executor) {
+		if(executor == null) {
+			throw new NullPointerException("executor");
+		}
+		this.executor = executor;
+		this.parallelism = 0;
+	}
+
+	/**
+	 * Keep the materials of all loaded files in the given table, e.g. {@link MaterialTable#getShared()}.
+	 * Only applies to parsers created after this call.
+	 * @param materials or null for one table per file
+	 */
+	public void setMaterialTable(MaterialTable materials) {
+		this.materials = materials;
+		this.parsers.clear();
+	}
+
+	/**
+	 * @see TGMParser#setLazyLookupData(boolean)
+	 * @param lazyLookupData
+	 */
+	public void setLazyLookupData(boolean lazyLookupData) {
+		this.lazyLookupData = lazyLookupData;
+	}
+
+	/**
+	 * Parse files through a memory-mapped buffer instead of a reader.
+	 * @see AbstractIniParser#parseMapped(java.io.File)
+	 * @param memoryMapped
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	/**
+	 * Load all *.tgm files in the given directory, not including sub directories.
+	 * @param dir
+	 * @return
+	 * @throws IOException if the directory can't be listed
+	 * @throws InterruptedException
+	 */
+	public Result loadAll(Path dir) throws IOException, InterruptedException {
+		List<Path> files = new ArrayList<Path>();
+		DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.{tgm,TGM}");
+		try {
+			for (Path file : stream) {
+				if(Files.isRegularFile(file)) {
+					files.add(file);
+				}
+			}
+		} finally {
+			stream.close();
+		}
+		Collections.sort(files);
+		return loadAll(files);
+	}
+
+	/**
+	 * Load the given files.
+	 * A file, which can't be read or parsed, doesn't stop the others from loading,
+	 * its exception is returned in {@link Result#getErrors()}.
+	 * @param files
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public Result loadAll(Collection<Path> files) throws InterruptedException {
+		ExecutorService executor = this.executor;
+		if(executor == null) {
+			executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, files.size())), new WorkerFactory());
+		}
+		try {
+			List<Future<TGMFile>> futures = new ArrayList<Future<TGMFile>>(files.size());
+			for (Path file : files) {
+				futures.add(executor.submit(new LoadTask(file)));
+			}
+
+			Result result = new Result();
+			int i = 0;
+			for (Path file : files) {
+				Future<TGMFile> future = futures.get(i++);
+				try {
+					result.files.put(file, future.get());
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if(cause instanceof Error) {
+						throw (Error)cause;
+					}
+					result.errors.put(file, (Exception)cause);
+				} catch (InterruptedException e) {
+					for (Future<TGMFile> f : futures) {
+						f.cancel(true);
+					}
+					throw e;
+				}
+			}
+			return result;
+		} finally {
+			if(executor != this.executor) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private TGMParser acquireParser() {
+		TGMParser parser = parsers.poll();
+		if(parser == null) {
+			parser = materials != null ? new TGMParser(materials) : new TGMParser();
+		}
+		parser.setLazyLookupData(lazyLookupData);
+		return parser;
+	}
+
+	private void releaseParser(TGMParser parser) {
+		parser.reset();
+		parsers.offer(parser);
+	}
+
+	private class LoadTask implements Callable<TGMFile> {
+		private final Path file;
+
+		LoadTask(Path file) {
+			this.file = file;
+		}
+
+		@Override
+		public TGMFile call() throws IOException {
+			TGMParser parser = acquireParser();
+			try {
+				if(memoryMapped) {
+					parser.parseMapped(file.toFile());
+				} else {
+					parser.parse(file.toFile());
+				}
+				return parser.getTGMFile();
+			} finally {
+				releaseParser(parser);
+			}
+		}
+	}
+
+	private static class WorkerFactory implements ThreadFactory {
+		private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+		private final int pool = POOL_NUMBER.incrementAndGet();
+		private final AtomicInteger thread = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "TGMLoader-" + pool + "-" + thread.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	/**
+	 * The outcome of loadAll(). Both maps keep the order of the requested files.
+	 */
+	public static class Result {
+		private final Map<Path, TGMFile> files = new LinkedHashMap<Path, TGMFile>();
+		private final Map<Path, Exception> errors = new LinkedHashMap<Path, Exception>();
+
+		/**
+		 * Return the successfully loaded files.
+		 * @return
+		 */
+		public Map<Path, TGMFile> getFiles() {
+			return files;
+		}
+
+		/**
+		 * Return the exception of each file, which failed to load.
+		 * @return
+		 */
+		public Map<Path, Exception> getErrors() {
+			return errors;
+		}
+
+		/**
+		 * Return true, if any file failed to load.
+		 * @return
+		 */
+		public boolean hasErrors() {
+			return !errors.isEmpty();
+		}
+	}
+}
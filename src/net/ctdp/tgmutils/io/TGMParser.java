@@ -1,14 +1,25 @@
 package net.ctdp.tgmutils.io;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import net.ctdp.tgmutils.models.MaterialTable;
+import net.ctdp.tgmutils.models.NodeStore;
 import net.ctdp.tgmutils.models.TGMFile;
 import net.ctdp.tgmutils.models.TGMFile.LookupData;
 import net.ctdp.tgmutils.models.TGMFile.Node;
-import net.ctdp.tgmutils.models.TGMFile.Node.Ply;
 import net.ctdp.tgmutils.models.TGMFile.QuasiStaticAnalysis;
 import net.ctdp.tgmutils.models.TGMFile.Realtime;
+import net.ctdp.tgmutils.util.DoubleArrayList;
+import net.ctdp.tgmutils.util.IntArrayList;
+import net.ctdp.tgmutils.util.IntIntMap;
 
 import org.openmali.vecmath2.Vector3f;
 
@@ -21,11 +32,36 @@ import org.openmali.vecmath2.Vector3f;
  */
 public class TGMParser extends AbstractIniParser {
 
+	/**
+	 * Smallest amount of bytes worth a task of its own in parseParallel().
+	 */
+	private static final int MIN_TASK_BYTES = 16 * 1024;
+	private static ForkJoinPool defaultPool;
+
 	private TGMFile tgm;
+	/**
+	 * True, while tgm hasn't been handed out by getTGMFile() or handed in, so reset() can reuse it.
+	 */
+	private boolean tgmPrivate;
+	private final MaterialTable materials;
 	private int nodeGroupNumber = 0;
-	private String oldGroup = null;
-	private Node node;
-	private Ply ply;
+	/**
+	 * Number of group headers parsed so far and the one of the [Node] group the current node belongs to.
+	 */
+	private int groupNumber = 0;
+	private int nodeGroup = -1;
+	/**
+	 * Id of the current group, looked up again for a new header or group sequence.
+	 */
+	private int groupId = -1;
+	private int groupIdNumber = -1;
+	private CharSequence groupIdSource = null;
+	private int node = -1;
+	private int ply = -1;
+	private double[] values = new double[8];
+	private boolean lazyLookupData = false;
+	private final TupleScanner scanner = new TupleScanner();
+	private ForkJoinPool pool = null;
 
 	/**
 	 * Create an instance of this parser containing an uninitialized {@link TGMFile}.
@@ -33,258 +69,1009 @@ public class TGMParser extends AbstractIniParser {
 	 * {@link TGMFile} from the getTGMFile()-method.
 	 */
 	public TGMParser() {
-		this.tgm = new TGMFile();
+		this(new TGMFile(), null);
+		this.tgmPrivate = true;
 	}
 
 	/**
-	 * Defines how to parse the file.
+	 * Create an instance of this parser, which keeps the node materials in the given table.
+	 * Pass the same table, e.g. {@link MaterialTable#getShared()}, to several parsers
+	 * to store identical materials only once across all files.
+	 * @param materials
+	 */
+	public TGMParser(MaterialTable materials) {
+		this(new TGMFile(materials), materials);
+		this.tgmPrivate = true;
+	}
+
+	TGMParser(TGMFile tgm, MaterialTable materials) {
+		this.tgm = tgm;
+		this.materials = materials;
+	}
+
+	/**
+	 * Prepare this parser for the next file. The {@link TGMFile} returned by
+	 * getTGMFile() so far is left untouched, a new one is created for the next parse.
+	 * If getTGMFile() hasn't been called since the last reset, e.g. because parsing failed,
+	 * the file is cleared and reused like by {@link #reset(TGMFile)} instead.
+	 * Settings like {@link #setLazyLookupData(boolean)} and the {@link MaterialTable}
+	 * given to the constructor are kept.
 	 */
+	public void reset() {
+		if(tgmPrivate) {
+			tgm.clear();
+		} else {
+			this.tgm = materials != null ? new TGMFile(materials) : new TGMFile();
+			this.tgmPrivate = true;
+		}
+		resetGroups();
+	}
+
+	private void resetGroups() {
+		this.nodeGroupNumber = 0;
+		this.groupNumber = 0;
+		this.nodeGroup = -1;
+		this.groupIdNumber = -1;
+		this.groupIdSource = null;
+		this.node = -1;
+		this.ply = -1;
+	}
+
+	/**
+	 * Prepare this parser to parse the next file into the given {@link TGMFile},
+	 * e.g. the one of the last parse, which is cleared by {@link TGMFile#clear()}.
+	 * Its node store, LookupData buffer and value lists are refilled in place, so parsing
+	 * a file of the same shape again hardly allocates anything.
+	 * Lists taken from the file before this call may be overwritten by the next parse.
+	 * Settings like {@link #setLazyLookupData(boolean)} are kept.
+	 * @param tgm
+	 */
+	public void reset(TGMFile tgm) {
+		tgm.clear();
+		this.tgm = tgm;
+		this.tgmPrivate = false;
+		resetGroups();
+	}
+
+	/**
+	 * If enabled, the [LookupData] section is not parsed when reading from a file.
+	 * Only its position in the file is recorded and the bins are read from the file
+	 * the first time the {@link LookupData} is accessed. 
+	 * Files passed to parse(File) are then parsed like with parseMapped(), as the position
+	 * is needed in bytes of the file, whatever the default charset.
+	 * When parsing from a stream or reader, the section is always parsed right away.
+	 * @param lazyLookupData
+	 */
+	public void setLazyLookupData(boolean lazyLookupData) {
+		this.lazyLookupData = lazyLookupData;
+	}
+
+	/**
+	 * Return true, if the [LookupData] section is loaded on demand.
+	 * @return
+	 */
+	public boolean isLazyLookupData() {
+		return this.lazyLookupData;
+	}
+
 	@Override
-	protected boolean onSettingParsed(int lineNr, String group, String key,
-			String value, String comment) throws ParsingException {
+	protected boolean isParsingFilesMapped() {
+		return lazyLookupData;
+	}
 
-		// only [NODE] so far
-//		System.out.println(group);
-//		System.out.println(key);
-//		System.out.println(value);
-		
-		if(group.equals("Node")) {
-			
-			// if we detect new node-group, create new Node-object and add to tgmfile
-			if(oldGroup != null && oldGroup == group) {
-				// node repeated
+	/**
+	 * Set the pool used by parseParallel(). By default a pool shared by all parsers is used.
+	 * @param pool
+	 */
+	public void setForkJoinPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	private static synchronized ForkJoinPool getDefaultPool() {
+		if(defaultPool == null) {
+			defaultPool = new ForkJoinPool();
+		}
+		return defaultPool;
+	}
+
+	/**
+	 * Parse the given file like {@link #parseParallel(ByteBuffer)}.
+	 * With {@link #setLazyLookupData(boolean)} the [LookupData] section is loaded on demand like with parse().
+	 * @param file
+	 * @throws IOException
+	 * @throws ParsingException
+	 */
+	public void parseParallel(File file) throws IOException, ParsingException {
+		checkParallelSafe();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) {
+				throw new IOException("File too large to be mapped: " + size + " bytes");
+			}
+			parseParallel(channel.map(FileChannel.MapMode.READ_ONLY, 0L, size), lazyLookupData ? file : null);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Parse the ASCII bytes between the buffer's position and limit in two phases.
+	 * First the offsets of all group headers are collected. Then the [Node] groups and the
+	 * Bin lines of [LookupData] are parsed concurrently into separate parts, while all other
+	 * groups are parsed by a single task. Finally the parts are appended in file order,
+	 * so nodes and bins end up in the same order as with parse().
+	 * <p>
+	 * This pays off for large files on multi-core machines. Line numbers of errors are
+	 * counted from the start of the part that failed. Groups excluded by
+	 * {@link #setGroupFilter(String...)} are left out.
+	 * <p>
+	 * The parts are parsed by parsers of their own, which don't know the callbacks of this one.
+	 * So only parsers returning true from {@link #isParallelSafe()} can parse in parallel.
+	 * @param buffer
+	 * @throws IOException
+	 * @throws ParsingException
+	 * @throws UnsupportedOperationException if this parser isn't parallel safe
+	 */
+	public void parseParallel(ByteBuffer buffer) throws IOException, ParsingException {
+		checkParallelSafe();
+		parseParallel(buffer, null);
+	}
+
+	/**
+	 * Return true, if parseParallel() may be used. Its parts are parsed by plain TGMParsers,
+	 * which don't call the callbacks of this one, e.g.
+	 * {@link #onUnknownSetting(int, CharSequence, CharSequence, CharSequence)}.
+	 * So this is true for TGMParser itself and false for subclasses. A subclass, whose
+	 * callbacks may be skipped, can override it to return true.
+	 * @return
+	 */
+	protected boolean isParallelSafe() {
+		return getClass() == TGMParser.class;
+	}
+
+	private void checkParallelSafe() {
+		if(!isParallelSafe()) {
+			throw new UnsupportedOperationException(getClass().getName() + " isn't parallel safe, use parse() instead");
+		}
+	}
+
+	/**
+	 * @param lazyFile the file the buffer is mapped from, if [LookupData] is to be loaded on demand
+	 */
+	private void parseParallel(ByteBuffer buffer, File lazyFile) throws IOException, ParsingException {
+		ByteBuffer src = buffer.duplicate();
+		int start = src.position();
+		int limit = src.limit();
+
+		// phase one: find the sections
+		IntArrayList headers = new IntArrayList();
+		for (int pos = start; pos < limit; pos = nextLine(src, pos, limit)) {
+			int first = skipBlanks(src, pos, limit);
+			if(first < limit && src.get(first) == '[') {
+				headers.addInt(pos);
+			}
+		}
+
+		SectionTask others = new SectionTask(new TGMParser(tgm, null), null);
+		List<SectionTask> tasks = new ArrayList<SectionTask>();
+		tasks.add(others);
+		// fragments to merge and [LookupData] tails to parse afterwards, in file order
+		List<Object> merges = new ArrayList<Object>();
+		SectionTask nodes = null;
+		int nodeBytes = 0;
+
+		int count = headers.size();
+		if((count == 0 || headers.getInt(0) > start) && isGroupAccepted(null)) {
+			others.add(slice(src, start, count == 0 ? limit : headers.getInt(0)));
+		}
+		for (int i = 0; i < count; i++) {
+			int sectionStart = headers.getInt(i);
+			int sectionEnd = i + 1 < count ? headers.getInt(i + 1) : limit;
+			String name = groupName(src, sectionStart, sectionEnd);
+
+			if(!isGroupAccepted(name)) {
+				continue;
+			} else if(name.equals("Node")) {
+				if(nodes == null) {
+					nodes = newFragmentTask(null);
+					tasks.add(nodes);
+					merges.add(nodes);
+					nodeBytes = 0;
+				}
+				nodes.add(slice(src, sectionStart, sectionEnd));
+				nodeBytes += sectionEnd - sectionStart;
+				if(nodeBytes >= MIN_TASK_BYTES) {
+					nodes = null;
+				}
+			} else if(name.equals("LookupData") && lazyFile != null) {
+				// the buffer is mapped from the start of the file, so positions are file offsets
+				tgm.getLookupData().setLoader(new FileLookupDataLoader(lazyFile, sectionStart, sectionEnd - sectionStart));
+			} else if(name.equals("LookupData")) {
+				// the run of Bin lines is split into chunks, the lines before and after it are parsed in order
+				int binStart = nextLine(src, sectionStart, sectionEnd);
+				while(binStart < sectionEnd && !isBinLine(src, binStart, sectionEnd)) {
+					binStart = nextLine(src, binStart, sectionEnd);
+				}
+				int binEnd = binStart;
+				while(binEnd < sectionEnd && (isBinLine(src, binEnd, sectionEnd) || isBlankLine(src, binEnd, sectionEnd))) {
+					binEnd = nextLine(src, binEnd, sectionEnd);
+				}
+
+				others.add(slice(src, sectionStart, binStart));
+				for (int chunkStart = binStart; chunkStart < binEnd;) {
+					int chunkEnd = Math.min(chunkStart + MIN_TASK_BYTES, binEnd);
+					if(chunkEnd < binEnd) {
+						chunkEnd = nextLine(src, chunkEnd, binEnd);
+					}
+					SectionTask chunk = newFragmentTask("LookupData");
+					chunk.add(slice(src, chunkStart, chunkEnd));
+					tasks.add(chunk);
+					merges.add(chunk);
+					chunkStart = chunkEnd;
+				}
+				if(binEnd < sectionEnd) {
+					merges.add(slice(src, binEnd, sectionEnd));
+				}
 			} else {
-				this.node = new Node();
-				this.tgm.addNode(node);
-				nodeGroupNumber++;
+				others.add(slice(src, sectionStart, sectionEnd));
 			}
-			parseNodeGroup(key, value);
-		} else if(group.equals("QuasiStaticAnalysis")) {
-			parseQuasiStaticAnalysis(key, value);
-		} else if(group.equals("Realtime")) {
-			parseRealtimeGroup(key, value);
-		} else if(group.equals("LookupData")) {
-			parseLookupData(key, value);
 		}
-		
-		oldGroup = group;
 
+		// phase two: parse all parts
+		final SectionTask[] all = tasks.toArray(new SectionTask[tasks.size()]);
+		(pool != null ? pool : getDefaultPool()).invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(all);
+			}
+		});
+		for (SectionTask task : all) {
+			if(task.exception != null) {
+				throw task.exception;
+			}
+		}
+
+		for (Object merge : merges) {
+			if(merge instanceof SectionTask) {
+				TGMParser fragment = ((SectionTask)merge).parser;
+				tgm.getNodeStore().addNodes(fragment.tgm.getNodeStore());
+				if(fragment.tgm.getLookupData().getBinCount() > 0) {
+					tgm.getLookupData().addBins(fragment.tgm.getLookupData());
+				}
+				nodeGroupNumber += fragment.nodeGroupNumber;
+			} else {
+				new TGMParser(tgm, null).parse((ByteBuffer)merge, "LookupData");
+			}
+		}
+	}
+
+	private SectionTask newFragmentTask(String group) {
+		TGMFile fragment = new TGMFile(tgm.getNodeStore().getMaterials());
+		return new SectionTask(new TGMParser(fragment, null), group);
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.limit(end).position(start);
+		return slice.slice();
+	}
+
+	static int nextLine(ByteBuffer buffer, int pos, int limit) {
+		while(pos < limit) {
+			byte ch = buffer.get(pos++);
+			if(ch == '\n') {
+				break;
+			}
+			if(ch == '\r') {
+				if(pos < limit && buffer.get(pos) == '\n') {
+					pos++;
+				}
+				break;
+			}
+		}
+		return pos;
+	}
+
+	static int skipBlanks(ByteBuffer buffer, int pos, int limit) {
+		while(pos < limit && (buffer.get(pos) == ' ' || buffer.get(pos) == '\t')) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean isBlankLine(ByteBuffer buffer, int pos, int limit) {
+		pos = skipBlanks(buffer, pos, limit);
+		return pos == limit || buffer.get(pos) == '\r' || buffer.get(pos) == '\n';
+	}
+
+	private static boolean isBinLine(ByteBuffer buffer, int pos, int limit) {
+		pos = skipBlanks(buffer, pos, limit);
+		if(pos + 3 >= limit || buffer.get(pos) != 'B' || buffer.get(pos + 1) != 'i' || buffer.get(pos + 2) != 'n') {
+			return false;
+		}
+		pos = skipBlanks(buffer, pos + 3, limit);
+		return pos < limit && buffer.get(pos) == '=';
+	}
+
+	static String groupName(ByteBuffer buffer, int start, int end) {
+		int pos = skipBlanks(buffer, start, end) + 1;
+		StringBuilder name = new StringBuilder();
+		byte ch;
+		while(pos < end && (ch = buffer.get(pos)) != ']' && ch != '\r' && ch != '\n') {
+			name.append((char)(ch & 0xFF));
+			pos++;
+		}
+		return name.toString().trim();
+	}
+
+	/**
+	 * Parses some slices of a file with its own parser.
+	 */
+	private static class SectionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final TGMParser parser;
+		private final String group;
+		private final List<ByteBuffer> slices = new ArrayList<ByteBuffer>();
+		private IOException exception;
+
+		SectionTask(TGMParser parser, String group) {
+			this.parser = parser;
+			this.group = group;
+		}
+
+		void add(ByteBuffer slice) {
+			slices.add(slice);
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				for (ByteBuffer slice : slices) {
+					parser.parse(slice, group);
+				}
+			} catch (IOException e) {
+				exception = e;
+			}
+		}
+	}
+
+	// group ids, the indices in GROUPS
+	private static final int QUASI_STATIC_ANALYSIS = 0;
+	private static final int NODE = 1;
+	private static final int REALTIME = 2;
+	private static final int LOOKUP_DATA = 3;
+
+	private static final KeyTable GROUPS = new KeyTable("QuasiStaticAnalysis", "Node", "Realtime", "LookupData");
+
+	// key ids, the indices in KEYS
+	private static final int NUM_LAYERS = 0;
+	private static final int NUM_SECTIONS = 1;
+	private static final int RIM_VOLUME = 2;
+	private static final int REALTIME_CAMBER_LIMIT = 3;
+	private static final int GAUGE_PRESSURE = 4;
+	private static final int CARCASS_TEMPERATURE = 5;
+	private static final int ROTATION_SQUARED = 6;
+	private static final int NUM_NODES = 7;
+	private static final int VOLUME_LOAD = 8;
+	private static final int LOAD_CAMBER = 9;
+	private static final int LOAD_INCLINATION = 10;
+	private static final int LOAD_DEFLECTION = 11;
+	private static final int TOTAL_MASS = 12;
+	private static final int TOTAL_INERTIA_STANDARD = 13;
+	private static final int RING_MASS = 14;
+	private static final int RING_INERTIA_STANDARD = 15;
+
+	private static final int GEOMETRY = 16;
+	private static final int BULK_MATERIAL = 17;
+	private static final int ANISO_CARCASS_CONDUCTIVITY_MULT = 18;
+	private static final int TREAD_DEPTH = 19;
+	private static final int TREAD_MATERIAL = 20;
+	private static final int RING_AND_RIM = 21;
+	private static final int PLY_PARAMS = 22;
+	private static final int PLY_MATERIAL = 23;
+
+	private static final int STATIC_BASE_COEFFICIENT = 24;
+	private static final int SLIDING_BASE_COEFFICIENT = 25;
+	private static final int TEMPORARY_BRISTLE_SPRING = 26;
+	private static final int TEMPORARY_BRISTLE_DAMPER = 27;
+	private static final int MARBLE_EFFECT_ON_EFFECTIVE_LOAD = 28;
+	private static final int TERRAIN_WEIGHT_ON_CONTACT_TEMPERATURE = 29;
+	private static final int WLF_PARAMETERS = 30;
+	private static final int STATIC_ROUGHNESS_EFFECT = 31;
+	private static final int GROOVE_EFFECTS = 32;
+	private static final int DAMPNESS_EFFECTS = 33;
+	private static final int STATIC_CURVE = 34;
+	private static final int SLIDING_ADHESION_CURVE = 35;
+	private static final int SLIDING_MICRO_DEFORMATION_CURVE = 36;
+	private static final int SLIDING_MACRO_DEFORMATION_CURVE = 37;
+	private static final int RUBBER_PRESSURE_SENSITIVITY_POWER = 38;
+	private static final int SIZE_MULTIPLIER = 39;
+	private static final int THERMAL_DEPTH_AT_SURFACE = 40;
+	private static final int THERMAL_DEPTH_BELOW_SURFACE = 41;
+	private static final int BRISTLE_LENGTH = 42;
+	private static final int INTERNAL_GAS_HEAT_TRANSFER = 43;
+	private static final int EXTERNAL_GAS_HEAT_TRANSFER = 44;
+	private static final int GROUND_CONTACT_CONDUCTANCE = 45;
+	private static final int TIRE_RADIATION_EMISSIVITY = 46;
+	private static final int INTERNAL_GAS_SPECIFIC_HEAT_AT_CONSTANT_VOLUME = 47;
+	private static final int TEMPORARY_ABRASION = 48;
+
+	private static final int VERSION = 49;
+	private static final int CHECKSUM = 50;
+	private static final int BIN = 51;
+
+	private static final KeyTable KEYS = new KeyTable(
+			// [QuasiStaticAnalysis]
+			"NumLayers", "NumSections", "RimVolume", "RealtimeCamberLimit", "GaugePressure", "CarcassTemperature",
+			"RotationSquared", "NumNodes", "VolumeLoad", "LoadCamber", "LoadInclination", "LoadDeflection",
+			"TotalMass", "TotalInertiaStandard", "RingMass", "RingInertiaStandard",
+			// [Node]
+			"Geometry", "BulkMaterial", "AnisoCarcassConductivityMult", "TreadDepth", "TreadMaterial",
+			"RingAndRim", "PlyParams", "PlyMaterial",
+			// [Realtime]
+			"StaticBaseCoefficient", "SlidingBaseCoefficient", "TemporaryBristleSpring", "TemporaryBristleDamper",
+			"MarbleEffectOnEffectiveLoad", "TerrainWeightOnContactTemperature", "WLFParameters", "StaticRoughnessEffect",
+			"GrooveEffects", "DampnessEffects", "StaticCurve", "SlidingAdhesionCurve", "SlidingMicroDeformationCurve",
+			"SlidingMacroDeformationCurve", "RubberPressureSensitivityPower", "SizeMultiplier", "ThermalDepthAtSurface",
+			"ThermalDepthBelowSurface", "BristleLength", "InternalGasHeatTransfer", "ExternalGasHeatTransfer",
+			"GroundContactConductance", "TireRadiationEmissivity", "InternalGasSpecificHeatAtConstantVolume",
+			"TemporaryAbrasion",
+			// [LookupData]
+			"Version", "Checksum", "Bin");
+
+	@Override
+	protected boolean onGroupParsed(int lineNr, String group) throws ParsingException {
+		groupNumber++;
+		if(lazyLookupData && getSourceFile() != null && group.equals("LookupData")) {
+			skipGroup();
+		}
 		return true;
 	}
 
+	@Override
+	protected boolean onGroupSkipped(int lineNr, String group, long offset, long length) throws ParsingException {
+		if(group.equals("LookupData")) {
+			tgm.getLookupData().setLoader(new FileLookupDataLoader(getSourceFile(), offset, length));
+		}
+		return true;
+	}
 
-	private void parseLookupData(String key, String value) {
-		LookupData lookupData = tgm.getLookupData();
-		switch(key) {
-		case "Version":
-			lookupData.version = value;
+	/**
+	 * Defines how to parse the file.
+	 */
+	@Override
+	protected boolean onSettingParsed(int lineNr, String group, String key,
+			String value, String comment) throws ParsingException {
+		return setting(lineNr, group, key, value);
+	}
+
+	/**
+	 * Settings of the byte based parse path are looked up and parsed straight
+	 * from the bytes, no String is created for them.
+	 */
+	@Override
+	protected boolean onSettingParsed(int lineNr, AsciiSequence group, AsciiSequence key,
+			AsciiSequence value, AsciiSequence comment) throws ParsingException {
+		return setting(lineNr, group, key, value);
+	}
+
+	/**
+	 * Called for every setting, which isn't a known key of its group. Such settings are ignored by default.
+	 * The sequences are only valid during the call, call toString() to keep them.
+	 * @param lineNr
+	 * @param group the current group (can be null)
+	 * @param key
+	 * @param value
+	 * @return true, to indicate, that parsing should be proceeded, false to stop parsing.
+	 * @throws ParsingException
+	 */
+	protected boolean onUnknownSetting(int lineNr, CharSequence group, CharSequence key, CharSequence value) throws ParsingException {
+		return true;
+	}
+
+	private boolean setting(int lineNr, CharSequence group, CharSequence key, CharSequence value) throws ParsingException {
+		if(groupIdNumber != groupNumber || groupIdSource != group) {
+			groupId = group != null ? GROUPS.indexOf(group) : -1;
+			groupIdNumber = groupNumber;
+			groupIdSource = group;
+		}
+		int id = KEYS.indexOf(key);
+		boolean known;
+		// a tableswitch per group instead of a handle per key: the cases assign the
+		// fields directly and share the scanner, and copySetting() reuses the ids
+		switch(groupId) {
+		case QUASI_STATIC_ANALYSIS:
+			known = parseQuasiStaticAnalysis(id, value);
 			break;
-		case "Checksum":
-			lookupData.checksum = Integer.valueOf(value);
+		case NODE:
+			// the first setting of a [Node] group adds the node
+			if(nodeGroup != groupNumber) {
+				this.node = tgm.getNodeStore().addNode();
+				this.ply = -1;
+				this.nodeGroup = groupNumber;
+				nodeGroupNumber++;
+			}
+			known = parseNodeGroup(id, value);
+			break;
+		case REALTIME:
+			known = parseRealtimeGroup(id, value);
+			break;
+		case LOOKUP_DATA:
+			known = parseLookupData(id, value);
 			break;
-		case "Bin":
-			lookupData.bins.add(value);
+		default:
+			known = false;
+		}
+		return known || onUnknownSetting(lineNr, group, key, value);
+	}
+
+	private boolean parseLookupData(int key, CharSequence value) {
+		LookupData lookupData = tgm.getLookupData();
+		switch(key) {
+		case VERSION:
+			lookupData.setVersion(value.toString());
+			return true;
+		case CHECKSUM:
+			lookupData.setChecksum(scanner.reset(value).nextInt());
+			return true;
+		case BIN:
+			lookupData.addBin(value);
+			return true;
+		default:
+			return false;
 		}
 	}
 
 
-	private void parseQuasiStaticAnalysis(String key, String value) {
+	private boolean parseQuasiStaticAnalysis(int key, CharSequence value) {
 		QuasiStaticAnalysis quasiStaticAnalysis = tgm.getQuasiStaticAnalysis();
 		switch(key) {
-		case "NumLayers":
-			quasiStaticAnalysis.numLayers = Integer.valueOf(value);
-			break;
-		case "NumSections":
-			quasiStaticAnalysis.numSections = Integer.valueOf(value);
-			break;
-		case "RimVolume":
-			quasiStaticAnalysis.rimVolume = Double.valueOf(value);
-			break;
-		case "RealtimeCamberLimit":
-			quasiStaticAnalysis.realtimeCamberLimit = Integer.valueOf(value);
-			break;
-		case "GaugePressure":
-			quasiStaticAnalysis.gaugePressures.add(Integer.valueOf(value));
-			break;
-		case "CarcassTemperature":
-			quasiStaticAnalysis.carcassTemperatures.add(Double.valueOf(value));
-			break;
-		case "RotationSquared":
-			quasiStaticAnalysis.rotationSquareds.add(Integer.valueOf(value));
-			break;
-		case "NumNodes":
-			quasiStaticAnalysis.numNodes = Integer.valueOf(value);
-			break;
-		case "VolumeLoad":
-			quasiStaticAnalysis.volumeLoad = Integer.valueOf(value);
+		case NUM_LAYERS:
+			quasiStaticAnalysis.numLayers = scanner.reset(value).nextInt();
+			return true;
+		case NUM_SECTIONS:
+			quasiStaticAnalysis.numSections = scanner.reset(value).nextInt();
+			return true;
+		case RIM_VOLUME:
+			quasiStaticAnalysis.rimVolume = scanner.reset(value).nextDouble();
+			return true;
+		case REALTIME_CAMBER_LIMIT:
+			quasiStaticAnalysis.realtimeCamberLimit = scanner.reset(value).nextInt();
+			return true;
+		case GAUGE_PRESSURE:
+			quasiStaticAnalysis.gaugePressures.addInt(scanner.reset(value).nextInt());
+			return true;
+		case CARCASS_TEMPERATURE:
+			quasiStaticAnalysis.carcassTemperatures.addDouble(scanner.reset(value).nextDouble());
+			return true;
+		case ROTATION_SQUARED:
+			quasiStaticAnalysis.rotationSquareds.addInt(scanner.reset(value).nextInt());
+			return true;
+		case NUM_NODES:
+			quasiStaticAnalysis.numNodes = scanner.reset(value).nextInt();
+			return true;
+		case VOLUME_LOAD:
+			quasiStaticAnalysis.volumeLoad = scanner.reset(value).nextInt();
+			return true;
+		case LOAD_CAMBER:
+			quasiStaticAnalysis.loadCamber = scanner.reset(value).nextInt();
+			return true;
+		case LOAD_INCLINATION:
+			quasiStaticAnalysis.loadInclination = scanner.reset(value).nextInt();
+			return true;
+		case LOAD_DEFLECTION:
+			quasiStaticAnalysis.loadDeflection = scanner.reset(value).nextInt();
+			return true;
+		case TOTAL_MASS:
+			quasiStaticAnalysis.totalMass = scanner.reset(value).nextDouble();
+			return true;
+		case TOTAL_INERTIA_STANDARD:
+			quasiStaticAnalysis.totalInertiaStandards = readDoubleList(value, quasiStaticAnalysis.totalInertiaStandards);
+			return true;
+		case RING_MASS:
+			quasiStaticAnalysis.ringMass = scanner.reset(value).nextDouble();
+			return true;
+		case RING_INERTIA_STANDARD:
+			quasiStaticAnalysis.ringInertiaStandards = readDoubleList(value, quasiStaticAnalysis.ringInertiaStandards);
+			return true;
+		default:
+			return false;
+		}
+	}
+
+
+	private boolean parseNodeGroup(int key, CharSequence value) {
+		NodeStore nodes = tgm.getNodeStore();
+		switch(key) {
+		case GEOMETRY:
+			scanner.reset(value);
+			nodes.setGeometry(node, scanner.nextDouble(), scanner.nextDouble(), scanner.nextDouble());
+			return true;
+		case BULK_MATERIAL:
+			nodes.addBulkMaterial(node, readMaterial(nodes.getMaterials(), value));
+			return true;
+		case ANISO_CARCASS_CONDUCTIVITY_MULT:
+			scanner.reset(value);
+			nodes.setAnisoCarcassConductivityMult(node, scanner.nextDouble(), scanner.nextDouble(), scanner.nextDouble());
+			return true;
+		case TREAD_DEPTH:
+			nodes.setTreadDepth(node, scanner.reset(value).nextDouble());
+			return true;
+		case TREAD_MATERIAL:
+			nodes.addTreadMaterial(node, readMaterial(nodes.getMaterials(), value));
+			return true;
+		case RING_AND_RIM:
+			scanner.reset(value);
+			int count = scanner.remaining();
+			if(values.length < count) {
+				values = new double[count];
+			}
+			scanner.nextDoubles(values, 0);
+			nodes.setRingAndRim(node, values, count);
+			return true;
+		case PLY_PARAMS:
+			scanner.reset(value);
+			ply = nodes.addPly(node, scanner.nextInt(), scanner.nextDouble(), scanner.nextInt());
+			return true;
+		case PLY_MATERIAL:
+			if(this.ply >= 0) {
+				nodes.addPlyMaterial(node, ply, readMaterial(nodes.getMaterials(), value));
+			}
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	
+	private boolean parseRealtimeGroup(int key, CharSequence value) {
+		Realtime realtime = this.tgm.getRealtime();
+		
+		switch(key) {
+		case STATIC_BASE_COEFFICIENT:
+			realtime.staticBaseCoefficient = scanner.reset(value).nextDouble();
+			return true;
+		case SLIDING_BASE_COEFFICIENT:
+			realtime.slidingBaseCoefficient = scanner.reset(value).nextDouble();
+			return true;
+		case TEMPORARY_BRISTLE_SPRING:
+			realtime.temporaryBristleSpring = readDoubleList(value, realtime.temporaryBristleSpring);
+			return true;
+		case TEMPORARY_BRISTLE_DAMPER:
+			realtime.temporaryBristleDamper = readDoubleList(value, realtime.temporaryBristleDamper);
+			return true;
+		case MARBLE_EFFECT_ON_EFFECTIVE_LOAD:
+			realtime.marbleEffectOnEffectiveLoad = scanner.reset(value).nextDouble();
+			return true;
+		case TERRAIN_WEIGHT_ON_CONTACT_TEMPERATURE:
+			realtime.terrainWeightOnContactTemperature = scanner.reset(value).nextDouble();
+			return true;
+		case WLF_PARAMETERS:
+			realtime.wLFParameters = readDoubleList(value, realtime.wLFParameters);
+			return true;
+		case STATIC_ROUGHNESS_EFFECT:
+			realtime.staticRoughnessEffect = scanner.reset(value).nextDouble();
+			return true;
+		case GROOVE_EFFECTS:
+			realtime.grooveEffects = readDoubleList(value, realtime.grooveEffects);
+			return true;
+		case DAMPNESS_EFFECTS:
+			realtime.dampnessEffects = readDoubleList(value, realtime.dampnessEffects);
+			return true;
+		case STATIC_CURVE:
+			realtime.staticCurve = readDoubleList(value, realtime.staticCurve);
+			return true;
+		case SLIDING_ADHESION_CURVE:
+			realtime.slidingAdhesionCurve = readDoubleList(value, realtime.slidingAdhesionCurve);
+			return true;
+		case SLIDING_MICRO_DEFORMATION_CURVE:
+			realtime.slidingMicroDeformationCurve = readDoubleList(value, realtime.slidingMicroDeformationCurve);
+			return true;
+		case SLIDING_MACRO_DEFORMATION_CURVE:
+			realtime.slidingMacroDeformationCurve = readDoubleList(value, realtime.slidingMacroDeformationCurve);
+			return true;
+		case RUBBER_PRESSURE_SENSITIVITY_POWER:
+			realtime.rubberPressureSensitivityPower = readDoubleList(value, realtime.rubberPressureSensitivityPower);
+			return true;
+		case SIZE_MULTIPLIER:
+			realtime.sizeMultiplier = readDoubleList(value, realtime.sizeMultiplier);
+			return true;
+		case THERMAL_DEPTH_AT_SURFACE:
+			realtime.thermalDepthAtSurface = scanner.reset(value).nextDouble();
+			return true;
+		case THERMAL_DEPTH_BELOW_SURFACE:
+			realtime.thermalDepthBelowSurface = scanner.reset(value).nextDouble();
+			return true;
+		case BRISTLE_LENGTH:
+			realtime.bristleLength = scanner.reset(value).nextDouble();
+			return true;
+		case INTERNAL_GAS_HEAT_TRANSFER:
+			realtime.internalGasHeatTransfer = readDoubleList(value, realtime.internalGasHeatTransfer);
+			return true;
+		case EXTERNAL_GAS_HEAT_TRANSFER:
+			realtime.externalGasHeatTransfer = readDoubleList(value, realtime.externalGasHeatTransfer);
+			return true;
+		case GROUND_CONTACT_CONDUCTANCE:
+			realtime.groundContactConductance = readDoubleList(value, realtime.groundContactConductance);
+			return true;
+		case TIRE_RADIATION_EMISSIVITY:
+			realtime.tireRadiationEmissivity = scanner.reset(value).nextDouble();
+			return true;
+		case INTERNAL_GAS_SPECIFIC_HEAT_AT_CONSTANT_VOLUME:
+			scanner.reset(value);
+			int temperature = scanner.nextInt();
+			realtime.internalGasSpecificHeatAtConstantVolume.putInt(temperature, scanner.nextInt());
+			return true;
+		case TEMPORARY_ABRASION:
+			realtime.temporaryAbrasion = scanner.reset(value).nextFloat();
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	public Node.Material parseMaterial(String value) {
+		scanner.reset(value);
+		Node.Material material = new Node.Material();
+		material.temperature = scanner.nextDouble();
+		material.density = scanner.nextDouble();
+		material.youngsModulo = scanner.nextLong(); 
+		material.poissonsRatio = scanner.nextDouble();
+		material.dampingFactor  = scanner.nextDouble();
+		material.specificHeat = scanner.nextInt();
+		material.thermalConductivity = scanner.nextDouble();
+		return material;
+	}
+
+	private int readMaterial(MaterialTable materials, CharSequence value) {
+		scanner.reset(value);
+		return materials.intern(scanner.nextDouble(), scanner.nextDouble(), scanner.nextLong(), scanner.nextDouble(),
+				scanner.nextDouble(), scanner.nextInt(), scanner.nextDouble());
+	}
+
+	/**
+	 * Fill the given list with the values, or a new one, if it is null.
+	 */
+	private DoubleArrayList readDoubleList(CharSequence value, DoubleArrayList list) {
+		if(list == null) {
+			return readDoubleList(scanner, value);
+		}
+		list.clear();
+		scanner.reset(value);
+		while(scanner.hasNext()) {
+			list.addDouble(scanner.nextDouble());
+		}
+		return list;
+	}
+
+	private static Vector3f readVector3f(TupleScanner scanner, CharSequence value) {
+		scanner.reset(value);
+
+		Vector3f vector = new Vector3f();
+		// conversion to float! may be lossy!
+		vector.x(scanner.nextFloat());
+		vector.y(scanner.nextFloat());
+		vector.z(scanner.nextFloat());
+		return vector;
+	}
+
+	private static DoubleArrayList readDoubleList(TupleScanner scanner, CharSequence value) {
+		scanner.reset(value);
+		DoubleArrayList list = new DoubleArrayList(scanner.remaining());
+		while(scanner.hasNext()) {
+			list.addDouble(scanner.nextDouble());
+		}
+		return list;
+	}
+
+	/**
+	 * Return the id of a key of [QuasiStaticAnalysis] or [Realtime], for {@link #copySetting(int, TGMFile, TGMFile)}.
+	 * @param group
+	 * @param key
+	 * @return the id or -1, if the group has no such key
+	 */
+	static int settingId(String group, String key) {
+		int id = KEYS.indexOf(key);
+		if(group.equals("QuasiStaticAnalysis")) {
+			return id >= NUM_LAYERS && id <= RING_INERTIA_STANDARD ? id : -1;
+		} else if(group.equals("Realtime")) {
+			return id >= STATIC_BASE_COEFFICIENT && id <= TEMPORARY_ABRASION ? id : -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Set a setting of dst to its value in src, which has been parsed from just that setting's line.
+	 * dst ends up like after parsing that line, so a value of a setting listing several values is added.
+	 * Lists are copied, src can be used again.
+	 * @param id see {@link #settingId(String, String)}
+	 * @param src
+	 * @param dst
+	 */
+	static void copySetting(int id, TGMFile src, TGMFile dst) {
+		QuasiStaticAnalysis qsaSrc = src.getQuasiStaticAnalysis();
+		QuasiStaticAnalysis qsa = dst.getQuasiStaticAnalysis();
+		Realtime realtimeSrc = src.getRealtime();
+		Realtime realtime = dst.getRealtime();
+		switch(id) {
+		case NUM_LAYERS:
+			qsa.numLayers = qsaSrc.numLayers;
 			break;
-		case "LoadCamber":
-			quasiStaticAnalysis.loadCamber = Integer.valueOf(value);
+		case NUM_SECTIONS:
+			qsa.numSections = qsaSrc.numSections;
 			break;
-		case "LoadInclination":
-			quasiStaticAnalysis.loadInclination = Integer.valueOf(value);
+		case RIM_VOLUME:
+			qsa.rimVolume = qsaSrc.rimVolume;
 			break;
-		case "LoadDeflection":
-			quasiStaticAnalysis.loadDeflection = Integer.valueOf(value);
+		case REALTIME_CAMBER_LIMIT:
+			qsa.realtimeCamberLimit = qsaSrc.realtimeCamberLimit;
 			break;
-		case "TotalMass":
-			quasiStaticAnalysis.totalMass = Double.valueOf(value);
+		case GAUGE_PRESSURE:
+			qsa.gaugePressures.addInt(qsaSrc.gaugePressures.getInt(0));
 			break;
-		case "TotalInertiaStandard":
-			quasiStaticAnalysis.totalInertiaStandards = parseDoubleList(value);
+		case CARCASS_TEMPERATURE:
+			qsa.carcassTemperatures.addDouble(qsaSrc.carcassTemperatures.getDouble(0));
 			break;
-		case "RingMass":
-			quasiStaticAnalysis.ringMass = Double.valueOf(value);
+		case ROTATION_SQUARED:
+			qsa.rotationSquareds.addInt(qsaSrc.rotationSquareds.getInt(0));
 			break;
-		case "RingInertiaStandard":
-			quasiStaticAnalysis.ringInertiaStandards = parseDoubleList(value);
+		case NUM_NODES:
+			qsa.numNodes = qsaSrc.numNodes;
 			break;
-		}
-	}
-
-
-	private void parseNodeGroup(String key, String value) {
-		switch(key) {
-		case "Geometry":
-			node.geometry = parseVector3f(value);
+		case VOLUME_LOAD:
+			qsa.volumeLoad = qsaSrc.volumeLoad;
 			break;
-		case "BulkMaterial":
-			node.bulkMaterial.add(parseMaterial(value));
+		case LOAD_CAMBER:
+			qsa.loadCamber = qsaSrc.loadCamber;
 			break;
-		case "AnisoCarcassConductivityMult":
-			node.anisoCarcassConductivityMult = parseVector3f(value);
+		case LOAD_INCLINATION:
+			qsa.loadInclination = qsaSrc.loadInclination;
 			break;
-		case "TreadDepth":
-			node.treadDepth = Double.valueOf(value);
+		case LOAD_DEFLECTION:
+			qsa.loadDeflection = qsaSrc.loadDeflection;
 			break;
-		case "TreadMaterial":
-			node.treadMaterial.add(parseMaterial(value));
+		case TOTAL_MASS:
+			qsa.totalMass = qsaSrc.totalMass;
 			break;
-		case "RingAndRim":
-			node.ringAndRim = parseDoubleList(value);
+		case TOTAL_INERTIA_STANDARD:
+			qsa.totalInertiaStandards = copy(qsaSrc.totalInertiaStandards);
 			break;
-		case "PlyParams":
-			ply = new Ply();
-			ply.params = parsePlyParam(value);
-			node.plies.add(ply);
+		case RING_MASS:
+			qsa.ringMass = qsaSrc.ringMass;
 			break;
-		case "PlyMaterial":
-			if(this.ply != null) {
-				this.ply.materials.add(parseMaterial(value));
-			}
+		case RING_INERTIA_STANDARD:
+			qsa.ringInertiaStandards = copy(qsaSrc.ringInertiaStandards);
 			break;
-		}
-	}
-
-	
-	private void parseRealtimeGroup(String key, String value) {
-		Realtime realtime = this.tgm.getRealtime();
-		
-		switch(key) {
-		case "StaticBaseCoefficient":
-			realtime.staticBaseCoefficient = Double.valueOf(value);
+		case STATIC_BASE_COEFFICIENT:
+			realtime.staticBaseCoefficient = realtimeSrc.staticBaseCoefficient;
 			break;
-		case "SlidingBaseCoefficient":
-			realtime.slidingBaseCoefficient = Double.valueOf(value);
+		case SLIDING_BASE_COEFFICIENT:
+			realtime.slidingBaseCoefficient = realtimeSrc.slidingBaseCoefficient;
 			break;
-		case "TemporaryBristleSpring":
-			realtime.temporaryBristleSpring = parseDoubleList(value);
+		case TEMPORARY_BRISTLE_SPRING:
+			realtime.temporaryBristleSpring = copy(realtimeSrc.temporaryBristleSpring);
 			break;
-		case "TemporaryBristleDamper":
-			realtime.temporaryBristleDamper = parseDoubleList(value);
+		case TEMPORARY_BRISTLE_DAMPER:
+			realtime.temporaryBristleDamper = copy(realtimeSrc.temporaryBristleDamper);
 			break;
-		case "MarbleEffectOnEffectiveLoad":
-			realtime.marbleEffectOnEffectiveLoad = Double.valueOf(value);
+		case MARBLE_EFFECT_ON_EFFECTIVE_LOAD:
+			realtime.marbleEffectOnEffectiveLoad = realtimeSrc.marbleEffectOnEffectiveLoad;
 			break;
-		case "TerrainWeightOnContactTemperature":
-			realtime.terrainWeightOnContactTemperature = Double.valueOf(value);
+		case TERRAIN_WEIGHT_ON_CONTACT_TEMPERATURE:
+			realtime.terrainWeightOnContactTemperature = realtimeSrc.terrainWeightOnContactTemperature;
 			break;
-		case "WLFParameters":
-			realtime.wLFParameters = parseDoubleList(value);
+		case WLF_PARAMETERS:
+			realtime.wLFParameters = copy(realtimeSrc.wLFParameters);
 			break;
-		case "StaticRoughnessEffect":
-			realtime.staticRoughnessEffect = Double.valueOf(value);
+		case STATIC_ROUGHNESS_EFFECT:
+			realtime.staticRoughnessEffect = realtimeSrc.staticRoughnessEffect;
 			break;
-		case "GrooveEffects":
-			realtime.grooveEffects = parseDoubleList(value);
+		case GROOVE_EFFECTS:
+			realtime.grooveEffects = copy(realtimeSrc.grooveEffects);
 			break;
-		case "DampnessEffects":
-			realtime.dampnessEffects = parseDoubleList(value);
+		case DAMPNESS_EFFECTS:
+			realtime.dampnessEffects = copy(realtimeSrc.dampnessEffects);
 			break;
-		case "StaticCurve":
-			realtime.staticCurve = parseDoubleList(value);
+		case STATIC_CURVE:
+			realtime.staticCurve = copy(realtimeSrc.staticCurve);
 			break;
-		case "SlidingAdhesionCurve":
-			realtime.slidingAdhesionCurve = parseDoubleList(value);
+		case SLIDING_ADHESION_CURVE:
+			realtime.slidingAdhesionCurve = copy(realtimeSrc.slidingAdhesionCurve);
 			break;
-		case "SlidingMicroDeformationCurve":
-			realtime.slidingMicroDeformationCurve = parseDoubleList(value);
+		case SLIDING_MICRO_DEFORMATION_CURVE:
+			realtime.slidingMicroDeformationCurve = copy(realtimeSrc.slidingMicroDeformationCurve);
 			break;
-		case "SlidingMacroDeformationCurve":
-			realtime.slidingMacroDeformationCurve = parseDoubleList(value);
+		case SLIDING_MACRO_DEFORMATION_CURVE:
+			realtime.slidingMacroDeformationCurve = copy(realtimeSrc.slidingMacroDeformationCurve);
 			break;
-		case "RubberPressureSensitivityPower":
-			realtime.rubberPressureSensitivityPower = parseDoubleList(value);
+		case RUBBER_PRESSURE_SENSITIVITY_POWER:
+			realtime.rubberPressureSensitivityPower = copy(realtimeSrc.rubberPressureSensitivityPower);
 			break;
-		case "SizeMultiplier":
-			realtime.sizeMultiplier = parseDoubleList(value);
+		case SIZE_MULTIPLIER:
+			realtime.sizeMultiplier = copy(realtimeSrc.sizeMultiplier);
 			break;
-		case "ThermalDepthAtSurface":
-			realtime.thermalDepthAtSurface = Double.valueOf(value);
+		case THERMAL_DEPTH_AT_SURFACE:
+			realtime.thermalDepthAtSurface = realtimeSrc.thermalDepthAtSurface;
 			break;
-		case "ThermalDepthBelowSurface":
-			realtime.thermalDepthBelowSurface = Double.valueOf(value);
+		case THERMAL_DEPTH_BELOW_SURFACE:
+			realtime.thermalDepthBelowSurface = realtimeSrc.thermalDepthBelowSurface;
 			break;
-		case "BristleLength":
-			realtime.bristleLength = Double.valueOf(value);
+		case BRISTLE_LENGTH:
+			realtime.bristleLength = realtimeSrc.bristleLength;
 			break;
-		case "InternalGasHeatTransfer":
-			realtime.internalGasHeatTransfer = parseDoubleList(value);
+		case INTERNAL_GAS_HEAT_TRANSFER:
+			realtime.internalGasHeatTransfer = copy(realtimeSrc.internalGasHeatTransfer);
 			break;
-		case "ExternalGasHeatTransfer":
-			realtime.externalGasHeatTransfer = parseDoubleList(value);
+		case EXTERNAL_GAS_HEAT_TRANSFER:
+			realtime.externalGasHeatTransfer = copy(realtimeSrc.externalGasHeatTransfer);
 			break;
-		case "GroundContactConductance":
-			realtime.groundContactConductance = parseDoubleList(value);
+		case GROUND_CONTACT_CONDUCTANCE:
+			realtime.groundContactConductance = copy(realtimeSrc.groundContactConductance);
 			break;
-		case "TireRadiationEmissivity":
-			realtime.tireRadiationEmissivity = Double.valueOf(value);
+		case TIRE_RADIATION_EMISSIVITY:
+			realtime.tireRadiationEmissivity = realtimeSrc.tireRadiationEmissivity;
 			break;
-		case "InternalGasSpecificHeatAtConstantVolume":
-			List<Integer> list = parseIntegerList(value);
-			realtime.internalGasSpecificHeatAtConstantVolume.put(list.get(0), list.get(1));
+		case INTERNAL_GAS_SPECIFIC_HEAT_AT_CONSTANT_VOLUME:
+			IntIntMap heat = realtimeSrc.internalGasSpecificHeatAtConstantVolume;
+			realtime.internalGasSpecificHeatAtConstantVolume.putInt(heat.keyAt(0), heat.valueAt(0));
 			break;
-		case "TemporaryAbrasion":
-			realtime.temporaryAbrasion = Float.valueOf(value);
+		case TEMPORARY_ABRASION:
+			realtime.temporaryAbrasion = realtimeSrc.temporaryAbrasion;
 			break;
+		default:
+			throw new IllegalArgumentException("Not a setting id: " + id);
 		}
-		
 	}
 
-	private Node.PlyParam parsePlyParam(String value) {
-		String line = value.substring(1, value.length()-1);
-		String[] tokens = line.split(",");
-		
-		Node.PlyParam param = new Node.PlyParam();
-		param.plyMaterialAngle = Integer.valueOf(tokens[0]);
-		param.plyMaterialThickness = Double.valueOf(tokens[1]);
-		param.connectFlat = Integer.valueOf(tokens[2]);
-		
-		return param;
+	private static DoubleArrayList copy(DoubleArrayList list) {
+		return list != null ? new DoubleArrayList(list.toDoubleArray()) : null;
 	}
-	
-	public Node.Material parseMaterial(String value) {
-		String line = value.substring(1, value.length()-1);
-		String[] tokens = line.split(",");
-		Node.Material material = new Node.Material();
-		material.temperature = Double.valueOf(tokens[0]);
-		material.density = Double.valueOf(tokens[1]);
-		material.youngsModulo = Long.valueOf(tokens[2]); 
-		material.poissonsRatio = Double.valueOf(tokens[3]);
-		material.dampingFactor  = Double.valueOf(tokens[4]);
-		material.specificHeat = Integer.valueOf(tokens[5]);
-		material.thermalConductivity = Double.valueOf(tokens[6]);
-		return material;
+
+	/**
+	 * Reads a [LookupData] section, which has been skipped by a lazy parse, back from its file.
+	 */
+	private static class FileLookupDataLoader implements TGMFile.LookupDataLoader {
+		private final File file;
+		private final long offset;
+		private final int length;
+
+		FileLookupDataLoader(File file, long offset, long length) {
+			if(length > Integer.MAX_VALUE) {
+				throw new ParsingException("LookupData section too large: " + length);
+			}
+			this.file = file;
+			this.offset = offset;
+			this.length = (int)length;
+		}
+
+		@Override
+		public void load(LookupData lookupData) throws IOException {
+			byte[] section = new byte[length];
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				raf.seek(offset);
+				raf.readFully(section);
+			} finally {
+				raf.close();
+			}
+
+			String header = new String(section, 0, Math.min(length, 64), "ISO-8859-1").trim();
+			if(!header.startsWith("[LookupData")) {
+				throw new IOException("No [LookupData] at byte " + offset + " of " + file + ", it has changed since it was parsed");
+			}
+			// parsed on its own and handed over, as the section may not belong to the file it was parsed for anymore
+			TGMFile parsed = new TGMFile();
+			new TGMParser(parsed, null).parse(ByteBuffer.wrap(section));
+			LookupData src = parsed.getLookupData();
+			lookupData.setVersion(src.getVersion());
+			lookupData.setChecksum(src.getChecksum());
+			lookupData.setBins(src.asByteBuffer());
+		}
 	}
 
 	/**
@@ -292,6 +1079,7 @@ public class TGMParser extends AbstractIniParser {
 	 * @return
 	 */
 	public TGMFile getTGMFile() {
+		this.tgmPrivate = false;
 		return this.tgm;
 	}
 
@@ -301,15 +1089,7 @@ public class TGMParser extends AbstractIniParser {
 	 * @return
 	 */
 	public static Vector3f parseVector3f(String value) {
-		String line = value.substring(1, value.length()-1);
-		String[] tokens = line.split(",");
-
-		Vector3f vector = new Vector3f();
-		// conversion to float! may be lossy!
-		vector.x(Float.valueOf(tokens[0]));
-		vector.y(Float.valueOf(tokens[1]));
-		vector.z(Float.valueOf(tokens[2]));
-		return vector;
+		return readVector3f(new TupleScanner(), value);
 	}
 
 	/**
@@ -317,14 +1097,8 @@ public class TGMParser extends AbstractIniParser {
 	 * @param value
 	 * @return
 	 */
-	public static List<Double> parseDoubleList(String value) {
-		String line = value.substring(1, value.length()-1);
-		String[] tokens = line.split(",");
-		List<Double> list = new ArrayList<Double>();
-		for (String str : tokens) {
-			list.add(Double.valueOf(str));
-		}
-		return list;
+	public static DoubleArrayList parseDoubleList(String value) {
+		return readDoubleList(new TupleScanner(), value);
 	}
 	
 	/**
@@ -332,13 +1106,11 @@ public class TGMParser extends AbstractIniParser {
 	 * @param value
 	 * @return
 	 */
-	public static List<Integer> parseIntegerList(String value) {
-		String line = value.substring(1, value.length()-1);
-		String[] tokens = line.split(",");
-
-		List<Integer> list = new ArrayList<Integer>();
-		for (String str : tokens) {
-			list.add(Integer.valueOf(str));
+	public static IntArrayList parseIntegerList(String value) {
+		TupleScanner scanner = new TupleScanner().reset(value);
+		IntArrayList list = new IntArrayList(scanner.remaining());
+		while(scanner.hasNext()) {
+			list.addInt(scanner.nextInt());
 		}
 		return list;
 	}
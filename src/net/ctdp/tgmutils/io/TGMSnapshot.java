@@ -0,0 +1,513 @@
+package net.ctdp.tgmutils.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import net.ctdp.tgmutils.models.MaterialTable;
+import net.ctdp.tgmutils.models.NodeStore;
+import net.ctdp.tgmutils.models.TGMFile;
+import net.ctdp.tgmutils.models.TGMFile.LookupData;
+import net.ctdp.tgmutils.models.TGMFile.QuasiStaticAnalysis;
+import net.ctdp.tgmutils.models.TGMFile.Realtime;
+import net.ctdp.tgmutils.util.DoubleArrayList;
+import net.ctdp.tgmutils.util.IntArrayList;
+import net.ctdp.tgmutils.util.IntIntMap;
+
+/**
+ * Binary snapshot of a parsed {@link TGMFile}, to skip the text parse of files that didn't change.
+ * <p>
+ * All numbers are big-endian and stored with their full precision, so a snapshot holds
+ * exactly the values of the parsed file. The layout is
+ * <pre>
+ * int    magic 'TGMS'
+ * int    format version
+ * int    offset of the bins from the start of the snapshot, a multiple of 64
+ * int    number of bins
+ * ...    [QuasiStaticAnalysis], materials, [Node]s, [Realtime], LookupData version and checksum
+ * ...    padding
+ * byte[] bins, BIN_SIZE bytes each
+ * </pre>
+ * The bins, by far the largest part, are used in place: {@link #read(File)} maps the file and
+ * the {@link LookupData} reads from the mapping, so they cost a page fault instead of a parse.
+ * The rest is decoded from the mapping into the model, which is a few kilobytes per tyre.
+ * Lists, which are null in the model, are stored with a count of -1.
+ */
+public final class TGMSnapshot {
+
+	/**
+	 * 'TGMS' in ASCII.
+	 */
+	public static final int MAGIC = 0x54474D53;
+
+	/**
+	 * Version of the layout written by this class.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final int HEADER_SIZE = 16;
+	private static final int BIN_ALIGNMENT = 64;
+
+	private static final int NODE_GEOMETRY = 1;
+	private static final int NODE_ANISO = 2;
+	private static final int NODE_RING_AND_RIM = 4;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private TGMSnapshot() {
+	}
+
+	// writing
+
+	/**
+	 * Write a snapshot of the given file.
+	 * @param tgm
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(TGMFile tgm, File file) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			write(tgm, out.getChannel());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write a snapshot of the given file.
+	 * @param tgm
+	 * @param channel
+	 * @throws IOException
+	 */
+	public static void write(TGMFile tgm, WritableByteChannel channel) throws IOException {
+		LookupData lookupData = tgm.getLookupData();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeQuasiStaticAnalysis(out, tgm.getQuasiStaticAnalysis());
+		writeNodes(out, tgm.getNodeStore());
+		writeRealtime(out, tgm.getRealtime());
+		writeString(out, lookupData.getVersion());
+		out.writeInt(lookupData.getChecksum());
+		out.flush();
+
+		int binOffset = align(HEADER_SIZE + bytes.size(), BIN_ALIGNMENT);
+		ByteBuffer head = ByteBuffer.allocate(binOffset);
+		head.putInt(MAGIC);
+		head.putInt(FORMAT_VERSION);
+		head.putInt(binOffset);
+		head.putInt(lookupData.getBinCount());
+		head.put(bytes.toByteArray());
+		head.clear();
+
+		writeFully(channel, head);
+		writeFully(channel, lookupData.asByteBuffer());
+	}
+
+	private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static int align(int offset, int alignment) {
+		return (offset + alignment - 1) / alignment * alignment;
+	}
+
+	private static void writeQuasiStaticAnalysis(DataOutputStream out, QuasiStaticAnalysis qsa) throws IOException {
+		out.writeInt(qsa.numLayers);
+		out.writeInt(qsa.numSections);
+		out.writeDouble(qsa.rimVolume);
+		out.writeInt(qsa.realtimeCamberLimit);
+		writeList(out, qsa.gaugePressures);
+		writeList(out, qsa.carcassTemperatures);
+		writeList(out, qsa.rotationSquareds);
+		out.writeInt(qsa.numNodes);
+		out.writeInt(qsa.volumeLoad);
+		out.writeInt(qsa.loadCamber);
+		out.writeInt(qsa.loadInclination);
+		out.writeInt(qsa.loadDeflection);
+		out.writeDouble(qsa.totalMass);
+		writeList(out, qsa.totalInertiaStandards);
+		out.writeDouble(qsa.ringMass);
+		writeList(out, qsa.ringInertiaStandards);
+	}
+
+	private static void writeNodes(DataOutputStream out, NodeStore nodes) throws IOException {
+		// only the materials used by the nodes, the table may be shared by many files
+		MaterialTable materials = nodes.getMaterials();
+		int[] index = new int[materials.size()];
+		Arrays.fill(index, -1);
+		IntArrayList used = new IntArrayList();
+		for (int n = 0; n < nodes.size(); n++) {
+			for (int i = 0; i < nodes.getBulkMaterialCount(n); i++) {
+				markUsed(index, used, nodes.getBulkMaterial(n, i));
+			}
+			for (int i = 0; i < nodes.getTreadMaterialCount(n); i++) {
+				markUsed(index, used, nodes.getTreadMaterial(n, i));
+			}
+			for (int p = 0; p < nodes.getPlyCount(n); p++) {
+				int ply = nodes.getPly(n, p);
+				for (int i = 0; i < nodes.getPlyMaterialCount(ply); i++) {
+					markUsed(index, used, nodes.getPlyMaterial(ply, i));
+				}
+			}
+		}
+		out.writeInt(used.size());
+		for (int i = 0; i < used.size(); i++) {
+			int m = used.getInt(i);
+			out.writeDouble(materials.getTemperature(m));
+			out.writeDouble(materials.getDensity(m));
+			out.writeLong(materials.getYoungsModulo(m));
+			out.writeDouble(materials.getPoissonsRatio(m));
+			out.writeDouble(materials.getDampingFactor(m));
+			out.writeInt(materials.getSpecificHeat(m));
+			out.writeDouble(materials.getThermalConductivity(m));
+		}
+
+		out.writeInt(nodes.size());
+		for (int n = 0; n < nodes.size(); n++) {
+			int flags = (nodes.hasGeometry(n) ? NODE_GEOMETRY : 0)
+					| (nodes.hasAnisoCarcassConductivityMult(n) ? NODE_ANISO : 0)
+					| (nodes.hasRingAndRim(n) ? NODE_RING_AND_RIM : 0);
+			out.writeInt(flags);
+			if(nodes.hasGeometry(n)) {
+				out.writeDouble(nodes.getX(n));
+				out.writeDouble(nodes.getY(n));
+				out.writeDouble(nodes.getThickness(n));
+			}
+			out.writeDouble(nodes.getTreadDepth(n));
+			if(nodes.hasAnisoCarcassConductivityMult(n)) {
+				out.writeDouble(nodes.getAnisoX(n));
+				out.writeDouble(nodes.getAnisoY(n));
+				out.writeDouble(nodes.getAnisoZ(n));
+			}
+			if(nodes.hasRingAndRim(n)) {
+				out.writeInt(nodes.getRingAndRimCount(n));
+				for (int i = 0; i < nodes.getRingAndRimCount(n); i++) {
+					out.writeDouble(nodes.getRingAndRim(n, i));
+				}
+			}
+			out.writeInt(nodes.getBulkMaterialCount(n));
+			for (int i = 0; i < nodes.getBulkMaterialCount(n); i++) {
+				out.writeInt(index[nodes.getBulkMaterial(n, i)]);
+			}
+			out.writeInt(nodes.getTreadMaterialCount(n));
+			for (int i = 0; i < nodes.getTreadMaterialCount(n); i++) {
+				out.writeInt(index[nodes.getTreadMaterial(n, i)]);
+			}
+			out.writeInt(nodes.getPlyCount(n));
+			for (int p = 0; p < nodes.getPlyCount(n); p++) {
+				int ply = nodes.getPly(n, p);
+				out.writeInt(nodes.getPlyAngle(ply));
+				out.writeDouble(nodes.getPlyThickness(ply));
+				out.writeInt(nodes.getPlyConnectFlag(ply));
+				out.writeInt(nodes.getPlyMaterialCount(ply));
+				for (int i = 0; i < nodes.getPlyMaterialCount(ply); i++) {
+					out.writeInt(index[nodes.getPlyMaterial(ply, i)]);
+				}
+			}
+		}
+	}
+
+	private static void markUsed(int[] index, IntArrayList used, int material) {
+		if(index[material] < 0) {
+			index[material] = used.size();
+			used.addInt(material);
+		}
+	}
+
+	private static void writeRealtime(DataOutputStream out, Realtime realtime) throws IOException {
+		out.writeDouble(realtime.staticBaseCoefficient);
+		out.writeDouble(realtime.slidingBaseCoefficient);
+		writeList(out, realtime.temporaryBristleSpring);
+		writeList(out, realtime.temporaryBristleDamper);
+		out.writeDouble(realtime.marbleEffectOnEffectiveLoad);
+		out.writeDouble(realtime.terrainWeightOnContactTemperature);
+		writeList(out, realtime.wLFParameters);
+		out.writeDouble(realtime.staticRoughnessEffect);
+		writeList(out, realtime.grooveEffects);
+		writeList(out, realtime.dampnessEffects);
+		writeList(out, realtime.staticCurve);
+		writeList(out, realtime.slidingAdhesionCurve);
+		writeList(out, realtime.slidingMicroDeformationCurve);
+		writeList(out, realtime.slidingMacroDeformationCurve);
+		writeList(out, realtime.rubberPressureSensitivityPower);
+		writeList(out, realtime.sizeMultiplier);
+		out.writeDouble(realtime.thermalDepthAtSurface);
+		out.writeDouble(realtime.thermalDepthBelowSurface);
+		out.writeDouble(realtime.bristleLength);
+		writeList(out, realtime.internalGasHeatTransfer);
+		writeList(out, realtime.externalGasHeatTransfer);
+		writeList(out, realtime.groundContactConductance);
+		out.writeDouble(realtime.tireRadiationEmissivity);
+		IntIntMap heat = realtime.internalGasSpecificHeatAtConstantVolume;
+		if(heat == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(heat.size());
+			for (int i = 0; i < heat.size(); i++) {
+				out.writeInt(heat.keyAt(i));
+				out.writeInt(heat.valueAt(i));
+			}
+		}
+		out.writeFloat(realtime.temporaryAbrasion);
+	}
+
+	private static void writeList(DataOutputStream out, DoubleArrayList list) throws IOException {
+		if(list == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(list.size());
+		for (int i = 0; i < list.size(); i++) {
+			out.writeDouble(list.getDouble(i));
+		}
+	}
+
+	private static void writeList(DataOutputStream out, IntArrayList list) throws IOException {
+		if(list == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(list.size());
+		for (int i = 0; i < list.size(); i++) {
+			out.writeInt(list.getInt(i));
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if(value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	// reading
+
+	/**
+	 * Map the given snapshot into memory and return its {@link TGMFile}.
+	 * The bins of its {@link LookupData} are read from the mapping.
+	 * @param file
+	 * @return
+	 * @throws IOException if the file is no snapshot or has an unknown format version
+	 */
+	public static TGMFile read(File file) throws IOException {
+		return read(file, new MaterialTable());
+	}
+
+	/**
+	 * Map the given snapshot into memory and return its {@link TGMFile},
+	 * keeping the node materials in the given table.
+	 * @param file
+	 * @param materials
+	 * @return
+	 * @throws IOException if the file is no snapshot or has an unknown format version
+	 */
+	public static TGMFile read(File file, MaterialTable materials) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large: " + size + " bytes");
+			}
+			// the mapping stays valid after the file is closed
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0L, size), materials);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Return the {@link TGMFile} of the snapshot between the buffer's position and limit.
+	 * The bins of its {@link LookupData} are a view of the buffer.
+	 * @param buffer
+	 * @param materials
+	 * @return
+	 * @throws IOException if the buffer holds no snapshot or one of an unknown format version
+	 */
+	public static TGMFile read(ByteBuffer buffer, MaterialTable materials) throws IOException {
+		ByteBuffer in = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+		if(in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+			throw new IOException("Not a TGM snapshot");
+		}
+		int version = in.getInt();
+		if(version != FORMAT_VERSION) {
+			throw new IOException("Unsupported TGM snapshot version " + version);
+		}
+		int binOffset = in.getInt();
+		int binCount = in.getInt();
+		long binEnd = binOffset + (long)binCount * LookupData.BIN_SIZE;
+		if(binOffset < HEADER_SIZE || binCount < 0 || binEnd > in.limit()) {
+			throw new IOException("Truncated TGM snapshot");
+		}
+
+		try {
+			TGMFile tgm = new TGMFile(materials);
+			readQuasiStaticAnalysis(in, tgm.getQuasiStaticAnalysis());
+			readNodes(in, tgm.getNodeStore());
+			readRealtime(in, tgm.getRealtime());
+			LookupData lookupData = tgm.getLookupData();
+			lookupData.setVersion(readString(in));
+			lookupData.setChecksum(in.getInt());
+
+			ByteBuffer bins = in.duplicate();
+			bins.limit((int)binEnd).position(binOffset);
+			lookupData.setBins(bins);
+			return tgm;
+		} catch (RuntimeException e) {
+			// BufferUnderflowException, IndexOutOfBoundsException, ...
+			throw new IOException("Corrupt TGM snapshot", e);
+		}
+	}
+
+	private static void readQuasiStaticAnalysis(ByteBuffer in, QuasiStaticAnalysis qsa) {
+		qsa.numLayers = in.getInt();
+		qsa.numSections = in.getInt();
+		qsa.rimVolume = in.getDouble();
+		qsa.realtimeCamberLimit = in.getInt();
+		qsa.gaugePressures = readIntList(in);
+		qsa.carcassTemperatures = readDoubleList(in);
+		qsa.rotationSquareds = readIntList(in);
+		qsa.numNodes = in.getInt();
+		qsa.volumeLoad = in.getInt();
+		qsa.loadCamber = in.getInt();
+		qsa.loadInclination = in.getInt();
+		qsa.loadDeflection = in.getInt();
+		qsa.totalMass = in.getDouble();
+		qsa.totalInertiaStandards = readDoubleList(in);
+		qsa.ringMass = in.getDouble();
+		qsa.ringInertiaStandards = readDoubleList(in);
+	}
+
+	private static void readNodes(ByteBuffer in, NodeStore nodes) {
+		MaterialTable materials = nodes.getMaterials();
+		int[] index = new int[in.getInt()];
+		for (int i = 0; i < index.length; i++) {
+			index[i] = materials.intern(in.getDouble(), in.getDouble(), in.getLong(), in.getDouble(),
+					in.getDouble(), in.getInt(), in.getDouble());
+		}
+
+		int count = in.getInt();
+		double[] values = new double[8];
+		for (int i = 0; i < count; i++) {
+			int n = nodes.addNode();
+			int flags = in.getInt();
+			if((flags & NODE_GEOMETRY) != 0) {
+				nodes.setGeometry(n, in.getDouble(), in.getDouble(), in.getDouble());
+			}
+			nodes.setTreadDepth(n, in.getDouble());
+			if((flags & NODE_ANISO) != 0) {
+				nodes.setAnisoCarcassConductivityMult(n, in.getDouble(), in.getDouble(), in.getDouble());
+			}
+			if((flags & NODE_RING_AND_RIM) != 0) {
+				int valuesCount = in.getInt();
+				if(values.length < valuesCount) {
+					values = new double[valuesCount];
+				}
+				for (int v = 0; v < valuesCount; v++) {
+					values[v] = in.getDouble();
+				}
+				nodes.setRingAndRim(n, values, valuesCount);
+			}
+			for (int m = in.getInt(); m > 0; m--) {
+				nodes.addBulkMaterial(n, index[in.getInt()]);
+			}
+			for (int m = in.getInt(); m > 0; m--) {
+				nodes.addTreadMaterial(n, index[in.getInt()]);
+			}
+			for (int p = in.getInt(); p > 0; p--) {
+				int ply = nodes.addPly(n, in.getInt(), in.getDouble(), in.getInt());
+				for (int m = in.getInt(); m > 0; m--) {
+					nodes.addPlyMaterial(n, ply, index[in.getInt()]);
+				}
+			}
+		}
+	}
+
+	private static void readRealtime(ByteBuffer in, Realtime realtime) {
+		realtime.staticBaseCoefficient = in.getDouble();
+		realtime.slidingBaseCoefficient = in.getDouble();
+		realtime.temporaryBristleSpring = readDoubleList(in);
+		realtime.temporaryBristleDamper = readDoubleList(in);
+		realtime.marbleEffectOnEffectiveLoad = in.getDouble();
+		realtime.terrainWeightOnContactTemperature = in.getDouble();
+		realtime.wLFParameters = readDoubleList(in);
+		realtime.staticRoughnessEffect = in.getDouble();
+		realtime.grooveEffects = readDoubleList(in);
+		realtime.dampnessEffects = readDoubleList(in);
+		realtime.staticCurve = readDoubleList(in);
+		realtime.slidingAdhesionCurve = readDoubleList(in);
+		realtime.slidingMicroDeformationCurve = readDoubleList(in);
+		realtime.slidingMacroDeformationCurve = readDoubleList(in);
+		realtime.rubberPressureSensitivityPower = readDoubleList(in);
+		realtime.sizeMultiplier = readDoubleList(in);
+		realtime.thermalDepthAtSurface = in.getDouble();
+		realtime.thermalDepthBelowSurface = in.getDouble();
+		realtime.bristleLength = in.getDouble();
+		realtime.internalGasHeatTransfer = readDoubleList(in);
+		realtime.externalGasHeatTransfer = readDoubleList(in);
+		realtime.groundContactConductance = readDoubleList(in);
+		realtime.tireRadiationEmissivity = in.getDouble();
+		int entries = in.getInt();
+		if(entries < 0) {
+			realtime.internalGasSpecificHeatAtConstantVolume = null;
+		} else {
+			IntIntMap heat = new IntIntMap();
+			for (int i = 0; i < entries; i++) {
+				int temperature = in.getInt();
+				heat.putInt(temperature, in.getInt());
+			}
+			realtime.internalGasSpecificHeatAtConstantVolume = heat;
+		}
+		realtime.temporaryAbrasion = in.getFloat();
+	}
+
+	private static DoubleArrayList readDoubleList(ByteBuffer in) {
+		int count = in.getInt();
+		if(count < 0) {
+			return null;
+		}
+		DoubleArrayList list = new DoubleArrayList(count);
+		for (int i = 0; i < count; i++) {
+			list.addDouble(in.getDouble());
+		}
+		return list;
+	}
+
+	private static IntArrayList readIntList(ByteBuffer in) {
+		int count = in.getInt();
+		if(count < 0) {
+			return null;
+		}
+		IntArrayList list = new IntArrayList(count);
+		for (int i = 0; i < count; i++) {
+			list.addInt(in.getInt());
+		}
+		return list;
+	}
+
+	private static String readString(ByteBuffer in) {
+		int length = in.getInt();
+		if(length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, UTF8);
+	}
+}
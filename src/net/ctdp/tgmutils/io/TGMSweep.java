@@ -0,0 +1,423 @@
+package net.ctdp.tgmutils.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.ctdp.tgmutils.models.NodeStore;
+import net.ctdp.tgmutils.models.TGMFile;
+import net.ctdp.tgmutils.models.TGMFile.Node.Material;
+
+/**
+ * Generates variants of one TGM file for a parameter sweep, e.g. every combination
+ * of three StaticBaseCoefficients and four tread materials.
+ * <p>
+ * A variant is created by {@link TGMFile#createVariant()}, so it shares the unchanged
+ * nodes and the [LookupData] with the base file instead of copying them.
+ * Variants are numbered from 0 to size() - 1, the last added {@link Parameter} changes fastest.
+ * writeAll() creates, writes and drops the variants concurrently, so only as many
+ * of them exist at a time as there are threads.
+ * <p>
+ * The base file must not be changed while the sweep is in use.
+ */
+public class TGMSweep {
+
+	/**
+	 * One dimension of a sweep.
+	 */
+	public interface Parameter {
+		/**
+		 * Return the number of values.
+		 * @return
+		 */
+		int size();
+
+		/**
+		 * Apply the value with the given index to the variant.
+		 * @param variant
+		 * @param index
+		 */
+		void apply(TGMFile variant, int index);
+
+		/**
+		 * Return a short description of the value with the given index, e.g. "StaticBaseCoefficient=2.4".
+		 * @param index
+		 * @return
+		 */
+		String getLabel(int index);
+	}
+
+	private final TGMFile base;
+	private final List<Parameter> parameters = new ArrayList<Parameter>();
+	private final ConcurrentLinkedQueue<TGMWriter> writers = new ConcurrentLinkedQueue<TGMWriter>();
+	private String lineSeparator = null;
+
+	/**
+	 * Create a sweep over variants of the given file.
+	 * @param base
+	 */
+	public TGMSweep(TGMFile base) {
+		this.base = base;
+	}
+
+	/**
+	 * Add a dimension to the sweep.
+	 * @param parameter
+	 * @return this sweep
+	 */
+	public TGMSweep add(Parameter parameter) {
+		if(parameter.size() < 1) {
+			throw new IllegalArgumentException("Parameter without values: " + parameter);
+		}
+		parameters.add(parameter);
+		size();
+		return this;
+	}
+
+	/**
+	 * @see TGMWriter#setLineSeparator(String)
+	 * @param lineSeparator
+	 */
+	public void setLineSeparator(String lineSeparator) {
+		this.lineSeparator = lineSeparator;
+		this.writers.clear();
+	}
+
+	/**
+	 * Return the number of variants, the product of the sizes of all parameters.
+	 * @return
+	 */
+	public int size() {
+		long size = 1;
+		for (Parameter parameter : parameters) {
+			size *= parameter.size();
+			if(size > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Too many variants: " + size);
+			}
+		}
+		return (int)size;
+	}
+
+	/**
+	 * Create the variant with the given index.
+	 * @param index
+	 * @return
+	 */
+	public TGMFile getVariant(int index) {
+		int[] values = values(index);
+		TGMFile variant = base.createVariant();
+		for (int i = 0; i < values.length; i++) {
+			parameters.get(i).apply(variant, values[i]);
+		}
+		return variant;
+	}
+
+	/**
+	 * Return the labels of the values the variant with the given index is made of.
+	 * @param index
+	 * @return
+	 */
+	public String getLabel(int index) {
+		int[] values = values(index);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if(i > 0) {
+				sb.append(", ");
+			}
+			sb.append(parameters.get(i).getLabel(values[i]));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Return the value index of each parameter for the given variant.
+	 */
+	private int[] values(int index) {
+		int size = size();
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		int[] values = new int[parameters.size()];
+		for (int i = values.length - 1; i >= 0; i--) {
+			int count = parameters.get(i).size();
+			values[i] = index % count;
+			index /= count;
+		}
+		return values;
+	}
+
+	/**
+	 * Write all variants into the given directory, using one thread per available processor.
+	 * @see #writeAll(File, String, ExecutorService)
+	 * @param dir
+	 * @param prefix
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public List<File> writeAll(File dir, String prefix) throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), size())));
+		try {
+			return writeAll(dir, prefix, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Write all variants into the given directory. The files are named by the prefix
+	 * and the index of the variant, e.g. prefix007.tgm, see getLabel() for their values.
+	 * The executor is not shut down.
+	 * @param dir
+	 * @param prefix
+	 * @param executor
+	 * @return the written files in the order of the variants
+	 * @throws IOException the first error of any variant, the remaining ones are cancelled
+	 * @throws InterruptedException
+	 */
+	public List<File> writeAll(File dir, String prefix, ExecutorService executor) throws IOException, InterruptedException {
+		int size = size();
+		int digits = Integer.toString(size - 1).length();
+		List<File> files = new ArrayList<File>(size);
+		List<Future<?>> futures = new ArrayList<Future<?>>(size);
+		for (int i = 0; i < size; i++) {
+			String number = Integer.toString(i);
+			while(number.length() < digits) {
+				number = "0" + number;
+			}
+			File file = new File(dir, prefix + number + ".tgm");
+			files.add(file);
+			futures.add(executor.submit(new WriteTask(i, file)));
+		}
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException) {
+				throw (IOException)cause;
+			} else if(cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw (Error)cause;
+		} finally {
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return files;
+	}
+
+	private TGMWriter acquireWriter() {
+		TGMWriter writer = writers.poll();
+		if(writer == null) {
+			writer = new TGMWriter();
+			if(lineSeparator != null) {
+				writer.setLineSeparator(lineSeparator);
+			}
+		}
+		return writer;
+	}
+
+	private class WriteTask implements Callable<Void> {
+		private final int index;
+		private final File file;
+
+		WriteTask(int index, File file) {
+			this.index = index;
+			this.file = file;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			TGMWriter writer = acquireWriter();
+			try {
+				writer.write(getVariant(index), file);
+			} finally {
+				// writers keep the encoded [LookupData], which all variants share
+				writers.offer(writer);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Sweep a setting of the [Realtime] or [QuasiStaticAnalysis] group over the given values,
+	 * written as in the TGM text, e.g. "2.4" or "(0.17,0.17,0.14,0.10)".
+	 * The values are parsed once like the lines of a file, so settings listing several values,
+	 * e.g. GaugePressure, get the value added instead of replaced.
+	 * @param group
+	 * @param key
+	 * @param values
+	 * @return
+	 * @throws IllegalArgumentException if the group has no such key
+	 * @throws ParsingException if a value can't be parsed
+	 */
+	public static Parameter setting(String group, String key, String... values) {
+		if(!group.equals("Realtime") && !group.equals("QuasiStaticAnalysis")) {
+			throw new IllegalArgumentException("Only [Realtime] and [QuasiStaticAnalysis] settings can be swept, got [" + group + "]");
+		}
+		return new SettingParameter(group, key, values.clone());
+	}
+
+	/**
+	 * Sweep a number of the [Realtime] group over the given values.
+	 * @param key
+	 * @param values
+	 * @return
+	 * @throws IllegalArgumentException if [Realtime] has no such key
+	 */
+	public static Parameter realtime(String key, double... values) {
+		String[] strings = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			strings[i] = Double.toString(values[i]);
+		}
+		return new SettingParameter("Realtime", key, strings);
+	}
+
+	/**
+	 * Sweep the tread materials of all nodes having any, each value replaces
+	 * their whole list of materials.
+	 * @param variants
+	 * @return
+	 */
+	public static Parameter treadMaterials(Material[]... variants) {
+		return new MaterialParameter("TreadMaterial", true, variants.clone());
+	}
+
+	/**
+	 * Sweep the bulk materials of all nodes having any, each value replaces
+	 * their whole list of materials.
+	 * @param variants
+	 * @return
+	 */
+	public static Parameter bulkMaterials(Material[]... variants) {
+		return new MaterialParameter("BulkMaterial", false, variants.clone());
+	}
+
+	private static class SettingParameter implements Parameter {
+		private final String group;
+		private final String key;
+		private final String[] values;
+		private final int id;
+		// each value parsed into a file of its own
+		private final TGMFile[] parsed;
+
+		SettingParameter(String group, String key, String[] values) {
+			this.group = group;
+			this.key = key;
+			this.values = values;
+			this.id = TGMParser.settingId(group, key);
+			if(id < 0) {
+				throw new IllegalArgumentException("Unknown setting of [" + group + "]: " + key);
+			}
+			this.parsed = new TGMFile[values.length];
+			for (int i = 0; i < values.length; i++) {
+				parsed[i] = new TGMFile();
+				parse(parsed[i], getLabel(i));
+			}
+		}
+
+		private void parse(TGMFile tgm, String line) {
+			byte[] bytes = new byte[line.length()];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte)line.charAt(i);
+			}
+			try {
+				new TGMParser(tgm, null).parse(ByteBuffer.wrap(bytes), group);
+			} catch (IOException e) {
+				// a heap buffer can't fail to read
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+
+		@Override
+		public void apply(TGMFile variant, int index) {
+			TGMParser.copySetting(id, parsed[index], variant);
+		}
+
+		@Override
+		public String getLabel(int index) {
+			return key + "=" + values[index];
+		}
+
+		@Override
+		public String toString() {
+			return "[" + group + "] " + key + Arrays.toString(values);
+		}
+	}
+
+	/**
+	 * Replaces the material ranges in the node store, the other values of the nodes are not touched.
+	 */
+	private static class MaterialParameter implements Parameter {
+		private final String key;
+		private final boolean tread;
+		private final Material[][] variants;
+
+		MaterialParameter(String key, boolean tread, Material[][] variants) {
+			this.key = key;
+			this.tread = tread;
+			this.variants = variants;
+		}
+
+		@Override
+		public int size() {
+			return variants.length;
+		}
+
+		@Override
+		public void apply(TGMFile variant, int index) {
+			NodeStore store = variant.getWritableNodeStore();
+			Material[] materials = variants[index];
+			int[] refs = new int[materials.length];
+			for (int i = 0; i < refs.length; i++) {
+				refs[i] = store.getMaterials().intern(materials[i]);
+			}
+			for (int n = 0; n < store.size(); n++) {
+				if(tread && store.getTreadMaterialCount(n) > 0) {
+					store.clearTreadMaterials(n);
+					for (int ref : refs) {
+						store.addTreadMaterial(n, ref);
+					}
+				} else if(!tread && store.getBulkMaterialCount(n) > 0) {
+					store.clearBulkMaterials(n);
+					for (int ref : refs) {
+						store.addBulkMaterial(n, ref);
+					}
+				}
+			}
+		}
+
+		@Override
+		public String getLabel(int index) {
+			StringBuilder sb = new StringBuilder(key).append('=');
+			for (int i = 0; i < variants[index].length; i++) {
+				Material m = variants[index][i];
+				sb.append(i > 0 ? "; " : "").append(m.temperature).append("K ").append(m.youngsModulo);
+			}
+			return sb.toString();
+		}
+
+		@Override
+		public String toString() {
+			return key + "[" + variants.length + "]";
+		}
+	}
+}
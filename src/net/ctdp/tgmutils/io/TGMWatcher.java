@@ -0,0 +1,453 @@
+package net.ctdp.tgmutils.io;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.ctdp.tgmutils.models.MaterialTable;
+import net.ctdp.tgmutils.models.TGMFile;
+
+/**
+ * Keeps the parsed *.tgm files of a directory tree up to date, while they are edited on disk.
+ * <p>
+ * Changes are picked up through a {@link WatchService}. A file is parsed again, once no
+ * further change to it has been seen for the debounce delay, so an editor saving in several
+ * writes causes a single parse. Parsing runs on a background thread into a new {@link TGMFile};
+ * only then a new {@link Snapshot} containing it replaces the current one. Readers therefore
+ * never wait for a parse and never see a model, which is still being filled.
+ * If a file fails to parse, e.g. because it was read in the middle of a save, its last
+ * parsed model stays in the snapshot next to the error.
+ * <p>
+ * The {@link TGMFile}s are shared by all readers and must not be modified.
+ */
+public class TGMWatcher implements Closeable {
+
+	/**
+	 * Default time to wait for further changes to a file, before it is parsed.
+	 */
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 200L;
+
+	private final Path root;
+	private final WatchService watchService;
+	private final ScheduledExecutorService executor;
+	private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+	private final Map<Path, Reparse> pending = new HashMap<Path, Reparse>();
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>(new Snapshot());
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private final TGMParser parser;
+	private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+	private Thread thread = null;
+	private volatile boolean closed = false;
+
+	/**
+	 * Create a watcher for all *.tgm files in the given directory and its sub directories.
+	 * Call {@link #start()} to load them and begin watching.
+	 * @param root
+	 * @throws IOException
+	 */
+	public TGMWatcher(Path root) throws IOException {
+		this(root, null);
+	}
+
+	/**
+	 * Create a watcher keeping the materials of all files in the given table.
+	 * @param root
+	 * @param materials
+	 * @throws IOException
+	 */
+	public TGMWatcher(Path root, MaterialTable materials) throws IOException {
+		this.root = root.toAbsolutePath();
+		this.parser = materials != null ? new TGMParser(materials) : new TGMParser();
+		this.watchService = this.root.getFileSystem().newWatchService();
+		this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonFactory("TGMWatcher-parser"));
+	}
+
+	/**
+	 * Set the time to wait for further changes to a file, before it is parsed.
+	 * @param debounceMillis
+	 */
+	public void setDebounceMillis(long debounceMillis) {
+		if(debounceMillis < 0) {
+			throw new IllegalArgumentException("debounceMillis < 0: " + debounceMillis);
+		}
+		this.debounceMillis = debounceMillis;
+	}
+
+	/**
+	 * Add a listener, which is told about every new snapshot.
+	 * @param listener
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener added before.
+	 * @param listener
+	 */
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Parse all files currently in the tree and begin watching it.
+	 * Returns after the first snapshot has been published.
+	 * @throws IOException if the tree can't be read
+	 * @throws InterruptedException
+	 */
+	public synchronized void start() throws IOException, InterruptedException {
+		if(thread != null) {
+			throw new IllegalStateException("Already started");
+		}
+		if(closed) {
+			throw new IllegalStateException("Closed");
+		}
+		final List<Path> files = register(root);
+		ScheduledFuture<?> initial = executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				for (Path file : files) {
+					reparse(file);
+				}
+			}
+		}, 0L, TimeUnit.MILLISECONDS);
+		try {
+			initial.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+
+		thread = new DaemonFactory("TGMWatcher").newThread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		});
+		thread.start();
+	}
+
+	/**
+	 * Return the current state of all files. The snapshot never changes, later changes
+	 * to the files are published in a new one.
+	 * @return
+	 */
+	public Snapshot getSnapshot() {
+		return snapshot.get();
+	}
+
+	/**
+	 * Return the last parsed model of the given file, or null if it isn't known.
+	 * @param file
+	 * @return
+	 */
+	public TGMFile get(Path file) {
+		return snapshot.get().get(file);
+	}
+
+	/**
+	 * Stop watching. The last snapshot is still available afterwards.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		executor.shutdownNow();
+		watchService.close();
+	}
+
+	private void watch() {
+		while(!closed) {
+			WatchKey key;
+			try {
+				key = watchService.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+			Path dir = keys.get(key);
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if(event.kind() == OVERFLOW || dir == null) {
+					rescan();
+					continue;
+				}
+				Path path = dir.resolve((Path)event.context());
+				if(event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+					// files may have been written before the directory was registered
+					try {
+						for (Path file : register(path)) {
+							schedule(file);
+						}
+					} catch (IOException e) {
+						// removed again meanwhile
+					}
+				} else if(isTGM(path)) {
+					schedule(path);
+				}
+			}
+			if(!key.reset()) {
+				keys.remove(key);
+				if(dir != null) {
+					// the directory is gone, so are its files
+					for (Path file : snapshot.get().getPaths()) {
+						if(file.startsWith(dir)) {
+							schedule(file);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Events got lost, so every known and every existing file is checked.
+	 */
+	private void rescan() {
+		try {
+			for (Path file : register(root)) {
+				schedule(file);
+			}
+		} catch (IOException e) {
+			// the deleted files are found below
+		}
+		for (Path file : snapshot.get().getPaths()) {
+			schedule(file);
+		}
+	}
+
+	/**
+	 * Register the directory and all its sub directories, return the files found in them.
+	 */
+	private List<Path> register(Path dir) throws IOException {
+		final List<Path> files = new ArrayList<Path>();
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+				keys.put(key, dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if(attrs.isRegularFile() && isTGM(file)) {
+					files.add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(files);
+		return files;
+	}
+
+	private void schedule(Path file) {
+		synchronized(pending) {
+			Reparse old = pending.get(file);
+			if(old != null) {
+				old.future.cancel(false);
+			}
+			Reparse task = new Reparse(file);
+			pending.put(file, task);
+			try {
+				task.future = executor.schedule(task, debounceMillis, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				// closed
+				pending.remove(file);
+			}
+		}
+	}
+
+	/**
+	 * Parse the file and publish the result, runs on the executor only.
+	 */
+	private void reparse(Path file) {
+		TGMFile tgm = null;
+		Exception error = null;
+		boolean exists = Files.isRegularFile(file);
+		if(exists) {
+			try {
+				// read completely first, so the file isn't kept open or mapped while it is parsed
+				parser.parse(ByteBuffer.wrap(Files.readAllBytes(file)));
+				tgm = parser.getTGMFile();
+			} catch (IOException | RuntimeException e) {
+				error = e;
+			} finally {
+				parser.reset();
+			}
+		}
+
+		Snapshot old = snapshot.get();
+		Snapshot next;
+		if(exists) {
+			next = new Snapshot(old, file, tgm, error);
+		} else if(old.files.containsKey(file) || old.errors.containsKey(file)) {
+			next = new Snapshot(old, file);
+		} else {
+			return;
+		}
+		snapshot.set(next);
+		for (Listener listener : listeners) {
+			listener.snapshotChanged(next);
+		}
+	}
+
+	private static boolean isTGM(Path path) {
+		Path name = path.getFileName();
+		return name != null && name.toString().toLowerCase().endsWith(".tgm");
+	}
+
+	private class Reparse implements Runnable {
+		private final Path file;
+		ScheduledFuture<?> future;
+
+		Reparse(Path file) {
+			this.file = file;
+		}
+
+		@Override
+		public void run() {
+			synchronized(pending) {
+				if(pending.get(file) == this) {
+					pending.remove(file);
+				}
+			}
+			reparse(file);
+		}
+	}
+
+	private static class DaemonFactory implements ThreadFactory {
+		private final String name;
+
+		DaemonFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, name);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	/**
+	 * Is told about every new snapshot, on the thread which parsed the file.
+	 */
+	public interface Listener {
+		void snapshotChanged(Snapshot snapshot);
+	}
+
+	/**
+	 * The parsed files at one point in time. A snapshot is never changed.
+	 */
+	public static class Snapshot {
+		private final Map<Path, TGMFile> files;
+		private final Map<Path, Exception> errors;
+		private final long generation;
+
+		Snapshot() {
+			this.files = Collections.emptyMap();
+			this.errors = Collections.emptyMap();
+			this.generation = 0L;
+		}
+
+		/**
+		 * The old snapshot with a newly parsed file.
+		 */
+		Snapshot(Snapshot old, Path file, TGMFile tgm, Exception error) {
+			Map<Path, TGMFile> files = new HashMap<Path, TGMFile>(old.files);
+			Map<Path, Exception> errors = new HashMap<Path, Exception>(old.errors);
+			if(tgm != null) {
+				files.put(file, tgm);
+				errors.remove(file);
+			} else {
+				errors.put(file, error);
+			}
+			this.files = Collections.unmodifiableMap(files);
+			this.errors = Collections.unmodifiableMap(errors);
+			this.generation = old.generation + 1;
+		}
+
+		/**
+		 * The old snapshot without a deleted file.
+		 */
+		Snapshot(Snapshot old, Path file) {
+			Map<Path, TGMFile> files = new HashMap<Path, TGMFile>(old.files);
+			Map<Path, Exception> errors = new HashMap<Path, Exception>(old.errors);
+			files.remove(file);
+			errors.remove(file);
+			this.files = Collections.unmodifiableMap(files);
+			this.errors = Collections.unmodifiableMap(errors);
+			this.generation = old.generation + 1;
+		}
+
+		/**
+		 * Return the last successfully parsed model of every file by its absolute path.
+		 * @return
+		 */
+		public Map<Path, TGMFile> getFiles() {
+			return files;
+		}
+
+		/**
+		 * Return the exception of each file, which failed to parse at its last change.
+		 * @return
+		 */
+		public Map<Path, Exception> getErrors() {
+			return errors;
+		}
+
+		/**
+		 * Return the model of the given file, or null if it isn't known.
+		 * @param file
+		 * @return
+		 */
+		public TGMFile get(Path file) {
+			return files.get(file.toAbsolutePath());
+		}
+
+		/**
+		 * Return a number, which is increased with every new snapshot.
+		 * @return
+		 */
+		public long getGeneration() {
+			return generation;
+		}
+
+		List<Path> getPaths() {
+			List<Path> paths = new ArrayList<Path>(files.keySet());
+			for (Path file : errors.keySet()) {
+				if(!files.containsKey(file)) {
+					paths.add(file);
+				}
+			}
+			return paths;
+		}
+	}
+}
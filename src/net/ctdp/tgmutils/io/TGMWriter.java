@@ -0,0 +1,511 @@
+package net.ctdp.tgmutils.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import net.ctdp.tgmutils.models.MaterialTable;
+import net.ctdp.tgmutils.models.NodeStore;
+import net.ctdp.tgmutils.models.TGMFile;
+import net.ctdp.tgmutils.models.TGMFile.LookupData;
+import net.ctdp.tgmutils.models.TGMFile.QuasiStaticAnalysis;
+import net.ctdp.tgmutils.models.TGMFile.Realtime;
+import net.ctdp.tgmutils.util.DoubleArrayList;
+import net.ctdp.tgmutils.util.IntIntMap;
+
+/**
+ * Writes a {@link TGMFile} back as TGM text.
+ * <p>
+ * Numbers are formatted straight into a reusable byte buffer, which is flushed to the channel
+ * when full. A double is written with the fewest fraction digits, which the {@link TupleScanner}
+ * reads back as the very same double, e.g. <code>2.35</code> for the value parsed from
+ * <code>2.350</code>. Values without such a short form, like <code>0.17500000000000002</code>,
+ * are written by {@link Double#toString(double)}. So every number of a written file parses
+ * back bit for bit.
+ * <p>
+ * The encoded [LookupData] section is kept by the writer and copied as is into the next file,
+ * as long as the {@link LookupData} didn't change, so writing many variants of one tyre only
+ * formats their other sections.
+ * <p>
+ * Comments and the order of unknown keys of the parsed file are not part of the model
+ * and therefore not written. A writer is not thread safe.
+ */
+public class TGMWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/**
+	 * Largest mantissa, which is exactly representable as double or float.
+	 */
+	private static final double MAX_EXACT_DOUBLE = 1L << 53;
+	private static final float MAX_EXACT_FLOAT = 1 << 24;
+	// the same powers as the TupleScanner uses, so a number is read back by the same division
+	private static final double[] DOUBLE_POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	private static final float[] FLOAT_POWERS_OF_TEN = {
+		1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+	};
+	private static final byte[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final byte[] digits = new byte[20];
+	private byte[] lineSeparator = { '\r', '\n' };
+	private WritableByteChannel channel;
+
+	// the last encoded [LookupData] section
+	private LookupData cachedLookupData = null;
+	private int cachedModCount;
+	private ByteBuffer cachedSection = null;
+
+	/**
+	 * Set the line separator, by default CRLF like the files written by rFactor's tools.
+	 * @param lineSeparator
+	 */
+	public void setLineSeparator(String lineSeparator) {
+		byte[] bytes = new byte[lineSeparator.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte)lineSeparator.charAt(i);
+		}
+		this.lineSeparator = bytes;
+		this.cachedLookupData = null;
+		this.cachedSection = null;
+	}
+
+	/**
+	 * Write the file.
+	 * @param tgm
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(TGMFile tgm, File file) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			write(tgm, out.getChannel());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write the file to the channel, which is not closed.
+	 * @param tgm
+	 * @param channel
+	 * @throws IOException
+	 */
+	public void write(TGMFile tgm, WritableByteChannel channel) throws IOException {
+		this.channel = channel;
+		buffer.clear();
+		try {
+			writeQuasiStaticAnalysis(tgm.getQuasiStaticAnalysis());
+			writeNodes(tgm.getNodeStore());
+			writeRealtime(tgm.getRealtime());
+			writeLookupData(tgm.getLookupData());
+			flush();
+		} finally {
+			this.channel = null;
+		}
+	}
+
+	/**
+	 * Return the text of the file.
+	 * @param tgm
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] toByteArray(TGMFile tgm) throws IOException {
+		final ByteArrayChannel out = new ByteArrayChannel();
+		write(tgm, out);
+		return out.toByteArray();
+	}
+
+	private void writeQuasiStaticAnalysis(QuasiStaticAnalysis qsa) throws IOException {
+		group("QuasiStaticAnalysis");
+		key("NumLayers").putInt(qsa.numLayers).newLine();
+		key("NumSections").putInt(qsa.numSections).newLine();
+		key("RimVolume").putDouble(qsa.rimVolume).newLine();
+		key("RealtimeCamberLimit").putInt(qsa.realtimeCamberLimit).newLine();
+		for (int i = 0; i < qsa.gaugePressures.size(); i++) {
+			key("GaugePressure").putInt(qsa.gaugePressures.getInt(i)).newLine();
+		}
+		for (int i = 0; i < qsa.carcassTemperatures.size(); i++) {
+			key("CarcassTemperature").putDouble(qsa.carcassTemperatures.getDouble(i)).newLine();
+		}
+		for (int i = 0; i < qsa.rotationSquareds.size(); i++) {
+			key("RotationSquared").putInt(qsa.rotationSquareds.getInt(i)).newLine();
+		}
+		key("NumNodes").putInt(qsa.numNodes).newLine();
+		key("VolumeLoad").putInt(qsa.volumeLoad).newLine();
+		key("LoadCamber").putInt(qsa.loadCamber).newLine();
+		key("LoadInclination").putInt(qsa.loadInclination).newLine();
+		key("LoadDeflection").putInt(qsa.loadDeflection).newLine();
+		key("TotalMass").putDouble(qsa.totalMass).newLine();
+		tuple("TotalInertiaStandard", qsa.totalInertiaStandards);
+		key("RingMass").putDouble(qsa.ringMass).newLine();
+		tuple("RingInertiaStandard", qsa.ringInertiaStandards);
+	}
+
+	private void writeNodes(NodeStore nodes) throws IOException {
+		MaterialTable materials = nodes.getMaterials();
+		for (int n = 0; n < nodes.size(); n++) {
+			newLine();
+			ensure(32);
+			put("[Node] // ").putInt(n).newLine();
+			if(nodes.hasGeometry(n)) {
+				key("Geometry").put('(').putDouble(nodes.getX(n)).put(',').putDouble(nodes.getY(n))
+						.put(',').putDouble(nodes.getThickness(n)).put(')').newLine();
+			}
+			for (int i = 0; i < nodes.getBulkMaterialCount(n); i++) {
+				material("BulkMaterial", materials, nodes.getBulkMaterial(n, i));
+			}
+			if(nodes.hasAnisoCarcassConductivityMult(n)) {
+				key("AnisoCarcassConductivityMult").put('(').putDouble(nodes.getAnisoX(n)).put(',').putDouble(nodes.getAnisoY(n))
+						.put(',').putDouble(nodes.getAnisoZ(n)).put(')').newLine();
+			}
+			key("TreadDepth").putDouble(nodes.getTreadDepth(n)).newLine();
+			for (int i = 0; i < nodes.getTreadMaterialCount(n); i++) {
+				material("TreadMaterial", materials, nodes.getTreadMaterial(n, i));
+			}
+			if(nodes.hasRingAndRim(n)) {
+				key("RingAndRim").put('(');
+				for (int i = 0; i < nodes.getRingAndRimCount(n); i++) {
+					if(i > 0) {
+						put(',');
+					}
+					putDouble(nodes.getRingAndRim(n, i));
+				}
+				put(')').newLine();
+			}
+			for (int p = 0; p < nodes.getPlyCount(n); p++) {
+				int ply = nodes.getPly(n, p);
+				key("PlyParams").put('(').putInt(nodes.getPlyAngle(ply)).put(',').putDouble(nodes.getPlyThickness(ply))
+						.put(',').putInt(nodes.getPlyConnectFlag(ply)).put(')').newLine();
+				for (int i = 0; i < nodes.getPlyMaterialCount(ply); i++) {
+					material("PlyMaterial", materials, nodes.getPlyMaterial(ply, i));
+				}
+			}
+		}
+	}
+
+	private void material(String key, MaterialTable materials, int material) throws IOException {
+		key(key).put('(').putDouble(materials.getTemperature(material))
+				.put(',').putDouble(materials.getDensity(material))
+				.put(',').putLong(materials.getYoungsModulo(material))
+				.put(',').putDouble(materials.getPoissonsRatio(material))
+				.put(',').putDouble(materials.getDampingFactor(material))
+				.put(',').putInt(materials.getSpecificHeat(material))
+				.put(',').putDouble(materials.getThermalConductivity(material))
+				.put(')').newLine();
+	}
+
+	private void writeRealtime(Realtime realtime) throws IOException {
+		newLine();
+		group("Realtime");
+		key("StaticBaseCoefficient").putDouble(realtime.staticBaseCoefficient).newLine();
+		key("SlidingBaseCoefficient").putDouble(realtime.slidingBaseCoefficient).newLine();
+		tuple("TemporaryBristleSpring", realtime.temporaryBristleSpring);
+		tuple("TemporaryBristleDamper", realtime.temporaryBristleDamper);
+		key("MarbleEffectOnEffectiveLoad").putDouble(realtime.marbleEffectOnEffectiveLoad).newLine();
+		key("TerrainWeightOnContactTemperature").putDouble(realtime.terrainWeightOnContactTemperature).newLine();
+		tuple("WLFParameters", realtime.wLFParameters);
+		key("StaticRoughnessEffect").putDouble(realtime.staticRoughnessEffect).newLine();
+		tuple("GrooveEffects", realtime.grooveEffects);
+		tuple("DampnessEffects", realtime.dampnessEffects);
+		tuple("StaticCurve", realtime.staticCurve);
+		tuple("SlidingAdhesionCurve", realtime.slidingAdhesionCurve);
+		tuple("SlidingMicroDeformationCurve", realtime.slidingMicroDeformationCurve);
+		tuple("SlidingMacroDeformationCurve", realtime.slidingMacroDeformationCurve);
+		tuple("RubberPressureSensitivityPower", realtime.rubberPressureSensitivityPower);
+		tuple("SizeMultiplier", realtime.sizeMultiplier);
+		key("ThermalDepthAtSurface").putDouble(realtime.thermalDepthAtSurface).newLine();
+		key("ThermalDepthBelowSurface").putDouble(realtime.thermalDepthBelowSurface).newLine();
+		key("BristleLength").putDouble(realtime.bristleLength).newLine();
+		tuple("InternalGasHeatTransfer", realtime.internalGasHeatTransfer);
+		tuple("ExternalGasHeatTransfer", realtime.externalGasHeatTransfer);
+		tuple("GroundContactConductance", realtime.groundContactConductance);
+		key("TireRadiationEmissivity").putDouble(realtime.tireRadiationEmissivity).newLine();
+		IntIntMap heat = realtime.internalGasSpecificHeatAtConstantVolume;
+		for (int i = 0; i < heat.size(); i++) {
+			key("InternalGasSpecificHeatAtConstantVolume").put('(').putInt(heat.keyAt(i)).put(',').putInt(heat.valueAt(i)).put(')').newLine();
+		}
+		key("TemporaryAbrasion").putFloat(realtime.temporaryAbrasion).newLine();
+	}
+
+	private void writeLookupData(LookupData lookupData) throws IOException {
+		if(lookupData.getVersion() == null && lookupData.getBinCount() == 0 && lookupData.getChecksum() == 0) {
+			return;
+		}
+		newLine();
+		if(lookupData != cachedLookupData || lookupData.getModCount() != cachedModCount) {
+			cachedSection = encodeLookupData(lookupData);
+			cachedLookupData = lookupData;
+			cachedModCount = lookupData.getModCount();
+		}
+		// the section is handed to the channel without copying it into the buffer
+		flush();
+		ByteBuffer section = cachedSection.duplicate();
+		while(section.hasRemaining()) {
+			channel.write(section);
+		}
+	}
+
+	private ByteBuffer encodeLookupData(LookupData lookupData) {
+		int binCount = lookupData.getBinCount();
+		String version = lookupData.getVersion();
+		int binLine = 4 + LookupData.BIN_SIZE * 2 + lineSeparator.length;
+		ByteBuffer section = ByteBuffer.allocate(64 + (version != null ? version.length() : 0) + binCount * binLine);
+
+		put(section, "[LookupData]");
+		section.put(lineSeparator);
+		if(version != null) {
+			put(section, "Version=");
+			put(section, version);
+			section.put(lineSeparator);
+		}
+		ByteBuffer bins = lookupData.asByteBuffer();
+		for (int bin = 0; bin < binCount; bin++) {
+			put(section, "Bin=");
+			int offset = bin * LookupData.BIN_SIZE;
+			for (int i = 0; i < LookupData.BIN_SIZE; i++) {
+				int b = bins.get(offset + i) & 0xff;
+				section.put(HEX_DIGITS[b >>> 4]);
+				section.put(HEX_DIGITS[b & 0xf]);
+			}
+			section.put(lineSeparator);
+		}
+		put(section, "Checksum=");
+		put(section, Integer.toString(lookupData.getChecksum()));
+		section.put(lineSeparator);
+		section.flip();
+		return section;
+	}
+
+	private static void put(ByteBuffer dst, String ascii) {
+		for (int i = 0; i < ascii.length(); i++) {
+			dst.put((byte)ascii.charAt(i));
+		}
+	}
+
+	// low level output, every method makes sure there is room for what it writes
+
+	private void group(String name) throws IOException {
+		ensure(name.length() + 2 + lineSeparator.length);
+		put('[').put(name).put(']').newLine();
+	}
+
+	private TGMWriter key(String key) throws IOException {
+		ensure(key.length() + 64);
+		return put(key).put('=');
+	}
+
+	private void tuple(String key, DoubleArrayList values) throws IOException {
+		if(values == null || values.isEmpty()) {
+			return;
+		}
+		key(key).put('(');
+		for (int i = 0; i < values.size(); i++) {
+			if(i > 0) {
+				put(',');
+			}
+			putDouble(values.getDouble(i));
+		}
+		put(')').newLine();
+	}
+
+	private TGMWriter newLine() throws IOException {
+		ensure(lineSeparator.length);
+		buffer.put(lineSeparator);
+		return this;
+	}
+
+	private TGMWriter put(char ch) throws IOException {
+		ensure(1);
+		buffer.put((byte)ch);
+		return this;
+	}
+
+	private TGMWriter put(String ascii) throws IOException {
+		ensure(ascii.length());
+		for (int i = 0; i < ascii.length(); i++) {
+			buffer.put((byte)ascii.charAt(i));
+		}
+		return this;
+	}
+
+	private TGMWriter putInt(int value) throws IOException {
+		return putLong(value);
+	}
+
+	private TGMWriter putLong(long value) throws IOException {
+		ensure(20);
+		if(value == Long.MIN_VALUE) {
+			return put(Long.toString(value));
+		}
+		if(value < 0) {
+			buffer.put((byte)'-');
+			value = -value;
+		}
+		putDigits(value);
+		return this;
+	}
+
+	private void putDigits(long value) {
+		int i = digits.length;
+		do {
+			digits[--i] = (byte)('0' + value % 10);
+			value /= 10;
+		} while(value != 0);
+		buffer.put(digits, i, digits.length - i);
+	}
+
+	/**
+	 * Write the mantissa with the given number of fraction digits, e.g. 235 and 2 as 2.35.
+	 * Small numbers with six or more zeros behind the point and negative fraction digits
+	 * are written with an exponent like 1e-10 and 1e20.
+	 */
+	private void putDecimal(long mantissa, int fractionDigits) {
+		int i = digits.length;
+		long value = mantissa;
+		do {
+			digits[--i] = (byte)('0' + value % 10);
+			value /= 10;
+		} while(value != 0);
+		int count = digits.length - i;
+
+		if(fractionDigits == 0) {
+			buffer.put(digits, i, count);
+		} else if(fractionDigits < 0) {
+			buffer.put(digits, i, count);
+			buffer.put((byte)'e');
+			putDigits(-fractionDigits);
+		} else if(count > fractionDigits) {
+			buffer.put(digits, i, count - fractionDigits);
+			buffer.put((byte)'.');
+			buffer.put(digits, i + count - fractionDigits, fractionDigits);
+		} else if(fractionDigits - count >= 6) {
+			buffer.put(digits, i, count);
+			buffer.put((byte)'e');
+			buffer.put((byte)'-');
+			putDigits(fractionDigits);
+		} else {
+			buffer.put((byte)'0');
+			buffer.put((byte)'.');
+			for (int z = count; z < fractionDigits; z++) {
+				buffer.put((byte)'0');
+			}
+			buffer.put(digits, i, count);
+		}
+	}
+
+	private TGMWriter putDouble(double value) throws IOException {
+		ensure(32);
+		if(value == 0.0) {
+			return put(1.0 / value < 0 ? "-0" : "0");
+		}
+		double abs = Math.abs(value);
+		if(abs < MAX_EXACT_DOUBLE) {
+			// the fewest fraction digits, which give the value back by the TupleScanner's division
+			for (int k = 0; k < DOUBLE_POWERS_OF_TEN.length; k++) {
+				double scaled = abs * DOUBLE_POWERS_OF_TEN[k];
+				if(scaled >= MAX_EXACT_DOUBLE) {
+					break;
+				}
+				double mantissa = Math.rint(scaled);
+				if(mantissa != 0.0 && mantissa / DOUBLE_POWERS_OF_TEN[k] == abs) {
+					if(value < 0) {
+						buffer.put((byte)'-');
+					}
+					putDecimal((long)mantissa, k);
+					return this;
+				}
+			}
+		} else if(abs <= MAX_EXACT_DOUBLE * DOUBLE_POWERS_OF_TEN[DOUBLE_POWERS_OF_TEN.length - 1]) {
+			// large numbers like 1e20 are read by a multiplication, the largest exponent gives the fewest digits
+			for (int k = DOUBLE_POWERS_OF_TEN.length - 1; k > 0; k--) {
+				double mantissa = Math.rint(abs / DOUBLE_POWERS_OF_TEN[k]);
+				if(mantissa != 0.0 && mantissa <= MAX_EXACT_DOUBLE && mantissa * DOUBLE_POWERS_OF_TEN[k] == abs) {
+					if(value < 0) {
+						buffer.put((byte)'-');
+					}
+					putDecimal((long)mantissa, -k);
+					return this;
+				}
+			}
+		}
+		return put(Double.toString(value));
+	}
+
+	private TGMWriter putFloat(float value) throws IOException {
+		ensure(32);
+		if(value == 0.0f) {
+			return put(1.0f / value < 0 ? "-0" : "0");
+		}
+		float abs = Math.abs(value);
+		if(abs < MAX_EXACT_FLOAT) {
+			for (int k = 0; k < FLOAT_POWERS_OF_TEN.length; k++) {
+				float scaled = abs * FLOAT_POWERS_OF_TEN[k];
+				if(scaled >= MAX_EXACT_FLOAT) {
+					break;
+				}
+				float mantissa = (float)Math.rint(scaled);
+				if(mantissa != 0.0f && mantissa / FLOAT_POWERS_OF_TEN[k] == abs) {
+					if(value < 0) {
+						buffer.put((byte)'-');
+					}
+					putDecimal((long)mantissa, k);
+					return this;
+				}
+			}
+		}
+		return put(Float.toString(value));
+	}
+
+	private void ensure(int length) throws IOException {
+		if(buffer.remaining() < length) {
+			flush();
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Collects the written bytes for toByteArray().
+	 */
+	private static class ByteArrayChannel implements WritableByteChannel {
+		private byte[] bytes = new byte[BUFFER_SIZE];
+		private int length = 0;
+
+		@Override
+		public int write(ByteBuffer src) {
+			int n = src.remaining();
+			if(length + n > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(length + n, bytes.length * 2));
+			}
+			src.get(bytes, length, n);
+			length += n;
+			return n;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(bytes, length);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
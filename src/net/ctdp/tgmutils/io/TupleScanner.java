@@ -0,0 +1,329 @@
+package net.ctdp.tgmutils.io;
+
+/**
+ * Scans comma separated numbers of a TGM value like <code>(24000.0, 12500.0, 31500.0)</code>
+ * into primitives, without splitting the value into Strings or boxing the numbers.
+ * The scanner works on any {@link CharSequence}, so it reads Strings as well as
+ * {@link AsciiSequence}s straight from a mapped file. An instance is meant to be reused
+ * with {@link #reset(CharSequence)} for every value.
+ * <p>
+ * Numbers whose digits fit into the 53 bit mantissa of a double and which have a small
+ * exponent, which covers nearly all values in TGM files, are converted exactly with a
+ * single multiplication or division.
+ * Everything else (e.g. <code>0.17500000000000002</code>, Infinity, hex floats) is
+ * handed to the JDK, so results are always identical to {@link Double#parseDouble(String)},
+ * {@link Float#parseFloat(String)}, {@link Integer#parseInt(String)} and {@link Long#parseLong(String)}.
+ */
+public final class TupleScanner {
+
+	/**
+	 * Largest mantissa, which is exactly representable as double.
+	 */
+	private static final long MAX_EXACT_DOUBLE = 1L << 53;
+	private static final long MAX_EXACT_FLOAT = 1L << 24;
+
+	private static final double[] DOUBLE_POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	private static final float[] FLOAT_POWERS_OF_TEN = {
+		1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+	};
+
+	private CharSequence seq;
+	private int pos;
+	private int end;
+
+	// result of the last call to scanDecimal()
+	private boolean negative;
+	private long mantissa;
+	private int exponent;
+
+	/**
+	 * Start scanning the given value.
+	 * @param value a tuple in parentheses or a single number
+	 * @return this
+	 */
+	public TupleScanner reset(CharSequence value) {
+		return reset(value, 0, value.length());
+	}
+
+	/**
+	 * Start scanning the given range of the value.
+	 * Whitespace and the enclosing parentheses are optional.
+	 * @param value
+	 * @param start
+	 * @param end
+	 * @return this
+	 */
+	public TupleScanner reset(CharSequence value, int start, int end) {
+		this.seq = value;
+		while(start < end && value.charAt(start) <= ' ') {
+			start++;
+		}
+		while(end > start && value.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if(start < end && value.charAt(start) == '(') {
+			start++;
+		}
+		if(end > start && value.charAt(end - 1) == ')') {
+			end--;
+		}
+		this.pos = start;
+		this.end = end;
+		return this;
+	}
+
+	/**
+	 * Return true, if there is another number to read.
+	 * @return
+	 */
+	public boolean hasNext() {
+		while(pos < end && seq.charAt(pos) <= ' ') {
+			pos++;
+		}
+		return pos < end;
+	}
+
+	/**
+	 * Count the numbers left to read, without reading them.
+	 * @return
+	 */
+	public int remaining() {
+		if(!hasNext()) {
+			return 0;
+		}
+		int count = 1;
+		for (int i = pos; i < end; i++) {
+			if(seq.charAt(i) == ',') {
+				count++;
+			}
+		}
+		// a trailing comma doesn't start another value
+		int last = end - 1;
+		while(last > pos && seq.charAt(last) <= ' ') {
+			last--;
+		}
+		if(seq.charAt(last) == ',') {
+			count--;
+		}
+		return count;
+	}
+
+	/**
+	 * Find the end of the next token and move the position behind its separator.
+	 * @return the index behind the token's last non-whitespace char
+	 */
+	private int nextToken() {
+		if(!hasNext()) {
+			throw new NumberFormatException("No more values in \"" + seq + "\"");
+		}
+		int tokenEnd = pos;
+		while(tokenEnd < end && seq.charAt(tokenEnd) != ',') {
+			tokenEnd++;
+		}
+		int next = tokenEnd < end ? tokenEnd + 1 : end;
+		while(tokenEnd > pos && seq.charAt(tokenEnd - 1) <= ' ') {
+			tokenEnd--;
+		}
+		pos = next;
+		return tokenEnd;
+	}
+
+	/**
+	 * Scan [start, end) as plain decimal number into negative, mantissa and exponent.
+	 * @return false, if the token has to be parsed by the JDK
+	 */
+	private boolean scanDecimal(int start, int end, boolean allowFraction) {
+		int i = start;
+		negative = false;
+		mantissa = 0;
+		exponent = 0;
+		if(i < end) {
+			char ch = seq.charAt(i);
+			if(ch == '-' || ch == '+') {
+				negative = ch == '-';
+				i++;
+			}
+		}
+
+		int digits = 0;
+		int significantDigits = 0;
+		char ch = 0;
+		while(i < end && (ch = seq.charAt(i)) >= '0' && ch <= '9') {
+			mantissa = mantissa * 10 + (ch - '0');
+			if(mantissa != 0) {
+				significantDigits++;
+			}
+			digits++;
+			i++;
+		}
+		if(allowFraction && i < end && ch == '.') {
+			i++;
+			while(i < end && (ch = seq.charAt(i)) >= '0' && ch <= '9') {
+				mantissa = mantissa * 10 + (ch - '0');
+				if(mantissa != 0) {
+					significantDigits++;
+				}
+				exponent--;
+				digits++;
+				i++;
+			}
+		}
+		if(digits == 0 || significantDigits > 18) {
+			return false;
+		}
+		if(allowFraction && i < end && (ch == 'e' || ch == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if(i < end && ((ch = seq.charAt(i)) == '-' || ch == '+')) {
+				negativeExponent = ch == '-';
+				i++;
+			}
+			int expDigits = 0;
+			int exp = 0;
+			while(i < end && (ch = seq.charAt(i)) >= '0' && ch <= '9') {
+				exp = exp * 10 + (ch - '0');
+				expDigits++;
+				i++;
+			}
+			if(expDigits == 0 || expDigits > 4) {
+				return false;
+			}
+			exponent += negativeExponent ? -exp : exp;
+		}
+		return i == end;
+	}
+
+	private String token(int start, int end) {
+		return seq.subSequence(start, end).toString();
+	}
+
+	/**
+	 * Read the next number as double.
+	 * @return
+	 * @throws NumberFormatException
+	 */
+	public double nextDouble() {
+		int start = pos;
+		int end = nextToken();
+		if(scanDecimal(start, end, true)) {
+			if(mantissa == 0) {
+				return negative ? -0.0 : 0.0;
+			}
+			if(mantissa <= MAX_EXACT_DOUBLE && exponent >= -22 && exponent <= 22) {
+				double value = exponent >= 0
+						? mantissa * DOUBLE_POWERS_OF_TEN[exponent]
+						: mantissa / DOUBLE_POWERS_OF_TEN[-exponent];
+				return negative ? -value : value;
+			}
+		}
+		return Double.parseDouble(token(start, end));
+	}
+
+	/**
+	 * Read the next number as float, rounded directly from the decimal like {@link Float#parseFloat(String)}.
+	 * @return
+	 * @throws NumberFormatException
+	 */
+	public float nextFloat() {
+		int start = pos;
+		int end = nextToken();
+		if(scanDecimal(start, end, true)) {
+			if(mantissa == 0) {
+				return negative ? -0.0f : 0.0f;
+			}
+			if(mantissa <= MAX_EXACT_FLOAT && exponent >= -10 && exponent <= 10) {
+				float value = exponent >= 0
+						? mantissa * FLOAT_POWERS_OF_TEN[exponent]
+						: mantissa / FLOAT_POWERS_OF_TEN[-exponent];
+				return negative ? -value : value;
+			}
+		}
+		return Float.parseFloat(token(start, end));
+	}
+
+	/**
+	 * Read the next number as long.
+	 * @return
+	 * @throws NumberFormatException
+	 */
+	public long nextLong() {
+		int start = pos;
+		int end = nextToken();
+		if(scanDecimal(start, end, false)) {
+			return negative ? -mantissa : mantissa;
+		}
+		return Long.parseLong(token(start, end));
+	}
+
+	/**
+	 * Read the next number as int.
+	 * @return
+	 * @throws NumberFormatException
+	 */
+	public int nextInt() {
+		int start = pos;
+		int end = nextToken();
+		if(scanDecimal(start, end, false)) {
+			long value = negative ? -mantissa : mantissa;
+			if(value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+				return (int)value;
+			}
+		}
+		return Integer.parseInt(token(start, end));
+	}
+
+	/**
+	 * Read all remaining numbers into dst.
+	 * @param dst
+	 * @param offset
+	 * @return the number of values read
+	 * @throws NumberFormatException
+	 * @throws ArrayIndexOutOfBoundsException if dst is too small
+	 */
+	public int nextDoubles(double[] dst, int offset) {
+		int count = 0;
+		while(hasNext()) {
+			dst[offset + count++] = nextDouble();
+		}
+		return count;
+	}
+
+	/**
+	 * Read all remaining numbers into dst.
+	 * @param dst
+	 * @param offset
+	 * @return the number of values read
+	 * @throws NumberFormatException
+	 * @throws ArrayIndexOutOfBoundsException if dst is too small
+	 */
+	public int nextInts(int[] dst, int offset) {
+		int count = 0;
+		while(hasNext()) {
+			dst[offset + count++] = nextInt();
+		}
+		return count;
+	}
+
+	/**
+	 * Read all remaining numbers into a new array.
+	 * @return
+	 */
+	public double[] toDoubleArray() {
+		double[] values = new double[remaining()];
+		nextDoubles(values, 0);
+		return values;
+	}
+
+	/**
+	 * Read all remaining numbers into a new array.
+	 * @return
+	 */
+	public int[] toIntArray() {
+		int[] values = new int[remaining()];
+		nextInts(values, 0);
+		return values;
+	}
+}
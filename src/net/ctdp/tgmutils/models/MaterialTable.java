@@ -0,0 +1,297 @@
+package net.ctdp.tgmutils.models;
+
+import java.util.Arrays;
+
+import net.ctdp.tgmutils.models.TGMFile.Node.Material;
+
+/**
+ * Column store of distinct {@link Material} tuples.
+ * Identical tuples are stored once and nodes reference them by index.
+ * {@link #getMaterial(int)} hands out a new {@link Material} object holding the values of a tuple.
+ * <p>
+ * A table can be shared by many files, e.g. all tyres of a car catalogue, see
+ * {@link #getShared()}. {@link #intern(Material)} is synchronized and the values of an
+ * index never change, so parsers in several threads can fill the same table.
+ * Readers go through an immutable snapshot of the columns, which is replaced after every
+ * new material, so they don't need to lock.
+ */
+public class MaterialTable {
+
+	private static MaterialTable shared;
+
+	private int size;
+	private double[] temperature = new double[16];
+	private double[] density = new double[16];
+	private long[] youngsModulo = new long[16];
+	private double[] poissonsRatio = new double[16];
+	private double[] dampingFactor = new double[16];
+	private int[] specificHeat = new int[16];
+	private double[] thermalConductivity = new double[16];
+
+	/**
+	 * Open addressing hash table of material index + 1, 0 marks a free slot.
+	 */
+	private int[] slots = new int[32];
+
+	/**
+	 * The columns up to size, as seen by the readers. Written under the lock after the columns.
+	 */
+	private volatile Columns columns = new Columns(this);
+
+	private long requestCount;
+	private long hitCount;
+
+	/**
+	 * Return the process wide table, which can be passed to every parser
+	 * to deduplicate materials across all loaded files.
+	 * @return
+	 */
+	public static synchronized MaterialTable getShared() {
+		if(shared == null) {
+			shared = new MaterialTable();
+		}
+		return shared;
+	}
+
+	/**
+	 * Return the index of the given material tuple, adding it if it is not yet contained.
+	 * @param temperature
+	 * @param density
+	 * @param youngsModulo
+	 * @param poissonsRatio
+	 * @param dampingFactor
+	 * @param specificHeat
+	 * @param thermalConductivity
+	 * @return
+	 */
+	public synchronized int intern(double temperature, double density, long youngsModulo, double poissonsRatio,
+			double dampingFactor, int specificHeat, double thermalConductivity) {
+		requestCount++;
+		int hash = hash(temperature, density, youngsModulo, poissonsRatio, dampingFactor, specificHeat, thermalConductivity);
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		int ref;
+		while((ref = slots[slot]) != 0) {
+			int m = ref - 1;
+			if(same(this.temperature[m], temperature) && same(this.density[m], density)
+					&& this.youngsModulo[m] == youngsModulo && same(this.poissonsRatio[m], poissonsRatio)
+					&& same(this.dampingFactor[m], dampingFactor) && this.specificHeat[m] == specificHeat
+					&& same(this.thermalConductivity[m], thermalConductivity)) {
+				hitCount++;
+				return m;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int m = size;
+		if(m == this.temperature.length) {
+			grow();
+		}
+		this.temperature[m] = temperature;
+		this.density[m] = density;
+		this.youngsModulo[m] = youngsModulo;
+		this.poissonsRatio[m] = poissonsRatio;
+		this.dampingFactor[m] = dampingFactor;
+		this.specificHeat[m] = specificHeat;
+		this.thermalConductivity[m] = thermalConductivity;
+		size++;
+		columns = new Columns(this);
+
+		if(size * 2 > slots.length) {
+			rehash(slots.length * 2);
+		} else {
+			slots[slot] = m + 1;
+		}
+		return m;
+	}
+
+	/**
+	 * Return the index of the given material, adding it if it is not yet contained.
+	 * @param material
+	 * @return
+	 */
+	public int intern(Material material) {
+		return intern(material.temperature, material.density, material.youngsModulo, material.poissonsRatio,
+				material.dampingFactor, material.specificHeat, material.thermalConductivity);
+	}
+
+	private static boolean same(double a, double b) {
+		return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+	}
+
+	private static int hash(double temperature, double density, long youngsModulo, double poissonsRatio,
+			double dampingFactor, int specificHeat, double thermalConductivity) {
+		long h = Double.doubleToLongBits(temperature);
+		h = h * 31 + Double.doubleToLongBits(density);
+		h = h * 31 + youngsModulo;
+		h = h * 31 + Double.doubleToLongBits(poissonsRatio);
+		h = h * 31 + Double.doubleToLongBits(dampingFactor);
+		h = h * 31 + specificHeat;
+		h = h * 31 + Double.doubleToLongBits(thermalConductivity);
+		h ^= (h >>> 32);
+		int hash = (int)h;
+		return hash ^ (hash >>> 16);
+	}
+
+	private void grow() {
+		int capacity = temperature.length * 2;
+		temperature = Arrays.copyOf(temperature, capacity);
+		density = Arrays.copyOf(density, capacity);
+		youngsModulo = Arrays.copyOf(youngsModulo, capacity);
+		poissonsRatio = Arrays.copyOf(poissonsRatio, capacity);
+		dampingFactor = Arrays.copyOf(dampingFactor, capacity);
+		specificHeat = Arrays.copyOf(specificHeat, capacity);
+		thermalConductivity = Arrays.copyOf(thermalConductivity, capacity);
+	}
+
+	private void rehash(int capacity) {
+		slots = new int[capacity];
+		int mask = capacity - 1;
+		for (int m = 0; m < size; m++) {
+			int slot = hash(temperature[m], density[m], youngsModulo[m], poissonsRatio[m],
+					dampingFactor[m], specificHeat[m], thermalConductivity[m]) & mask;
+			while(slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = m + 1;
+		}
+	}
+
+	/**
+	 * Return the number of distinct materials.
+	 * @return
+	 */
+	public int size() {
+		return columns.size;
+	}
+
+	/**
+	 * Return how often a material has been interned.
+	 * @return
+	 */
+	public synchronized long getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Return how often an interned material was already contained.
+	 * @return
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Return the share of interned materials, which didn't need a new entry.
+	 * @return a value between 0 and 1
+	 */
+	public synchronized double getDedupRatio() {
+		return requestCount == 0 ? 0 : (double)hitCount / requestCount;
+	}
+
+	/**
+	 * Remove all materials and reset the statistics, but keep the capacity.
+	 * Must not be called while a {@link NodeStore} still refers to this table.
+	 */
+	public synchronized void clear() {
+		size = 0;
+		requestCount = 0;
+		hitCount = 0;
+		Arrays.fill(slots, 0);
+		columns = new Columns(this);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "MaterialTable[" + size + " materials for " + requestCount + " references, "
+				+ Math.round(getDedupRatio() * 1000) / 10.0 + "% shared]";
+	}
+
+	/**
+	 * Immutable view of the columns. Indices below size are never written again,
+	 * so the arrays can be shared with the table, which only appends behind them.
+	 */
+	private static final class Columns {
+		final int size;
+		final double[] temperature;
+		final double[] density;
+		final long[] youngsModulo;
+		final double[] poissonsRatio;
+		final double[] dampingFactor;
+		final int[] specificHeat;
+		final double[] thermalConductivity;
+
+		Columns(MaterialTable table) {
+			this.size = table.size;
+			this.temperature = table.temperature;
+			this.density = table.density;
+			this.youngsModulo = table.youngsModulo;
+			this.poissonsRatio = table.poissonsRatio;
+			this.dampingFactor = table.dampingFactor;
+			this.specificHeat = table.specificHeat;
+			this.thermalConductivity = table.thermalConductivity;
+		}
+
+		int check(int material) {
+			if(material < 0 || material >= size) {
+				throw new IndexOutOfBoundsException("Material: " + material + ", Size: " + size);
+			}
+			return material;
+		}
+	}
+
+	public double getTemperature(int material) {
+		Columns c = columns;
+		return c.temperature[c.check(material)];
+	}
+
+	public double getDensity(int material) {
+		Columns c = columns;
+		return c.density[c.check(material)];
+	}
+
+	public long getYoungsModulo(int material) {
+		Columns c = columns;
+		return c.youngsModulo[c.check(material)];
+	}
+
+	public double getPoissonsRatio(int material) {
+		Columns c = columns;
+		return c.poissonsRatio[c.check(material)];
+	}
+
+	public double getDampingFactor(int material) {
+		Columns c = columns;
+		return c.dampingFactor[c.check(material)];
+	}
+
+	public int getSpecificHeat(int material) {
+		Columns c = columns;
+		return c.specificHeat[c.check(material)];
+	}
+
+	public double getThermalConductivity(int material) {
+		Columns c = columns;
+		return c.thermalConductivity[c.check(material)];
+	}
+
+	/**
+	 * Return a new {@link Material} object holding the values of the given material.
+	 * Changing it doesn't change the table or any node, intern it again to use the changed values.
+	 * @param material
+	 * @return
+	 */
+	public Material getMaterial(int material) {
+		Columns c = columns;
+		c.check(material);
+		Material m = new Material();
+		m.temperature = c.temperature[material];
+		m.density = c.density[material];
+		m.youngsModulo = c.youngsModulo[material];
+		m.poissonsRatio = c.poissonsRatio[material];
+		m.dampingFactor = c.dampingFactor[material];
+		m.specificHeat = c.specificHeat[material];
+		m.thermalConductivity = c.thermalConductivity[material];
+		return m;
+	}
+}
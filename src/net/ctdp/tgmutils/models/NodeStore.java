@@ -0,0 +1,937 @@
+package net.ctdp.tgmutils.models;
+
+import java.util.Arrays;
+
+import net.ctdp.tgmutils.models.TGMFile.Node;
+import net.ctdp.tgmutils.models.TGMFile.Node.Material;
+import net.ctdp.tgmutils.models.TGMFile.Node.Ply;
+import net.ctdp.tgmutils.models.TGMFile.Node.PlyParam;
+import net.ctdp.tgmutils.util.DoubleArrayList;
+import net.ctdp.tgmutils.util.IntArrayList;
+
+import org.openmali.vecmath2.Vector3f;
+
+/**
+ * Column store of all [Node] groups of a {@link TGMFile}.
+ * Every node is a row in parallel primitive arrays, materials are kept once in a
+ * {@link MaterialTable} and referenced by index. Walking all nodes with the indexed
+ * getters touches only a few arrays and doesn't allocate.
+ * <p>
+ * Lists per node (materials, plies, RingAndRim) are ranges in shared pools. Appending to
+ * a list, which is not at the end of its pool, moves it there and leaves the old range unused,
+ * as does replacing or removing a node. Once the unused entries of a pool outnumber the used ones,
+ * the pool is compacted, so repeated changes of a node don't grow the store. The rows of plies
+ * removed with their node are reused by the next plies added.
+ * <p>
+ * {@link #getNode(int)} creates the classic {@link Node} object from a row, a deep copy with
+ * float vectors and new lists and {@link Material}s. {@link #setNode(int, Node)} writes one back.
+ * To walk the nodes without allocating use the indexed getters or a {@link Cursor}.
+ */
+public class NodeStore {
+
+	private static final int HAS_GEOMETRY = 1;
+	private static final int HAS_ANISO = 2;
+	private static final int HAS_RING_AND_RIM = 4;
+
+	private final MaterialTable materials;
+
+	// node rows
+	private int size;
+	private int[] version = new int[32];
+	private int[] flags = new int[32];
+	private double[] x = new double[32];
+	private double[] y = new double[32];
+	private double[] thickness = new double[32];
+	private double[] treadDepth = new double[32];
+	private double[] anisoX = new double[32];
+	private double[] anisoY = new double[32];
+	private double[] anisoZ = new double[32];
+	private int[] ringAndRimOffset = new int[32];
+	private int[] ringAndRimCount = new int[32];
+	private int[] bulkOffset = new int[32];
+	private int[] bulkCount = new int[32];
+	private int[] treadOffset = new int[32];
+	private int[] treadCount = new int[32];
+	private int[] plyOffset = new int[32];
+	private int[] plyCount = new int[32];
+
+	// ply rows
+	private int plyRows;
+	private int[] plyAngle = new int[64];
+	private double[] plyThickness = new double[64];
+	private int[] plyConnectFlag = new int[64];
+	private int[] plyMaterialOffset = new int[64];
+	private int[] plyMaterialCount = new int[64];
+
+	// pools
+	private final DoubleArrayList ringAndRimValues = new DoubleArrayList();
+	private final IntArrayList materialRefs = new IntArrayList();
+	private final IntArrayList plyRefs = new IntArrayList();
+	// unused entries of the pools and ply rows free for reuse
+	private int ringAndRimGarbage;
+	private int materialGarbage;
+	private int plyRefGarbage;
+	private final IntArrayList freePlies = new IntArrayList();
+
+	private int modCount;
+
+	/**
+	 * Create an empty store with its own {@link MaterialTable}.
+	 */
+	public NodeStore() {
+		this(new MaterialTable());
+	}
+
+	/**
+	 * Create an empty store referencing materials in the given table.
+	 * @param materials
+	 */
+	public NodeStore(MaterialTable materials) {
+		this.materials = materials;
+	}
+
+	/**
+	 * Return the table the material indices of this store refer to.
+	 * @return
+	 */
+	public MaterialTable getMaterials() {
+		return materials;
+	}
+
+	/**
+	 * Return the number of nodes.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return a counter, which changes whenever any node is added or changed.
+	 * @return
+	 */
+	public int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Return a counter, which changes whenever the given node is changed.
+	 * @param node
+	 * @return
+	 */
+	public int getVersion(int node) {
+		return version[check(node)];
+	}
+
+	/**
+	 * Remove all nodes, but keep the capacity. The material table is not touched.
+	 */
+	public void clear() {
+		size = 0;
+		plyRows = 0;
+		ringAndRimValues.clear();
+		materialRefs.clear();
+		plyRefs.clear();
+		ringAndRimGarbage = 0;
+		materialGarbage = 0;
+		plyRefGarbage = 0;
+		freePlies.clear();
+		modCount++;
+	}
+
+	private int check(int node) {
+		if(node < 0 || node >= size) {
+			throw new IndexOutOfBoundsException("Node: " + node + ", Size: " + size);
+		}
+		return node;
+	}
+
+	private int checkPly(int ply) {
+		if(ply < 0 || ply >= plyRows) {
+			throw new IndexOutOfBoundsException("Ply: " + ply + ", Size: " + plyRows);
+		}
+		return ply;
+	}
+
+	private void changed(int node) {
+		version[node]++;
+		modCount++;
+	}
+
+	/**
+	 * Append an empty node.
+	 * @return the index of the new node
+	 */
+	public int addNode() {
+		if(size == x.length) {
+			int capacity = size * 2;
+			version = Arrays.copyOf(version, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			thickness = Arrays.copyOf(thickness, capacity);
+			treadDepth = Arrays.copyOf(treadDepth, capacity);
+			anisoX = Arrays.copyOf(anisoX, capacity);
+			anisoY = Arrays.copyOf(anisoY, capacity);
+			anisoZ = Arrays.copyOf(anisoZ, capacity);
+			ringAndRimOffset = Arrays.copyOf(ringAndRimOffset, capacity);
+			ringAndRimCount = Arrays.copyOf(ringAndRimCount, capacity);
+			bulkOffset = Arrays.copyOf(bulkOffset, capacity);
+			bulkCount = Arrays.copyOf(bulkCount, capacity);
+			treadOffset = Arrays.copyOf(treadOffset, capacity);
+			treadCount = Arrays.copyOf(treadCount, capacity);
+			plyOffset = Arrays.copyOf(plyOffset, capacity);
+			plyCount = Arrays.copyOf(plyCount, capacity);
+		}
+		int node = size++;
+		resetRow(node);
+		return node;
+	}
+
+	/**
+	 * Insert an empty node before the given one, the following nodes move up by one.
+	 * @param node 0 to size()
+	 * @return node
+	 */
+	public int insertNode(int node) {
+		if(node < 0 || node > size) {
+			throw new IndexOutOfBoundsException("Node: " + node + ", Size: " + size);
+		}
+		addNode();
+		int moved = size - 1 - node;
+		if(moved > 0) {
+			moveRows(node, node + 1, moved);
+			resetRow(node);
+			for (int i = node + 1; i < size; i++) {
+				changed(i);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Remove the given node, the following nodes move down by one.
+	 * @param node
+	 */
+	public void removeNode(int node) {
+		check(node);
+		freeRow(node);
+		moveRows(node + 1, node, size - 1 - node);
+		size--;
+		// the version of a row isn't moved, it has to change for every index with new values
+		for (int i = node; i < size; i++) {
+			changed(i);
+		}
+		modCount++;
+	}
+
+	private void moveRows(int from, int to, int count) {
+		System.arraycopy(flags, from, flags, to, count);
+		System.arraycopy(x, from, x, to, count);
+		System.arraycopy(y, from, y, to, count);
+		System.arraycopy(thickness, from, thickness, to, count);
+		System.arraycopy(treadDepth, from, treadDepth, to, count);
+		System.arraycopy(anisoX, from, anisoX, to, count);
+		System.arraycopy(anisoY, from, anisoY, to, count);
+		System.arraycopy(anisoZ, from, anisoZ, to, count);
+		System.arraycopy(ringAndRimOffset, from, ringAndRimOffset, to, count);
+		System.arraycopy(ringAndRimCount, from, ringAndRimCount, to, count);
+		System.arraycopy(bulkOffset, from, bulkOffset, to, count);
+		System.arraycopy(bulkCount, from, bulkCount, to, count);
+		System.arraycopy(treadOffset, from, treadOffset, to, count);
+		System.arraycopy(treadCount, from, treadCount, to, count);
+		System.arraycopy(plyOffset, from, plyOffset, to, count);
+		System.arraycopy(plyCount, from, plyCount, to, count);
+	}
+
+	private void resetRow(int node) {
+		flags[node] = 0;
+		x[node] = 0;
+		y[node] = 0;
+		thickness[node] = 0;
+		treadDepth[node] = 0;
+		anisoX[node] = 0;
+		anisoY[node] = 0;
+		anisoZ[node] = 0;
+		ringAndRimCount[node] = 0;
+		bulkCount[node] = 0;
+		treadCount[node] = 0;
+		plyCount[node] = 0;
+		changed(node);
+	}
+
+	/**
+	 * Mark the lists of an existing node as unused, before its values are replaced or it is removed.
+	 */
+	private void freeRow(int node) {
+		if((flags[node] & HAS_RING_AND_RIM) != 0) {
+			ringAndRimGarbage += ringAndRimCount[node];
+		}
+		materialGarbage += bulkCount[node] + treadCount[node];
+		for (int p = 0; p < plyCount[node]; p++) {
+			int ply = plyRefs.getInt(plyOffset[node] + p);
+			materialGarbage += plyMaterialCount[ply];
+			plyMaterialCount[ply] = 0;
+			freePlies.addInt(ply);
+		}
+		plyRefGarbage += plyCount[node];
+		ringAndRimCount[node] = 0;
+		bulkCount[node] = 0;
+		treadCount[node] = 0;
+		plyCount[node] = 0;
+		collectGarbage();
+	}
+
+	/**
+	 * Append value to the range [offsets[i], offsets[i] + counts[i]) of the pool.
+	 * @return the number of entries left unused
+	 */
+	private static int appendToRange(IntArrayList pool, int[] offsets, int[] counts, int i, int value) {
+		int offset = offsets[i];
+		int count = counts[i];
+		int garbage = 0;
+		if(offset + count != pool.size()) {
+			// another list has been appended behind this one, move it to the end
+			int moved = pool.size();
+			for (int k = 0; k < count; k++) {
+				pool.addInt(pool.getInt(offset + k));
+			}
+			offsets[i] = moved;
+			garbage = count;
+		}
+		pool.addInt(value);
+		counts[i] = count + 1;
+		return garbage;
+	}
+
+	/**
+	 * Append the RingAndRim values to their pool as the new list of the node.
+	 */
+	private void putRingAndRim(int node, int count) {
+		if((flags[node] & HAS_RING_AND_RIM) != 0) {
+			ringAndRimGarbage += ringAndRimCount[node];
+		}
+		ringAndRimOffset[node] = ringAndRimValues.size() - count;
+		ringAndRimCount[node] = count;
+		flags[node] |= HAS_RING_AND_RIM;
+		collectGarbage();
+	}
+
+	/**
+	 * Compact the pools, which have more unused than used entries. Only offsets change, no values.
+	 */
+	private void collectGarbage() {
+		if(isGarbage(ringAndRimGarbage, ringAndRimValues.size())) {
+			double[] old = ringAndRimValues.toDoubleArray();
+			ringAndRimValues.clear();
+			for (int n = 0; n < size; n++) {
+				int offset = ringAndRimOffset[n];
+				ringAndRimOffset[n] = ringAndRimValues.size();
+				for (int i = 0; i < ringAndRimCount[n]; i++) {
+					ringAndRimValues.addDouble(old[offset + i]);
+				}
+			}
+			ringAndRimGarbage = 0;
+		}
+		if(isGarbage(materialGarbage, materialRefs.size())) {
+			int[] old = materialRefs.toIntArray();
+			materialRefs.clear();
+			for (int n = 0; n < size; n++) {
+				bulkOffset[n] = copyRange(old, bulkOffset[n], bulkCount[n], materialRefs);
+				treadOffset[n] = copyRange(old, treadOffset[n], treadCount[n], materialRefs);
+			}
+			for (int p = 0; p < plyRows; p++) {
+				plyMaterialOffset[p] = copyRange(old, plyMaterialOffset[p], plyMaterialCount[p], materialRefs);
+			}
+			materialGarbage = 0;
+		}
+		if(isGarbage(plyRefGarbage, plyRefs.size())) {
+			int[] old = plyRefs.toIntArray();
+			plyRefs.clear();
+			for (int n = 0; n < size; n++) {
+				plyOffset[n] = copyRange(old, plyOffset[n], plyCount[n], plyRefs);
+			}
+			plyRefGarbage = 0;
+		}
+	}
+
+	private static boolean isGarbage(int garbage, int poolSize) {
+		return garbage > 64 && garbage * 2 > poolSize;
+	}
+
+	/**
+	 * Append the range of the old pool to the pool.
+	 * @return the new offset of the range
+	 */
+	private static int copyRange(int[] old, int offset, int count, IntArrayList pool) {
+		int moved = pool.size();
+		for (int i = 0; i < count; i++) {
+			pool.addInt(old[offset + i]);
+		}
+		return moved;
+	}
+
+	// geometry
+
+	public boolean hasGeometry(int node) {
+		return (flags[check(node)] & HAS_GEOMETRY) != 0;
+	}
+
+	public double getX(int node) {
+		return x[check(node)];
+	}
+
+	public double getY(int node) {
+		return y[check(node)];
+	}
+
+	public double getThickness(int node) {
+		return thickness[check(node)];
+	}
+
+	public void setGeometry(int node, double x, double y, double thickness) {
+		check(node);
+		this.x[node] = x;
+		this.y[node] = y;
+		this.thickness[node] = thickness;
+		flags[node] |= HAS_GEOMETRY;
+		changed(node);
+	}
+
+	public double getTreadDepth(int node) {
+		return treadDepth[check(node)];
+	}
+
+	public void setTreadDepth(int node, double treadDepth) {
+		this.treadDepth[check(node)] = treadDepth;
+		changed(node);
+	}
+
+	public boolean hasAnisoCarcassConductivityMult(int node) {
+		return (flags[check(node)] & HAS_ANISO) != 0;
+	}
+
+	public double getAnisoX(int node) {
+		return anisoX[check(node)];
+	}
+
+	public double getAnisoY(int node) {
+		return anisoY[check(node)];
+	}
+
+	public double getAnisoZ(int node) {
+		return anisoZ[check(node)];
+	}
+
+	public void setAnisoCarcassConductivityMult(int node, double x, double y, double z) {
+		check(node);
+		anisoX[node] = x;
+		anisoY[node] = y;
+		anisoZ[node] = z;
+		flags[node] |= HAS_ANISO;
+		changed(node);
+	}
+
+	// RingAndRim
+
+	public boolean hasRingAndRim(int node) {
+		return (flags[check(node)] & HAS_RING_AND_RIM) != 0;
+	}
+
+	public int getRingAndRimCount(int node) {
+		return ringAndRimCount[check(node)];
+	}
+
+	public double getRingAndRim(int node, int i) {
+		if(i < 0 || i >= ringAndRimCount[check(node)]) {
+			throw new IndexOutOfBoundsException("RingAndRim: " + i);
+		}
+		return ringAndRimValues.getDouble(ringAndRimOffset[node] + i);
+	}
+
+	/**
+	 * Replace the RingAndRim values of the node.
+	 * @param node
+	 * @param values
+	 * @param count number of values to take from the array
+	 */
+	public void setRingAndRim(int node, double[] values, int count) {
+		check(node);
+		for (int i = 0; i < count; i++) {
+			ringAndRimValues.addDouble(values[i]);
+		}
+		putRingAndRim(node, count);
+		changed(node);
+	}
+
+	// materials
+
+	public int getBulkMaterialCount(int node) {
+		return bulkCount[check(node)];
+	}
+
+	/**
+	 * Return the index in {@link #getMaterials()} of the i-th BulkMaterial of the node.
+	 * @param node
+	 * @param i
+	 * @return
+	 */
+	public int getBulkMaterial(int node, int i) {
+		if(i < 0 || i >= bulkCount[check(node)]) {
+			throw new IndexOutOfBoundsException("BulkMaterial: " + i);
+		}
+		return materialRefs.getInt(bulkOffset[node] + i);
+	}
+
+	public void addBulkMaterial(int node, int material) {
+		materialGarbage += appendToRange(materialRefs, bulkOffset, bulkCount, check(node), material);
+		changed(node);
+		collectGarbage();
+	}
+
+	/**
+	 * Remove all BulkMaterials of the node, all other values are kept.
+	 * @param node
+	 */
+	public void clearBulkMaterials(int node) {
+		materialGarbage += bulkCount[check(node)];
+		bulkCount[node] = 0;
+		changed(node);
+		collectGarbage();
+	}
+
+	public int getTreadMaterialCount(int node) {
+		return treadCount[check(node)];
+	}
+
+	/**
+	 * Return the index in {@link #getMaterials()} of the i-th TreadMaterial of the node.
+	 * @param node
+	 * @param i
+	 * @return
+	 */
+	public int getTreadMaterial(int node, int i) {
+		if(i < 0 || i >= treadCount[check(node)]) {
+			throw new IndexOutOfBoundsException("TreadMaterial: " + i);
+		}
+		return materialRefs.getInt(treadOffset[node] + i);
+	}
+
+	public void addTreadMaterial(int node, int material) {
+		materialGarbage += appendToRange(materialRefs, treadOffset, treadCount, check(node), material);
+		changed(node);
+		collectGarbage();
+	}
+
+	/**
+	 * Remove all TreadMaterials of the node, all other values are kept.
+	 * @param node
+	 */
+	public void clearTreadMaterials(int node) {
+		materialGarbage += treadCount[check(node)];
+		treadCount[node] = 0;
+		changed(node);
+		collectGarbage();
+	}
+
+	// plies
+
+	public int getPlyCount(int node) {
+		return plyCount[check(node)];
+	}
+
+	/**
+	 * Return the ply row of the i-th ply of the node, to be used with the ply getters.
+	 * @param node
+	 * @param i
+	 * @return
+	 */
+	public int getPly(int node, int i) {
+		if(i < 0 || i >= plyCount[check(node)]) {
+			throw new IndexOutOfBoundsException("Ply: " + i);
+		}
+		return plyRefs.getInt(plyOffset[node] + i);
+	}
+
+	/**
+	 * Append a ply to the node.
+	 * @param node
+	 * @param angle
+	 * @param thickness
+	 * @param connectFlag
+	 * @return the ply row of the new ply
+	 */
+	public int addPly(int node, int angle, double thickness, int connectFlag) {
+		check(node);
+		if(freePlies.isEmpty() && plyRows == plyAngle.length) {
+			int capacity = plyRows * 2;
+			plyAngle = Arrays.copyOf(plyAngle, capacity);
+			plyThickness = Arrays.copyOf(plyThickness, capacity);
+			plyConnectFlag = Arrays.copyOf(plyConnectFlag, capacity);
+			plyMaterialOffset = Arrays.copyOf(plyMaterialOffset, capacity);
+			plyMaterialCount = Arrays.copyOf(plyMaterialCount, capacity);
+		}
+		int ply = plyRows;
+		if(freePlies.isEmpty()) {
+			plyRows++;
+		} else {
+			ply = freePlies.getInt(freePlies.size() - 1);
+			freePlies.remove(freePlies.size() - 1);
+		}
+		plyAngle[ply] = angle;
+		plyThickness[ply] = thickness;
+		plyConnectFlag[ply] = connectFlag;
+		plyMaterialOffset[ply] = materialRefs.size();
+		plyMaterialCount[ply] = 0;
+		plyRefGarbage += appendToRange(plyRefs, plyOffset, plyCount, node, ply);
+		changed(node);
+		collectGarbage();
+		return ply;
+	}
+
+	public int getPlyAngle(int ply) {
+		return plyAngle[checkPly(ply)];
+	}
+
+	public double getPlyThickness(int ply) {
+		return plyThickness[checkPly(ply)];
+	}
+
+	public int getPlyConnectFlag(int ply) {
+		return plyConnectFlag[checkPly(ply)];
+	}
+
+	public int getPlyMaterialCount(int ply) {
+		return plyMaterialCount[checkPly(ply)];
+	}
+
+	/**
+	 * Return the index in {@link #getMaterials()} of the i-th PlyMaterial of the ply.
+	 * @param ply
+	 * @param i
+	 * @return
+	 */
+	public int getPlyMaterial(int ply, int i) {
+		if(i < 0 || i >= plyMaterialCount[checkPly(ply)]) {
+			throw new IndexOutOfBoundsException("PlyMaterial: " + i);
+		}
+		return materialRefs.getInt(plyMaterialOffset[ply] + i);
+	}
+
+	/**
+	 * Append a material to the ply.
+	 * @param node the node owning the ply
+	 * @param ply
+	 * @param material
+	 */
+	public void addPlyMaterial(int node, int ply, int material) {
+		check(node);
+		materialGarbage += appendToRange(materialRefs, plyMaterialOffset, plyMaterialCount, checkPly(ply), material);
+		changed(node);
+		collectGarbage();
+	}
+
+	// Node objects
+
+	/**
+	 * Create a {@link Node} object holding the values of the given node.
+	 * The object is detached from this store, write changes back with {@link #setNode(int, Node)}.
+	 * Its {@link Material}s are copies as well, see {@link MaterialTable#getMaterial(int)}.
+	 * @param node
+	 * @return
+	 */
+	public Node getNode(int node) {
+		check(node);
+		Node n = new Node();
+		if(hasGeometry(node)) {
+			n.geometry = new Vector3f((float)x[node], (float)y[node], (float)thickness[node]);
+		}
+		for (int i = 0; i < bulkCount[node]; i++) {
+			n.bulkMaterial.add(materials.getMaterial(getBulkMaterial(node, i)));
+		}
+		if(hasAnisoCarcassConductivityMult(node)) {
+			n.anisoCarcassConductivityMult = new Vector3f((float)anisoX[node], (float)anisoY[node], (float)anisoZ[node]);
+		}
+		n.treadDepth = treadDepth[node];
+		for (int i = 0; i < treadCount[node]; i++) {
+			n.treadMaterial.add(materials.getMaterial(getTreadMaterial(node, i)));
+		}
+		if(hasRingAndRim(node)) {
+			n.ringAndRim = new DoubleArrayList(ringAndRimCount[node]);
+			for (int i = 0; i < ringAndRimCount[node]; i++) {
+				n.ringAndRim.addDouble(getRingAndRim(node, i));
+			}
+		}
+		for (int p = 0; p < plyCount[node]; p++) {
+			int ply = getPly(node, p);
+			Ply pl = new Ply();
+			pl.params = new PlyParam();
+			pl.params.plyMaterialAngle = plyAngle[ply];
+			pl.params.plyMaterialThickness = plyThickness[ply];
+			pl.params.connectFlat = plyConnectFlag[ply];
+			for (int i = 0; i < plyMaterialCount[ply]; i++) {
+				pl.materials.add(materials.getMaterial(getPlyMaterial(ply, i)));
+			}
+			n.plies.add(pl);
+		}
+		return n;
+	}
+
+	/**
+	 * Replace all values of the given node with the ones of the {@link Node} object.
+	 * Where a float of the Node's vectors still equals the stored value narrowed to float,
+	 * the stored double is kept, so passing back a Node from {@link #getNode(int)} doesn't
+	 * lose the precision of its unchanged values.
+	 * @param node
+	 * @param n
+	 */
+	public void setNode(int node, Node n) {
+		check(node);
+		boolean hadGeometry = hasGeometry(node);
+		double oldX = x[node];
+		double oldY = y[node];
+		double oldThickness = thickness[node];
+		boolean hadAniso = hasAnisoCarcassConductivityMult(node);
+		double oldAnisoX = anisoX[node];
+		double oldAnisoY = anisoY[node];
+		double oldAnisoZ = anisoZ[node];
+		freeRow(node);
+		resetRow(node);
+		if(n.geometry != null) {
+			Vector3f v = n.geometry;
+			setGeometry(node, widen(hadGeometry, oldX, v.x()), widen(hadGeometry, oldY, v.y()),
+					widen(hadGeometry, oldThickness, v.z()));
+		}
+		for (Material m : n.bulkMaterial) {
+			addBulkMaterial(node, materials.intern(m));
+		}
+		if(n.anisoCarcassConductivityMult != null) {
+			Vector3f v = n.anisoCarcassConductivityMult;
+			setAnisoCarcassConductivityMult(node, widen(hadAniso, oldAnisoX, v.x()), widen(hadAniso, oldAnisoY, v.y()),
+					widen(hadAniso, oldAnisoZ, v.z()));
+		}
+		treadDepth[node] = n.treadDepth;
+		for (Material m : n.treadMaterial) {
+			addTreadMaterial(node, materials.intern(m));
+		}
+		if(n.ringAndRim != null) {
+			int count = n.ringAndRim.size();
+			for (int i = 0; i < count; i++) {
+				ringAndRimValues.addDouble(n.ringAndRim.getDouble(i));
+			}
+			putRingAndRim(node, count);
+		}
+		for (Ply pl : n.plies) {
+			int ply = pl.params != null
+					? addPly(node, pl.params.plyMaterialAngle, pl.params.plyMaterialThickness, pl.params.connectFlat)
+					: addPly(node, 0, 0, 0);
+			for (Material m : pl.materials) {
+				addPlyMaterial(node, ply, materials.intern(m));
+			}
+		}
+	}
+
+	/**
+	 * Return the stored value, if it has been set and narrows to the given float, otherwise the float.
+	 */
+	private static double widen(boolean stored, double value, float f) {
+		return stored && (float)value == f ? value : f;
+	}
+
+	/**
+	 * Append a node holding the values of the {@link Node} object.
+	 * @param n
+	 * @return the index of the new node
+	 */
+	public int addNode(Node n) {
+		int node = addNode();
+		setNode(node, n);
+		return node;
+	}
+
+	/**
+	 * Append copies of all nodes of the given store, keeping their order.
+	 * Material indices are taken over as they are, if both stores share one {@link MaterialTable},
+	 * otherwise the materials are interned into this store's table.
+	 * @param src
+	 */
+	public void addNodes(NodeStore src) {
+		for (int n = 0; n < src.size; n++) {
+			copyRow(src, n, addNode());
+		}
+	}
+
+	/**
+	 * Replace all values of the given node with the ones of a node of another store.
+	 * @see #addNodes(NodeStore)
+	 * @param node
+	 * @param src
+	 * @param srcNode
+	 */
+	public void setNode(int node, NodeStore src, int srcNode) {
+		check(node);
+		src.check(srcNode);
+		if(src == this && srcNode == node) {
+			return;
+		}
+		freeRow(node);
+		resetRow(node);
+		copyRow(src, srcNode, node);
+	}
+
+	private void copyRow(NodeStore src, int n, int node) {
+		if(src.hasGeometry(n)) {
+			setGeometry(node, src.x[n], src.y[n], src.thickness[n]);
+		}
+		treadDepth[node] = src.treadDepth[n];
+		if(src.hasAnisoCarcassConductivityMult(n)) {
+			setAnisoCarcassConductivityMult(node, src.anisoX[n], src.anisoY[n], src.anisoZ[n]);
+		}
+		if(src.hasRingAndRim(n)) {
+			int count = src.ringAndRimCount[n];
+			for (int i = 0; i < count; i++) {
+				ringAndRimValues.addDouble(src.getRingAndRim(n, i));
+			}
+			putRingAndRim(node, count);
+		}
+		for (int i = 0; i < src.bulkCount[n]; i++) {
+			addBulkMaterial(node, copyMaterial(src, src.getBulkMaterial(n, i)));
+		}
+		for (int i = 0; i < src.treadCount[n]; i++) {
+			addTreadMaterial(node, copyMaterial(src, src.getTreadMaterial(n, i)));
+		}
+		for (int p = 0; p < src.plyCount[n]; p++) {
+			int srcPly = src.getPly(n, p);
+			int ply = addPly(node, src.plyAngle[srcPly], src.plyThickness[srcPly], src.plyConnectFlag[srcPly]);
+			for (int i = 0; i < src.plyMaterialCount[srcPly]; i++) {
+				addPlyMaterial(node, ply, copyMaterial(src, src.getPlyMaterial(srcPly, i)));
+			}
+		}
+	}
+
+	private int copyMaterial(NodeStore src, int material) {
+		return src.materials == materials ? material : materials.intern(src.materials.getMaterial(material));
+	}
+
+	/**
+	 * Return a cursor before the first node.
+	 * @return
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Walks the nodes of the store without allocating, e.g.
+	 * {@code for (Cursor c = store.cursor(); c.next();) mass += c.getThickness() * ...}.
+	 * The getters read the current node like the indexed getters of the store, material and
+	 * ply indices are used with {@link NodeStore#getMaterials()} and the ply getters.
+	 * A cursor can be used again after {@link #reset()}.
+	 */
+	public final class Cursor {
+		private int node = -1;
+
+		Cursor() {
+		}
+
+		/**
+		 * Move to the next node.
+		 * @return false, if there is none
+		 */
+		public boolean next() {
+			if(node + 1 >= size) {
+				node = size;
+				return false;
+			}
+			node++;
+			return true;
+		}
+
+		/**
+		 * Move back before the first node.
+		 */
+		public void reset() {
+			node = -1;
+		}
+
+		/**
+		 * Return the index of the current node.
+		 * @return
+		 */
+		public int getNode() {
+			return node;
+		}
+
+		public boolean hasGeometry() {
+			return NodeStore.this.hasGeometry(node);
+		}
+
+		public double getX() {
+			return NodeStore.this.getX(node);
+		}
+
+		public double getY() {
+			return NodeStore.this.getY(node);
+		}
+
+		public double getThickness() {
+			return NodeStore.this.getThickness(node);
+		}
+
+		public double getTreadDepth() {
+			return NodeStore.this.getTreadDepth(node);
+		}
+
+		public boolean hasAnisoCarcassConductivityMult() {
+			return NodeStore.this.hasAnisoCarcassConductivityMult(node);
+		}
+
+		public double getAnisoX() {
+			return NodeStore.this.getAnisoX(node);
+		}
+
+		public double getAnisoY() {
+			return NodeStore.this.getAnisoY(node);
+		}
+
+		public double getAnisoZ() {
+			return NodeStore.this.getAnisoZ(node);
+		}
+
+		public boolean hasRingAndRim() {
+			return NodeStore.this.hasRingAndRim(node);
+		}
+
+		public int getRingAndRimCount() {
+			return NodeStore.this.getRingAndRimCount(node);
+		}
+
+		public double getRingAndRim(int i) {
+			return NodeStore.this.getRingAndRim(node, i);
+		}
+
+		public int getBulkMaterialCount() {
+			return NodeStore.this.getBulkMaterialCount(node);
+		}
+
+		public int getBulkMaterial(int i) {
+			return NodeStore.this.getBulkMaterial(node, i);
+		}
+
+		public int getTreadMaterialCount() {
+			return NodeStore.this.getTreadMaterialCount(node);
+		}
+
+		public int getTreadMaterial(int i) {
+			return NodeStore.this.getTreadMaterial(node, i);
+		}
+
+		public int getPlyCount() {
+			return NodeStore.this.getPlyCount(node);
+		}
+
+		public int getPly(int i) {
+			return NodeStore.this.getPly(node, i);
+		}
+	}
+}
@@ -1,9 +1,15 @@
 package net.ctdp.tgmutils.models;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.RandomAccess;
+
+import net.ctdp.tgmutils.util.DoubleArrayList;
+import net.ctdp.tgmutils.util.IntArrayList;
+import net.ctdp.tgmutils.util.IntIntMap;
 
 import org.openmali.vecmath2.Vector3f;
 
@@ -16,20 +22,69 @@ import org.openmali.vecmath2.Vector3f;
  */
 public class TGMFile {
 	private QuasiStaticAnalysis quasiStaticAnalysis;
+	private NodeStore nodeStore;
 	private List<Node> nodes;
 	private Realtime realtime;
 	private LookupData lookupData;
+	/**
+	 * True, while the node store is still the one of the file this variant was created from.
+	 */
+	private boolean sharedNodeStore;
+	/**
+	 * True, while the LookupData is the one of the file this variant was created from.
+	 */
+	private boolean sharedLookupData;
 
 	/**
 	 * Initialize an empty {@link TGMFile}.
 	 */
 	public TGMFile() {
+		this(new MaterialTable());
+	}
+
+	/**
+	 * Initialize an empty {@link TGMFile}, which keeps the materials of its nodes
+	 * in the given, possibly shared table.
+	 * @param materials
+	 */
+	public TGMFile(MaterialTable materials) {
 		this.quasiStaticAnalysis = new QuasiStaticAnalysis();
-		this.nodes = new ArrayList<Node>();
+		this.nodeStore = new NodeStore(materials);
+		this.nodes = new NodeList();
 		this.realtime = new Realtime();
 		this.lookupData = new LookupData();
 	}
 
+	/**
+	 * Initialize a variant of the given file, see {@link #createVariant()}.
+	 */
+	private TGMFile(TGMFile base) {
+		this.quasiStaticAnalysis = new QuasiStaticAnalysis();
+		this.quasiStaticAnalysis.copyFrom(base.quasiStaticAnalysis);
+		this.nodeStore = base.nodeStore;
+		this.sharedNodeStore = true;
+		this.nodes = new NodeList();
+		this.realtime = new Realtime();
+		this.realtime.copyFrom(base.realtime);
+		this.lookupData = base.lookupData;
+		this.sharedLookupData = true;
+	}
+
+	/**
+	 * Create a variant of this file, e.g. for a parameter sweep.
+	 * The small [QuasiStaticAnalysis] and [Realtime] values are copied, while the
+	 * {@link NodeStore} and {@link LookupData} are shared with this file.
+	 * The variant gets its own copy of the nodes on the first change through
+	 * {@link #getWritableNodeStore()} or {@link #getNodes()}.
+	 * <p>
+	 * The shared LookupData must not be changed through a variant, and this file
+	 * must not be changed while its variants are in use.
+	 * @return
+	 */
+	public TGMFile createVariant() {
+		return new TGMFile(this);
+	}
+
 	/**
 	 * This section defines which tests are to be run
 	 * @author danielsenff
@@ -59,20 +114,20 @@ public class TGMFile {
 		 * //GaugePressure=200000 // If you decide to add more detail, a test running near the optimum real life pressure would be a good idea too, we recommend up to 5 of these tests for GaugePressure
 		 * GaugePressure=300000 // Max should be something slightly higher than you will ever be likely to reach, even while doing burnouts
 		 */
-		public List<Integer> gaugePressures = new ArrayList<Integer>();
+		public IntArrayList gaugePressures = new IntArrayList();
 		/**
 		 * CarcassTemperature=273.15 // Should be the minimum temperature this tyre is ever likely to be subjected to (at the carcass depth!).
 		 * CarcassTemperature=373.15 // Something near the optimum here might be a good idea..
 		 * //CarcassTemperature=423.15 // Should be the max temperature this tyre is likely to ever be subjected to.
 		 */
-		public List<Double> carcassTemperatures = new ArrayList<Double>();
+		public DoubleArrayList carcassTemperatures = new DoubleArrayList();
 		/**
 		 * RotationSquared=0 // Minimum speed should probably always be 0 
 		 * //RotationSquared=15000 // Optional for better accuracy at varying speeds 
 		 * //RotationSquared=40000 // Optional for better accuracy at varying speeds	
 		 * RotationSquared=80000 // Maximum lookup table speed, should approximate top speed of the vehicle tyre is intended for in (radians/sec)^2 (consider going a bit higher if this tyre might be used for something faster in the future)
 		 */
-		public List<Integer> rotationSquareds = new ArrayList<Integer>();
+		public IntArrayList rotationSquareds = new IntArrayList();
 		/**
 		 * number of total nodes, not recommended to increase (at least during 2012) as performance cost is substantial, this value is generated from the number of [nodes] listed below
 		 */
@@ -85,9 +140,63 @@ public class TGMFile {
 		 * total tyre masses and inertia's as calculated by ttool
 		 */
 		public double 	totalMass;
-		public List<Double> totalInertiaStandards = new ArrayList<>(); //=(0.9865952331376638,0.629654560048139,0.6296545600481429)
+		public DoubleArrayList totalInertiaStandards = new DoubleArrayList(); //=(0.9865952331376638,0.629654560048139,0.6296545600481429)
 		public double	ringMass;
-		public List<Double> ringInertiaStandards = new ArrayList<>(); //=(0.9536807920631629,0.5898999023566385,0.5898999023566396)
+		public DoubleArrayList ringInertiaStandards = new DoubleArrayList(); //=(0.9536807920631629,0.5898999023566385,0.5898999023566396)
+
+		/**
+		 * Reset all values, as if the section was empty.
+		 * The lists of test values are emptied, keeping their capacity.
+		 */
+		public void clear() {
+			numLayers = 0;
+			numSections = 0;
+			rimVolume = 0;
+			realtimeCamberLimit = 0;
+			gaugePressures.clear();
+			carcassTemperatures.clear();
+			rotationSquareds.clear();
+			numNodes = 0;
+			volumeLoad = 0;
+			loadCamber = 0;
+			loadInclination = 0;
+			loadDeflection = 0;
+			totalMass = 0;
+			totalInertiaStandards = clear(totalInertiaStandards);
+			ringMass = 0;
+			ringInertiaStandards = clear(ringInertiaStandards);
+		}
+
+		private DoubleArrayList clear(DoubleArrayList list) {
+			if(list == null) {
+				return new DoubleArrayList();
+			}
+			list.clear();
+			return list;
+		}
+
+		/**
+		 * Replace all values by copies of the values of the other section.
+		 * @param other
+		 */
+		public void copyFrom(QuasiStaticAnalysis other) {
+			numLayers = other.numLayers;
+			numSections = other.numSections;
+			rimVolume = other.rimVolume;
+			realtimeCamberLimit = other.realtimeCamberLimit;
+			gaugePressures = copy(other.gaugePressures);
+			carcassTemperatures = copy(other.carcassTemperatures);
+			rotationSquareds = copy(other.rotationSquareds);
+			numNodes = other.numNodes;
+			volumeLoad = other.volumeLoad;
+			loadCamber = other.loadCamber;
+			loadInclination = other.loadInclination;
+			loadDeflection = other.loadDeflection;
+			totalMass = other.totalMass;
+			totalInertiaStandards = copy(other.totalInertiaStandards);
+			ringMass = other.ringMass;
+			ringInertiaStandards = copy(other.ringInertiaStandards);
+		}
 	}
 
 	public static class Node {
@@ -117,7 +226,7 @@ public class TGMFile {
 		 * bead itself. There should be only 2 nodes connected to the rim, 
 		 * the first and final nodes.
 		 */
-		public List<Double>	ringAndRim; //=(0,1000000000) // das ringrim ding ist eigentlich immer 0,0 ausser bei den nodes, die auf der felge aufliegen, also dem ersten und letzten
+		public DoubleArrayList	ringAndRim; //=(0,1000000000) // das ringrim ding ist eigentlich immer 0,0 ausser bei den nodes, die auf der felge aufliegen, also dem ersten und letzten
 		/**
 		 * Material layers
 		 */
@@ -143,7 +252,7 @@ public class TGMFile {
 			/**
 			 * Young's Modulus
 			 */
-			public Long youngsModulo; 
+			public long youngsModulo; 
 			public double poissonsRatio;
 			/**
 			 * Damping Factor
@@ -190,8 +299,8 @@ public class TGMFile {
 		/**
 		 * Lat/Vert/Long
 		 */
-		public List<Double> temporaryBristleSpring; //(24000.0, 12500.0, 31500.0)
-		public List<Double> temporaryBristleDamper; //(0.5, 0.2, 0.5)
+		public DoubleArrayList temporaryBristleSpring; //(24000.0, 12500.0, 31500.0)
+		public DoubleArrayList temporaryBristleDamper; //(0.5, 0.2, 0.5)
 		/**
 		 * load available for grip is reduced by 12.5% driving on marbles
 		 */
@@ -206,7 +315,7 @@ public class TGMFile {
 		 * rubbers, with the exception of butyl. 
 		 * Most likely, you won't touch these last three values.
 		 */
-		public List<Double> wLFParameters; //(228.15,50.0,-8.86,51.5)
+		public DoubleArrayList wLFParameters; //(228.15,50.0,-8.86,51.5)
 		/**
 		 * terrain roughness (discussed later) should decrease static friction
 		 */
@@ -215,28 +324,28 @@ public class TGMFile {
 		 * maximum groove increases grip by 10-20% here for: static friction, 
 		 * sliding adhesion, sliding micro-deformation, sliding macro-deformation
 		 */
-		public List<Double>	grooveEffects; //=(0.17,0.17,0.14,0.10)
+		public DoubleArrayList	grooveEffects; //=(0.17,0.17,0.14,0.10)
 		/**
 		 * fully damp track (at threshold of standing water or more) decreases 
 		 * grip by 15-25% here for same things as GrooveEffects
 		 */
-		public List<Double>	dampnessEffects; //=(-0.125,-0.125,-0.10,-0.075)
+		public DoubleArrayList	dampnessEffects; //=(-0.125,-0.125,-0.10,-0.075)
 		/**
 		 * at -100C there's 60% of maximum static grip, at 100C it's maximum, 
 		 * at 400C it's back down to 60% of max static grip
 		 */
-		public List<Double>	staticCurve; //=(153.0, 0.61, 353.0, 1.176, 653.0, 0.61)
-		public List<Double>	slidingAdhesionCurve; //=(-9.20, 0.40, -5.20, 1.70, -1.20, 0.20 );
-		public List<Double>	slidingMicroDeformationCurve;//=(-5.20, 0.30, -1.20, 1.80, +1.80, 0.30 )
-		public List<Double>	slidingMacroDeformationCurve; //=(-1.20, 0.20, +1.80, 2.00, +4.80, 0.40 )
+		public DoubleArrayList	staticCurve; //=(153.0, 0.61, 353.0, 1.176, 653.0, 0.61)
+		public DoubleArrayList	slidingAdhesionCurve; //=(-9.20, 0.40, -5.20, 1.70, -1.20, 0.20 );
+		public DoubleArrayList	slidingMicroDeformationCurve;//=(-5.20, 0.30, -1.20, 1.80, +1.80, 0.30 )
+		public DoubleArrayList	slidingMacroDeformationCurve; //=(-1.20, 0.20, +1.80, 2.00, +4.80, 0.40 )
 		/**
 		 * power,offset,nominal_max,normalize
 		 */
-		public List<Double>	rubberPressureSensitivityPower; //=(-0.075,5000,500000,1)
+		public DoubleArrayList	rubberPressureSensitivityPower; //=(-0.075,5000,500000,1)
 		/**
 		 * if necessary, an adjustment to the geometric width and radius; default is (1.0,1.0)
 		 */
-		public List<Double>	sizeMultiplier; //=(0.64,0.897)
+		public DoubleArrayList	sizeMultiplier; //=(0.64,0.897)
 		/**
 		 * the depth of the temperature sample layer used for contact properties 
 		 * (i.e. grip and wear); if provisional second layer is disabled, 
@@ -257,15 +366,15 @@ public class TGMFile {
 		 * (base, mult, power) - heat transfer coefficients to internal 
 		 * gas cavity = base+(mult*(vel^power)), where vel is linear velocity of tire
 		 */
-		public List<Double>	internalGasHeatTransfer; //=(10.0,5.0,0.6)
+		public DoubleArrayList	internalGasHeatTransfer; //=(10.0,5.0,0.6)
 		/**
 		 * (base, mult, power) - heat transfer coefficients to external air = base+(mult*(vel^power)), where vel is linear velocity of tire
 		 */
-		public List<Double>	externalGasHeatTransfer; //=(10.0,5.0,0.6)
+		public DoubleArrayList	externalGasHeatTransfer; //=(10.0,5.0,0.6)
 		/**
 		 * (base, mult) - thermal contact conductance coefficient to ground = base+(mult*pressure), where pressure is contact pressure
 		 */
-		public List<Double>	groundContactConductance; //=(1300.0,0.010)
+		public DoubleArrayList	groundContactConductance; //=(1300.0,0.010)
 		/**
 		 * thermal radiation emissivity for external tire surface
 		 */
@@ -278,9 +387,84 @@ public class TGMFile {
 		 * 
 		 * you may have other issues if the internal gas reaches 500 degrees Kelvin
 		 */
-		public Map<Integer, Integer> internalGasSpecificHeatAtConstantVolume = new HashMap<>();
+		public IntIntMap internalGasSpecificHeatAtConstantVolume = new IntIntMap();
 		
 		public float	temporaryAbrasion; //=1e-10 TODO fix parsing
+
+		/**
+		 * Reset all values, as if the section was empty.
+		 * Lists are emptied in place, keeping their capacity, like those of [QuasiStaticAnalysis].
+		 * A list, which hasn't been set, stays null.
+		 */
+		public void clear() {
+			staticBaseCoefficient = 0;
+			slidingBaseCoefficient = 0;
+			clear(temporaryBristleSpring);
+			clear(temporaryBristleDamper);
+			marbleEffectOnEffectiveLoad = 0;
+			terrainWeightOnContactTemperature = 0;
+			clear(wLFParameters);
+			staticRoughnessEffect = 0;
+			clear(grooveEffects);
+			clear(dampnessEffects);
+			clear(staticCurve);
+			clear(slidingAdhesionCurve);
+			clear(slidingMicroDeformationCurve);
+			clear(slidingMacroDeformationCurve);
+			clear(rubberPressureSensitivityPower);
+			clear(sizeMultiplier);
+			thermalDepthAtSurface = 0;
+			thermalDepthBelowSurface = 0;
+			bristleLength = 0;
+			clear(internalGasHeatTransfer);
+			clear(externalGasHeatTransfer);
+			clear(groundContactConductance);
+			tireRadiationEmissivity = 0;
+			internalGasSpecificHeatAtConstantVolume.clear();
+			temporaryAbrasion = 0;
+		}
+
+		private void clear(DoubleArrayList list) {
+			if(list != null) {
+				list.clear();
+			}
+		}
+
+		/**
+		 * Replace all values by copies of the values of the other section.
+		 * @param other
+		 */
+		public void copyFrom(Realtime other) {
+			staticBaseCoefficient = other.staticBaseCoefficient;
+			slidingBaseCoefficient = other.slidingBaseCoefficient;
+			temporaryBristleSpring = copy(other.temporaryBristleSpring);
+			temporaryBristleDamper = copy(other.temporaryBristleDamper);
+			marbleEffectOnEffectiveLoad = other.marbleEffectOnEffectiveLoad;
+			terrainWeightOnContactTemperature = other.terrainWeightOnContactTemperature;
+			wLFParameters = copy(other.wLFParameters);
+			staticRoughnessEffect = other.staticRoughnessEffect;
+			grooveEffects = copy(other.grooveEffects);
+			dampnessEffects = copy(other.dampnessEffects);
+			staticCurve = copy(other.staticCurve);
+			slidingAdhesionCurve = copy(other.slidingAdhesionCurve);
+			slidingMicroDeformationCurve = copy(other.slidingMicroDeformationCurve);
+			slidingMacroDeformationCurve = copy(other.slidingMacroDeformationCurve);
+			rubberPressureSensitivityPower = copy(other.rubberPressureSensitivityPower);
+			sizeMultiplier = copy(other.sizeMultiplier);
+			thermalDepthAtSurface = other.thermalDepthAtSurface;
+			thermalDepthBelowSurface = other.thermalDepthBelowSurface;
+			bristleLength = other.bristleLength;
+			internalGasHeatTransfer = copy(other.internalGasHeatTransfer);
+			externalGasHeatTransfer = copy(other.externalGasHeatTransfer);
+			groundContactConductance = copy(other.groundContactConductance);
+			tireRadiationEmissivity = other.tireRadiationEmissivity;
+			internalGasSpecificHeatAtConstantVolume = new IntIntMap();
+			IntIntMap map = other.internalGasSpecificHeatAtConstantVolume;
+			for (int i = 0; i < map.size(); i++) {
+				internalGasSpecificHeatAtConstantVolume.putInt(map.keyAt(i), map.valueAt(i));
+			}
+			temporaryAbrasion = other.temporaryAbrasion;
+		}
 	}
 
 	/**
@@ -289,19 +473,452 @@ public class TGMFile {
 	 *
 	 */
 	public class LookupData {
-		public String version;
-		public List<String> bins = new ArrayList<>();
-		public int checksum;
+		/**
+		 * Number of bytes encoded by a single Bin line (128 hex characters).
+		 */
+		public static final int BIN_SIZE = 64;
+
+		private String version;
+		private int checksum;
+
+		/**
+		 * All bins decoded back to back, BIN_SIZE bytes each.
+		 */
+		private ByteBuffer data = ByteBuffer.allocate(BIN_SIZE * 256);
+		private int binCount;
+		/**
+		 * True, if data has been handed in by setBins() and must not be written to.
+		 */
+		private boolean external;
+		private int modCount;
+		private List<String> hexView;
+
+		private volatile LookupDataLoader loader;
+		private boolean loading;
+
+		/**
+		 * Install a loader that fills this section the first time any of
+		 * its values is accessed. Used by lazily parsed files.
+		 * @param loader
+		 */
+		public void setLoader(LookupDataLoader loader) {
+			this.loader = loader;
+		}
+
+		/**
+		 * Return false, if this section is still waiting for its loader.
+		 * @return
+		 */
+		public boolean isLoaded() {
+			return loader == null;
+		}
+
+		private void ensureLoaded() {
+			if(loader == null) {
+				return;
+			}
+			synchronized(this) {
+				// loading is only true for the thread running the loader, which fills this section itself
+				if(loader == null || loading) {
+					return;
+				}
+				loading = true;
+				try {
+					loader.load(this);
+					loader = null;
+				} catch (IOException e) {
+					throw new IllegalStateException("Could not load LookupData", e);
+				} finally {
+					loading = false;
+				}
+			}
+		}
+
+		/**
+		 * Remove version, checksum and all bins, as if the section was empty.
+		 * A pending loader is dropped.
+		 */
+		public synchronized void clear() {
+			loader = null;
+			version = null;
+			checksum = 0;
+			binCount = 0;
+			if(external) {
+				data = ByteBuffer.allocate(BIN_SIZE * 256);
+				external = false;
+			}
+			modCount++;
+		}
+
+		/**
+		 * Return a counter, which is increased by every change of version, checksum or bins.
+		 * @return
+		 */
+		public int getModCount() {
+			ensureLoaded();
+			return modCount;
+		}
+
+		public String getVersion() {
+			ensureLoaded();
+			return version;
+		}
+
+		public void setVersion(String version) {
+			ensureLoaded();
+			this.version = version;
+			modCount++;
+		}
+
+		public int getChecksum() {
+			ensureLoaded();
+			return checksum;
+		}
+
+		public void setChecksum(int checksum) {
+			ensureLoaded();
+			this.checksum = checksum;
+			modCount++;
+		}
+
+		/**
+		 * Decode the given Bin value (128 hex characters) and append it.
+		 * @param hex
+		 */
+		public void addBin(CharSequence hex) {
+			addBin(hex, 0, hex.length());
+		}
+
+		/**
+		 * Decode the hex characters between start and end and append them as a new bin.
+		 * @param hex
+		 * @param start
+		 * @param end
+		 */
+		public void addBin(CharSequence hex, int start, int end) {
+			ensureLoaded();
+			if(end - start != BIN_SIZE * 2) {
+				throw new IllegalArgumentException("Bin must have " + (BIN_SIZE * 2) + " hex characters, got " + (end - start));
+			}
+			int pos = reserveBin();
+			for (int i = start; i < end; i += 2) {
+				data.put(pos++, (byte)((hexDigit(hex.charAt(i)) << 4) | hexDigit(hex.charAt(i + 1))));
+			}
+		}
+
+		/**
+		 * Append an already decoded bin.
+		 * @param src
+		 * @param offset position of the BIN_SIZE bytes in src
+		 */
+		public void addBin(byte[] src, int offset) {
+			ensureLoaded();
+			int pos = reserveBin();
+			for (int i = 0; i < BIN_SIZE; i++) {
+				data.put(pos + i, src[offset + i]);
+			}
+		}
+
+		/**
+		 * Append all bins of the other section, e.g. of a part parsed separately.
+		 * Version and checksum are not touched.
+		 * @param other
+		 */
+		public void addBins(LookupData other) {
+			ensureLoaded();
+			other.ensureLoaded();
+			int length = other.binCount * BIN_SIZE;
+			int pos = binCount * BIN_SIZE;
+			ensureCapacity(pos + length);
+			ByteBuffer src = other.data.duplicate();
+			src.position(0).limit(length);
+			data.position(pos);
+			data.put(src);
+			data.clear();
+			binCount += other.binCount;
+			modCount++;
+		}
+
+		/**
+		 * Use the given bytes as bins without copying them, e.g. a slice of a memory-mapped file.
+		 * All bins added before are dropped. The bytes are only copied, when more bins are added.
+		 * @param bins the bytes between position and limit, a multiple of BIN_SIZE
+		 */
+		public void setBins(ByteBuffer bins) {
+			ensureLoaded();
+			if(bins.remaining() % BIN_SIZE != 0) {
+				throw new IllegalArgumentException("Bins must be a multiple of " + BIN_SIZE + " bytes, got " + bins.remaining());
+			}
+			this.data = bins.slice();
+			this.binCount = bins.remaining() / BIN_SIZE;
+			this.external = true;
+			this.modCount++;
+		}
+
+		private int reserveBin() {
+			int pos = binCount * BIN_SIZE;
+			ensureCapacity(pos + BIN_SIZE);
+			binCount++;
+			modCount++;
+			return pos;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if(!external && capacity <= data.capacity()) {
+				return;
+			}
+			// external buffers may be read-only, so they are copied as well
+			int used = binCount * BIN_SIZE;
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(capacity, Math.max(data.capacity() * 2, BIN_SIZE * 256)));
+			ByteBuffer src = data.duplicate();
+			src.position(0).limit(used);
+			grown.put(src);
+			grown.clear();
+			data = grown;
+			external = false;
+		}
+
+		private int hexDigit(char ch) {
+			if(ch >= '0' && ch <= '9') return ch - '0';
+			if(ch >= 'a' && ch <= 'f') return ch - 'a' + 10;
+			if(ch >= 'A' && ch <= 'F') return ch - 'A' + 10;
+			throw new NumberFormatException("Illegal hex character '" + ch + "' in Bin");
+		}
+
+		/**
+		 * Return the number of bins.
+		 * @return
+		 */
+		public int getBinCount() {
+			ensureLoaded();
+			return binCount;
+		}
+
+		/**
+		 * Return a single byte of a bin.
+		 * @param bin index of the bin
+		 * @param offset byte offset within the bin, 0 to BIN_SIZE-1
+		 * @return
+		 */
+		public byte getByte(int bin, int offset) {
+			// position() loads the section, which replaces data
+			int pos = position(bin, offset, 1);
+			return data.get(pos);
+		}
+
+		/**
+		 * Return four bytes of a bin as big-endian int, in the byte order they appear in the hex text.
+		 * @param bin index of the bin
+		 * @param offset byte offset within the bin, 0 to BIN_SIZE-4
+		 * @return
+		 */
+		public int getInt(int bin, int offset) {
+			int pos = position(bin, offset, 4);
+			return data.getInt(pos);
+		}
+
+		/**
+		 * Copy the BIN_SIZE bytes of a bin into dst.
+		 * @param bin
+		 * @param dst
+		 * @param dstOffset
+		 */
+		public void getBin(int bin, byte[] dst, int dstOffset) {
+			int pos = position(bin, 0, BIN_SIZE);
+			for (int i = 0; i < BIN_SIZE; i++) {
+				dst[dstOffset + i] = data.get(pos + i);
+			}
+		}
+
+		private int position(int bin, int offset, int length) {
+			ensureLoaded();
+			if(bin < 0 || bin >= binCount || offset < 0 || offset + length > BIN_SIZE) {
+				throw new IndexOutOfBoundsException("bin " + bin + ", offset " + offset);
+			}
+			return bin * BIN_SIZE + offset;
+		}
+
+		/**
+		 * Return a read-only view of all bins, getBinCount() * BIN_SIZE bytes.
+		 * @return
+		 */
+		public ByteBuffer asByteBuffer() {
+			ensureLoaded();
+			ByteBuffer view = data.asReadOnlyBuffer();
+			view.position(0).limit(binCount * BIN_SIZE);
+			return view.slice();
+		}
+
+		/**
+		 * Return the given bin encoded as 128 lowercase hex characters, as written in the TGM.
+		 * @param bin
+		 * @return
+		 */
+		public String getBinHex(int bin) {
+			int pos = position(bin, 0, BIN_SIZE);
+			char[] chars = new char[BIN_SIZE * 2];
+			for (int i = 0; i < BIN_SIZE; i++) {
+				int b = data.get(pos + i) & 0xff;
+				chars[i * 2] = HEX_CHARS[b >>> 4];
+				chars[i * 2 + 1] = HEX_CHARS[b & 0xf];
+			}
+			return new String(chars);
+		}
+
+		/**
+		 * Return the bins as hex strings. This is a compatibility view,
+		 * every get() encodes the bin again, so prefer the indexed accessors.
+		 * @return
+		 */
+		public List<String> getBins() {
+			if(hexView == null) {
+				hexView = new AbstractList<String>() {
+					@Override
+					public String get(int index) {
+						return getBinHex(index);
+					}
+
+					@Override
+					public int size() {
+						return getBinCount();
+					}
+				};
+			}
+			return hexView;
+		}
+	}
+
+	/**
+	 * Fills a {@link LookupData} section on demand.
+	 * @see LookupData#setLoader(LookupDataLoader)
+	 */
+	public interface LookupDataLoader {
+		/**
+		 * Add version, bins and checksum to the given, still empty section.
+		 * @param lookupData
+		 * @throws IOException
+		 */
+		void load(LookupData lookupData) throws IOException;
+	}
+
+	private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+	private static DoubleArrayList copy(DoubleArrayList list) {
+		return list != null ? new DoubleArrayList(list.toDoubleArray()) : null;
+	}
+
+	private static IntArrayList copy(IntArrayList list) {
+		return list != null ? new IntArrayList(list.toIntArray()) : null;
+	}
+
+	/**
+	 * List backed by the {@link NodeStore}. Every get() creates a new {@link Node} copied from its row,
+	 * changes are written to the store by set(), add(), remove() and clear().
+	 */
+	private class NodeList extends AbstractList<Node> implements RandomAccess {
+
+		@Override
+		public Node get(int index) {
+			return nodeStore.getNode(index);
+		}
+
+		@Override
+		public Node set(int index, Node node) {
+			Node old = get(index);
+			getWritableNodeStore().setNode(index, node);
+			return old;
+		}
+
+		@Override
+		public void add(int index, Node node) {
+			NodeStore store = getWritableNodeStore();
+			store.setNode(store.insertNode(index), node);
+			modCount++;
+		}
+
+		@Override
+		public Node remove(int index) {
+			Node old = get(index);
+			getWritableNodeStore().removeNode(index);
+			modCount++;
+			return old;
+		}
+
+		@Override
+		public void clear() {
+			getWritableNodeStore().clear();
+			modCount++;
+		}
+
+		@Override
+		public int size() {
+			return nodeStore.size();
+		}
+	}
+
+	/**
+	 * Remove all values, as if the file was empty, e.g. to parse it again.
+	 * The capacity of the {@link NodeStore}, the LookupData and the lists of
+	 * [QuasiStaticAnalysis] and [Realtime] is kept. A variant gets an empty node store and
+	 * LookupData of its own instead of clearing the shared ones.
+	 */
+	public void clear() {
+		quasiStaticAnalysis.clear();
+		if(sharedNodeStore) {
+			this.nodeStore = new NodeStore(nodeStore.getMaterials());
+			this.sharedNodeStore = false;
+		} else {
+			nodeStore.clear();
+		}
+		realtime.clear();
+		if(sharedLookupData) {
+			this.lookupData = new LookupData();
+			this.sharedLookupData = false;
+		} else {
+			lookupData.clear();
+		}
 	}
 
 	/**
 	 * Return all nodes contained in this TGM defintion.
+	 * <p>
+	 * The list is backed by the {@link NodeStore}, it can be changed like a list of nodes.
+	 * Unlike the list of Node objects kept before the store was introduced, every get() returns a
+	 * new deep copy of the node, so changing its fields has no effect until it is passed back
+	 * with set(), e.g. {@code nodes.set(i, node)} after {@code node = nodes.get(i); node.treadDepth = 0.004;}.
+	 * Writing to the fields of a Node taken from the list alone doesn't change the file.
+	 * Use {@link NodeStore#cursor()} or the getters of {@link #getNodeStore()} to walk the nodes without allocating.
 	 * @return
 	 */
 	public List<Node> getNodes() {
 		return this.nodes;
 	}
 
+	/**
+	 * Return the column store holding all nodes of this TGM definition.
+	 * For a variant this may still be the store of the file it was created from,
+	 * use {@link #getWritableNodeStore()} to change nodes.
+	 * @return
+	 */
+	public NodeStore getNodeStore() {
+		return this.nodeStore;
+	}
+
+	/**
+	 * Return the node store for changes. A variant, which still shares the store
+	 * of the file it was created from, gets its own copy first.
+	 * @return
+	 */
+	public NodeStore getWritableNodeStore() {
+		if(sharedNodeStore) {
+			NodeStore copy = new NodeStore(nodeStore.getMaterials());
+			copy.addNodes(nodeStore);
+			this.nodeStore = copy;
+			this.sharedNodeStore = false;
+		}
+		return this.nodeStore;
+	}
+
 	/**
 	 * Add a new node to this TGM definition.
 	 * @param node
@@ -0,0 +1,339 @@
+package net.ctdp.tgmutils.physics;
+
+import java.util.Arrays;
+
+import net.ctdp.tgmutils.models.MaterialTable;
+import net.ctdp.tgmutils.models.NodeStore;
+import net.ctdp.tgmutils.models.TGMFile.QuasiStaticAnalysis;
+import net.ctdp.tgmutils.util.DoubleArrayList;
+
+/**
+ * Arc length, area, mass and inertia of the nodes of the tyre's cross-section, computed on demand and memoized.
+ * <p>
+ * Every node covers half of the way to each of its neighbours along the outer surface, its arc length.
+ * Its area is arc length times thickness. The thickness is made of three layers, each with the density
+ * of its materials at the given temperature: the tread over TreadDepth at the outer surface, -Y, the plies
+ * with their thickness and the bulk over the rest. Tread and carcass are revolved around the axle as thin
+ * rings at their middle depth, the plies lie within the carcass. Inertia is the sum of these rings,
+ * [spin axis, diameter, diameter] like {@link QuasiStaticAnalysis#totalInertiaStandards}.
+ * Ring mass and inertia weight each node with the first value of its RingAndRim.
+ * <p>
+ * A node depends on its own values and on the geometry of its neighbours. The versions of these three nodes
+ * are remembered with the node's values, so after changing a node only it and its neighbours are computed again.
+ * This is a simplified model of the cross-section, compare it with the values of the file
+ * with {@link #getDeviation(QuasiStaticAnalysis)}.
+ */
+public final class CrossSection {
+
+	// layers for density(), plies count from PLY
+	private static final int TREAD = -2;
+	private static final int BULK = -1;
+	private static final int PLY = 0;
+
+	private final NodeStore nodes;
+	private final double temperature;
+
+	private int size;
+	// per node: versions of the previous node, the node and the next node the values are valid for
+	private int[] previousVersion = new int[0];
+	private int[] nodeVersion = new int[0];
+	private int[] nextVersion = new int[0];
+	private boolean[] valid = new boolean[0];
+	private double[] arcLength = new double[0];
+	private double[] area = new double[0];
+	private double[] mass = new double[0];
+	private double[] spin = new double[0];
+	private double[] lateral = new double[0];
+	private double[] ringWeight = new double[0];
+	private long computeCount;
+
+	// totals, valid for totalsModCount
+	private int totalsModCount;
+	private boolean totalsValid;
+	private double totalMass;
+	private double ringMass;
+	private final double[] totalInertia = new double[3];
+	private final double[] ringInertia = new double[3];
+
+	/**
+	 * Create the cross-section of the nodes, with densities at the given temperature.
+	 * Nothing is computed until a value is requested.
+	 * @param nodes
+	 * @param temperature in Kelvin
+	 */
+	public CrossSection(NodeStore nodes, double temperature) {
+		this.nodes = nodes;
+		this.temperature = temperature;
+	}
+
+	/**
+	 * Return the temperature the densities are taken at.
+	 * @return
+	 */
+	public double getTemperature() {
+		return temperature;
+	}
+
+	/**
+	 * Return how often the values of a node have been computed, for statistics.
+	 * @return
+	 */
+	public long getComputeCount() {
+		return computeCount;
+	}
+
+	/**
+	 * Return the length of the outer surface covered by the node in m.
+	 * @param node
+	 * @return
+	 */
+	public double getArcLength(int node) {
+		compute(node);
+		return arcLength[node];
+	}
+
+	/**
+	 * Return the area of the cross-section covered by the node in m².
+	 * @param node
+	 * @return
+	 */
+	public double getArea(int node) {
+		compute(node);
+		return area[node];
+	}
+
+	/**
+	 * Return the mass of the node revolved around the axle in kg.
+	 * @param node
+	 * @return
+	 */
+	public double getMass(int node) {
+		compute(node);
+		return mass[node];
+	}
+
+	/**
+	 * Return the moment of inertia of the node around the spin axis in kg m².
+	 * @param node
+	 * @return
+	 */
+	public double getInertia(int node) {
+		compute(node);
+		return spin[node];
+	}
+
+	/**
+	 * Return the mass of all nodes.
+	 * @return
+	 */
+	public double getTotalMass() {
+		computeTotals();
+		return totalMass;
+	}
+
+	/**
+	 * Return the mass of the rigid ring.
+	 * @return
+	 */
+	public double getRingMass() {
+		computeTotals();
+		return ringMass;
+	}
+
+	/**
+	 * Return the moment of inertia of all nodes.
+	 * @param axis 0 for the spin axis, 1 and 2 for the diameters
+	 * @return
+	 */
+	public double getTotalInertia(int axis) {
+		computeTotals();
+		return totalInertia[axis];
+	}
+
+	/**
+	 * Return the moment of inertia of the rigid ring.
+	 * @param axis 0 for the spin axis, 1 and 2 for the diameters
+	 * @return
+	 */
+	public double getRingInertia(int axis) {
+		computeTotals();
+		return ringInertia[axis];
+	}
+
+	/**
+	 * Return the largest relative deviation of total mass, ring mass and their inertia from the values
+	 * of the analysis. Values missing or 0 in the analysis are not compared.
+	 * @param qsa
+	 * @return e.g. 0.1 if a value is 10% off
+	 */
+	public double getDeviation(QuasiStaticAnalysis qsa) {
+		computeTotals();
+		double deviation = deviation(totalMass, qsa.totalMass, 0);
+		deviation = deviation(ringMass, qsa.ringMass, deviation);
+		for (int axis = 0; axis < 3; axis++) {
+			deviation = deviation(totalInertia[axis], get(qsa.totalInertiaStandards, axis), deviation);
+			deviation = deviation(ringInertia[axis], get(qsa.ringInertiaStandards, axis), deviation);
+		}
+		return deviation;
+	}
+
+	private static double get(DoubleArrayList list, int i) {
+		return list != null && i < list.size() ? list.getDouble(i) : 0;
+	}
+
+	private static double deviation(double value, double expected, double deviation) {
+		if(expected == 0) {
+			return deviation;
+		}
+		return Math.max(deviation, Math.abs(value / expected - 1));
+	}
+
+	private void computeTotals() {
+		if(totalsValid && totalsModCount == nodes.getModCount()) {
+			return;
+		}
+		double totalMass = 0;
+		double ringMass = 0;
+		double[] totalInertia = new double[3];
+		double[] ringInertia = new double[3];
+		for (int n = 0; n < nodes.size(); n++) {
+			compute(n);
+			double spin = this.spin[n];
+			double diameter = spin / 2 + mass[n] * lateral[n] * lateral[n];
+			totalMass += mass[n];
+			totalInertia[0] += spin;
+			totalInertia[1] += diameter;
+			totalInertia[2] += diameter;
+			ringMass += ringWeight[n] * mass[n];
+			ringInertia[0] += ringWeight[n] * spin;
+			ringInertia[1] += ringWeight[n] * diameter;
+			ringInertia[2] += ringWeight[n] * diameter;
+		}
+		this.totalMass = totalMass;
+		this.ringMass = ringMass;
+		System.arraycopy(totalInertia, 0, this.totalInertia, 0, 3);
+		System.arraycopy(ringInertia, 0, this.ringInertia, 0, 3);
+		totalsModCount = nodes.getModCount();
+		totalsValid = true;
+	}
+
+	/**
+	 * Compute the values of the node, unless they are valid.
+	 * @return the node
+	 */
+	private int compute(int node) {
+		if(nodes.size() != size) {
+			resize(nodes.size());
+		}
+		if(node < 0 || node >= size) {
+			throw new IndexOutOfBoundsException("Node: " + node + ", Size: " + size);
+		}
+		int previous = node > 0 ? nodes.getVersion(node - 1) : 0;
+		int version = nodes.getVersion(node);
+		int next = node + 1 < size ? nodes.getVersion(node + 1) : 0;
+		if(valid[node] && previousVersion[node] == previous && nodeVersion[node] == version && nextVersion[node] == next) {
+			return node;
+		}
+
+		double arc = 0;
+		if(nodes.hasGeometry(node)) {
+			if(node > 0 && nodes.hasGeometry(node - 1)) {
+				arc += distance(node - 1, node) / 2;
+			}
+			if(node + 1 < size && nodes.hasGeometry(node + 1)) {
+				arc += distance(node, node + 1) / 2;
+			}
+		}
+		double thickness = nodes.getThickness(node);
+		double treadDepth = Math.min(nodes.getTreadDepth(node), thickness);
+		// mass per area of the surface of each ring, the plies take the place of bulk
+		double tread = treadDepth * density(node, TREAD);
+		double carcass = 0;
+		double bulkDepth = thickness - treadDepth;
+		for (int p = 0; p < nodes.getPlyCount(node); p++) {
+			double plyThickness = nodes.getPlyThickness(nodes.getPly(node, p));
+			carcass += plyThickness * density(node, PLY + p);
+			bulkDepth -= plyThickness;
+		}
+		carcass += Math.max(bulkDepth, 0) * density(node, BULK);
+		double outer = Math.abs(nodes.getY(node));
+		double treadRadius = outer - treadDepth / 2;
+		double carcassRadius = outer - (treadDepth + thickness) / 2;
+		double treadMass = tread * arc * 2 * Math.PI * treadRadius;
+		double carcassMass = carcass * arc * 2 * Math.PI * carcassRadius;
+
+		arcLength[node] = arc;
+		area[node] = arc * thickness;
+		lateral[node] = nodes.getX(node);
+		mass[node] = treadMass + carcassMass;
+		spin[node] = treadMass * treadRadius * treadRadius + carcassMass * carcassRadius * carcassRadius;
+		ringWeight[node] = nodes.hasRingAndRim(node) ? nodes.getRingAndRim(node, 0) : 0;
+		previousVersion[node] = previous;
+		nodeVersion[node] = version;
+		nextVersion[node] = next;
+		valid[node] = true;
+		computeCount++;
+		return node;
+	}
+
+	private void resize(int size) {
+		// neighbours change with the number of nodes, forget everything
+		this.size = size;
+		previousVersion = new int[size];
+		nodeVersion = new int[size];
+		nextVersion = new int[size];
+		valid = new boolean[size];
+		arcLength = new double[size];
+		area = new double[size];
+		mass = new double[size];
+		spin = new double[size];
+		lateral = new double[size];
+		ringWeight = new double[size];
+		totalsValid = false;
+	}
+
+	private double distance(int a, int b) {
+		double dx = nodes.getX(b) - nodes.getX(a);
+		double dy = nodes.getY(b) - nodes.getY(a);
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Return the density of a layer of the node at the temperature, 0 without materials.
+	 */
+	private double density(int node, int layer) {
+		MaterialTable materials = nodes.getMaterials();
+		int count = layer == TREAD ? nodes.getTreadMaterialCount(node)
+				: layer == BULK ? nodes.getBulkMaterialCount(node) : nodes.getPlyMaterialCount(nodes.getPly(node, layer));
+		// the closest materials below and above the temperature
+		double below = Double.NEGATIVE_INFINITY, belowDensity = 0;
+		double above = Double.POSITIVE_INFINITY, aboveDensity = 0;
+		for (int i = 0; i < count; i++) {
+			int m = layer == TREAD ? nodes.getTreadMaterial(node, i)
+					: layer == BULK ? nodes.getBulkMaterial(node, i) : nodes.getPlyMaterial(nodes.getPly(node, layer), i);
+			double t = materials.getTemperature(m);
+			if(t <= temperature && t > below) {
+				below = t;
+				belowDensity = materials.getDensity(m);
+			}
+			if(t >= temperature && t < above) {
+				above = t;
+				aboveDensity = materials.getDensity(m);
+			}
+		}
+		if(below == Double.NEGATIVE_INFINITY) {
+			return aboveDensity;
+		}
+		if(above == Double.POSITIVE_INFINITY || above == below) {
+			return belowDensity;
+		}
+		return belowDensity + (aboveDensity - belowDensity) * (temperature - below) / (above - below);
+	}
+
+	@Override
+	public String toString() {
+		computeTotals();
+		return "CrossSection [nodes=" + size + ", totalMass=" + totalMass + ", ringMass=" + ringMass
+				+ ", totalInertia=" + Arrays.toString(totalInertia) + "]";
+	}
+}
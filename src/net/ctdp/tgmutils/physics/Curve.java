@@ -0,0 +1,250 @@
+package net.ctdp.tgmutils.physics;
+
+import java.util.List;
+
+import net.ctdp.tgmutils.util.DoubleArrayList;
+
+/**
+ * A curve given by (x, y) points, e.g. the StaticCurve or the sliding curves of
+ * [Realtime], compiled into a table of uniformly spaced samples.
+ * <p>
+ * evaluate() looks up the two samples around x and interpolates linearly between
+ * them, without any branch on the shape of the curve. Outside of the points the
+ * curve continues with the y of the first or last point, NaN gives the y of the first point.
+ * The table is immutable, so a curve can be evaluated by many threads at once.
+ */
+public final class Curve {
+
+	/**
+	 * Number of samples used, if none is given.
+	 */
+	public static final int DEFAULT_SAMPLES = 1024;
+
+	/**
+	 * How the curve runs between two points.
+	 */
+	public enum Interpolation {
+		/**
+		 * Straight lines between the points.
+		 */
+		LINEAR,
+		/**
+		 * Monotone cubic Hermite spline (Fritsch-Carlson), which is smooth at the points
+		 * and doesn't overshoot, so a peak stays at its point.
+		 */
+		CUBIC
+	}
+
+	private final double[] xs;
+	private final double[] ys;
+	private final double[] slopes;
+	private final Interpolation interpolation;
+
+	private final double minX;
+	private final double maxX;
+	private final double scale;
+	private final double last;
+	/**
+	 * Samples at minX + i / scale, followed by a copy of the last one,
+	 * so the sample behind the last index can be read as well.
+	 */
+	private final double[] table;
+
+	private Curve(double[] xs, double[] ys, Interpolation interpolation, int samples) {
+		this.xs = xs;
+		this.ys = ys;
+		this.interpolation = interpolation;
+		this.slopes = interpolation == Interpolation.CUBIC ? slopes(xs, ys) : null;
+		this.minX = xs[0];
+		this.maxX = xs[xs.length - 1];
+		int count = maxX > minX ? samples : 1;
+		this.scale = maxX > minX ? (count - 1) / (maxX - minX) : 0;
+		this.last = count - 1;
+		this.table = new double[count + 1];
+		for (int i = 0; i < count; i++) {
+			table[i] = interpolate(i == count - 1 ? maxX : minX + i / scale);
+		}
+		table[count] = table[count - 1];
+	}
+
+	/**
+	 * Compile the flat list of x and y values, as read from a TGM, into a linear curve
+	 * of {@link #DEFAULT_SAMPLES} samples.
+	 * @param points
+	 * @return
+	 */
+	public static Curve compile(List<Double> points) {
+		return compile(points, Interpolation.LINEAR, DEFAULT_SAMPLES);
+	}
+
+	/**
+	 * Compile the flat list of x and y values, as read from a TGM.
+	 * @param points x0, y0, x1, y1, ... with increasing x
+	 * @param interpolation
+	 * @param samples number of samples, at least 2
+	 * @return
+	 * @throws IllegalArgumentException if there are no points, an odd number of values,
+	 * decreasing x or not finite values
+	 */
+	public static Curve compile(List<Double> points, Interpolation interpolation, int samples) {
+		if(points == null || points.isEmpty() || points.size() % 2 != 0) {
+			throw new IllegalArgumentException("Curve needs pairs of x and y values, got " + points);
+		}
+		if(samples < 2) {
+			throw new IllegalArgumentException("samples < 2: " + samples);
+		}
+		int count = points.size() / 2;
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++) {
+			xs[i] = value(points, i * 2);
+			ys[i] = value(points, i * 2 + 1);
+			if(Double.isNaN(xs[i]) || Double.isInfinite(xs[i]) || Double.isNaN(ys[i]) || Double.isInfinite(ys[i])) {
+				throw new IllegalArgumentException("Curve point " + i + " is not finite: " + points);
+			}
+			if(i > 0 && xs[i] <= xs[i - 1]) {
+				throw new IllegalArgumentException("Curve x values must increase: " + points);
+			}
+		}
+		return new Curve(xs, ys, interpolation, samples);
+	}
+
+	private static double value(List<Double> points, int index) {
+		return points instanceof DoubleArrayList ? ((DoubleArrayList)points).getDouble(index) : points.get(index);
+	}
+
+	/**
+	 * Return the tangents of the monotone cubic spline through the points.
+	 */
+	private static double[] slopes(double[] xs, double[] ys) {
+		int n = xs.length;
+		double[] slopes = new double[n];
+		if(n < 2) {
+			return slopes;
+		}
+		double[] secants = new double[n - 1];
+		for (int i = 0; i < n - 1; i++) {
+			secants[i] = (ys[i + 1] - ys[i]) / (xs[i + 1] - xs[i]);
+		}
+		slopes[0] = secants[0];
+		slopes[n - 1] = secants[n - 2];
+		for (int i = 1; i < n - 1; i++) {
+			// zero at a peak or valley, otherwise the weighted harmonic mean of both secants
+			if(secants[i - 1] * secants[i] <= 0) {
+				slopes[i] = 0;
+			} else {
+				double h0 = xs[i] - xs[i - 1];
+				double h1 = xs[i + 1] - xs[i];
+				double w0 = 2 * h1 + h0;
+				double w1 = h1 + 2 * h0;
+				slopes[i] = (w0 + w1) / (w0 / secants[i - 1] + w1 / secants[i]);
+			}
+		}
+		return slopes;
+	}
+
+	/**
+	 * Evaluate the curve at x, interpolating between the two samples around it.
+	 * @param x
+	 * @return
+	 */
+	public double evaluate(double x) {
+		double t = (x - minX) * scale;
+		t = t > 0 ? (t < last ? t : last) : 0;
+		int i = (int)t;
+		double a = table[i];
+		return a + (t - i) * (table[i + 1] - a);
+	}
+
+	/**
+	 * Evaluate the curve for every value of in.
+	 * @param in
+	 * @param out at least as long as in
+	 */
+	public void evaluate(double[] in, double[] out) {
+		evaluate(in, 0, out, 0, in.length);
+	}
+
+	/**
+	 * Evaluate the curve for length values of in starting at inOffset.
+	 * @param in
+	 * @param inOffset
+	 * @param out
+	 * @param outOffset
+	 * @param length
+	 */
+	public void evaluate(double[] in, int inOffset, double[] out, int outOffset, int length) {
+		double[] table = this.table;
+		double minX = this.minX;
+		double scale = this.scale;
+		double last = this.last;
+		for (int k = 0; k < length; k++) {
+			double t = (in[inOffset + k] - minX) * scale;
+			t = t > 0 ? (t < last ? t : last) : 0;
+			int i = (int)t;
+			double a = table[i];
+			out[outOffset + k] = a + (t - i) * (table[i + 1] - a);
+		}
+	}
+
+	/**
+	 * Evaluate the curve itself at x, without the table. This is what the samples are taken from,
+	 * use it to check the error of the sampling.
+	 * @param x
+	 * @return
+	 */
+	public double interpolate(double x) {
+		int n = xs.length;
+		if(x <= xs[0]) {
+			return ys[0];
+		}
+		if(x >= xs[n - 1]) {
+			return ys[n - 1];
+		}
+		int i = 0;
+		while(x > xs[i + 1]) {
+			i++;
+		}
+		double h = xs[i + 1] - xs[i];
+		double s = (x - xs[i]) / h;
+		if(interpolation == Interpolation.LINEAR) {
+			return ys[i] + s * (ys[i + 1] - ys[i]);
+		}
+		double s2 = s * s;
+		double s3 = s2 * s;
+		return (2 * s3 - 3 * s2 + 1) * ys[i] + (s3 - 2 * s2 + s) * h * slopes[i]
+				+ (-2 * s3 + 3 * s2) * ys[i + 1] + (s3 - s2) * h * slopes[i + 1];
+	}
+
+	/**
+	 * Return x of the first point.
+	 * @return
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Return x of the last point.
+	 * @return
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Return the number of samples in the table.
+	 * @return
+	 */
+	public int getSampleCount() {
+		return table.length - 1;
+	}
+
+	/**
+	 * Return how the curve runs between its points.
+	 * @return
+	 */
+	public Interpolation getInterpolation() {
+		return interpolation;
+	}
+}
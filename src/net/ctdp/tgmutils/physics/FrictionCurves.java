@@ -0,0 +1,81 @@
+package net.ctdp.tgmutils.physics;
+
+import java.util.List;
+
+import net.ctdp.tgmutils.models.TGMFile.Realtime;
+import net.ctdp.tgmutils.physics.Curve.Interpolation;
+
+/**
+ * The four friction curves of a [Realtime] section, compiled once.
+ * A curve, which is missing in the section, is null.
+ */
+public final class FrictionCurves {
+
+	private final Curve staticCurve;
+	private final Curve slidingAdhesion;
+	private final Curve slidingMicroDeformation;
+	private final Curve slidingMacroDeformation;
+
+	private FrictionCurves(Realtime realtime, Interpolation interpolation, int samples) {
+		this.staticCurve = compile(realtime.staticCurve, interpolation, samples);
+		this.slidingAdhesion = compile(realtime.slidingAdhesionCurve, interpolation, samples);
+		this.slidingMicroDeformation = compile(realtime.slidingMicroDeformationCurve, interpolation, samples);
+		this.slidingMacroDeformation = compile(realtime.slidingMacroDeformationCurve, interpolation, samples);
+	}
+
+	private static Curve compile(List<Double> points, Interpolation interpolation, int samples) {
+		return points != null ? Curve.compile(points, interpolation, samples) : null;
+	}
+
+	/**
+	 * Compile the curves with linear interpolation and {@link Curve#DEFAULT_SAMPLES} samples.
+	 * @param realtime
+	 * @return
+	 */
+	public static FrictionCurves compile(Realtime realtime) {
+		return new FrictionCurves(realtime, Interpolation.LINEAR, Curve.DEFAULT_SAMPLES);
+	}
+
+	/**
+	 * Compile the curves.
+	 * @param realtime
+	 * @param interpolation
+	 * @param samples
+	 * @return
+	 */
+	public static FrictionCurves compile(Realtime realtime, Interpolation interpolation, int samples) {
+		return new FrictionCurves(realtime, interpolation, samples);
+	}
+
+	/**
+	 * Return the StaticCurve, static grip over temperature.
+	 * @return
+	 */
+	public Curve getStaticCurve() {
+		return staticCurve;
+	}
+
+	/**
+	 * Return the SlidingAdhesionCurve.
+	 * @return
+	 */
+	public Curve getSlidingAdhesionCurve() {
+		return slidingAdhesion;
+	}
+
+	/**
+	 * Return the SlidingMicroDeformationCurve.
+	 * @return
+	 */
+	public Curve getSlidingMicroDeformationCurve() {
+		return slidingMicroDeformation;
+	}
+
+	/**
+	 * Return the SlidingMacroDeformationCurve.
+	 * @return
+	 */
+	public Curve getSlidingMacroDeformationCurve() {
+		return slidingMacroDeformation;
+	}
+}
@@ -0,0 +1,345 @@
+package net.ctdp.tgmutils.physics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.ctdp.tgmutils.models.TGMFile.Realtime;
+import net.ctdp.tgmutils.util.DoubleArrayList;
+
+/**
+ * Evaluates the grip of a [Realtime] section over temperature, sliding velocity and contact pressure.
+ * <p>
+ * The TGM documentation names the parameters, but not the formulas, so this is the usual reading of them:
+ * <ul>
+ * <li>WLFParameters=(Tg, offset, C1, C2) shift the sliding velocity by
+ * log10(aT) = C1 * (T - Tg - offset) / (C2 + T - Tg), the WLF equation with the reference
+ * temperature Tg + offset.</li>
+ * <li>The sliding curves are taken over log10(v * aT), the StaticCurve over the temperature.</li>
+ * <li>RubberPressureSensitivityPower=(power, offset, nominal_max, normalize) scales the grip by
+ * ((min(p, nominal_max) + offset) / (nominal_max + offset))^power, without the denominator if normalize is 0.</li>
+ * <li>GrooveEffects and DampnessEffects add groove * effect and dampness * effect to a factor of 1
+ * for static friction, sliding adhesion, micro- and macro-deformation.</li>
+ * </ul>
+ * static grip = StaticBaseCoefficient * StaticCurve(T) * pressure * (1 + effects),<br>
+ * sliding grip = SlidingBaseCoefficient * pressure * sum of each sliding curve(log10(v * aT)) * (1 + effects).
+ * <p>
+ * Missing lists leave their factor out, a missing sliding curve adds nothing.
+ * An evaluator copies all values it needs, so it doesn't see later changes of the section,
+ * {@link #forRealtime(Realtime)} returns a new one after a change.
+ */
+public final class GripEvaluator {
+
+	/**
+	 * Smallest number of grid points worth a task of its own.
+	 */
+	private static final int MIN_TASK_POINTS = 16 * 1024;
+	private static ForkJoinPool defaultPool;
+
+	private static final Map<Realtime, GripEvaluator> CACHE = new WeakHashMap<Realtime, GripEvaluator>();
+
+	/**
+	 * The values of the section this evaluator has been created from, to detect changes.
+	 */
+	private final double[] inputs;
+	private final FrictionCurves curves;
+	private final double staticBase;
+	private final double slidingBase;
+	private final double glassTemperature;
+	private final double referenceTemperature;
+	private final double c1;
+	private final double c2;
+	private final boolean shifted;
+	private final double pressurePower;
+	private final double pressureOffset;
+	private final double pressureMax;
+	private final double pressureNorm;
+	private final boolean pressureSensitive;
+	private final double[] grooveEffects = new double[4];
+	private final double[] dampnessEffects = new double[4];
+
+	private ForkJoinPool pool = null;
+	private GripSurface lastSurface = null;
+
+	/**
+	 * Create an evaluator for the current values of the section.
+	 * @param realtime
+	 */
+	public GripEvaluator(Realtime realtime) {
+		this(realtime, inputs(realtime));
+	}
+
+	private GripEvaluator(Realtime realtime, double[] inputs) {
+		this.inputs = inputs;
+		this.curves = FrictionCurves.compile(realtime);
+		this.staticBase = realtime.staticBaseCoefficient;
+		this.slidingBase = realtime.slidingBaseCoefficient;
+
+		DoubleArrayList wlf = realtime.wLFParameters;
+		this.shifted = wlf != null && wlf.size() >= 4;
+		this.glassTemperature = shifted ? wlf.getDouble(0) : 0;
+		this.referenceTemperature = shifted ? wlf.getDouble(0) + wlf.getDouble(1) : 0;
+		this.c1 = shifted ? wlf.getDouble(2) : 0;
+		this.c2 = shifted ? wlf.getDouble(3) : 0;
+
+		DoubleArrayList sensitivity = realtime.rubberPressureSensitivityPower;
+		this.pressureSensitive = sensitivity != null && sensitivity.size() >= 4;
+		this.pressurePower = pressureSensitive ? sensitivity.getDouble(0) : 0;
+		this.pressureOffset = pressureSensitive ? sensitivity.getDouble(1) : 0;
+		this.pressureMax = pressureSensitive ? sensitivity.getDouble(2) : Double.MAX_VALUE;
+		this.pressureNorm = pressureSensitive && sensitivity.getDouble(3) != 0 ? pressureMax + pressureOffset : 1;
+
+		copy(realtime.grooveEffects, grooveEffects);
+		copy(realtime.dampnessEffects, dampnessEffects);
+	}
+
+	private static void copy(DoubleArrayList src, double[] dst) {
+		for (int i = 0; src != null && i < Math.min(src.size(), dst.length); i++) {
+			dst[i] = src.getDouble(i);
+		}
+	}
+
+	/**
+	 * Return all values of the section used by an evaluator, lists are preceded by their size, -1 if missing.
+	 */
+	private static double[] inputs(Realtime realtime) {
+		DoubleArrayList[] lists = { realtime.wLFParameters, realtime.rubberPressureSensitivityPower, realtime.grooveEffects,
+				realtime.dampnessEffects, realtime.staticCurve, realtime.slidingAdhesionCurve,
+				realtime.slidingMicroDeformationCurve, realtime.slidingMacroDeformationCurve };
+		int length = 2 + lists.length;
+		for (DoubleArrayList list : lists) {
+			length += list != null ? list.size() : 0;
+		}
+		double[] inputs = new double[length];
+		int pos = 0;
+		inputs[pos++] = realtime.staticBaseCoefficient;
+		inputs[pos++] = realtime.slidingBaseCoefficient;
+		for (DoubleArrayList list : lists) {
+			if(list == null) {
+				inputs[pos++] = -1;
+				continue;
+			}
+			inputs[pos++] = list.size();
+			for (int i = 0; i < list.size(); i++) {
+				inputs[pos++] = list.getDouble(i);
+			}
+		}
+		return inputs;
+	}
+
+	/**
+	 * Return an evaluator for the current values of the section. It is kept as long as the section
+	 * exists and its values are unchanged, so does the last surface it has evaluated.
+	 * @param realtime
+	 * @return
+	 */
+	public static GripEvaluator forRealtime(Realtime realtime) {
+		double[] inputs = inputs(realtime);
+		synchronized(CACHE) {
+			GripEvaluator evaluator = CACHE.get(realtime);
+			if(evaluator != null && Arrays.equals(evaluator.inputs, inputs)) {
+				return evaluator;
+			}
+		}
+		GripEvaluator evaluator = new GripEvaluator(realtime, inputs);
+		synchronized(CACHE) {
+			CACHE.put(realtime, evaluator);
+		}
+		return evaluator;
+	}
+
+	/**
+	 * Set the pool used by evaluate(). By default a pool shared by all evaluators is used.
+	 * @param pool
+	 */
+	public void setForkJoinPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	private static synchronized ForkJoinPool getDefaultPool() {
+		if(defaultPool == null) {
+			defaultPool = new ForkJoinPool();
+		}
+		return defaultPool;
+	}
+
+	/**
+	 * Return the compiled friction curves.
+	 * @return
+	 */
+	public FrictionCurves getCurves() {
+		return curves;
+	}
+
+	/**
+	 * Return log10 of the WLF shift factor aT at the given temperature, 0 without WLFParameters.
+	 * @param temperature in Kelvin
+	 * @return
+	 */
+	public double getShift(double temperature) {
+		return shifted ? c1 * (temperature - referenceTemperature) / (c2 + temperature - glassTemperature) : 0;
+	}
+
+	/**
+	 * Return the factor of the contact pressure.
+	 * @param pressure in Pa
+	 * @return
+	 */
+	public double getPressureFactor(double pressure) {
+		return pressureSensitive ? Math.pow((Math.min(pressure, pressureMax) + pressureOffset) / pressureNorm, pressurePower) : 1;
+	}
+
+	/**
+	 * Return the static grip coefficient.
+	 * @param temperature in Kelvin
+	 * @param pressure in Pa
+	 * @param groove 0 to 1
+	 * @param dampness 0 to 1
+	 * @return
+	 */
+	public double getStaticGrip(double temperature, double pressure, double groove, double dampness) {
+		Curve curve = curves.getStaticCurve();
+		return staticBase * (curve != null ? curve.evaluate(temperature) : 1) * getPressureFactor(pressure)
+				* effect(0, groove, dampness);
+	}
+
+	/**
+	 * Return the sliding grip coefficient.
+	 * @param temperature in Kelvin
+	 * @param velocity sliding velocity in m/s
+	 * @param pressure in Pa
+	 * @param groove 0 to 1
+	 * @param dampness 0 to 1
+	 * @return
+	 */
+	public double getSlidingGrip(double temperature, double velocity, double pressure, double groove, double dampness) {
+		double x = Math.log10(velocity) + getShift(temperature);
+		double sum = part(curves.getSlidingAdhesionCurve(), x) * effect(1, groove, dampness)
+				+ part(curves.getSlidingMicroDeformationCurve(), x) * effect(2, groove, dampness)
+				+ part(curves.getSlidingMacroDeformationCurve(), x) * effect(3, groove, dampness);
+		return slidingBase * getPressureFactor(pressure) * sum;
+	}
+
+	private static double part(Curve curve, double x) {
+		return curve != null ? curve.evaluate(x) : 0;
+	}
+
+	private double effect(int i, double groove, double dampness) {
+		return 1 + groove * grooveEffects[i] + dampness * dampnessEffects[i];
+	}
+
+	/**
+	 * Evaluate static and sliding grip for every combination of the given axes.
+	 * Large grids are split into tiles of temperatures, which are evaluated concurrently.
+	 * The last surface is kept and returned again for the same axes and conditions.
+	 * @param temperatures in Kelvin
+	 * @param velocities sliding velocities in m/s
+	 * @param pressures contact pressures in Pa
+	 * @param groove 0 to 1
+	 * @param dampness 0 to 1
+	 * @return
+	 */
+	public GripSurface evaluate(double[] temperatures, double[] velocities, double[] pressures, double groove, double dampness) {
+		synchronized(this) {
+			if(lastSurface != null && lastSurface.matches(temperatures, velocities, pressures, groove, dampness)) {
+				return lastSurface;
+			}
+		}
+		GripSurface surface = new GripSurface(temperatures.clone(), velocities.clone(), pressures.clone(), groove, dampness);
+		Tile tile = new Tile(surface, 0, temperatures.length);
+		if(surface.slidingGrip.length < MIN_TASK_POINTS) {
+			tile.compute();
+		} else {
+			(pool != null ? pool : getDefaultPool()).invoke(tile);
+		}
+		synchronized(this) {
+			lastSurface = surface;
+		}
+		return surface;
+	}
+
+	/**
+	 * Evaluates the grid for a range of temperatures.
+	 */
+	private class Tile extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final GripSurface surface;
+		private final int start;
+		private final int end;
+
+		Tile(GripSurface surface, int start, int end) {
+			this.surface = surface;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			int rowPoints = surface.getVelocities().length * surface.getPressures().length;
+			if(end - start > 1 && (end - start) * rowPoints >= 2 * MIN_TASK_POINTS) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new Tile(surface, start, middle), new Tile(surface, middle, end));
+				return;
+			}
+
+			double[] temperatures = surface.getTemperatures();
+			double[] velocities = surface.getVelocities();
+			double[] pressures = surface.getPressures();
+			int nv = velocities.length;
+			int np = pressures.length;
+			double groove = surface.getGroove();
+			double dampness = surface.getDampness();
+
+			double[] logV = new double[nv];
+			for (int v = 0; v < nv; v++) {
+				logV[v] = Math.log10(velocities[v]);
+			}
+			double[] pressureFactors = new double[np];
+			for (int p = 0; p < np; p++) {
+				pressureFactors[p] = getPressureFactor(pressures[p]);
+			}
+			double[] x = new double[nv];
+			double[] sliding = new double[nv];
+			double[] part = new double[nv];
+
+			Curve staticCurve = curves.getStaticCurve();
+			double staticEffect = staticBase * effect(0, groove, dampness);
+			for (int t = start; t < end; t++) {
+				double temperature = temperatures[t];
+				double staticGrip = staticEffect * (staticCurve != null ? staticCurve.evaluate(temperature) : 1);
+
+				// the sliding curves only depend on temperature and velocity, pressure just scales them
+				double shift = getShift(temperature);
+				for (int v = 0; v < nv; v++) {
+					x[v] = logV[v] + shift;
+				}
+				Arrays.fill(sliding, 0);
+				add(curves.getSlidingAdhesionCurve(), slidingBase * effect(1, groove, dampness), x, part, sliding);
+				add(curves.getSlidingMicroDeformationCurve(), slidingBase * effect(2, groove, dampness), x, part, sliding);
+				add(curves.getSlidingMacroDeformationCurve(), slidingBase * effect(3, groove, dampness), x, part, sliding);
+
+				for (int p = 0; p < np; p++) {
+					double factor = pressureFactors[p];
+					surface.staticGrip[t * np + p] = staticGrip * factor;
+					int row = (t * np + p) * nv;
+					for (int v = 0; v < nv; v++) {
+						surface.slidingGrip[row + v] = sliding[v] * factor;
+					}
+				}
+			}
+		}
+
+		private void add(Curve curve, double weight, double[] x, double[] part, double[] sum) {
+			if(curve == null) {
+				return;
+			}
+			curve.evaluate(x, part);
+			for (int i = 0; i < sum.length; i++) {
+				sum[i] += part[i] * weight;
+			}
+		}
+	}
+}
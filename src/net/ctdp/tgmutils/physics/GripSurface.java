@@ -0,0 +1,118 @@
+package net.ctdp.tgmutils.physics;
+
+import java.util.Arrays;
+
+/**
+ * Grip coefficients evaluated over a grid of temperature, sliding velocity and contact pressure,
+ * see {@link GripEvaluator#evaluate(double[], double[], double[], double, double)}.
+ * <p>
+ * The values are kept in flat arrays, static grip in temperature-major order
+ * [temperature][pressure], sliding grip in [temperature][pressure][velocity].
+ * The arrays are shared with the evaluator's cache and must not be changed.
+ */
+public final class GripSurface {
+
+	private final double[] temperatures;
+	private final double[] velocities;
+	private final double[] pressures;
+	private final double groove;
+	private final double dampness;
+	final double[] staticGrip;
+	final double[] slidingGrip;
+
+	GripSurface(double[] temperatures, double[] velocities, double[] pressures, double groove, double dampness) {
+		this.temperatures = temperatures;
+		this.velocities = velocities;
+		this.pressures = pressures;
+		this.groove = groove;
+		this.dampness = dampness;
+		this.staticGrip = new double[temperatures.length * pressures.length];
+		this.slidingGrip = new double[temperatures.length * pressures.length * velocities.length];
+	}
+
+	/**
+	 * Return true, if this surface has been evaluated for the given axes and conditions.
+	 */
+	boolean matches(double[] temperatures, double[] velocities, double[] pressures, double groove, double dampness) {
+		return Arrays.equals(this.temperatures, temperatures) && Arrays.equals(this.velocities, velocities)
+				&& Arrays.equals(this.pressures, pressures)
+				&& Double.compare(this.groove, groove) == 0 && Double.compare(this.dampness, dampness) == 0;
+	}
+
+	/**
+	 * Return the static grip coefficient at the given grid point.
+	 * @param temperature index into the temperatures
+	 * @param pressure index into the pressures
+	 * @return
+	 */
+	public double getStaticGrip(int temperature, int pressure) {
+		return staticGrip[temperature * pressures.length + pressure];
+	}
+
+	/**
+	 * Return the sliding grip coefficient at the given grid point.
+	 * @param temperature index into the temperatures
+	 * @param velocity index into the velocities
+	 * @param pressure index into the pressures
+	 * @return
+	 */
+	public double getSlidingGrip(int temperature, int velocity, int pressure) {
+		return slidingGrip[(temperature * pressures.length + pressure) * velocities.length + velocity];
+	}
+
+	/**
+	 * Return all static grip coefficients, [temperature][pressure] flattened.
+	 * @return
+	 */
+	public double[] getStaticGrip() {
+		return staticGrip;
+	}
+
+	/**
+	 * Return all sliding grip coefficients, [temperature][pressure][velocity] flattened.
+	 * @return
+	 */
+	public double[] getSlidingGrip() {
+		return slidingGrip;
+	}
+
+	/**
+	 * Return the temperature axis in Kelvin.
+	 * @return
+	 */
+	public double[] getTemperatures() {
+		return temperatures;
+	}
+
+	/**
+	 * Return the sliding velocity axis in m/s.
+	 * @return
+	 */
+	public double[] getVelocities() {
+		return velocities;
+	}
+
+	/**
+	 * Return the contact pressure axis in Pa.
+	 * @return
+	 */
+	public double[] getPressures() {
+		return pressures;
+	}
+
+	/**
+	 * Return the groove the surface has been evaluated for, 0 to 1.
+	 * @return
+	 */
+	public double getGroove() {
+		return groove;
+	}
+
+	/**
+	 * Return the dampness the surface has been evaluated for, 0 to 1.
+	 * @return
+	 */
+	public double getDampness() {
+		return dampness;
+	}
+}
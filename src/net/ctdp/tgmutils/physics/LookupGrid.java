@@ -0,0 +1,432 @@
+package net.ctdp.tgmutils.physics;
+
+import java.nio.ByteBuffer;
+
+import net.ctdp.tgmutils.models.TGMFile.LookupData;
+import net.ctdp.tgmutils.models.TGMFile.QuasiStaticAnalysis;
+import net.ctdp.tgmutils.util.DoubleArrayList;
+import net.ctdp.tgmutils.util.IntArrayList;
+
+/**
+ * The bins of a {@link LookupData} section indexed by the test matrix of the {@link QuasiStaticAnalysis},
+ * its GaugePressures × CarcassTemperatures × RotationSquareds.
+ * <p>
+ * The format of the bins is not documented, the default {@link Layout} is what the files at hand show:
+ * one record of equal size per grid point, starting at the first bin, pressure changing slowest and
+ * rotation² fastest, holding doubles whose low 32 bits come first. E.g. 1896 bins of a 3 × 2 × 2 matrix
+ * are 12 records of 158 bins, each starting with its TotalInertiaStandard.
+ * Use another layout for files which differ.
+ * <p>
+ * The values of all records are decoded once into a flat array, so the record of a grid point is found
+ * by index and values between grid points are interpolated multilinearly from the up to 8 surrounding
+ * records. The grid is a copy, see {@link #isCurrent()}.
+ */
+public final class LookupGrid {
+
+	/**
+	 * An axis of the test matrix.
+	 */
+	public enum Axis {
+		PRESSURE, TEMPERATURE, ROTATION_SQUARED
+	}
+
+	/**
+	 * How values are stored in the bins, bytes in the order of the hex text.
+	 */
+	public enum Encoding {
+		/**
+		 * 8 bytes, two big-endian ints, the low 32 bits of the double first.
+		 */
+		DOUBLE_LOW_WORD_FIRST(8),
+		/**
+		 * 8 bytes, big-endian double.
+		 */
+		DOUBLE(8),
+		/**
+		 * 4 bytes, big-endian float.
+		 */
+		FLOAT(4);
+
+		private final int size;
+
+		private Encoding(int size) {
+			this.size = size;
+		}
+
+		/**
+		 * Return the number of bytes of a value.
+		 * @return
+		 */
+		public int getSize() {
+			return size;
+		}
+	}
+
+	/**
+	 * Where the records of the grid points are found in the bins.
+	 */
+	public static final class Layout {
+		private int headerBins;
+		private int recordBins;
+		private int valueOffset;
+		private int valueCount;
+		private Encoding encoding = Encoding.DOUBLE_LOW_WORD_FIRST;
+		private Axis[] order = { Axis.PRESSURE, Axis.TEMPERATURE, Axis.ROTATION_SQUARED };
+
+		/**
+		 * Set the number of bins before the first record, default 0.
+		 * @param headerBins
+		 * @return this
+		 */
+		public Layout setHeaderBins(int headerBins) {
+			this.headerBins = headerBins;
+			return this;
+		}
+
+		public int getHeaderBins() {
+			return headerBins;
+		}
+
+		/**
+		 * Set the number of bins of a record, default 0 to split all bins behind the header evenly.
+		 * @param recordBins
+		 * @return this
+		 */
+		public Layout setRecordBins(int recordBins) {
+			this.recordBins = recordBins;
+			return this;
+		}
+
+		public int getRecordBins() {
+			return recordBins;
+		}
+
+		/**
+		 * Set the byte offset of the first value within a record, default 0.
+		 * @param valueOffset
+		 * @return this
+		 */
+		public Layout setValueOffset(int valueOffset) {
+			this.valueOffset = valueOffset;
+			return this;
+		}
+
+		public int getValueOffset() {
+			return valueOffset;
+		}
+
+		/**
+		 * Set the number of values to decode per record, default 0 for all up to the end of the record.
+		 * @param valueCount
+		 * @return this
+		 */
+		public Layout setValueCount(int valueCount) {
+			this.valueCount = valueCount;
+			return this;
+		}
+
+		public int getValueCount() {
+			return valueCount;
+		}
+
+		/**
+		 * Set the encoding of the values, default {@link Encoding#DOUBLE_LOW_WORD_FIRST}.
+		 * @param encoding
+		 * @return this
+		 */
+		public Layout setEncoding(Encoding encoding) {
+			this.encoding = encoding;
+			return this;
+		}
+
+		public Encoding getEncoding() {
+			return encoding;
+		}
+
+		/**
+		 * Set the order of the records, the axis changing slowest first.
+		 * Default pressure, temperature, rotation².
+		 * @param slowest
+		 * @param middle
+		 * @param fastest
+		 * @return this
+		 */
+		public Layout setOrder(Axis slowest, Axis middle, Axis fastest) {
+			if(slowest == middle || slowest == fastest || middle == fastest) {
+				throw new IllegalArgumentException("Order must name every axis once");
+			}
+			this.order = new Axis[] { slowest, middle, fastest };
+			return this;
+		}
+
+		public Axis[] getOrder() {
+			return order.clone();
+		}
+	}
+
+	private final LookupData lookupData;
+	private final int modCount;
+	private final double[][] axes = new double[3][];
+	// record number in the bins is the sum of index * stride over the axes
+	private final int[] strides = new int[3];
+	private final int firstBin;
+	private final int recordBins;
+	private final int valueCount;
+	// values[((p * temperatures + t) * rotations + r) * valueCount + v]
+	private final double[] values;
+
+	/**
+	 * Index the bins with the default {@link Layout}.
+	 * @param qsa
+	 * @param lookupData
+	 */
+	public LookupGrid(QuasiStaticAnalysis qsa, LookupData lookupData) {
+		this(qsa, lookupData, new Layout());
+	}
+
+	/**
+	 * Index the bins and decode the values of all records.
+	 * @param qsa providing the axes, each strictly increasing
+	 * @param lookupData
+	 * @param layout
+	 * @throws IllegalArgumentException if the bins do not fit the axes and the layout
+	 */
+	public LookupGrid(QuasiStaticAnalysis qsa, LookupData lookupData, Layout layout) {
+		this.lookupData = lookupData;
+		axes[Axis.PRESSURE.ordinal()] = axis("GaugePressure", qsa.gaugePressures);
+		axes[Axis.TEMPERATURE.ordinal()] = axis("CarcassTemperature", qsa.carcassTemperatures);
+		axes[Axis.ROTATION_SQUARED.ordinal()] = axis("RotationSquared", qsa.rotationSquareds);
+		int points = axes[0].length * axes[1].length * axes[2].length;
+
+		Axis[] order = layout.order;
+		strides[order[2].ordinal()] = 1;
+		strides[order[1].ordinal()] = axes[order[2].ordinal()].length;
+		strides[order[0].ordinal()] = axes[order[2].ordinal()].length * axes[order[1].ordinal()].length;
+
+		ByteBuffer data = lookupData.asByteBuffer();
+		this.modCount = lookupData.getModCount();
+		int bins = data.remaining() / LookupData.BIN_SIZE;
+		this.firstBin = layout.headerBins;
+		if(layout.recordBins > 0) {
+			this.recordBins = layout.recordBins;
+		} else if(bins > firstBin && (bins - firstBin) % points == 0) {
+			this.recordBins = (bins - firstBin) / points;
+		} else {
+			throw new IllegalArgumentException((bins - firstBin) + " bins cannot be split into " + points + " records");
+		}
+		if(firstBin < 0 || firstBin + points * recordBins > bins) {
+			throw new IllegalArgumentException(points + " records of " + recordBins + " bins need "
+					+ (firstBin + points * recordBins) + " bins, got " + bins);
+		}
+		Encoding encoding = layout.encoding;
+		int recordSize = recordBins * LookupData.BIN_SIZE;
+		int available = (recordSize - layout.valueOffset) / encoding.size;
+		this.valueCount = layout.valueCount > 0 ? layout.valueCount : available;
+		if(layout.valueOffset < 0 || valueCount > available) {
+			throw new IllegalArgumentException(valueCount + " values at " + layout.valueOffset
+					+ " do not fit into a record of " + recordSize + " bytes");
+		}
+
+		values = new double[points * valueCount];
+		int pressures = axes[0].length, temperatures = axes[1].length, rotations = axes[2].length;
+		for (int p = 0; p < pressures; p++) {
+			for (int t = 0; t < temperatures; t++) {
+				for (int r = 0; r < rotations; r++) {
+					int pos = getBin(p, t, r) * LookupData.BIN_SIZE + layout.valueOffset;
+					int dst = ((p * temperatures + t) * rotations + r) * valueCount;
+					for (int v = 0; v < valueCount; v++, pos += encoding.size) {
+						values[dst + v] = decode(data, pos, encoding);
+					}
+				}
+			}
+		}
+	}
+
+	private static double decode(ByteBuffer data, int pos, Encoding encoding) {
+		switch(encoding) {
+		case DOUBLE_LOW_WORD_FIRST:
+			return Double.longBitsToDouble(((long)data.getInt(pos + 4) << 32) | (data.getInt(pos) & 0xffffffffL));
+		case DOUBLE:
+			return data.getDouble(pos);
+		default:
+			return data.getFloat(pos);
+		}
+	}
+
+	private static double[] axis(String name, IntArrayList list) {
+		double[] axis = new double[list.size()];
+		for (int i = 0; i < axis.length; i++) {
+			axis[i] = list.getInt(i);
+		}
+		return check(name, axis);
+	}
+
+	private static double[] axis(String name, DoubleArrayList list) {
+		return check(name, list.toDoubleArray());
+	}
+
+	private static double[] check(String name, double[] axis) {
+		if(axis.length == 0) {
+			throw new IllegalArgumentException("No " + name);
+		}
+		for (int i = 1; i < axis.length; i++) {
+			if(!(axis[i] > axis[i - 1])) {
+				throw new IllegalArgumentException(name + " must be increasing: " + axis[i - 1] + ", " + axis[i]);
+			}
+		}
+		return axis;
+	}
+
+	/**
+	 * Return false, if the bins have changed since the grid was built.
+	 * @return
+	 */
+	public boolean isCurrent() {
+		return lookupData.getModCount() == modCount;
+	}
+
+	/**
+	 * Return the values of an axis.
+	 * @param axis
+	 * @return
+	 */
+	public double[] getAxis(Axis axis) {
+		return axes[axis.ordinal()].clone();
+	}
+
+	/**
+	 * Return the number of values decoded per grid point.
+	 * @return
+	 */
+	public int getValueCount() {
+		return valueCount;
+	}
+
+	/**
+	 * Return the index of the first bin of the record of a grid point.
+	 * @param pressure index into the GaugePressures
+	 * @param temperature index into the CarcassTemperatures
+	 * @param rotationSquared index into the RotationSquareds
+	 * @return
+	 */
+	public int getBin(int pressure, int temperature, int rotationSquared) {
+		check(pressure, axes[0].length, "GaugePressure");
+		check(temperature, axes[1].length, "CarcassTemperature");
+		check(rotationSquared, axes[2].length, "RotationSquared");
+		int record = pressure * strides[0] + temperature * strides[1] + rotationSquared * strides[2];
+		return firstBin + record * recordBins;
+	}
+
+	/**
+	 * Return the number of bins of a record.
+	 * @return
+	 */
+	public int getRecordBins() {
+		return recordBins;
+	}
+
+	private static void check(int index, int size, String name) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(name + ": " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Return a decoded value of a grid point.
+	 * @param pressure index into the GaugePressures
+	 * @param temperature index into the CarcassTemperatures
+	 * @param rotationSquared index into the RotationSquareds
+	 * @param value index of the value within the record
+	 * @return
+	 */
+	public double getValue(int pressure, int temperature, int rotationSquared, int value) {
+		getBin(pressure, temperature, rotationSquared);
+		check(value, valueCount, "Value");
+		return values[((pressure * axes[1].length + temperature) * axes[2].length + rotationSquared) * valueCount + value];
+	}
+
+	/**
+	 * Interpolate a single value between the grid points around the operating point.
+	 * Outside of the grid the values of its border are used.
+	 * @param pressure in Pa
+	 * @param temperature in Kelvin
+	 * @param rotationSquared in rad²/s²
+	 * @param value index of the value within the record
+	 * @return
+	 */
+	public double interpolate(double pressure, double temperature, double rotationSquared, int value) {
+		check(value, valueCount, "Value");
+		return interpolate(pressure, temperature, rotationSquared, value, 1, null);
+	}
+
+	/**
+	 * Interpolate all values between the grid points around the operating point.
+	 * Outside of the grid the values of its border are used.
+	 * @param pressure in Pa
+	 * @param temperature in Kelvin
+	 * @param rotationSquared in rad²/s²
+	 * @param out receives {@link #getValueCount()} values
+	 */
+	public void interpolate(double pressure, double temperature, double rotationSquared, double[] out) {
+		interpolate(pressure, temperature, rotationSquared, 0, valueCount, out);
+	}
+
+	private double interpolate(double pressure, double temperature, double rotationSquared, int first, int count, double[] out) {
+		double[] px = axes[0], tx = axes[1], rx = axes[2];
+		int p = cell(px, pressure);
+		int t = cell(tx, temperature);
+		int r = cell(rx, rotationSquared);
+		double fp = fraction(px, p, pressure);
+		double ft = fraction(tx, t, temperature);
+		double fr = fraction(rx, r, rotationSquared);
+		int temperatures = tx.length, rotations = rx.length;
+
+		if(out != null) {
+			for (int v = 0; v < count; v++) {
+				out[v] = 0;
+			}
+		}
+		double sum = 0;
+		for (int corner = 0; corner < 8; corner++) {
+			int dp = corner >> 2, dt = (corner >> 1) & 1, dr = corner & 1;
+			double weight = (dp == 0 ? 1 - fp : fp) * (dt == 0 ? 1 - ft : ft) * (dr == 0 ? 1 - fr : fr);
+			if(weight == 0) {
+				// also skips the missing upper neighbour of single-point axes
+				continue;
+			}
+			int base = (((p + dp) * temperatures + t + dt) * rotations + r + dr) * valueCount + first;
+			if(out == null) {
+				sum += weight * values[base];
+			} else {
+				for (int v = 0; v < count; v++) {
+					out[v] += weight * values[base + v];
+				}
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Return the lower grid point of the cell containing x, clamped to the grid.
+	 */
+	private static int cell(double[] axis, double x) {
+		int i = 0;
+		while(i + 2 < axis.length && x >= axis[i + 1]) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Return the position of x between the grid point i and the next one, 0 to 1.
+	 */
+	private static double fraction(double[] axis, int i, double x) {
+		if(i + 1 >= axis.length || !(x > axis[i])) {
+			return 0;
+		}
+		if(x >= axis[i + 1]) {
+			return 1;
+		}
+		return (x - axis[i]) / (axis[i + 1] - axis[i]);
+	}
+}
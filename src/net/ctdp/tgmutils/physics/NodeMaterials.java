@@ -0,0 +1,242 @@
+package net.ctdp.tgmutils.physics;
+
+import net.ctdp.tgmutils.models.MaterialTable;
+import net.ctdp.tgmutils.models.NodeStore;
+
+/**
+ * Material properties of the layers of all nodes, interpolated linearly over temperature.
+ * <p>
+ * Each layer of a node, its bulk, its tread and each of its plies, lists one material per temperature,
+ * e.g. at 273.15 K and 373.15 K. The materials of all layers are copied into flat tables sorted by
+ * temperature, together with the slope of every property between two temperatures, so a lookup
+ * only compares the temperature with the layer's few points and does a single multiply-add.
+ * Below the first and above the last temperature a property keeps its value.
+ * <p>
+ * Layers are numbered per node: {@link #BULK}, {@link #TREAD}, then ply(0), ply(1), ...
+ * A layer without materials, e.g. a missing ply, gives NaN.
+ * The tables are a copy, call {@link #update()} after changing the nodes.
+ */
+public final class NodeMaterials {
+
+	/**
+	 * A material property, which can be interpolated.
+	 */
+	public enum Property {
+		DENSITY, YOUNGS_MODULUS, POISSONS_RATIO, DAMPING_FACTOR, SPECIFIC_HEAT, THERMAL_CONDUCTIVITY
+	}
+
+	private static final int PROPERTIES = Property.values().length;
+
+	/**
+	 * Layer number of the bulk material.
+	 */
+	public static final int BULK = 0;
+	/**
+	 * Layer number of the tread material.
+	 */
+	public static final int TREAD = 1;
+
+	private final NodeStore nodes;
+	private int modCount;
+	private int size;
+
+	// per node: its first layer row and the number of layers
+	private int[] layerOffset;
+	private int[] layerCount;
+	// per layer row: its first point and the number of points
+	private int[] pointOffset;
+	private int[] pointCount;
+	// per point: temperature, and per property the value and the slope towards the next point
+	private double[] temperatures;
+	private double[][] values;
+	private double[][] slopes;
+
+	/**
+	 * Build the tables for the current nodes of the store.
+	 * @param nodes
+	 */
+	public NodeMaterials(NodeStore nodes) {
+		this.nodes = nodes;
+		build();
+	}
+
+	/**
+	 * Return the layer number of the given ply.
+	 * @param ply index of the ply within its node
+	 * @return
+	 */
+	public static int ply(int ply) {
+		return 2 + ply;
+	}
+
+	/**
+	 * Rebuild the tables, if the nodes have changed since they were built.
+	 * @return true, if the tables have been rebuilt
+	 */
+	public boolean update() {
+		if(nodes.getModCount() == modCount && nodes.size() == size) {
+			return false;
+		}
+		build();
+		return true;
+	}
+
+	private void build() {
+		MaterialTable materials = nodes.getMaterials();
+		size = nodes.size();
+		modCount = nodes.getModCount();
+		layerOffset = new int[size];
+		layerCount = new int[size];
+		int rows = 0;
+		int points = 0;
+		for (int n = 0; n < size; n++) {
+			layerOffset[n] = rows;
+			layerCount[n] = 2 + nodes.getPlyCount(n);
+			rows += layerCount[n];
+			points += nodes.getBulkMaterialCount(n) + nodes.getTreadMaterialCount(n);
+			for (int p = 0; p < nodes.getPlyCount(n); p++) {
+				points += nodes.getPlyMaterialCount(nodes.getPly(n, p));
+			}
+		}
+		pointOffset = new int[rows];
+		pointCount = new int[rows];
+		temperatures = new double[points];
+		values = new double[PROPERTIES][points];
+		slopes = new double[PROPERTIES][points];
+
+		int[] layer = new int[8];
+		int point = 0;
+		for (int n = 0; n < size; n++) {
+			for (int l = 0; l < layerCount[n]; l++) {
+				int count = l == BULK ? nodes.getBulkMaterialCount(n)
+						: l == TREAD ? nodes.getTreadMaterialCount(n) : nodes.getPlyMaterialCount(nodes.getPly(n, l - 2));
+				if(layer.length < count) {
+					layer = new int[count];
+				}
+				for (int i = 0; i < count; i++) {
+					layer[i] = l == BULK ? nodes.getBulkMaterial(n, i)
+							: l == TREAD ? nodes.getTreadMaterial(n, i) : nodes.getPlyMaterial(nodes.getPly(n, l - 2), i);
+				}
+				int row = layerOffset[n] + l;
+				pointOffset[row] = point;
+				pointCount[row] = count;
+				addPoints(materials, layer, count, point);
+				point += count;
+			}
+		}
+	}
+
+	/**
+	 * Copy the given materials sorted by temperature into the tables.
+	 */
+	private void addPoints(MaterialTable materials, int[] layer, int count, int offset) {
+		// a layer has only a few materials, an insertion sort will do
+		for (int i = 1; i < count; i++) {
+			int m = layer[i];
+			int j = i;
+			for (; j > 0 && materials.getTemperature(layer[j - 1]) > materials.getTemperature(m); j--) {
+				layer[j] = layer[j - 1];
+			}
+			layer[j] = m;
+		}
+		for (int i = 0; i < count; i++) {
+			int m = layer[i];
+			int point = offset + i;
+			temperatures[point] = materials.getTemperature(m);
+			values[Property.DENSITY.ordinal()][point] = materials.getDensity(m);
+			values[Property.YOUNGS_MODULUS.ordinal()][point] = materials.getYoungsModulo(m);
+			values[Property.POISSONS_RATIO.ordinal()][point] = materials.getPoissonsRatio(m);
+			values[Property.DAMPING_FACTOR.ordinal()][point] = materials.getDampingFactor(m);
+			values[Property.SPECIFIC_HEAT.ordinal()][point] = materials.getSpecificHeat(m);
+			values[Property.THERMAL_CONDUCTIVITY.ordinal()][point] = materials.getThermalConductivity(m);
+		}
+		for (int i = 0; i + 1 < count; i++) {
+			int point = offset + i;
+			double dt = temperatures[point + 1] - temperatures[point];
+			for (int p = 0; p < PROPERTIES; p++) {
+				slopes[p][point] = dt > 0 ? (values[p][point + 1] - values[p][point]) / dt : 0;
+			}
+		}
+	}
+
+	/**
+	 * Return the number of nodes.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the number of layers of the node, 2 plus its plies.
+	 * @param node
+	 * @return
+	 */
+	public int getLayerCount(int node) {
+		return layerCount[node];
+	}
+
+	/**
+	 * Return true, if the layer of the node has any materials.
+	 * @param node
+	 * @param layer
+	 * @return
+	 */
+	public boolean hasLayer(int node, int layer) {
+		return layer >= 0 && layer < layerCount[node] && pointCount[layerOffset[node] + layer] > 0;
+	}
+
+	/**
+	 * Return the property of the layer of the node at the given temperature.
+	 * @param node
+	 * @param layer {@link #BULK}, {@link #TREAD} or {@link #ply(int)}
+	 * @param property
+	 * @param temperature in Kelvin
+	 * @return the value or NaN, if the node has no such layer
+	 */
+	public double get(int node, int layer, Property property, double temperature) {
+		if(layer < 0 || layer >= layerCount[node]) {
+			return Double.NaN;
+		}
+		int row = layerOffset[node] + layer;
+		return interpolate(pointOffset[row], pointCount[row], values[property.ordinal()], slopes[property.ordinal()], temperature);
+	}
+
+	/**
+	 * Return the property of the given layer of every node, each at its own temperature.
+	 * @param layer {@link #BULK}, {@link #TREAD} or {@link #ply(int)}
+	 * @param property
+	 * @param temperatures one per node
+	 * @param out one per node, NaN for nodes without the layer
+	 */
+	public void get(int layer, Property property, double[] temperatures, double[] out) {
+		double[] values = this.values[property.ordinal()];
+		double[] slopes = this.slopes[property.ordinal()];
+		for (int n = 0; n < size; n++) {
+			if(layer < 0 || layer >= layerCount[n]) {
+				out[n] = Double.NaN;
+				continue;
+			}
+			int row = layerOffset[n] + layer;
+			out[n] = interpolate(pointOffset[row], pointCount[row], values, slopes, temperatures[n]);
+		}
+	}
+
+	private double interpolate(int offset, int count, double[] values, double[] slopes, double temperature) {
+		if(count == 0) {
+			return Double.NaN;
+		}
+		int last = offset + count - 1;
+		if(temperature <= temperatures[offset]) {
+			return values[offset];
+		}
+		if(temperature >= temperatures[last]) {
+			return values[last];
+		}
+		int i = offset;
+		while(temperature > temperatures[i + 1]) {
+			i++;
+		}
+		return values[i] + (temperature - temperatures[i]) * slopes[i];
+	}
+}
@@ -0,0 +1,150 @@
+package net.ctdp.tgmutils.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of primitive doubles.
+ * It still implements List&lt;Double&gt; for existing code, but getDouble() and
+ * addDouble() read and write the backing array without boxing.
+ */
+public class DoubleArrayList extends AbstractList<Double> implements RandomAccess {
+
+	private static final double[] EMPTY = new double[0];
+
+	private double[] elements;
+	private int size;
+
+	/**
+	 * Create an empty list.
+	 */
+	public DoubleArrayList() {
+		this.elements = EMPTY;
+	}
+
+	/**
+	 * Create an empty list, which can hold the given number of values without growing.
+	 * @param capacity
+	 */
+	public DoubleArrayList(int capacity) {
+		this.elements = capacity == 0 ? EMPTY : new double[capacity];
+	}
+
+	/**
+	 * Create a list containing the given values.
+	 * @param values
+	 */
+	public DoubleArrayList(double... values) {
+		this.elements = values.clone();
+		this.size = values.length;
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity > elements.length) {
+			elements = Arrays.copyOf(elements, Math.max(capacity, Math.max(4, elements.length * 2)));
+		}
+	}
+
+	/**
+	 * Return the value at the given index without boxing.
+	 * @param index
+	 * @return
+	 */
+	public double getDouble(int index) {
+		checkIndex(index);
+		return elements[index];
+	}
+
+	/**
+	 * Replace the value at the given index.
+	 * @param index
+	 * @param value
+	 * @return the previous value
+	 */
+	public double setDouble(int index, double value) {
+		checkIndex(index);
+		double old = elements[index];
+		elements[index] = value;
+		return old;
+	}
+
+	/**
+	 * Append a value.
+	 * @param value
+	 */
+	public void addDouble(double value) {
+		ensureCapacity(size + 1);
+		elements[size++] = value;
+		modCount++;
+	}
+
+	/**
+	 * Copy all values into dst.
+	 * @param dst
+	 * @param offset
+	 */
+	public void copyTo(double[] dst, int offset) {
+		System.arraycopy(elements, 0, dst, offset, size);
+	}
+
+	/**
+	 * Return a copy of all values.
+	 * @return
+	 */
+	public double[] toDoubleArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	@Override
+	public Double get(int index) {
+		return getDouble(index);
+	}
+
+	@Override
+	public Double set(int index, Double value) {
+		return setDouble(index, value);
+	}
+
+	@Override
+	public void add(int index, Double value) {
+		if(index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		ensureCapacity(size + 1);
+		System.arraycopy(elements, index, elements, index + 1, size - index);
+		elements[index] = value;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Double remove(int index) {
+		checkIndex(index);
+		double old = elements[index];
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		size--;
+		modCount++;
+		return old;
+	}
+
+	/**
+	 * Remove all values, but keep the capacity.
+	 */
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
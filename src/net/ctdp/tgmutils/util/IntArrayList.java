@@ -0,0 +1,150 @@
+package net.ctdp.tgmutils.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of primitive ints.
+ * It still implements List&lt;Integer&gt; for existing code, but getInt() and
+ * addInt() read and write the backing array without boxing.
+ */
+public class IntArrayList extends AbstractList<Integer> implements RandomAccess {
+
+	private static final int[] EMPTY = new int[0];
+
+	private int[] elements;
+	private int size;
+
+	/**
+	 * Create an empty list.
+	 */
+	public IntArrayList() {
+		this.elements = EMPTY;
+	}
+
+	/**
+	 * Create an empty list, which can hold the given number of values without growing.
+	 * @param capacity
+	 */
+	public IntArrayList(int capacity) {
+		this.elements = capacity == 0 ? EMPTY : new int[capacity];
+	}
+
+	/**
+	 * Create a list containing the given values.
+	 * @param values
+	 */
+	public IntArrayList(int... values) {
+		this.elements = values.clone();
+		this.size = values.length;
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity > elements.length) {
+			elements = Arrays.copyOf(elements, Math.max(capacity, Math.max(4, elements.length * 2)));
+		}
+	}
+
+	/**
+	 * Return the value at the given index without boxing.
+	 * @param index
+	 * @return
+	 */
+	public int getInt(int index) {
+		checkIndex(index);
+		return elements[index];
+	}
+
+	/**
+	 * Replace the value at the given index.
+	 * @param index
+	 * @param value
+	 * @return the previous value
+	 */
+	public int setInt(int index, int value) {
+		checkIndex(index);
+		int old = elements[index];
+		elements[index] = value;
+		return old;
+	}
+
+	/**
+	 * Append a value.
+	 * @param value
+	 */
+	public void addInt(int value) {
+		ensureCapacity(size + 1);
+		elements[size++] = value;
+		modCount++;
+	}
+
+	/**
+	 * Copy all values into dst.
+	 * @param dst
+	 * @param offset
+	 */
+	public void copyTo(int[] dst, int offset) {
+		System.arraycopy(elements, 0, dst, offset, size);
+	}
+
+	/**
+	 * Return a copy of all values.
+	 * @return
+	 */
+	public int[] toIntArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	@Override
+	public Integer get(int index) {
+		return getInt(index);
+	}
+
+	@Override
+	public Integer set(int index, Integer value) {
+		return setInt(index, value);
+	}
+
+	@Override
+	public void add(int index, Integer value) {
+		if(index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		ensureCapacity(size + 1);
+		System.arraycopy(elements, index, elements, index + 1, size - index);
+		elements[index] = value;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Integer remove(int index) {
+		checkIndex(index);
+		int old = elements[index];
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		size--;
+		modCount++;
+		return old;
+	}
+
+	/**
+	 * Remove all values, but keep the capacity.
+	 */
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
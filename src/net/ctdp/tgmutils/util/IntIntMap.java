@@ -0,0 +1,201 @@
+package net.ctdp.tgmutils.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map from int to int, stored as two parallel arrays sorted by key.
+ * TGM tables like InternalGasSpecificHeatAtConstantVolume only have a handful of
+ * entries, which are read far more often than written, so a binary search over
+ * primitives beats hashing boxed keys.
+ * The entries can also be walked in key order with keyAt() and valueAt().
+ * It still implements Map&lt;Integer, Integer&gt; for existing code.
+ */
+public class IntIntMap extends AbstractMap<Integer, Integer> {
+
+	private int[] keys = new int[4];
+	private int[] values = new int[4];
+	private int size;
+
+	private int indexOf(int key) {
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	/**
+	 * Return the value for the given key without boxing.
+	 * @param key
+	 * @param defaultValue returned, if the key is not contained
+	 * @return
+	 */
+	public int getInt(int key, int defaultValue) {
+		int idx = indexOf(key);
+		return idx >= 0 ? values[idx] : defaultValue;
+	}
+
+	/**
+	 * Return true, if the given key is contained.
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(int key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Add or replace the value for the given key.
+	 * @param key
+	 * @param value
+	 */
+	public void putInt(int key, int value) {
+		int idx = indexOf(key);
+		if(idx >= 0) {
+			values[idx] = value;
+			return;
+		}
+		idx = -idx - 1;
+		if(size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+		System.arraycopy(values, idx, values, idx + 1, size - idx);
+		keys[idx] = key;
+		values[idx] = value;
+		size++;
+	}
+
+	/**
+	 * Return the key of the entry at the given position in key order.
+	 * @param index
+	 * @return
+	 */
+	public int keyAt(int index) {
+		checkIndex(index);
+		return keys[index];
+	}
+
+	/**
+	 * Return the value of the entry at the given position in key order.
+	 * @param index
+	 * @return
+	 */
+	public int valueAt(int index) {
+		checkIndex(index);
+		return values[index];
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	private void removeAt(int index) {
+		System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		size--;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof Integer && containsKey(((Integer)key).intValue());
+	}
+
+	@Override
+	public Integer get(Object key) {
+		if(!(key instanceof Integer)) {
+			return null;
+		}
+		int idx = indexOf((Integer)key);
+		return idx >= 0 ? values[idx] : null;
+	}
+
+	@Override
+	public Integer put(Integer key, Integer value) {
+		Integer old = get(key);
+		putInt(key, value);
+		return old;
+	}
+
+	@Override
+	public Integer remove(Object key) {
+		if(!(key instanceof Integer)) {
+			return null;
+		}
+		int idx = indexOf((Integer)key);
+		if(idx < 0) {
+			return null;
+		}
+		int old = values[idx];
+		removeAt(idx);
+		return old;
+	}
+
+	/**
+	 * Remove all entries, but keep the capacity.
+	 */
+	@Override
+	public void clear() {
+		size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<Integer, Integer>> entrySet() {
+		return new AbstractSet<Map.Entry<Integer, Integer>>() {
+			@Override
+			public Iterator<Map.Entry<Integer, Integer>> iterator() {
+				return new Iterator<Map.Entry<Integer, Integer>>() {
+					private int next = 0;
+					private boolean removable = false;
+
+					@Override
+					public boolean hasNext() {
+						return next < size;
+					}
+
+					@Override
+					public Map.Entry<Integer, Integer> next() {
+						if(next >= size) {
+							throw new NoSuchElementException();
+						}
+						final int idx = next++;
+						removable = true;
+						return new AbstractMap.SimpleEntry<Integer, Integer>(keys[idx], values[idx]) {
+							private static final long serialVersionUID = 1L;
+
+							@Override
+							public Integer setValue(Integer value) {
+								values[idx] = value;
+								return super.setValue(value);
+							}
+						};
+					}
+
+					@Override
+					public void remove() {
+						if(!removable) {
+							throw new IllegalStateException();
+						}
+						removeAt(--next);
+						removable = false;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+}
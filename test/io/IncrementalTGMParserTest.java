@@ -0,0 +1,147 @@
+package io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import net.ctdp.tgmutils.io.IncrementalTGMParser;
+import net.ctdp.tgmutils.models.NodeStore;
+import net.ctdp.tgmutils.models.TGMFile;
+import net.ctdp.tgmutils.models.TGMFile.LookupData;
+
+import org.junit.Test;
+
+public class IncrementalTGMParserTest {
+
+	private static final Charset ASCII = Charset.forName("ISO-8859-1");
+
+	@Test
+	public void testUpdate() {
+		try {
+			String text = new String(Files.readAllBytes(Paths.get("res/rTrainer_Tires.tgm")), ASCII);
+			IncrementalTGMParser parser = new IncrementalTGMParser();
+			TGMFile tgm = parser.parse(wrap(text));
+			LookupData lookupData = tgm.getLookupData();
+			int version = tgm.getNodeStore().getVersion(16);
+
+			// change a single node
+			text = text.replace("Geometry=(-0.04000000000000001,-0.324,0.011)", "Geometry=(-0.04000000000000001,-0.325,0.011)");
+			assertTrue("incremental", parser.update(wrap(text)));
+			assertTrue("same model", tgm == parser.getTGMFile());
+			assertEquals("nodes", 31, tgm.getNodes().size());
+			assertEquals("changed node", -0.325, tgm.getNodeStore().getY(17), 0.0);
+			assertEquals("changed node", 3, tgm.getNodes().get(17).plies.size());
+			assertEquals("untouched node", version, tgm.getNodeStore().getVersion(16));
+			assertTrue("untouched LookupData", lookupData == tgm.getLookupData());
+			assertEquals("bins", 1896, lookupData.getBinCount());
+
+			// change a line of [Realtime], given by its line number
+			text = text.replace("StaticBaseCoefficient=2.350", "StaticBaseCoefficient=2.4");
+			assertTrue("incremental", parser.update(wrap(text), 572, 572));
+			assertEquals("StaticBaseCoefficient", 2.4, tgm.getRealtime().staticBaseCoefficient, 0.0);
+			assertEquals("SlidingBaseCoefficient", 1.504, tgm.getRealtime().slidingBaseCoefficient, 0.0);
+			assertEquals("InternalGasSpecificHeatAtConstantVolume", 742, tgm.getRealtime().internalGasSpecificHeatAtConstantVolume.getInt(500, -1));
+
+			// remove a line
+			text = text.replace("TreadDepth=0.003\r\n", "");
+			assertTrue("incremental", parser.update(wrap(text)));
+			assertEquals("TreadDepth", 0.0, tgm.getNodeStore().getTreadDepth(0), 0.0);
+
+			// a new node changes the structure
+			int idx = text.indexOf("[Node] // 17");
+			text = text.substring(0, idx) + text.substring(idx, text.indexOf("[Node] // 18")) + text.substring(idx);
+			assertTrue("full parse", !parser.update(wrap(text)));
+			assertEquals("nodes", 32, parser.getTGMFile().getNodes().size());
+			assertEquals("bins", 1896, parser.getTGMFile().getLookupData().getBinCount());
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testNodelessGroup() {
+		try {
+			String text = new String(Files.readAllBytes(Paths.get("res/rTrainer_Tires.tgm")), ASCII);
+			IncrementalTGMParser parser = new IncrementalTGMParser();
+			parser.parse(wrap(text));
+			int start = text.indexOf("[Node] // 17");
+			int end = text.indexOf("[Node] // 18");
+
+			// only the header is left, the group has no node anymore
+			String empty = text.substring(0, start) + "[Node] // 17\r\n" + text.substring(end);
+			assertTrue("full parse", !parser.update(wrap(empty)));
+			TGMFile tgm = parser.getTGMFile();
+			assertEquals("nodes", 30, tgm.getNodes().size());
+			assertEquals("node behind", -0.06, tgm.getNodeStore().getX(17), 0.0);
+
+			// a node behind the empty group is found in the right row
+			String changed = empty.replace("Geometry=(-0.06,-0.324,0.011)", "Geometry=(-0.06,-0.326,0.011)");
+			assertTrue("incremental", parser.update(wrap(changed)));
+			assertTrue("same model", tgm == parser.getTGMFile());
+			assertEquals("changed node", -0.326, tgm.getNodeStore().getY(17), 0.0);
+
+			// the group gets its node back
+			assertTrue("full parse", !parser.update(wrap(text)));
+			assertEquals("nodes", 31, parser.getTGMFile().getNodes().size());
+			assertEquals("restored node", -0.324, parser.getTGMFile().getNodeStore().getY(17), 0.0);
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testRepeatedEdits() {
+		try {
+			String text = new String(Files.readAllBytes(Paths.get("res/rTrainer_Tires.tgm")), ASCII);
+			IncrementalTGMParser parser = new IncrementalTGMParser();
+			TGMFile tgm = parser.parse(wrap(text));
+			assertEquals("materials", 10, tgm.getNodeStore().getMaterials().size());
+			String line = "BulkMaterial=(273.15,925,26500000,0.46,-1,1250,4.6)\r\nBulkMaterial=(373.15,903,20500000,0.46,-1,1290,4.4)\r\nAnisoCarcassConductivityMult=(1.2,1,2)\r\nTreadDepth=0.0055";
+			int idx = text.indexOf(line, text.indexOf("[Node] // 17"));
+			for (int i = 0; i < 200; i++) {
+				String edited = text.substring(0, idx) + line.replace("925,", (1000 + i) + ",").replace("0.0055", "0.00" + (1000 + i))
+						+ text.substring(idx + line.length());
+				parser.update(wrap(edited));
+				tgm = parser.getTGMFile();
+				assertEquals("density", 1000 + i, tgm.getNodeStore().getMaterials().getDensity(tgm.getNodeStore().getBulkMaterial(17, 0)), 0.0);
+				assertEquals("tread depth", Double.parseDouble("0.00" + (1000 + i)), tgm.getNodeStore().getTreadDepth(17), 0.0);
+				assertEquals("plies", 3, tgm.getNodeStore().getPlyCount(17));
+				assertEquals("ply materials", 2, tgm.getNodeStore().getPlyMaterialCount(tgm.getNodeStore().getPly(17, 2)));
+				// each value adds a material, until a full parse starts over
+				assertTrue("materials " + tgm.getNodeStore().getMaterials().size(), tgm.getNodeStore().getMaterials().size() < 100);
+			}
+			// all other nodes keep their values
+			NodeStore expected = new IncrementalTGMParser().parse(wrap(text)).getNodeStore();
+			NodeStore nodes = tgm.getNodeStore();
+			for (int n = 0; n < 31; n++) {
+				if(n != 17) {
+					assertEquals("y", expected.getY(n), nodes.getY(n), 0.0);
+					assertEquals("tread depth", expected.getTreadDepth(n), nodes.getTreadDepth(n), 0.0);
+					assertEquals("RingAndRim", expected.getRingAndRim(n, 0), nodes.getRingAndRim(n, 0), 0.0);
+					assertEquals("bulk", expected.getBulkMaterialCount(n), nodes.getBulkMaterialCount(n));
+					assertEquals("tread", expected.getTreadMaterialCount(n), nodes.getTreadMaterialCount(n));
+					assertEquals("plies", expected.getPlyCount(n), nodes.getPlyCount(n));
+					for (int p = 0; p < nodes.getPlyCount(n); p++) {
+						assertEquals("ply", expected.getPlyThickness(expected.getPly(n, p)), nodes.getPlyThickness(nodes.getPly(n, p)), 0.0);
+						assertEquals("ply materials", expected.getPlyMaterialCount(expected.getPly(n, p)), nodes.getPlyMaterialCount(nodes.getPly(n, p)));
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	private static ByteBuffer wrap(String text) {
+		return ByteBuffer.wrap(text.getBytes(ASCII));
+	}
+}
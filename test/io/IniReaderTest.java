@@ -0,0 +1,147 @@
+package io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ctdp.tgmutils.io.IniReader;
+import net.ctdp.tgmutils.io.IniReader.Event;
+
+import org.junit.Test;
+
+public class IniReaderTest {
+
+	private static final Charset ASCII = Charset.forName("ISO-8859-1");
+
+	@Test
+	public void testEvents() {
+		try {
+			String longValue = new String(new char[20000]).replace('\0', '1');
+			String text = "// preamble\n[Group] // header comment\r\n  Key = \"quoted // value\" // comment\r\n"
+					+ "Plain=(1,2)//c\r\n\r\n# hash\rLong=" + longValue + "\n[ Other ]\nLast=x";
+			byte[] bytes = text.getBytes(ASCII);
+			for (IniReader reader : new IniReader[] { new IniReader(ByteBuffer.wrap(bytes)), new IniReader(new ChunkedChannel(bytes, 7)) }) {
+				assertEquals(Event.COMMENT, reader.next());
+				assertEquals("preamble", reader.getComment().toString());
+				assertTrue("no group", reader.getGroup() == null);
+
+				assertEquals(Event.GROUP, reader.next());
+				assertEquals("Group", reader.getGroupName());
+				assertEquals("line", 2, reader.getLineNr());
+				assertEquals("offset", 12, reader.getLineOffset());
+
+				assertEquals(Event.SETTING, reader.next());
+				assertTrue("key", reader.getKey().contentEquals("Key"));
+				assertEquals("quoted // value", reader.getValue().toString());
+				assertEquals("comment", reader.getComment().toString());
+
+				assertEquals(Event.SETTING, reader.next());
+				assertEquals("(1,2)", reader.getValue().toString());
+				assertEquals("c", reader.getComment().toString());
+
+				assertEquals(Event.COMMENT, reader.next());
+				assertEquals("hash", reader.getComment().toString());
+				assertEquals("line", 6, reader.getLineNr());
+
+				assertEquals(Event.SETTING, reader.next());
+				assertTrue("long value", reader.getValue().contentEquals(longValue));
+				assertTrue("no comment", reader.getComment() == null);
+				assertEquals("group", "Group", reader.getGroup().toString());
+
+				assertEquals(Event.GROUP, reader.next());
+				assertEquals("Other", reader.getGroupName());
+				assertEquals(Event.SETTING, reader.next());
+				assertEquals("x", reader.getValue().toString());
+				assertEquals("line", 9, reader.getLineNr());
+				assertEquals(Event.END, reader.next());
+				assertEquals(Event.END, reader.next());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testSkipGroups() {
+		try {
+			byte[] bytes = Files.readAllBytes(Paths.get("res/rTrainer_Tires.tgm"));
+
+			List<String> groups = new ArrayList<String>();
+			int settings = 0;
+			IniReader reader = new IniReader(new ChunkedChannel(bytes, 1000));
+			for (Event event = reader.next(); event != Event.END; event = reader.next()) {
+				if(event == Event.GROUP) {
+					groups.add(reader.getGroupName() + "@" + reader.getLineNr() + "@" + reader.getLineOffset());
+				} else if(event == Event.SETTING) {
+					settings++;
+				}
+			}
+			assertEquals("groups", 34, groups.size());
+			assertTrue("settings", settings > 1896);
+
+			List<String> skipped = new ArrayList<String>();
+			reader = new IniReader(ByteBuffer.wrap(bytes));
+			while(reader.nextGroup()) {
+				skipped.add(reader.getGroupName() + "@" + reader.getLineNr() + "@" + reader.getLineOffset());
+			}
+			assertEquals("skipped", groups, skipped);
+			assertEquals("[LookupData]", "LookupData@603", skipped.get(33).substring(0, skipped.get(33).lastIndexOf('@')));
+
+			// stop early, after the first value of the [Realtime] group
+			reader = new IniReader(new ChunkedChannel(bytes, 13));
+			while(reader.nextGroup() && !reader.getGroup().contentEquals("Realtime")) {
+			}
+			assertEquals(Event.SETTING, reader.next());
+			assertEquals("line", 572, reader.getLineNr());
+			assertEquals("2.350", reader.getValue().toString());
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	/**
+	 * Returns at most the given number of bytes per read.
+	 */
+	private static class ChunkedChannel implements ReadableByteChannel {
+		private final ByteBuffer bytes;
+		private final int chunk;
+
+		ChunkedChannel(byte[] bytes, int chunk) {
+			this.bytes = ByteBuffer.wrap(bytes);
+			this.chunk = chunk;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) {
+			if(!bytes.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(chunk, Math.min(dst.remaining(), bytes.remaining()));
+			ByteBuffer src = bytes.duplicate();
+			src.limit(src.position() + n);
+			dst.put(src);
+			bytes.position(bytes.position() + n);
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
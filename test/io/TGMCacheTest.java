@@ -0,0 +1,127 @@
+package io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import net.ctdp.tgmutils.io.TGMCache;
+import net.ctdp.tgmutils.models.NodeStore;
+import net.ctdp.tgmutils.models.TGMFile;
+
+import org.junit.Test;
+
+public class TGMCacheTest {
+
+	private static final File TIRES = new File("res/rTrainer_Tires.tgm");
+
+	@Test
+	public void testHitsAndEviction() {
+		File dir = null;
+		try {
+			dir = Files.createTempDirectory("tgmcache").toFile();
+			File first = copy(TIRES, new File(dir, "first.tgm"));
+			File second = copy(TIRES, new File(dir, "second.tgm"));
+			File node = copy(new File("res/node.tgm"), new File(dir, "node.tgm"));
+
+			TGMCache cache = new TGMCache(TIRES.length() + node.length() + 64);
+			TGMFile tgm = cache.load(first);
+			assertEquals("nodes", 31, tgm.getNodes().size());
+			assertEquals("misses", 1, cache.getMissCount());
+
+			// reading the shared file leaves it untouched
+			NodeStore nodes = tgm.getNodeStore();
+			int modCount = nodes.getModCount();
+			double treadDepth = 0;
+			for (NodeStore.Cursor c = nodes.cursor(); c.next();) {
+				treadDepth += c.getTreadDepth();
+			}
+			assertEquals("tread depth", 0.003, tgm.getNodes().get(5).treadDepth, 0.0);
+			assertEquals("bins", tgm.getLookupData().getBinCount(), tgm.getLookupData().getBins().size());
+			assertTrue("same store", nodes == tgm.getNodeStore());
+			assertEquals("unchanged", modCount, nodes.getModCount());
+			assertTrue("tread depths", treadDepth > 0);
+
+			assertTrue("same file", tgm == cache.load(first));
+			assertTrue("same content", tgm == cache.load(second));
+			assertEquals("hits", 2, cache.getHitCount());
+
+			// only the time changed, the content hash still matches
+			assertTrue(first.setLastModified(first.lastModified() - 10000));
+			assertTrue("touched file", tgm == cache.load(first));
+			assertEquals("hits", 3, cache.getHitCount());
+
+			// changed content
+			FileOutputStream out = new FileOutputStream(second, true);
+			out.write("\r\n// changed\r\n".getBytes("US-ASCII"));
+			out.close();
+			TGMFile changed = cache.load(second);
+			assertTrue("changed file", tgm != changed);
+			assertEquals("misses", 2, cache.getMissCount());
+			assertEquals("evictions", 1, cache.getEvictionCount());
+			assertEquals("size", 1, cache.size());
+
+			cache.load(node);
+			assertEquals("size", 2, cache.size());
+			assertTrue("size limit", cache.getBytes() <= TIRES.length() + node.length() + 64);
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testDiskStore() {
+		File dir = null;
+		try {
+			dir = Files.createTempDirectory("tgmcache").toFile();
+			File store = new File(dir, "store");
+
+			TGMCache cache = new TGMCache(1L << 20);
+			cache.setDiskStore(store);
+			cache.load(TIRES);
+			assertEquals("disk hits", 0, cache.getDiskHitCount());
+			assertEquals("snapshots", 1, store.list().length);
+
+			TGMCache next = new TGMCache(1L << 20);
+			next.setDiskStore(store);
+			TGMFile tgm = next.load(TIRES);
+			assertEquals("misses", 1, next.getMissCount());
+			assertEquals("disk hits", 1, next.getDiskHitCount());
+			assertEquals("nodes", 31, tgm.getNodes().size());
+			assertEquals("bins", 1896, tgm.getLookupData().getBinCount());
+			assertEquals("checksum", -645463472, tgm.getLookupData().getChecksum());
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		} finally {
+			delete(dir);
+		}
+	}
+
+	private static File copy(File src, File dst) throws IOException {
+		Files.copy(src.toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return dst;
+	}
+
+	private static void delete(File file) {
+		if(file == null) {
+			return;
+		}
+		File[] children = file.listFiles();
+		if(children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
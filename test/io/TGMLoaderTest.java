@@ -0,0 +1,106 @@
+package io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.ctdp.tgmutils.io.TGMLoader;
+import net.ctdp.tgmutils.models.MaterialTable;
+import net.ctdp.tgmutils.models.TGMFile;
+
+import org.junit.Test;
+
+public class TGMLoaderTest {
+
+	@Test
+	public void testLoadDirectory() throws InterruptedException {
+		Path dir = null;
+		try {
+			dir = Files.createTempDirectory("tgmloader");
+			for (int i = 0; i < 6; i++) {
+				Files.copy(Paths.get("res/rTrainer_Tires.tgm"), dir.resolve("tire" + i + ".tgm"));
+			}
+			Files.write(dir.resolve("broken.tgm"), "[Node]\r\nGeometry=(0.1,x,0.006)\r\n".getBytes(Charset.forName("US-ASCII")));
+			Files.write(dir.resolve("readme.txt"), new byte[0]);
+
+			MaterialTable materials = new MaterialTable();
+			TGMLoader loader = new TGMLoader(3);
+			loader.setMaterialTable(materials);
+			TGMLoader.Result result = loader.loadAll(dir);
+
+			assertEquals("loaded files", 6, result.getFiles().size());
+			assertTrue("errors", result.hasErrors());
+			assertEquals("errors", 1, result.getErrors().size());
+			assertTrue("broken file", result.getErrors().containsKey(dir.resolve("broken.tgm")));
+			assertTrue("NumberFormatException", result.getErrors().get(dir.resolve("broken.tgm")) instanceof NumberFormatException);
+
+			for (TGMFile tgm : result.getFiles().values()) {
+				assertEquals("nodes", 31, tgm.getNodes().size());
+				assertEquals("bins", 1896, tgm.getLookupData().getBinCount());
+				assertEquals("checksum", -645463472, tgm.getLookupData().getChecksum());
+			}
+			assertEquals("shared materials", 10, materials.size());
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testExecutor() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Path> files = new ArrayList<Path>();
+			for (int i = 0; i < 4; i++) {
+				files.add(Paths.get("res/rTrainer_Tires.tgm"));
+				files.add(Paths.get("res/node.tgm"));
+			}
+			files.add(Paths.get("res/missing.tgm"));
+
+			TGMLoader loader = new TGMLoader(executor);
+			loader.setMemoryMapped(true);
+			TGMLoader.Result result = loader.loadAll(files);
+
+			// the same path is only returned once
+			assertEquals("loaded files", 2, result.getFiles().size());
+			assertEquals("nodes", 31, result.getFiles().get(Paths.get("res/rTrainer_Tires.tgm")).getNodes().size());
+			assertEquals("nodes", 1, result.getFiles().get(Paths.get("res/node.tgm")).getNodes().size());
+			assertTrue("missing file", result.getErrors().get(Paths.get("res/missing.tgm")) instanceof IOException);
+			assertTrue("executor is kept", !executor.isShutdown());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void delete(Path dir) {
+		if(dir == null) {
+			return;
+		}
+		try {
+			DirectoryStream<Path> files = Files.newDirectoryStream(dir);
+			try {
+				for (Path file : files) {
+					Files.delete(file);
+				}
+			} finally {
+				files.close();
+			}
+			Files.delete(dir);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -5,13 +5,22 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import net.ctdp.tgmutils.io.TGMParser;
+import net.ctdp.tgmutils.io.TGMSnapshot;
+import net.ctdp.tgmutils.models.MaterialTable;
+import net.ctdp.tgmutils.models.NodeStore;
 import net.ctdp.tgmutils.models.TGMFile;
 import net.ctdp.tgmutils.models.TGMFile.LookupData;
 import net.ctdp.tgmutils.models.TGMFile.Node;
@@ -61,6 +70,457 @@ public class TGMParserTest {
 		}
 	}
 
+	@Test
+	public void testMappedParsing() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parseMapped(new File("res/rTrainer_Tires.tgm"));
+			TGMFile tgm = parser.getTGMFile();
+
+			assertTGM(tgm);
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testParallelParsing() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parseParallel(new File("res/rTrainer_Tires.tgm"));
+			TGMFile tgm = parser.getTGMFile();
+
+			assertTGM(tgm);
+
+			TGMParser serial = new TGMParser();
+			serial.parse("res/rTrainer_Tires.tgm");
+			LookupData expected = serial.getTGMFile().getLookupData();
+			assertEquals("bins", expected.asByteBuffer(), tgm.getLookupData().asByteBuffer());
+			for (int i = 0; i < tgm.getNodes().size(); i++) {
+				assertEquals("node " + i, serial.getTGMFile().getNodeStore().getY(i), tgm.getNodeStore().getY(i), 0.0);
+			}
+
+			// [LookupData] is loaded on demand like with parse()
+			parser = new TGMParser();
+			parser.setLazyLookupData(true);
+			parser.parseParallel(new File("res/rTrainer_Tires.tgm"));
+			assertTrue("lazy", !parser.getTGMFile().getLookupData().isLoaded());
+			assertEquals("lazy bins", expected.asByteBuffer(), parser.getTGMFile().getLookupData().asByteBuffer());
+
+			// callbacks of a subclass would be skipped
+			parser = new TGMParser() {
+				@Override
+				protected boolean onUnknownSetting(int lineNr, CharSequence group, CharSequence key, CharSequence value) {
+					return false;
+				}
+			};
+			try {
+				parser.parseParallel(new File("res/rTrainer_Tires.tgm"));
+				assertTrue("callback", false);
+			} catch (UnsupportedOperationException e) {
+				assertEquals("nothing parsed", 0, parser.getTGMFile().getNodes().size());
+			}
+
+			// unless it declares them skippable
+			parser = new TGMParser() {
+				@Override
+				protected boolean isParallelSafe() {
+					return true;
+				}
+			};
+			parser.parseParallel(new File("res/rTrainer_Tires.tgm"));
+			assertTGM(parser.getTGMFile());
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testSnapshot() {
+		File snapshot = null;
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			TGMFile parsed = parser.getTGMFile();
+
+			snapshot = File.createTempFile("rTrainer_Tires", ".tgms");
+			TGMSnapshot.write(parsed, snapshot);
+			TGMFile tgm = TGMSnapshot.read(snapshot);
+
+			assertTGM(tgm);
+			assertEquals("bins", parsed.getLookupData().asByteBuffer(), tgm.getLookupData().asByteBuffer());
+			assertEquals("distinct materials", 10, tgm.getNodeStore().getMaterials().size());
+			NodeStore expected = parsed.getNodeStore();
+			NodeStore nodes = tgm.getNodeStore();
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals("geometry X", expected.getX(i), nodes.getX(i), 0.0);
+				assertEquals("geometry Y", expected.getY(i), nodes.getY(i), 0.0);
+				assertEquals("tread depth", expected.getTreadDepth(i), nodes.getTreadDepth(i), 0.0);
+				assertEquals("plies", expected.getPlyCount(i), nodes.getPlyCount(i));
+				assertEquals("ring and rim", expected.getRingAndRimCount(i), nodes.getRingAndRimCount(i));
+			}
+			assertEquals("TotalMass", parsed.getQuasiStaticAnalysis().totalMass, tgm.getQuasiStaticAnalysis().totalMass, 0.0);
+			assertEquals("WLFParameters", parsed.getRealtime().wLFParameters, tgm.getRealtime().wLFParameters);
+			assertEquals("TemporaryAbrasion", parsed.getRealtime().temporaryAbrasion, tgm.getRealtime().temporaryAbrasion, 0f);
+
+			// appending copies the mapped bins
+			byte[] bin = new byte[LookupData.BIN_SIZE];
+			tgm.getLookupData().getBin(0, bin, 0);
+			tgm.getLookupData().addBin(bin, 0);
+			assertEquals("bins", 1897, tgm.getLookupData().getBinCount());
+			assertEquals("last bin", tgm.getLookupData().getBinHex(0), tgm.getLookupData().getBinHex(1896));
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		} finally {
+			if(snapshot != null) {
+				snapshot.delete();
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testNoSnapshot() throws IOException {
+		TGMSnapshot.read(new File("res/node.tgm"));
+	}
+
+	@Test
+	public void testLazyLookupData() {
+		try {
+			String filePath = "res/rTrainer_Tires.tgm";
+
+			TGMParser parser = new TGMParser();
+			parser.setLazyLookupData(true);
+			parser.parse(filePath);
+			TGMFile tgm = parser.getTGMFile();
+
+			assertTrue("LookupData not loaded yet", !tgm.getLookupData().isLoaded());
+			assertTGM(tgm);
+			assertTrue("LookupData loaded", tgm.getLookupData().isLoaded());
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testLazyLookupDataAccess() {
+		File copy = null;
+		try {
+			String filePath = "res/rTrainer_Tires.tgm";
+			TGMParser eager = new TGMParser();
+			eager.parse(filePath);
+			LookupData expected = eager.getTGMFile().getLookupData();
+
+			TGMParser parser = new TGMParser();
+			parser.setLazyLookupData(true);
+			parser.parse(filePath);
+			LookupData lookupData = parser.getTGMFile().getLookupData();
+			// the first access reads a bin beyond the capacity of an empty section
+			assertEquals("byte", expected.getByte(1000, 0), lookupData.getByte(1000, 0));
+			assertEquals("int", expected.getInt(1895, 60), lookupData.getInt(1895, 60));
+
+			parser = new TGMParser();
+			parser.setLazyLookupData(true);
+			parser.parse(filePath);
+			assertEquals("bins", 1896, parser.getTGMFile().getLookupData().getBins().size());
+
+			// offsets are bytes, even if a comment holds a char of several bytes
+			copy = File.createTempFile("tgm", ".tgm");
+			char[] umlauts = new char[64];
+			Arrays.fill(umlauts, '\u00fc');
+			byte[] comment = ("// " + new String(umlauts) + "\r\n").getBytes("UTF-8");
+			byte[] tgm = Files.readAllBytes(new File(filePath).toPath());
+			byte[] bytes = Arrays.copyOf(comment, comment.length + tgm.length);
+			System.arraycopy(tgm, 0, bytes, comment.length, tgm.length);
+			Files.write(copy.toPath(), bytes);
+			parser = new TGMParser();
+			parser.setLazyLookupData(true);
+			parser.parse(copy);
+			assertTrue("LookupData not loaded yet", !parser.getTGMFile().getLookupData().isLoaded());
+			assertEquals("int", expected.getInt(1895, 60), parser.getTGMFile().getLookupData().getInt(1895, 60));
+			assertEquals("checksum", expected.getChecksum(), parser.getTGMFile().getLookupData().getChecksum());
+
+			// and if it is a Latin-1 byte, which isn't valid in the default charset
+			comment = "// Lauffl\u00e4che\r\n".getBytes("ISO-8859-1");
+			bytes = Arrays.copyOf(comment, comment.length + tgm.length);
+			System.arraycopy(tgm, 0, bytes, comment.length, tgm.length);
+			Files.write(copy.toPath(), bytes);
+			parser = new TGMParser();
+			parser.setLazyLookupData(true);
+			parser.parse(copy);
+			assertTrue("LookupData not loaded yet", !parser.getTGMFile().getLookupData().isLoaded());
+			assertEquals("int", expected.getInt(1895, 60), parser.getTGMFile().getLookupData().getInt(1895, 60));
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		} finally {
+			if(copy != null) {
+				copy.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testNodeStore() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			NodeStore nodes = parser.getTGMFile().getNodeStore();
+
+			assertEquals("number of nodes", 31, nodes.size());
+			assertEquals("distinct materials", 10, nodes.getMaterials().size());
+			assertEquals("geometry X", 0.17500000000000002, nodes.getX(0), 0.0);
+			assertEquals("geometry Y", -0.324, nodes.getY(15), 0.0);
+			assertEquals("plies", 2, nodes.getPlyCount(0));
+			int ply = nodes.getPly(0, 1);
+			assertEquals("ply angle", 100, nodes.getPlyAngle(ply));
+			assertEquals("ply material", 2100000000L, nodes.getMaterials().getYoungsModulo(nodes.getPlyMaterial(ply, 0)));
+			assertEquals("shared material", nodes.getBulkMaterial(0, 0), nodes.getBulkMaterial(30, 0));
+
+			// writing a Node back
+			Node node = nodes.getNode(3);
+			node.treadDepth = 0.005;
+			parser.getTGMFile().getNodes().set(3, node);
+			assertEquals("TreadDepth", 0.005, nodes.getTreadDepth(3), 0.0);
+			assertEquals("TreadDepth", 0.005, parser.getTGMFile().getNodes().get(3).treadDepth, 0.0);
+			assertEquals("plies", 2, parser.getTGMFile().getNodes().get(3).plies.size());
+			assertEquals("distinct materials", 10, nodes.getMaterials().size());
+
+			// values the float vectors of a Node can't hold survive the round trip
+			assertEquals("geometry X", 0.17500000000000002, nodes.getX(0), 0.0);
+			parser.getTGMFile().getNodes().set(0, nodes.getNode(0));
+			assertEquals("geometry X", 0.17500000000000002, nodes.getX(0), 0.0);
+			assertEquals("geometry Y", -0.182, nodes.getY(0), 0.0);
+			node = nodes.getNode(0);
+			node.geometry.x(0.2f);
+			nodes.setNode(0, node);
+			assertEquals("changed X", 0.2f, nodes.getX(0), 0.0);
+			assertEquals("geometry Y", -0.182, nodes.getY(0), 0.0);
+
+			// walking the nodes
+			NodeStore.Cursor cursor = nodes.cursor();
+			int count = 0;
+			while(cursor.next()) {
+				assertEquals("cursor", nodes.getTreadDepth(cursor.getNode()), cursor.getTreadDepth(), 0.0);
+				count++;
+			}
+			assertEquals("cursor nodes", 31, count);
+			assertTrue("end", !cursor.next());
+			cursor.reset();
+			assertTrue("reset", cursor.next() && cursor.getNode() == 0);
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testNodeList() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			List<Node> nodes = parser.getTGMFile().getNodes();
+			NodeStore store = parser.getTGMFile().getNodeStore();
+
+			// reading doesn't change the store
+			int modCount = store.getModCount();
+			nodes.get(3).treadDepth = 0.5;
+			assertEquals("detached", 0.003, nodes.get(3).treadDepth, 0.0);
+			assertEquals("modCount", modCount, store.getModCount());
+
+			Node last = nodes.remove(30);
+			assertEquals("removed", 30, nodes.size());
+			assertEquals("removed, mirrored", -last.geometry.x(), nodes.get(0).geometry.x(), 0.0);
+			Node second = nodes.get(1);
+			nodes.add(0, last);
+			assertEquals("inserted", 31, nodes.size());
+			assertEquals("moved", second.geometry.y(), store.getY(2), 1e-6);
+			assertEquals("moved", 2, store.getPlyCount(2));
+			int version = store.getVersion(5);
+			nodes.remove(4);
+			assertTrue("version", version != store.getVersion(5));
+
+			nodes.clear();
+			assertEquals("cleared", 0, store.size());
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testSharedMaterials() {
+		try {
+			MaterialTable materials = new MaterialTable();
+			TGMParser first = new TGMParser(materials);
+			first.parse("res/rTrainer_Tires.tgm");
+			long requests = materials.getRequestCount();
+			TGMParser second = new TGMParser(materials);
+			second.parse("res/rTrainer_Tires.tgm");
+
+			assertEquals("distinct materials", 10, materials.size());
+			assertEquals("requests", requests * 2, materials.getRequestCount());
+			assertEquals("hits", requests * 2 - 10, materials.getHitCount());
+			assertEquals("same material", first.getTGMFile().getNodeStore().getBulkMaterial(0, 0),
+					second.getTGMFile().getNodeStore().getBulkMaterial(30, 0));
+
+			// materials handed out are copies
+			Material material = first.getTGMFile().getNodes().get(3).bulkMaterial.get(0);
+			material.density = 1;
+			assertEquals("density", 925, second.getTGMFile().getNodes().get(30).bulkMaterial.get(0).density, 0.0);
+			assertEquals("density", 925, materials.getDensity(first.getTGMFile().getNodeStore().getBulkMaterial(3, 0)), 0.0);
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testGroupFilter() {
+		try {
+			File file = new File("res/rTrainer_Tires.tgm");
+			for (int mode = 0; mode < 3; mode++) {
+				TGMParser parser = new TGMParser();
+				parser.setGroupFilter("Realtime", "QuasiStaticAnalysis");
+				if(mode == 0) {
+					parser.parse(file);
+				} else if(mode == 1) {
+					parser.parseMapped(file);
+				} else {
+					parser.parseParallel(file);
+				}
+				TGMFile tgm = parser.getTGMFile();
+
+				assertQuasiStaticAnalysis(tgm.getQuasiStaticAnalysis());
+				assertEquals("StaticBaseCoefficient", 2.35, tgm.getRealtime().staticBaseCoefficient, 0.0);
+				assertEquals("nodes", 0, tgm.getNodes().size());
+				assertEquals("bins", 0, tgm.getLookupData().getBinCount());
+			}
+
+			// parsing stops after [Realtime], so the broken [LookupData] is never read
+			String text = new String(Files.readAllBytes(file.toPath()), "ISO-8859-1");
+			text = text.replace("[LookupData]", "[LookupData]\r\nnot a setting");
+			TGMParser parser = new TGMParser();
+			parser.setGroupFilter("Realtime");
+			parser.parse(ByteBuffer.wrap(text.getBytes("ISO-8859-1")));
+			assertEquals("StaticBaseCoefficient", 2.35, parser.getTGMFile().getRealtime().staticBaseCoefficient, 0.0);
+			assertEquals("QuasiStaticAnalysis", 0, parser.getTGMFile().getQuasiStaticAnalysis().numNodes);
+
+			parser = new TGMParser();
+			parser.setGroupFilter("Node");
+			parser.parse(new StringReader(text));
+			assertEquals("nodes", 31, parser.getTGMFile().getNodes().size());
+			assertNode(parser.getTGMFile().getNodes().get(0));
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testReuse() {
+		try {
+			byte[] text = Files.readAllBytes(new File("res/rTrainer_Tires.tgm").toPath());
+			TGMParser parser = new TGMParser();
+			parser.parse(ByteBuffer.wrap(text));
+			TGMFile tgm = parser.getTGMFile();
+			NodeStore nodes = tgm.getNodeStore();
+			LookupData lookupData = tgm.getLookupData();
+			Object gaugePressures = tgm.getQuasiStaticAnalysis().gaugePressures;
+			Object staticCurve = tgm.getRealtime().staticCurve;
+
+			for (int i = 0; i < 3; i++) {
+				parser.reset(tgm);
+				parser.parse(ByteBuffer.wrap(text));
+				assertTrue("same file", tgm == parser.getTGMFile());
+				assertTGM(tgm);
+			}
+			assertTrue("same nodes", nodes == tgm.getNodeStore());
+			assertTrue("same LookupData", lookupData == tgm.getLookupData());
+			assertTrue("same list", gaugePressures == tgm.getQuasiStaticAnalysis().gaugePressures);
+			assertTrue("same Realtime list", staticCurve == tgm.getRealtime().staticCurve);
+
+			// reset() reuses a file nobody has got yet and leaves a returned one alone
+			TGMParser pooled = new TGMParser();
+			pooled.parse(ByteBuffer.wrap(text));
+			pooled.reset();
+			pooled.parse(ByteBuffer.wrap(text));
+			TGMFile returned = pooled.getTGMFile();
+			assertEquals("reused nodes", 31, returned.getNodes().size());
+			pooled.reset();
+			pooled.setGroupFilter("Realtime");
+			pooled.parse(ByteBuffer.wrap(text));
+			assertTrue("new file", returned != pooled.getTGMFile());
+			assertEquals("returned nodes", 31, returned.getNodes().size());
+			assertEquals("returned StaticCurve", 6, returned.getRealtime().staticCurve.size());
+
+			// a variant refilled by a parse leaves its base alone
+			TGMFile variant = tgm.createVariant();
+			parser.reset(variant);
+			parser.setGroupFilter("Realtime");
+			parser.parse(ByteBuffer.wrap(text));
+			assertEquals("variant nodes", 0, variant.getNodes().size());
+			assertEquals("base nodes", 31, tgm.getNodes().size());
+			assertEquals("base bins", 1896, tgm.getLookupData().getBinCount());
+			assertEquals("variant StaticBaseCoefficient", 2.35, variant.getRealtime().staticBaseCoefficient, 0.0);
+			assertEquals("base StaticCurve", 6, tgm.getRealtime().staticCurve.size());
+
+			// the node list of a variant follows the store replaced by clear()
+			variant = tgm.createVariant();
+			assertEquals("variant node", 0.175, variant.getNodes().get(0).geometry.x(), 1e-6);
+			Object totalInertia = variant.getQuasiStaticAnalysis().totalInertiaStandards;
+			parser = new TGMParser();
+			parser.reset(variant);
+			String moved = new String(text, "ISO-8859-1").replace("Geometry=(0.17500000000000002,-0.182,0.006)", "Geometry=(0.999,-0.182,0.006)");
+			parser.parse(ByteBuffer.wrap(moved.getBytes("ISO-8859-1")));
+			assertEquals("variant store", 0.999, variant.getNodeStore().getX(0), 1e-6);
+			assertEquals("variant node", 0.999, variant.getNodes().get(0).geometry.x(), 1e-6);
+			assertEquals("base node", 0.175, tgm.getNodes().get(0).geometry.x(), 1e-6);
+			assertTrue("same list", totalInertia == variant.getQuasiStaticAnalysis().totalInertiaStandards);
+			assertEquals("TotalInertiaStandard", 3, variant.getQuasiStaticAnalysis().totalInertiaStandards.size());
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testUnknownSetting() {
+		try {
+			String text = new String(Files.readAllBytes(new File("res/rTrainer_Tires.tgm").toPath()), "ISO-8859-1");
+			text = text.replace("StaticBaseCoefficient=2.350", "StaticBaseCoefficient=2.350\r\nGripMultiplier=1.1\r\nBin=00");
+			for (int mode = 0; mode < 2; mode++) {
+				final List<String> unknown = new ArrayList<String>();
+				TGMParser parser = new TGMParser() {
+					@Override
+					protected boolean onUnknownSetting(int lineNr, CharSequence group, CharSequence key, CharSequence value) {
+						unknown.add(lineNr + ": [" + group + "] " + key + "=" + value);
+						return true;
+					}
+				};
+				if(mode == 0) {
+					parser.parse(ByteBuffer.wrap(text.getBytes("ISO-8859-1")));
+				} else {
+					parser.parse(new StringReader(text));
+				}
+				assertTGM(parser.getTGMFile());
+				assertEquals("unknown", Arrays.asList("573: [Realtime] GripMultiplier=1.1", "574: [Realtime] Bin=00"), unknown);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
 	private static void assertTGM(TGMFile tgm) {
 
 		// QuasiStaticAnalysis
@@ -86,18 +546,27 @@ public class TGMParserTest {
 	}
 
 	private static void assertLookupData(LookupData lookupData) {
-		assertNotNull("Version", lookupData.version);
-		assertTrue("Version type", lookupData.version instanceof String);
-		assertEquals("Version", "1.101", lookupData.version);
-		
-		assertNotNull("Bins", lookupData.bins);
-		assertTrue("Bins Type", lookupData.bins instanceof List);
-		assertEquals("number of Bins", 1896, lookupData.bins.size());
+		assertNotNull("Version", lookupData.getVersion());
+		assertTrue("Version type", lookupData.getVersion() instanceof String);
+		assertEquals("Version", "1.101", lookupData.getVersion());
+		
+		assertNotNull("Bins", lookupData.getBins());
+		assertTrue("Bins Type", lookupData.getBins() instanceof List);
+		assertEquals("number of Bins", 1896, lookupData.getBins().size());
+		assertEquals("number of Bins", 1896, lookupData.getBinCount());
 		String firstbin = "be645b883fef93d5b7b403c23fe43470b7b403d53fe43470e704a27bbc4088ab0d3aa411bc7cd4e8c998faab3fee8696eb9e86f73fe2ecbbeb9e86f33fe2ecbb";
-		assertEquals("first bin", firstbin, lookupData.bins.get(0));
-		
-		assertNotNull("Checksum", lookupData.checksum);
-		assertEquals("Checksum", -645463472, lookupData.checksum);
+		assertEquals("first bin", firstbin, lookupData.getBins().get(0));
+		
+		// decoded bytes
+		assertEquals("Bins byte size", 1896 * LookupData.BIN_SIZE, lookupData.asByteBuffer().remaining());
+		assertEquals("first bin first byte", (byte)0xbe, lookupData.getByte(0, 0));
+		assertEquals("first bin first int", 0xbe645b88, lookupData.getInt(0, 0));
+		assertEquals("first bin last byte", (byte)0xbb, lookupData.getByte(0, LookupData.BIN_SIZE - 1));
+		String lastbin = "00000000003ab768761b923b0067895400000000003aba98003aba54761b9a4b0000026c0000000000000000003abd94";
+		assertTrue("last bin", lookupData.getBinHex(1895).startsWith(lastbin));
+		
+		assertNotNull("Checksum", lookupData.getChecksum());
+		assertEquals("Checksum", -645463472, lookupData.getChecksum());
 	}
 
 	private static void assertQuasiStaticAnalysis(QuasiStaticAnalysis qsa) {
@@ -225,6 +694,7 @@ public class TGMParserTest {
 		assertTrue("PlyMaterials", ply.materials instanceof List);
 		assertEquals("PlyMaterials count", 2, ply.materials.size());
 		assertMaterial("PlyMaterial", "273.15,1305,2100000000,0.3,-1,1695,0.25", ply.materials.get(0));
+		assertEquals("PlyMaterial youngsModulo", 2100000000L, ply.materials.get(0).youngsModulo);
 	}
 
 
@@ -275,6 +745,7 @@ public class TGMParserTest {
 		assertDoubleList("DampnessEffects", "-0.125,-0.125,-0.10,-0.075", realtime.dampnessEffects);
 		
 		assertDoubleList("StaticCurve", "153.0, 0.61, 353.0, 1.176, 653.0, 0.61", realtime.staticCurve);
+		assertEquals("StaticCurve primitive", 1.176, realtime.staticCurve.getDouble(3), 0.0);
 		
 		assertDoubleList("SlidingAdhesionCurve", "-9.20, 0.40, -5.20, 1.70, -1.20, 0.20", realtime.slidingAdhesionCurve);
 		
@@ -311,6 +782,8 @@ public class TGMParserTest {
 		expectedGasSpecificHeat.put(450,733);
 		expectedGasSpecificHeat.put(500,742);
 		assertHashMap("InternalGasSpecificHeatAtConstantVolume", expectedGasSpecificHeat, realtime.internalGasSpecificHeatAtConstantVolume);
+		assertEquals("InternalGasSpecificHeatAtConstantVolume primitive", 742, realtime.internalGasSpecificHeatAtConstantVolume.getInt(500, -1));
+		assertEquals("InternalGasSpecificHeatAtConstantVolume order", 250, realtime.internalGasSpecificHeatAtConstantVolume.keyAt(0));
 		
 		assertNotNull("TemporaryAbrasion", realtime.temporaryAbrasion);
 		 assertEquals("TemporaryAbrasion", 1.0E-10, realtime.temporaryAbrasion, 0.0001);
@@ -0,0 +1,124 @@
+package io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import net.ctdp.tgmutils.io.TGMParser;
+import net.ctdp.tgmutils.io.TGMSweep;
+import net.ctdp.tgmutils.models.NodeStore;
+import net.ctdp.tgmutils.models.TGMFile;
+import net.ctdp.tgmutils.models.TGMFile.Node.Material;
+
+import org.junit.Test;
+
+public class TGMSweepTest {
+
+	@Test
+	public void testSweep() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			TGMFile tgm = parser.getTGMFile();
+
+			Material soft = parser.parseMaterial("(273.15,925,8000000,0.47,-1,2000,0.172)");
+			Material hard = parser.parseMaterial("(273.15,925,11000000,0.47,-1,2000,0.172)");
+			TGMSweep sweep = new TGMSweep(tgm)
+					.add(TGMSweep.realtime("StaticBaseCoefficient", 2.2, 2.4, 2.6))
+					.add(TGMSweep.setting("Realtime", "GrooveEffects", "(0.1,0.1,0.1,0.1)", "(0.2,0.2,0.2,0.2)"))
+					.add(TGMSweep.treadMaterials(new Material[] { soft }, new Material[] { hard }));
+			assertEquals("size", 12, sweep.size());
+			assertEquals("label", "StaticBaseCoefficient=2.4, GrooveEffects=(0.2,0.2,0.2,0.2), TreadMaterial=273.15K 8000000", sweep.getLabel(6));
+
+			// a Realtime change shares nodes and LookupData
+			TGMFile variant = tgm.createVariant();
+			variant.getRealtime().grooveEffects.setDouble(0, 0.3);
+			assertTrue("shared nodes", variant.getNodeStore() == tgm.getNodeStore());
+			assertTrue("shared LookupData", variant.getLookupData() == tgm.getLookupData());
+			assertEquals("base untouched", 0.17, tgm.getRealtime().grooveEffects.getDouble(0), 0.0);
+
+			variant = sweep.getVariant(6);
+			assertEquals("StaticBaseCoefficient", 2.4, variant.getRealtime().staticBaseCoefficient, 0.0);
+			assertEquals("GrooveEffects", 0.2, variant.getRealtime().grooveEffects.getDouble(3), 0.0);
+			assertEquals("TreadMaterial", 8000000, variant.getNodes().get(5).treadMaterial.get(0).youngsModulo);
+			assertEquals("base StaticBaseCoefficient", 2.35, tgm.getRealtime().staticBaseCoefficient, 0.0);
+			assertEquals("base TreadMaterial", 2, tgm.getNodes().get(5).treadMaterial.size());
+			assertTrue("shared LookupData", variant.getLookupData() == tgm.getLookupData());
+
+			// a material sweep keeps all other values of the nodes bit for bit
+			NodeStore base = tgm.getNodeStore();
+			NodeStore nodes = variant.getNodeStore();
+			assertTrue("own nodes", nodes != base);
+			for (int n = 0; n < base.size(); n++) {
+				assertBits("X " + n, base.getX(n), nodes.getX(n));
+				assertBits("Y " + n, base.getY(n), nodes.getY(n));
+				assertBits("Thickness " + n, base.getThickness(n), nodes.getThickness(n));
+				assertBits("TreadDepth " + n, base.getTreadDepth(n), nodes.getTreadDepth(n));
+				assertBits("AnisoX " + n, base.getAnisoX(n), nodes.getAnisoX(n));
+				assertBits("AnisoY " + n, base.getAnisoY(n), nodes.getAnisoY(n));
+				assertBits("AnisoZ " + n, base.getAnisoZ(n), nodes.getAnisoZ(n));
+				assertEquals("RingAndRim " + n, base.getRingAndRimCount(n), nodes.getRingAndRimCount(n));
+				for (int i = 0; i < base.getRingAndRimCount(n); i++) {
+					assertBits("RingAndRim " + n, base.getRingAndRim(n, i), nodes.getRingAndRim(n, i));
+				}
+				assertEquals("BulkMaterial " + n, base.getBulkMaterial(n, 0), nodes.getBulkMaterial(n, 0));
+				assertEquals("TreadMaterials " + n, base.getTreadMaterialCount(n) > 0 ? 1 : 0, nodes.getTreadMaterialCount(n));
+			}
+
+			// values are parsed once, every variant gets its own copy
+			assertTrue("own list", sweep.getVariant(1).getRealtime().grooveEffects != sweep.getVariant(3).getRealtime().grooveEffects);
+			TGMSweep pressures = new TGMSweep(tgm).add(TGMSweep.setting("QuasiStaticAnalysis", "GaugePressure", "200000"));
+			int count = tgm.getQuasiStaticAnalysis().gaugePressures.size();
+			assertEquals("added", 200000, pressures.getVariant(0).getQuasiStaticAnalysis().gaugePressures.getInt(count));
+			assertEquals("base pressures", count, tgm.getQuasiStaticAnalysis().gaugePressures.size());
+
+			// unknown keys are rejected up front
+			for (String key : new String[] { "StaticBaseCoeficient", "Geometry", "Bin" }) {
+				try {
+					TGMSweep.realtime(key, 1.0);
+					assertTrue("unknown key " + key, false);
+				} catch (IllegalArgumentException e) {
+					assertTrue(e.getMessage(), e.getMessage().contains(key));
+				}
+			}
+			try {
+				TGMSweep.setting("QuasiStaticAnalysis", "StaticBaseCoefficient", "2.4");
+				assertTrue("key of another group", false);
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("QuasiStaticAnalysis"));
+			}
+
+			File dir = Files.createTempDirectory("sweep").toFile();
+			try {
+				List<File> files = sweep.writeAll(dir, "rTrainer_");
+				assertEquals("files", 12, files.size());
+				assertEquals("name", "rTrainer_11.tgm", files.get(11).getName());
+				parser.reset();
+				parser.parse(files.get(11));
+				TGMFile written = parser.getTGMFile();
+				assertEquals("StaticBaseCoefficient", 2.6, written.getRealtime().staticBaseCoefficient, 0.0);
+				assertEquals("TreadMaterial", 11000000, written.getNodes().get(5).treadMaterial.get(0).youngsModulo);
+				assertEquals("nodes", 31, written.getNodes().size());
+				assertEquals("bins", 1896, written.getLookupData().getBinCount());
+				String text = new String(Files.readAllBytes(files.get(11).toPath()), "ISO-8859-1");
+				assertTrue("Geometry", text.contains("Geometry=(0.17500000000000002,-0.182,0.006)"));
+			} finally {
+				for (File file : dir.listFiles()) {
+					file.delete();
+				}
+				dir.delete();
+			}
+		} catch (IOException | InterruptedException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	private static void assertBits(String message, double expected, double actual) {
+		assertEquals(message, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+	}
+}
@@ -0,0 +1,110 @@
+package io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.ctdp.tgmutils.io.TGMWatcher;
+import net.ctdp.tgmutils.models.TGMFile;
+
+import org.junit.Test;
+
+public class TGMWatcherTest {
+
+	@Test
+	public void testWatch() throws InterruptedException {
+		Path dir = null;
+		TGMWatcher watcher = null;
+		try {
+			dir = Files.createTempDirectory("tgmwatcher").toAbsolutePath();
+			Path tires = dir.resolve("tires.tgm");
+			Files.copy(Paths.get("res/rTrainer_Tires.tgm"), tires);
+
+			final BlockingQueue<TGMWatcher.Snapshot> snapshots = new LinkedBlockingQueue<TGMWatcher.Snapshot>();
+			watcher = new TGMWatcher(dir);
+			watcher.setDebounceMillis(50L);
+			watcher.start();
+			watcher.addListener(new TGMWatcher.Listener() {
+				@Override
+				public void snapshotChanged(TGMWatcher.Snapshot snapshot) {
+					snapshots.add(snapshot);
+				}
+			});
+			TGMWatcher.Snapshot first = watcher.getSnapshot();
+			assertEquals("files", 1, first.getFiles().size());
+			assertEquals("nodes", 31, watcher.get(tires).getNodes().size());
+
+			// a new file in a new directory
+			Path sub = Files.createDirectory(dir.resolve("sub"));
+			Path node = sub.resolve("node.tgm");
+			Files.copy(Paths.get("res/node.tgm"), node);
+			TGMWatcher.Snapshot snapshot = await(snapshots);
+			assertEquals("files", 2, snapshot.getFiles().size());
+			assertEquals("nodes", 1, snapshot.get(node).getNodes().size());
+			assertEquals("old snapshot unchanged", 1, first.getFiles().size());
+
+			// a broken file keeps its last model
+			TGMFile before = snapshot.get(tires);
+			Files.write(tires, "[Node]\r\nGeometry=(0.1,x,0.006)\r\n".getBytes(Charset.forName("US-ASCII")));
+			snapshot = await(snapshots);
+			assertTrue("error", snapshot.getErrors().containsKey(tires));
+			assertTrue("last model", before == snapshot.get(tires));
+
+			Files.copy(Paths.get("res/node.tgm"), tires, StandardCopyOption.REPLACE_EXISTING);
+			snapshot = await(snapshots);
+			assertTrue("no error", snapshot.getErrors().isEmpty());
+			assertEquals("nodes", 1, snapshot.get(tires).getNodes().size());
+
+			Files.delete(node);
+			snapshot = await(snapshots);
+			assertEquals("files", 1, snapshot.getFiles().size());
+			assertTrue("generation", snapshot.getGeneration() > first.getGeneration());
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		} finally {
+			try {
+				if(watcher != null) {
+					watcher.close();
+				}
+				delete(dir);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static TGMWatcher.Snapshot await(BlockingQueue<TGMWatcher.Snapshot> snapshots) throws InterruptedException {
+		TGMWatcher.Snapshot snapshot = snapshots.poll(30, TimeUnit.SECONDS);
+		assertTrue("timeout", snapshot != null);
+		return snapshot;
+	}
+
+	private static void delete(Path path) throws IOException {
+		if(path == null) {
+			return;
+		}
+		if(Files.isDirectory(path)) {
+			DirectoryStream<Path> files = Files.newDirectoryStream(path);
+			try {
+				for (Path file : files) {
+					delete(file);
+				}
+			} finally {
+				files.close();
+			}
+		}
+		Files.delete(path);
+	}
+}
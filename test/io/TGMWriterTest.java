@@ -0,0 +1,98 @@
+package io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import net.ctdp.tgmutils.io.TGMParser;
+import net.ctdp.tgmutils.io.TGMSnapshot;
+import net.ctdp.tgmutils.io.TGMWriter;
+import net.ctdp.tgmutils.models.TGMFile;
+import net.ctdp.tgmutils.util.DoubleArrayList;
+
+import org.junit.Test;
+
+public class TGMWriterTest {
+
+	private static final Charset ASCII = Charset.forName("ISO-8859-1");
+
+	@Test
+	public void testRoundTrip() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			TGMFile tgm = parser.getTGMFile();
+
+			TGMWriter writer = new TGMWriter();
+			byte[] text = writer.toByteArray(tgm);
+			TGMFile written = parse(text);
+
+			assertEquals("nodes", 31, written.getNodes().size());
+			assertEquals("bins", tgm.getLookupData().asByteBuffer(), written.getLookupData().asByteBuffer());
+			assertEquals("checksum", -645463472, written.getLookupData().getChecksum());
+			// the snapshot holds every value with all its bits
+			assertTrue("same values", Arrays.equals(snapshot(tgm), snapshot(written)));
+			assertTrue("stable", Arrays.equals(text, writer.toByteArray(written)));
+
+			String str = new String(text, ASCII);
+			assertTrue("StaticBaseCoefficient", str.contains("\r\nStaticBaseCoefficient=2.35\r\n"));
+			assertTrue("Geometry", str.contains("\r\nGeometry=(0.17500000000000002,-0.182,0.006)\r\n"));
+			assertTrue("TemporaryAbrasion", str.contains("\r\nTemporaryAbrasion=1e-10\r\n"));
+
+			// a change is written, the unchanged [LookupData] is taken from the last file
+			tgm.getRealtime().staticCurve.setDouble(1, 0.625);
+			written = parse(writer.toByteArray(tgm));
+			assertEquals("StaticCurve", 0.625, written.getRealtime().staticCurve.getDouble(1), 0.0);
+			assertEquals("bins", 1896, written.getLookupData().getBinCount());
+			tgm.getLookupData().setChecksum(42);
+			assertEquals("Checksum", 42, parse(writer.toByteArray(tgm)).getLookupData().getChecksum());
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test
+	public void testNumbers() {
+		try {
+			double[] values = { 0.0, -0.0, 1.0, -1.0, 2.35, 0.1 + 0.2, 1e-10, 1e20, 1e300, -4.9e-324, 123456789012.5,
+					9007199254740993.0, Double.MAX_VALUE, Double.MIN_NORMAL, Math.PI, 1.0 / 3.0, 0.0004, Double.POSITIVE_INFINITY };
+			TGMFile tgm = new TGMFile();
+			tgm.getRealtime().staticCurve = new DoubleArrayList(values);
+			tgm.getRealtime().temporaryAbrasion = 3.4e-7f;
+			TGMWriter writer = new TGMWriter();
+			writer.setLineSeparator("\n");
+			byte[] text = writer.toByteArray(tgm);
+			assertTrue("LF", new String(text, ASCII).contains("\nStaticCurve=(0,-0,1,-1,2.35,0.30000000000000004,1e-10,1e20,"));
+
+			TGMFile written = parse(text);
+			DoubleArrayList curve = written.getRealtime().staticCurve;
+			for (int i = 0; i < values.length; i++) {
+				assertEquals("value " + values[i], Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(curve.getDouble(i)));
+			}
+			assertEquals("float", Float.floatToRawIntBits(3.4e-7f), Float.floatToRawIntBits(written.getRealtime().temporaryAbrasion));
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	private static TGMFile parse(byte[] text) throws IOException {
+		TGMParser parser = new TGMParser();
+		parser.parse(ByteBuffer.wrap(text));
+		return parser.getTGMFile();
+	}
+
+	private static byte[] snapshot(TGMFile tgm) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TGMSnapshot.write(tgm, Channels.newChannel(out));
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,117 @@
+package io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import net.ctdp.tgmutils.io.AsciiSequence;
+import net.ctdp.tgmutils.io.TupleScanner;
+
+import org.junit.Test;
+
+public class TupleScannerTest {
+
+	@Test
+	public void testTGMValues() {
+		TupleScanner scanner = new TupleScanner();
+
+		scanner.reset("(0.17500000000000002,-0.182,0.006)");
+		assertEquals("remaining", 3, scanner.remaining());
+		assertBits(0.17500000000000002, scanner.nextDouble());
+		assertBits(-0.182, scanner.nextDouble());
+		assertBits(0.006, scanner.nextDouble());
+		assertTrue("no more values", !scanner.hasNext());
+
+		scanner.reset("(24000.0, 12500.0, 31500.0)");
+		double[] values = scanner.toDoubleArray();
+		assertEquals("values", 3, values.length);
+		assertBits(24000.0, values[0]);
+		assertBits(12500.0, values[1]);
+		assertBits(31500.0, values[2]);
+
+		scanner.reset("(-1.20, 0.20, +1.80, 2.00, +4.80, 0.40 )");
+		assertEquals("remaining", 6, scanner.remaining());
+		assertBits(-1.2, scanner.nextDouble());
+		assertBits(0.2, scanner.nextDouble());
+		assertBits(1.8, scanner.nextDouble());
+
+		assertEquals("float", 1e-10f, scanner.reset("1e-10").nextFloat(), 0f);
+		assertBits(1e-10, scanner.reset("1e-10").nextDouble());
+
+		scanner.reset("(273.15,1305,2100000000,0.3,-1,1695,0.25)");
+		assertBits(273.15, scanner.nextDouble());
+		assertBits(1305, scanner.nextDouble());
+		assertEquals("long", 2100000000L, scanner.nextLong());
+		assertBits(0.3, scanner.nextDouble());
+		assertBits(-1, scanner.nextDouble());
+		assertEquals("int", 1695, scanner.nextInt());
+		assertBits(0.25, scanner.nextDouble());
+
+		int[] ints = scanner.reset("(250,716)").toIntArray();
+		assertEquals("ints", 2, ints.length);
+		assertEquals("ints", 250, ints[0]);
+		assertEquals("ints", 716, ints[1]);
+	}
+
+	@Test
+	public void testAsciiSequence() {
+		byte[] bytes = "Geometry=(0.195,-0.242,0.006)".getBytes();
+		AsciiSequence value = new AsciiSequence(ByteBuffer.wrap(bytes), 9, bytes.length);
+
+		TupleScanner scanner = new TupleScanner().reset(value);
+		assertBits(0.195, scanner.nextDouble());
+		assertBits(-0.242, scanner.nextDouble());
+		assertBits(0.006, scanner.nextDouble());
+	}
+
+	@Test
+	public void testSameAsJDK() {
+		TupleScanner scanner = new TupleScanner();
+		Random random = new Random(42);
+		for (int i = 0; i < 100000; i++) {
+			double d;
+			switch (i % 4) {
+			case 0:
+				d = Double.longBitsToDouble(random.nextLong());
+				break;
+			case 1:
+				d = random.nextDouble() * 1000000;
+				break;
+			case 2:
+				d = Math.round(random.nextGaussian() * 100000) / 1000.0;
+				break;
+			default:
+				d = random.nextInt(1000000) * Math.pow(10, random.nextInt(40) - 20);
+			}
+			String str = Double.toString(d);
+			assertBits(Double.parseDouble(str), scanner.reset(str).nextDouble());
+			assertEquals(str, Float.floatToIntBits(Float.parseFloat(str)), Float.floatToIntBits(scanner.reset(str).nextFloat()));
+
+			String fixed = String.format("%.6f", d);
+			if(!fixed.contains(",")) {
+				assertBits(Double.parseDouble(fixed), scanner.reset(fixed).nextDouble());
+			}
+		}
+		for (String str : new String[] {"0", "-0", "-0.0", "1.", ".5", "+7", "1E3", "12345678901234567890", "Infinity", "NaN", "0x1p3"}) {
+			assertBits(Double.parseDouble(str), scanner.reset(str).nextDouble());
+		}
+		assertEquals("int", Integer.MIN_VALUE, scanner.reset("-2147483648").nextInt());
+		assertEquals("long", Long.MAX_VALUE, scanner.reset("9223372036854775807").nextLong());
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testIllegalValue() {
+		new TupleScanner().reset("(1,x,3)").toDoubleArray();
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testIntOverflow() {
+		new TupleScanner().reset("2147483648").nextInt();
+	}
+
+	private static void assertBits(double expected, double actual) {
+		assertEquals(Double.toString(expected), Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+	}
+}
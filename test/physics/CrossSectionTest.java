@@ -0,0 +1,62 @@
+package physics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import net.ctdp.tgmutils.io.TGMParser;
+import net.ctdp.tgmutils.models.NodeStore;
+import net.ctdp.tgmutils.models.TGMFile;
+import net.ctdp.tgmutils.physics.CrossSection;
+
+import org.junit.Test;
+
+public class CrossSectionTest {
+
+	@Test
+	public void testMemoized() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			TGMFile tgm = parser.getTGMFile();
+			NodeStore nodes = tgm.getWritableNodeStore();
+			CrossSection section = new CrossSection(nodes, 273.15);
+
+			// node 0 sits on the rim, half of the way to node 1
+			double arc = Math.hypot(0.18611111111111112 - 0.17500000000000002, -0.20199999999999999 + 0.182) / 2;
+			assertEquals("arc", arc, section.getArcLength(0), 1e-12);
+			assertEquals("area", arc * 0.006, section.getArea(0), 1e-12);
+			assertEquals("lazy", 1, section.getComputeCount());
+
+			// node 5, Geometry=(0.18611111111111112,-0.28200000000000003,0.006), TreadDepth=0.003,
+			// tread and bulk 925 kg/m³ at 273.15 K, two plies of 0.0004 m with 1305 kg/m³
+			arc = (Math.hypot(0.18611111111111112 - 0.1927777777777778, -0.28200000000000003 + 0.262)
+					+ Math.hypot(0.17500000000000002 - 0.18611111111111112, -0.302 + 0.28200000000000003)) / 2;
+			double treadRadius = 0.28200000000000003 - 0.003 / 2;
+			double carcassRadius = 0.28200000000000003 - (0.003 + 0.006) / 2;
+			double treadMass = 2 * Math.PI * arc * treadRadius * 0.003 * 925;
+			double carcassMass = 2 * Math.PI * arc * carcassRadius * (2 * 0.0004 * 1305 + (0.006 - 0.003 - 2 * 0.0004) * 925);
+			assertEquals("node mass", treadMass + carcassMass, section.getMass(5), 1e-12);
+			assertEquals("node inertia", treadMass * treadRadius * treadRadius + carcassMass * carcassRadius * carcassRadius,
+					section.getInertia(5), 1e-12);
+
+			double mass = section.getTotalMass();
+			assertEquals("computed once", nodes.size(), section.getComputeCount());
+			assertTrue("ring", section.getRingMass() < mass);
+			// the mismatch with the tool's values is reported, not hidden
+			double deviation = section.getDeviation(tgm.getQuasiStaticAnalysis());
+			assertTrue("deviation " + section, deviation >= Math.abs(mass / tgm.getQuasiStaticAnalysis().totalMass - 1));
+			assertEquals("memoized", mass, section.getTotalMass(), 0.0);
+			assertEquals("memoized", nodes.size(), section.getComputeCount());
+
+			// moving a node invalidates it and its neighbours
+			nodes.setGeometry(10, nodes.getX(10), nodes.getY(10), nodes.getThickness(10) * 2);
+			assertTrue("heavier", section.getTotalMass() > mass);
+			assertEquals("neighbours", nodes.size() + 3, section.getComputeCount());
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package physics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import net.ctdp.tgmutils.io.TGMParser;
+import net.ctdp.tgmutils.physics.Curve;
+import net.ctdp.tgmutils.physics.Curve.Interpolation;
+import net.ctdp.tgmutils.physics.FrictionCurves;
+import net.ctdp.tgmutils.util.DoubleArrayList;
+
+import org.junit.Test;
+
+public class CurveTest {
+
+	@Test
+	public void testLinear() {
+		Curve curve = Curve.compile(new DoubleArrayList(153.0, 0.61, 353.0, 1.176, 653.0, 0.61));
+		assertEquals("first point", 0.61, curve.evaluate(153.0), 1e-12);
+		assertEquals("last point", 0.61, curve.evaluate(653.0), 1e-12);
+		assertEquals("below", 0.61, curve.evaluate(-1000.0), 0.0);
+		assertEquals("above", 0.61, curve.evaluate(1000.0), 0.0);
+		assertEquals("exact", 0.893, curve.interpolate(253.0), 1e-12);
+		assertEquals("peak", 1.176, curve.interpolate(353.0), 0.0);
+		// the table cuts the corner at the peak by less than a sample
+		assertEquals("sampled peak", 1.176, curve.evaluate(353.0), 0.002);
+		assertEquals("NaN", 0.61, curve.evaluate(Double.NaN), 0.0);
+
+		double[] in = new double[1000];
+		double[] out = new double[in.length];
+		for (int i = 0; i < in.length; i++) {
+			in[i] = 100 + i * 0.6;
+		}
+		curve.evaluate(in, out);
+		for (int i = 0; i < in.length; i++) {
+			assertEquals("batch " + in[i], curve.evaluate(in[i]), out[i], 0.0);
+			assertEquals("sampling " + in[i], curve.interpolate(in[i]), out[i], 0.002);
+		}
+	}
+
+	@Test
+	public void testCubic() {
+		Curve curve = Curve.compile(new DoubleArrayList(-9.2, 0.4, -5.2, 1.7, -1.2, 0.2), Interpolation.CUBIC, 4096);
+		assertEquals("point", 0.4, curve.interpolate(-9.2), 1e-12);
+		assertEquals("peak", 1.7, curve.interpolate(-5.2), 1e-12);
+		assertEquals("point", 0.2, curve.interpolate(-1.2), 1e-12);
+		for (double x = -9.2; x <= -1.2; x += 0.01) {
+			double y = curve.interpolate(x);
+			assertTrue("no overshoot at " + x, y >= 0.2 && y <= 1.7);
+			assertEquals("sampling " + x, y, curve.evaluate(x), 1e-5);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecreasing() {
+		Curve.compile(new DoubleArrayList(1, 0, 0, 1));
+	}
+
+	@Test
+	public void testFrictionCurves() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			FrictionCurves curves = FrictionCurves.compile(parser.getTGMFile().getRealtime());
+			assertEquals("StaticCurve", 153.0, curves.getStaticCurve().getMinX(), 0.0);
+			assertEquals("SlidingMacroDeformationCurve", 4.8, curves.getSlidingMacroDeformationCurve().getMaxX(), 0.0);
+			assertEquals("samples", Curve.DEFAULT_SAMPLES, curves.getSlidingAdhesionCurve().getSampleCount());
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package physics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import net.ctdp.tgmutils.io.TGMParser;
+import net.ctdp.tgmutils.models.TGMFile.Realtime;
+import net.ctdp.tgmutils.physics.GripEvaluator;
+import net.ctdp.tgmutils.physics.GripSurface;
+
+import org.junit.Test;
+
+public class GripEvaluatorTest {
+
+	@Test
+	public void testSurface() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			Realtime realtime = parser.getTGMFile().getRealtime();
+
+			GripEvaluator evaluator = GripEvaluator.forRealtime(realtime);
+			assertEquals("shift at reference temperature", 0.0, evaluator.getShift(278.15), 1e-12);
+			assertTrue("hot rubber slides like slow rubber", evaluator.getShift(353.15) < 0);
+			assertEquals("nominal pressure", 1.0, evaluator.getPressureFactor(500000), 1e-12);
+			assertEquals("static grip", 2.35 * 1.176, evaluator.getStaticGrip(353.0, 500000, 0, 0), 0.01);
+			assertEquals("groove", 2.35 * 1.176 * 1.17, evaluator.getStaticGrip(353.0, 500000, 1, 0), 0.01);
+
+			// large enough to be split into tiles
+			double[] temperatures = axis(250, 450, 64);
+			double[] velocities = axis(0.01, 20, 128);
+			double[] pressures = axis(50000, 600000, 16);
+			GripSurface surface = evaluator.evaluate(temperatures, velocities, pressures, 0.5, 0.25);
+			for (int t = 0; t < temperatures.length; t += 7) {
+				for (int p = 0; p < pressures.length; p += 3) {
+					assertEquals("static", evaluator.getStaticGrip(temperatures[t], pressures[p], 0.5, 0.25),
+							surface.getStaticGrip(t, p), 1e-12);
+					for (int v = 0; v < velocities.length; v += 11) {
+						assertEquals("sliding", evaluator.getSlidingGrip(temperatures[t], velocities[v], pressures[p], 0.5, 0.25),
+								surface.getSlidingGrip(t, v, p), 1e-12);
+					}
+				}
+			}
+
+			// cached until a value changes
+			assertTrue("same surface", surface == evaluator.evaluate(temperatures.clone(), velocities, pressures, 0.5, 0.25));
+			assertTrue("same evaluator", evaluator == GripEvaluator.forRealtime(realtime));
+			realtime.staticCurve.setDouble(3, 1.2);
+			GripEvaluator changed = GripEvaluator.forRealtime(realtime);
+			assertTrue("new evaluator", evaluator != changed);
+			assertEquals("changed static grip", 2.35 * 1.2, changed.getStaticGrip(353.0, 500000, 0, 0), 0.01);
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	private static double[] axis(double from, double to, int count) {
+		double[] axis = new double[count];
+		for (int i = 0; i < count; i++) {
+			axis[i] = from + (to - from) * i / (count - 1);
+		}
+		return axis;
+	}
+}
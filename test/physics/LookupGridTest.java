@@ -0,0 +1,72 @@
+package physics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import net.ctdp.tgmutils.io.TGMParser;
+import net.ctdp.tgmutils.models.TGMFile;
+import net.ctdp.tgmutils.physics.LookupGrid;
+import net.ctdp.tgmutils.physics.LookupGrid.Axis;
+
+import org.junit.Test;
+
+public class LookupGridTest {
+
+	@Test
+	public void testGrid() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			TGMFile tgm = parser.getTGMFile();
+			LookupGrid grid = new LookupGrid(tgm.getQuasiStaticAnalysis(), tgm.getLookupData());
+
+			assertEquals("record", 158, grid.getRecordBins());
+			assertEquals("values", 158 * 8, grid.getValueCount());
+			assertEquals("bin", 11 * 158, grid.getBin(2, 1, 1));
+			assertEquals("bin", 2 * 158, grid.getBin(0, 1, 0));
+			assertEquals("axis", 150000, grid.getAxis(Axis.PRESSURE)[1], 0.0);
+			// every record starts with its TotalInertiaStandard
+			assertEquals("inertia", tgm.getQuasiStaticAnalysis().totalInertiaStandards.getDouble(0),
+					grid.getValue(0, 0, 0, 0), 0.001);
+
+			assertEquals("grid point", grid.getValue(1, 1, 0, 0), grid.interpolate(150000, 373.15, 0, 0), 0.0);
+			assertEquals("clamped", grid.getValue(2, 0, 1, 0), grid.interpolate(1e9, 0, 1e9, 0), 0.0);
+			double mid = 0;
+			for (int t = 0; t < 2; t++) {
+				for (int r = 0; r < 2; r++) {
+					mid += grid.getValue(1, t, r, 1) / 8 + grid.getValue(2, t, r, 1) / 8;
+				}
+			}
+			assertEquals("center", mid, grid.interpolate(225000, 323.15, 40000, 1), 1e-12);
+
+			double[] out = new double[grid.getValueCount()];
+			grid.interpolate(100000, 300, 10000, out);
+			for (int v = 0; v < out.length; v += 37) {
+				assertEquals("all values " + v, grid.interpolate(100000, 300, 10000, v), out[v], 1e-12 * Math.abs(out[v]));
+			}
+
+			assertTrue("current", grid.isCurrent());
+			tgm.getLookupData().setChecksum(1);
+			assertFalse("changed", grid.isCurrent());
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLayout() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			TGMFile tgm = parser.getTGMFile();
+			new LookupGrid(tgm.getQuasiStaticAnalysis(), tgm.getLookupData(), new LookupGrid.Layout().setHeaderBins(1));
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+}
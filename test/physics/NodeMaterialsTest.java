@@ -0,0 +1,59 @@
+package physics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import net.ctdp.tgmutils.io.TGMParser;
+import net.ctdp.tgmutils.models.NodeStore;
+import net.ctdp.tgmutils.physics.NodeMaterials;
+import net.ctdp.tgmutils.physics.NodeMaterials.Property;
+
+import org.junit.Test;
+
+public class NodeMaterialsTest {
+
+	@Test
+	public void testInterpolation() {
+		try {
+			TGMParser parser = new TGMParser();
+			parser.parse("res/rTrainer_Tires.tgm");
+			NodeStore nodes = parser.getTGMFile().getWritableNodeStore();
+			NodeMaterials materials = new NodeMaterials(nodes);
+
+			assertEquals("nodes", nodes.size(), materials.size());
+			assertEquals("layers", 4, materials.getLayerCount(0));
+			assertTrue("tread", materials.hasLayer(0, NodeMaterials.TREAD));
+			assertFalse("no such ply", materials.hasLayer(0, NodeMaterials.ply(2)));
+			assertTrue("no such ply", Double.isNaN(materials.get(0, NodeMaterials.ply(2), Property.DENSITY, 300)));
+
+			assertEquals("cold", 925, materials.get(0, NodeMaterials.BULK, Property.DENSITY, 273.15), 1e-9);
+			assertEquals("hot", 903, materials.get(0, NodeMaterials.BULK, Property.DENSITY, 373.15), 1e-9);
+			assertEquals("between", 914, materials.get(0, NodeMaterials.BULK, Property.DENSITY, 323.15), 1e-9);
+			assertEquals("below", 16000000, materials.get(0, NodeMaterials.BULK, Property.YOUNGS_MODULUS, 200), 0.0);
+			assertEquals("above", 12000000, materials.get(0, NodeMaterials.BULK, Property.YOUNGS_MODULUS, 400), 0.0);
+			assertEquals("ply", 1705, materials.get(0, NodeMaterials.ply(1), Property.SPECIFIC_HEAT, 323.15), 1e-9);
+
+			double[] temperatures = new double[materials.size()];
+			double[] out = new double[materials.size()];
+			for (int n = 0; n < temperatures.length; n++) {
+				temperatures[n] = 260 + 4 * n;
+			}
+			materials.get(NodeMaterials.TREAD, Property.THERMAL_CONDUCTIVITY, temperatures, out);
+			for (int n = 0; n < temperatures.length; n++) {
+				assertEquals("batch " + n, materials.get(n, NodeMaterials.TREAD, Property.THERMAL_CONDUCTIVITY, temperatures[n]),
+						out[n], 0.0);
+			}
+
+			assertFalse("unchanged", materials.update());
+			nodes.addTreadMaterial(0, nodes.getBulkMaterial(0, 0));
+			assertTrue("changed", materials.update());
+			assertFalse("rebuilt", materials.update());
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertTrue("exception", false);
+		}
+	}
+}